@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.blockchain.Block;
+import nxt.blockchain.BlockImpl;
+import nxt.blockchain.TransactionProcessorImpl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.List;
+
+/**
+ * Offline test node used by the benchmarks
+ *
+ * The node is initialized the same way as the unit tests, except that the database
+ * is an in-memory H2 database and no add-ons are loaded.  Benchmarks which modify
+ * the blockchain must restore it before the next iteration, normally by forging a
+ * block once and then pushing and popping the same block.
+ */
+public final class BenchmarkNode extends BlockchainTest {
+
+    private static boolean initialized;
+
+    /**
+     * Start the node
+     *
+     * The node is started once for each benchmark JVM
+     */
+    public static synchronized void start() {
+        if (initialized) {
+            return;
+        }
+        putAdditionalProperty("nxt.testDbUrl", "jdbc:h2:mem:nxt_benchmark;DB_CLOSE_ON_EXIT=FALSE;DB_CLOSE_DELAY=-1");
+        putAdditionalProperty("nxt.addOns", "");
+        putAdditionalProperty("nxt.disableSecurityPolicy", "true");
+        init();
+        initialized = true;
+    }
+
+    /**
+     * Forge a block containing the current unconfirmed transactions and then remove it
+     * from the blockchain
+     *
+     * @return                          Forged block
+     */
+    public static Block forgeBlock() {
+        generateBlock();
+        Block block = blockchain.getLastBlock();
+        popBlock();
+        return block;
+    }
+
+    /**
+     * Push a block forged by {@link #forgeBlock()}
+     *
+     * @param   block                   Block
+     * @throws  NxtException            Block was not accepted
+     */
+    public static void pushBlock(Block block) throws NxtException {
+        blockchainProcessor.processPeerBlock(block);
+        if (blockchain.getLastBlock().getId() != block.getId()) {
+            throw new IllegalStateException("Block " + block.getStringId() + " was not pushed");
+        }
+    }
+
+    /**
+     * Remove the last block and drop its transactions
+     *
+     * @return                          Removed block
+     */
+    public static Block popBlock() {
+        return AccessController.doPrivileged((PrivilegedAction<Block>) () -> {
+            List<BlockImpl> blocks = blockchainProcessor.popOffTo(blockchain.getHeight() - 1);
+            TransactionProcessorImpl.getInstance().clearUnconfirmedTransactions();
+            return blocks.get(0);
+        });
+    }
+
+    /**
+     * Stop the node
+     */
+    public static synchronized void stop() {
+        if (initialized) {
+            shutdownNxt();
+            initialized = false;
+        }
+    }
+
+    private BenchmarkNode() {}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.account;
+
+import nxt.BenchmarkNode;
+import nxt.BlockchainTest;
+import nxt.Tester;
+import nxt.dbschema.Db;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VersionedEntityDbTable get and insert using the account_info table in an in-memory database
+ *
+ * The inserts are done in a database transaction which is rolled back at the end of
+ * each iteration, so the table does not grow between iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionedEntityDbTableBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        Account[] accounts;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            BenchmarkNode.start();
+            Tester[] testers = new Tester[] {BlockchainTest.ALICE, BlockchainTest.BOB, BlockchainTest.CHUCK, BlockchainTest.DAVE};
+            accounts = new Account[testers.length];
+            Db.db.beginTransaction();
+            try {
+                for (int i = 0; i < testers.length; i++) {
+                    accounts[i] = Account.getAccount(testers[i].getId());
+                    accounts[i].setAccountInfo("account" + i, "benchmark account");
+                }
+                Db.db.commitTransaction();
+            } finally {
+                Db.db.endTransaction();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BenchmarkNode.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Transaction {
+
+        int counter;
+
+        @Setup(Level.Iteration)
+        public void begin() {
+            Db.db.beginTransaction();
+        }
+
+        @TearDown(Level.Iteration)
+        public void rollback() {
+            Db.db.rollbackTransaction();
+            Db.db.endTransaction();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        int counter;
+    }
+
+    @Benchmark
+    public Account.AccountInfo get(Accounts accounts, Counter counter) {
+        return accounts.accounts[counter.counter++ & 3].getAccountInfo();
+    }
+
+    @Benchmark
+    public void insert(Accounts accounts, Transaction transaction) {
+        int i = transaction.counter++;
+        accounts.accounts[i & 3].setAccountInfo("account" + i, "benchmark account");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.ae;
+
+import nxt.BenchmarkNode;
+import nxt.BlockchainTest;
+import nxt.NxtException;
+import nxt.blockchain.Block;
+import nxt.blockchain.ChildChain;
+import nxt.http.assetexchange.AssetExchangeTest;
+import nxt.http.client.PlaceAssetOrderBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asset exchange order matching
+ *
+ * The order book holds the requested number of ask orders at different prices.  The
+ * benchmark pushes a block containing a single bid order which matches every ask order.
+ * The block is popped after each invocation to restore the order book.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+public class OrderMatchingBenchmark {
+
+    /** Number of ask orders matched by the bid order */
+    @Param({"10", "100"})
+    public int orderCount;
+
+    private Block block;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkNode.start();
+        String assetId = AssetExchangeTest.issueAsset(BlockchainTest.ALICE, "Bench").getAssetIdString();
+        for (int i = 0; i < orderCount; i++) {
+            new PlaceAssetOrderBuilder(BlockchainTest.ALICE, assetId, 10, ChildChain.IGNIS.ONE_COIN + i)
+                    .setFeeNQT(ChildChain.IGNIS.ONE_COIN)
+                    .placeAskOrder();
+        }
+        BlockchainTest.generateBlock();
+        new PlaceAssetOrderBuilder(BlockchainTest.BOB, assetId, 10L * orderCount, ChildChain.IGNIS.ONE_COIN + orderCount)
+                .setFeeNQT(ChildChain.IGNIS.ONE_COIN)
+                .placeBidOrder();
+        block = BenchmarkNode.forgeBlock();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkNode.stop();
+    }
+
+    @TearDown(Level.Invocation)
+    public void popBlock() {
+        BenchmarkNode.popBlock();
+    }
+
+    @Benchmark
+    public void matchOrders() throws NxtException {
+        BenchmarkNode.pushBlock(block);
+    }
+}
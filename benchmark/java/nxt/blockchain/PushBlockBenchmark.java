@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.blockchain;
+
+import nxt.BenchmarkNode;
+import nxt.BlockchainTest;
+import nxt.NxtException;
+import nxt.Tester;
+import nxt.http.APICall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push a block containing child chain payments
+ *
+ * The block is forged once and then pushed and popped for each invocation, so the
+ * measurement includes block validation, transaction validation and apply, and the
+ * derived table updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+public class PushBlockBenchmark {
+
+    /** Number of payments in the block */
+    @Param({"10", "100", "500"})
+    public int transactionCount;
+
+    private Block block;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkNode.start();
+        Tester[] senders = new Tester[] {BlockchainTest.ALICE, BlockchainTest.BOB, BlockchainTest.CHUCK, BlockchainTest.DAVE};
+        for (int i = 0; i < transactionCount; i++) {
+            Tester sender = senders[i % senders.length];
+            Tester recipient = senders[(i + 1) % senders.length];
+            new APICall.Builder("sendMoney")
+                    .secretPhrase(sender.getSecretPhrase())
+                    .param("chain", ChildChain.IGNIS.getId())
+                    .param("recipient", recipient.getStrId())
+                    .param("amountNQT", ChildChain.IGNIS.ONE_COIN + i)
+                    .param("feeNQT", ChildChain.IGNIS.ONE_COIN)
+                    .build().invokeNoError();
+        }
+        block = BenchmarkNode.forgeBlock();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkNode.stop();
+    }
+
+    @TearDown(Level.Invocation)
+    public void popBlock() {
+        BenchmarkNode.popBlock();
+    }
+
+    @Benchmark
+    public void pushBlock() throws NxtException {
+        BenchmarkNode.pushBlock(block);
+    }
+}
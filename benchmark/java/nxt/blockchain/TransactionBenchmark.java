@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.blockchain;
+
+import nxt.BenchmarkNode;
+import nxt.BlockchainTest;
+import nxt.NxtException;
+import nxt.http.APICall;
+import nxt.util.Convert;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaction parsing and serialization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+
+    /** Chain of the payment transaction */
+    @Param({"ARDR", "IGNIS"})
+    public String chain;
+
+    private byte[] transactionBytes;
+
+    @Setup
+    public void setup() {
+        BenchmarkNode.start();
+        JSONObject response = new APICall.Builder("sendMoney")
+                .secretPhrase(BlockchainTest.ALICE.getSecretPhrase())
+                .param("chain", Chain.getChain(chain).getId())
+                .param("recipient", BlockchainTest.BOB.getStrId())
+                .param("amountNQT", 100)
+                .param("feeNQT", Chain.getChain(chain).ONE_COIN)
+                .param("message", "benchmark payment")
+                .param("broadcast", "false")
+                .build().invokeNoError();
+        transactionBytes = Convert.parseHexString((String)response.get("transactionBytes"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkNode.stop();
+    }
+
+    @Benchmark
+    public TransactionImpl parse() throws NxtException.NotValidException {
+        return TransactionImpl.newTransactionBuilder(transactionBytes).build();
+    }
+
+    @Benchmark
+    public byte[] parseAndSerialize() throws NxtException.NotValidException {
+        return TransactionImpl.newTransactionBuilder(transactionBytes).build().bytes();
+    }
+}
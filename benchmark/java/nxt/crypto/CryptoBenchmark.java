@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature generation and verification
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    /** Message length, a typical transaction is about 200 bytes */
+    @Param({"200", "2000"})
+    public int messageLength;
+
+    private byte[] privateKey;
+    private byte[] publicKey;
+    private byte[] message;
+    private byte[] signature;
+
+    @Setup
+    public void setup() {
+        privateKey = Crypto.getPrivateKey("benchmark secret phrase");
+        publicKey = Crypto.getPublicKey(privateKey);
+        message = new byte[messageLength];
+        ThreadLocalRandom.current().nextBytes(message);
+        signature = Crypto.sign(message, privateKey);
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return Crypto.sign(message, privateKey);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return Crypto.verify(signature, message, publicKey);
+    }
+}
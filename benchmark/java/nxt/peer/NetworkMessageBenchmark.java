@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.peer;
+
+import nxt.BenchmarkNode;
+import nxt.BlockchainTest;
+import nxt.NxtException;
+import nxt.blockchain.ChildChain;
+import nxt.blockchain.Transaction;
+import nxt.blockchain.TransactionImpl;
+import nxt.http.APICall;
+import nxt.util.Convert;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network message encoding and decoding
+ *
+ * Only the message body is measured, the message header is written separately by NetworkHandler
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkMessageBenchmark {
+
+    /** Number of transactions in the message */
+    @Param({"10", "250"})
+    public int transactionCount;
+
+    private List<Transaction> transactions;
+    private NetworkMessage message;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws NxtException.NotValidException {
+        BenchmarkNode.start();
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            JSONObject response = new APICall.Builder("sendMoney")
+                    .secretPhrase(BlockchainTest.ALICE.getSecretPhrase())
+                    .param("chain", ChildChain.IGNIS.getId())
+                    .param("recipient", BlockchainTest.BOB.getStrId())
+                    .param("amountNQT", i + 1)
+                    .param("feeNQT", ChildChain.IGNIS.ONE_COIN)
+                    .param("broadcast", "false")
+                    .build().invokeNoError();
+            transactions.add(TransactionImpl.parseTransaction(
+                    Convert.parseHexString((String)response.get("transactionBytes"))));
+        }
+        message = new NetworkMessage.TransactionsMessage(0, transactions);
+        buffer = encode(message);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkNode.stop();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return encode(new NetworkMessage.TransactionsMessage(0, transactions));
+    }
+
+    @Benchmark
+    public NetworkMessage decode() throws Exception {
+        buffer.position(0);
+        return NetworkMessage.getMessage(buffer);
+    }
+
+    private static ByteBuffer encode(NetworkMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(message.getLength());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        message.getBytes(buffer);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,37 @@
+#!/bin/sh
+# Runs the JMH benchmarks in benchmark/java
+#
+# The JMH jars (jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3) must be
+# copied to benchlib/ before running this script.
+# Any parameters are passed to the JMH runner, for example:
+#   ./run-benchmarks.sh CryptoBenchmark -f 2
+# The results are written in JSON format to benchmark-results.json, or to the file
+# specified by the BENCHMARK_RESULTS environment variable.
+
+PATHSEP=":"
+if [ "$OSTYPE" = "cygwin" ] ; then
+PATHSEP=";"
+fi
+
+if [ -z "$(find benchlib -name 'jmh-core*.jar' 2>/dev/null)" ]; then
+    echo "JMH jars not found in benchlib/"
+    exit 1
+fi
+
+CP=conf/${PATHSEP}classes/${PATHSEP}lib/*${PATHSEP}testlib/*${PATHSEP}addons/lib/*${PATHSEP}benchlib/*
+SP=src/java/${PATHSEP}test/java/${PATHSEP}benchmark/java/
+
+if [ -z "${BENCHMARK_RESULTS}" ]; then
+BENCHMARK_RESULTS=benchmark-results.json
+fi
+
+/bin/rm -rf classes
+/bin/mkdir -p classes/
+
+find src/java/ addons/src/java test/java/ benchmark/java/ -path src/java/nxtdesktop -prune -o -name "*.java" -print > sources.tmp
+javac -encoding utf8 -sourcepath ${SP} -classpath ${CP} -processorpath "benchlib/*" -d classes/ @sources.tmp || exit 1
+rm -f sources.tmp
+
+cp test/java/unit-tests-logging.properties  classes/unit-tests-logging.properties
+
+java -Dnxt.logging.properties.file.name.prefix=unit-tests- -classpath ${CP} org.openjdk.jmh.Main -rf json -rff ${BENCHMARK_RESULTS} "$@"
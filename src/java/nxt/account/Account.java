@@ -34,6 +34,7 @@ import nxt.db.DbUtils;
 import nxt.db.DerivedDbTable;
 import nxt.db.VersionedEntityDbTable;
 import nxt.db.VersionedPersistentDbTable;
+import nxt.dbschema.Db;
 import nxt.ms.CurrencyTransfer;
 import nxt.ms.ExchangeHome;
 import nxt.shuffling.ShufflingRecipientsAttachment;
@@ -605,6 +606,11 @@ public final class Account {
             accountAsset.save(con);
         }
 
+        @Override
+        protected boolean isBatched() {
+            return true;
+        }
+
         @Override
         public void trim(int height) {
             super.trim(Math.max(0, height - Constants.MAX_DIVIDEND_PAYMENT_ROLLBACK));
@@ -648,6 +654,11 @@ public final class Account {
             accountCurrency.save(con);
         }
 
+        @Override
+        protected boolean isBatched() {
+            return true;
+        }
+
         @Override
         protected String defaultSort() {
             return " ORDER BY units DESC, account_id, currency_id ";
@@ -671,10 +682,26 @@ public final class Account {
             } catch (SQLException e) {
                 throw new RuntimeException(e.toString(), e);
             }
+            guaranteedBalanceIndex.trim(height - Constants.GUARANTEED_BALANCE_CONFIRMATIONS);
+        }
+
+        @Override
+        public void popOffTo(int height) {
+            super.popOffTo(height);
+            guaranteedBalanceIndex.popOffTo(height);
+        }
+
+        @Override
+        public void truncate() {
+            super.truncate();
+            guaranteedBalanceIndex.invalidate();
         }
 
     };
 
+    private static final GuaranteedBalanceIndex guaranteedBalanceIndex = new GuaranteedBalanceIndex(Db.db,
+            () -> Nxt.getBlockchainProcessor().getMinRollbackHeight(), Nxt.getBooleanProperty("nxt.trimDerivedTables"));
+
     private static final DbKey.LongKeyFactory<AccountProperty> accountPropertyDbKeyFactory = new DbKey.LongKeyFactory<AccountProperty>("id") {
 
         @Override
@@ -1339,52 +1366,16 @@ public final class Account {
     }
 
     private long getLessorsGuaranteedBalanceFQT(int height) {
-        List<Account> lessors = new ArrayList<>();
+        long total = 0;
         try (DbIterator<Account> iterator = getLessors(height)) {
             while (iterator.hasNext()) {
-                lessors.add(iterator.next());
-            }
-        }
-        if (lessors.isEmpty()) {
-            return 0;
-        }
-        Long[] lessorIds = new Long[lessors.size()];
-        long[] balances = new long[lessors.size()];
-        for (int i = 0; i < lessors.size(); i++) {
-            lessorIds[i] = lessors.get(i).getId();
-            balances[i] = FxtChain.FXT.getBalanceHome().getBalance(lessors.get(i).id, height).getBalance();
-        }
-        int blockchainHeight = Nxt.getBlockchain().getHeight();
-        try (Connection con = accountGuaranteedBalanceTable.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT account_id, SUM (additions) AS additions "
-                     + "FROM account_guaranteed_balance, TABLE (id BIGINT=?) T WHERE account_id = T.id AND height > ? "
-                     + (height < blockchainHeight ? " AND height <= ? " : "")
-                     + " GROUP BY account_id ORDER BY account_id")) {
-            pstmt.setObject(1, lessorIds);
-            pstmt.setInt(2, height - Constants.GUARANTEED_BALANCE_CONFIRMATIONS);
-            if (height < blockchainHeight) {
-                pstmt.setInt(3, height);
-            }
-            long total = 0;
-            int i = 0;
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    long accountId = rs.getLong("account_id");
-                    while (lessorIds[i] < accountId && i < lessorIds.length) {
-                        total += balances[i++];
-                    }
-                    if (lessorIds[i] == accountId) {
-                        total += Math.max(balances[i++] - rs.getLong("additions"), 0);
-                    }
-                }
-            }
-            while (i < balances.length) {
-                total += balances[i++];
+                long lessorId = iterator.next().id;
+                long balance = FxtChain.FXT.getBalanceHome().getBalance(lessorId, height).getBalance();
+                long additions = guaranteedBalanceIndex.getAdditions(lessorId, height - Constants.GUARANTEED_BALANCE_CONFIRMATIONS, height);
+                total += Math.max(balance - additions, 0);
             }
-            return total;
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
         }
+        return total;
     }
 
     public DbIterator<Account> getLessors() {
@@ -1408,21 +1399,8 @@ public final class Account {
                 throw new IllegalArgumentException("Height " + height + " not available for guaranteed balance calculation");
             }
             long balanceFQT = FxtChain.FXT.getBalanceHome().getBalance(id, currentHeight).getBalance();
-            try (Connection con = accountGuaranteedBalanceTable.getConnection();
-                 PreparedStatement pstmt = con.prepareStatement("SELECT SUM (additions) AS additions "
-                         + "FROM account_guaranteed_balance WHERE account_id = ? AND height > ? AND height <= ?")) {
-                pstmt.setLong(1, this.id);
-                pstmt.setInt(2, height);
-                pstmt.setInt(3, currentHeight);
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (!rs.next()) {
-                        return balanceFQT;
-                    }
-                    return Math.max(Math.subtractExact(balanceFQT, rs.getLong("additions")), 0);
-                }
-            } catch (SQLException e) {
-                throw new RuntimeException(e.toString(), e);
-            }
+            long additions = guaranteedBalanceIndex.getAdditions(this.id, height, currentHeight);
+            return Math.max(Math.subtractExact(balanceFQT, additions), 0);
         } finally {
             Nxt.getBlockchain().readUnlock();
         }
@@ -1823,24 +1801,16 @@ public final class Account {
             return;
         }
         int blockchainHeight = Nxt.getBlockchain().getHeight();
+        long additions = guaranteedBalanceIndex.add(accountId, blockchainHeight, amount);
         try (Connection con = accountGuaranteedBalanceTable.getConnection();
-             PreparedStatement pstmtSelect = con.prepareStatement("SELECT additions FROM account_guaranteed_balance "
-                     + "WHERE account_id = ? and height = ?");
              PreparedStatement pstmtUpdate = con.prepareStatement("MERGE INTO account_guaranteed_balance (account_id, "
                      + " additions, height) KEY (account_id, height) VALUES(?, ?, ?)")) {
-            pstmtSelect.setLong(1, accountId);
-            pstmtSelect.setInt(2, blockchainHeight);
-            try (ResultSet rs = pstmtSelect.executeQuery()) {
-                long additions = amount;
-                if (rs.next()) {
-                    additions = Math.addExact(additions, rs.getLong("additions"));
-                }
-                pstmtUpdate.setLong(1, accountId);
-                pstmtUpdate.setLong(2, additions);
-                pstmtUpdate.setInt(3, blockchainHeight);
-                pstmtUpdate.executeUpdate();
-            }
+            pstmtUpdate.setLong(1, accountId);
+            pstmtUpdate.setLong(2, additions);
+            pstmtUpdate.setInt(3, blockchainHeight);
+            pstmtUpdate.executeUpdate();
         } catch (SQLException e) {
+            guaranteedBalanceIndex.invalidate();
             throw new RuntimeException(e.toString(), e);
         }
     }
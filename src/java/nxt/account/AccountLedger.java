@@ -37,7 +37,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -116,13 +115,31 @@ public class AccountLedger {
         }
 
         /**
-         * Insert an entry into the table
+         * Add an entry to the table insert batch
+         *
+         * The ledger identifier is set when the batch is written to the database
          *
          * @param   ledgerEntry             Ledger entry
          */
         private void insert(LedgerEntry ledgerEntry) {
-            try (Connection con = getConnection()) {
-                ledgerEntry.save(con);
+            try {
+                PreparedStatement pstmt = getBatchStatement("INSERT INTO account_ledger "
+                        + "(account_id, event_type, event_id, event_hash, chain_id, holding_type, holding_id, change, balance, "
+                        + "block_id, height, timestamp) "
+                        + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", true);
+                ledgerEntry.save(pstmt);
+                addBatch(pstmt, ledgerId -> ledgerEntry.ledgerId = ledgerId);
+            } catch (SQLException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+
+        /**
+         * Write the pending entries to the table
+         */
+        private void flush() {
+            try {
+                flushBatch();
             } catch (SQLException e) {
                 throw new RuntimeException(e.toString(), e);
             }
@@ -278,11 +295,15 @@ public class AccountLedger {
         int count = 0;
         for (LedgerEntry ledgerEntry : pendingEntries) {
             accountLedgerTable.insert(ledgerEntry);
-            listeners.notify(ledgerEntry, Event.ADD_ENTRY);
             if (++count % Constants.BATCH_COMMIT_SIZE == 0) {
                 Db.db.commitTransaction();
             }
         }
+        //
+        // The ledger identifiers are assigned when the entries are written
+        //
+        accountLedgerTable.flush();
+        pendingEntries.forEach(ledgerEntry -> listeners.notify(ledgerEntry, Event.ADD_ENTRY));
         pendingEntries.clear();
     }
 
@@ -998,31 +1019,20 @@ public class AccountLedger {
          * @param   con                     Database connection
          * @throws  SQLException            Database error occurred
          */
-        private void save(Connection con) throws SQLException {
-            try (PreparedStatement stmt = con.prepareStatement("INSERT INTO account_ledger "
-                    + "(account_id, event_type, event_id, event_hash, chain_id, holding_type, holding_id, change, balance, "
-                    + "block_id, height, timestamp) "
-                    + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-                int i=0;
-                stmt.setLong(++i, accountId);
-                stmt.setByte(++i, (byte) event.getCode());
-                stmt.setLong(++i, eventId);
-                DbUtils.setBytes(stmt, ++i, eventHash);
-                stmt.setInt(++i, chainId);
-                stmt.setByte(++i, (byte)holding.getCode());
-                DbUtils.setLong(stmt, ++i, holdingId);
-                stmt.setLong(++i, change);
-                stmt.setLong(++i, balance);
-                stmt.setLong(++i, blockId);
-                stmt.setInt(++i, height);
-                stmt.setInt(++i, timestamp);
-                stmt.executeUpdate();
-                try (ResultSet rs = stmt.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        ledgerId = rs.getLong(1);
-                    }
-                }
-            }
+        private void save(PreparedStatement stmt) throws SQLException {
+            int i=0;
+            stmt.setLong(++i, accountId);
+            stmt.setByte(++i, (byte) event.getCode());
+            stmt.setLong(++i, eventId);
+            DbUtils.setBytes(stmt, ++i, eventHash);
+            stmt.setInt(++i, chainId);
+            stmt.setByte(++i, (byte)holding.getCode());
+            DbUtils.setLong(stmt, ++i, holdingId);
+            stmt.setLong(++i, change);
+            stmt.setLong(++i, balance);
+            stmt.setLong(++i, blockId);
+            stmt.setInt(++i, height);
+            stmt.setInt(++i, timestamp);
         }
     }
 }
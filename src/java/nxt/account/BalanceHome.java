@@ -85,6 +85,10 @@ public final class BalanceHome {
                     balance.save(con);
                 }
                 @Override
+                protected boolean isBatched() {
+                    return true;
+                }
+                @Override
                 public void trim(int height) {
                     if (height <= Constants.GUARANTEED_BALANCE_CONFIRMATIONS) {
                         return;
@@ -112,6 +116,10 @@ public final class BalanceHome {
                 protected void save(Connection con, Balance balance) throws SQLException {
                     balance.save(con);
                 }
+                @Override
+                protected boolean isBatched() {
+                    return true;
+                }
             };
         }
     }
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.account;
+
+import nxt.Constants;
+import nxt.db.TransactionalDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy of the account_guaranteed_balance table
+ *
+ * The balance additions for each account are held in height order so the guaranteed
+ * balance window can be summed without a database query.  The index is loaded from the
+ * table when it is first used and then follows the table as additions are made, blocks
+ * are popped off and the table is trimmed.  The index is discarded and reloaded if a
+ * database transaction which changed it is rolled back.
+ *
+ * Only the additions which can still be used by a guaranteed balance calculation are
+ * loaded.  These are the additions made in the GUARANTEED_BALANCE_CONFIRMATIONS blocks
+ * preceding the minimum rollback height and the additions made after it.  The table may
+ * still hold older additions until it is next trimmed.
+ *
+ * The index is only kept in memory when the derived tables are trimmed.  Otherwise the table
+ * keeps every addition since the genesis block and the minimum rollback height is 0, so the
+ * additions are read from the table for each request instead of being loaded.
+ *
+ * Additions made by a block which is being applied are visible before the database
+ * transaction is committed, so the index must be read while holding the blockchain lock
+ * in the same way as the table.
+ */
+final class GuaranteedBalanceIndex implements TransactionalDb.TransactionCallback {
+
+    /** Database */
+    private final TransactionalDb db;
+
+    /** Minimum rollback height */
+    private final IntSupplier minRollbackHeight;
+
+    /** Additions are kept in memory */
+    private final boolean inMemory;
+
+    /** Balance additions for each account */
+    private final Map<Long, Additions> accountAdditions = new HashMap<>();
+
+    /** Index has been loaded */
+    private boolean loaded;
+
+    /**
+     * Create the index
+     *
+     * @param   db                      Database
+     * @param   minRollbackHeight       Supplies the minimum rollback height
+     * @param   inMemory                TRUE to keep the additions in memory, FALSE to read them from the table
+     */
+    GuaranteedBalanceIndex(TransactionalDb db, IntSupplier minRollbackHeight, boolean inMemory) {
+        this.db = db;
+        this.minRollbackHeight = minRollbackHeight;
+        this.inMemory = inMemory;
+    }
+
+    /**
+     * Get the balance additions for an account
+     *
+     * @param   accountId               Account identifier
+     * @param   fromHeight              Additions above this height are included
+     * @param   toHeight                Additions at or below this height are included
+     * @return                          Sum of the additions
+     */
+    synchronized long getAdditions(long accountId, int fromHeight, int toHeight) {
+        if (!inMemory) {
+            return selectAdditions("SELECT SUM (additions) AS additions FROM account_guaranteed_balance "
+                    + "WHERE account_id = ? AND height > ? AND height <= ?", accountId, fromHeight, toHeight);
+        }
+        load();
+        Additions additions = accountAdditions.get(accountId);
+        return additions != null ? additions.sum(fromHeight, toHeight) : 0;
+    }
+
+    /**
+     * Record a balance addition
+     *
+     * @param   accountId               Account identifier
+     * @param   height                  Blockchain height
+     * @param   amount                  Amount added
+     * @return                          Total additions for the account at this height
+     */
+    synchronized long add(long accountId, int height, long amount) {
+        if (!inMemory) {
+            return Math.addExact(selectAdditions("SELECT additions FROM account_guaranteed_balance "
+                    + "WHERE account_id = ? AND height = ?", accountId, height), amount);
+        }
+        load();
+        registerCallback();
+        return accountAdditions.computeIfAbsent(accountId, id -> new Additions()).add(height, amount);
+    }
+
+    /**
+     * Remove the additions above a height
+     *
+     * @param   height                  Blockchain height
+     */
+    synchronized void popOffTo(int height) {
+        if (loaded) {
+            registerCallback();
+            removeIf(additions -> additions.removeAbove(height));
+        }
+    }
+
+    /**
+     * Remove the non-negative heights below a height
+     *
+     * @param   height                  Blockchain height
+     */
+    synchronized void trim(int height) {
+        if (loaded) {
+            registerCallback();
+            removeIf(additions -> additions.removeBelow(height));
+        }
+    }
+
+    /**
+     * Discard the index so it is reloaded from the table when next used
+     */
+    synchronized void invalidate() {
+        accountAdditions.clear();
+        loaded = false;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void rollback() {
+        invalidate();
+    }
+
+    private void removeIf(Predicate<Additions> remove) {
+        Iterator<Additions> it = accountAdditions.values().iterator();
+        while (it.hasNext()) {
+            if (remove.test(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    private void registerCallback() {
+        if (db.isInTransaction()) {
+            db.registerCallback(this);
+        }
+    }
+
+    private long selectAdditions(String sql, long accountId, int... heights) {
+        try (Connection con = db.getConnection("PUBLIC");
+             PreparedStatement pstmt = con.prepareStatement(sql)) {
+            int i = 0;
+            pstmt.setLong(++i, accountId);
+            for (int height : heights) {
+                pstmt.setInt(++i, height);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong("additions") : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        try (Connection con = db.getConnection("PUBLIC");
+             PreparedStatement pstmt = con.prepareStatement("SELECT account_id, additions, height "
+                     + "FROM account_guaranteed_balance WHERE height >= ? OR height < 0 ORDER BY account_id, height")) {
+            pstmt.setInt(1, minRollbackHeight.getAsInt() - Constants.GUARANTEED_BALANCE_CONFIRMATIONS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accountAdditions.computeIfAbsent(rs.getLong("account_id"), id -> new Additions())
+                            .add(rs.getInt("height"), rs.getLong("additions"));
+                }
+            }
+        } catch (SQLException e) {
+            accountAdditions.clear();
+            throw new RuntimeException(e.toString(), e);
+        }
+        loaded = true;
+        registerCallback();
+    }
+
+    /**
+     * Balance additions for an account in ascending height order
+     */
+    private static final class Additions {
+
+        private int[] heights = new int[4];
+        private long[] amounts = new long[4];
+        private int size;
+
+        private long add(int height, long amount) {
+            int index = Arrays.binarySearch(heights, 0, size, height);
+            if (index >= 0) {
+                amounts[index] = Math.addExact(amounts[index], amount);
+                return amounts[index];
+            }
+            index = -index - 1;
+            if (size == heights.length) {
+                heights = Arrays.copyOf(heights, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            System.arraycopy(heights, index, heights, index + 1, size - index);
+            System.arraycopy(amounts, index, amounts, index + 1, size - index);
+            heights[index] = height;
+            amounts[index] = amount;
+            size++;
+            return amount;
+        }
+
+        private long sum(int fromHeight, int toHeight) {
+            long total = 0;
+            for (int i = size - 1; i >= 0 && heights[i] > fromHeight; i--) {
+                if (heights[i] <= toHeight) {
+                    total += amounts[i];
+                }
+            }
+            return total;
+        }
+
+        private boolean removeAbove(int height) {
+            while (size > 0 && heights[size - 1] > height) {
+                size--;
+            }
+            return size == 0;
+        }
+
+        private boolean removeBelow(int height) {
+            int start = 0;
+            while (start < size && heights[start] < 0) {
+                start++;
+            }
+            int end = start;
+            while (end < size && heights[end] < height) {
+                end++;
+            }
+            if (end > start) {
+                System.arraycopy(heights, end, heights, start, size - end);
+                System.arraycopy(amounts, end, amounts, start, size - end);
+                size -= end - start;
+            }
+            return size == 0;
+        }
+    }
+}
@@ -18,6 +18,8 @@ package nxt.addons;
 
 import nxt.util.Logger;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
@@ -26,11 +28,15 @@ public class ContractAndSetupParameters {
     private final Contract<?,?> contract;
     private final JO params;
     private final AtomicBoolean initialized = new AtomicBoolean();
+    private final Map<ContractRunner.INVOCATION_TYPE, ContractInvocationPlan> invocationPlans = new EnumMap<>(ContractRunner.INVOCATION_TYPE.class);
 
     public ContractAndSetupParameters(String name, Contract<?,?> contract, JO params) {
         this.name = name;
         this.contract = contract;
         this.params = params;
+        for (ContractRunner.INVOCATION_TYPE invocationType : ContractRunner.INVOCATION_TYPE.values()) {
+            invocationPlans.put(invocationType, new ContractInvocationPlan(contract, invocationType));
+        }
     }
 
     public String getName() {
@@ -45,6 +51,10 @@ public class ContractAndSetupParameters {
         return params;
     }
 
+    ContractInvocationPlan getInvocationPlan(ContractRunner.INVOCATION_TYPE invocationType) {
+        return invocationPlans.get(invocationType);
+    }
+
     void init(Supplier<InitializationContext> contextSupplier) {
         boolean wasInitialized = initialized.getAndSet(true);
         if (!wasInitialized) {
@@ -0,0 +1,280 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.addons;
+
+import nxt.Nxt;
+import nxt.util.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for contract invocations triggered by blockchain events
+ *
+ * Each contract has its own queue, named after the contract, for both its block and transaction
+ * invocations.  The tasks in a queue are run one at a time in the order they were submitted,
+ * so a contract is never invoked concurrently and always processes the blocks in the order they
+ * were accepted, while the queues themselves are run in parallel by a shared thread pool.  A queue runs a single task each
+ * time it is scheduled, so a busy contract does not prevent the other queues from running.
+ *
+ * A queue is created when a task is first submitted for a contract, so tasks must only be
+ * submitted for supported contracts, and is removed when the contract is removed.
+ *
+ * The queues are bounded and a task submitted to a full queue is dropped, since blocking the
+ * blockchain thread is what the executor is meant to avoid.  The tasks are run synchronously
+ * by the submitting thread if the thread pool size is 0.
+ */
+final class ContractExecutor {
+
+    /** Thread pool or null if tasks are run synchronously */
+    private final ExecutorService executor;
+
+    /** Maximum number of pending tasks for each queue */
+    private final int maxQueueSize;
+
+    /** Task queues */
+    private final Map<String, TaskQueue> queues = new TreeMap<>();
+
+    /**
+     * Create the executor
+     *
+     * @param   threads                 Number of threads or 0 to run tasks synchronously
+     * @param   maxQueueSize            Maximum number of pending tasks for each queue
+     */
+    ContractExecutor(int threads, int maxQueueSize) {
+        this.maxQueueSize = Math.max(maxQueueSize, 1);
+        if (threads > 0) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "ContractRunner-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Submit a task
+     *
+     * @param   queueName               Queue name, which is the contract name
+     * @param   height                  Height of the block which triggered the task
+     * @param   task                    Task
+     * @return                          TRUE if the task was queued or run, FALSE if it was dropped
+     */
+    boolean submit(String queueName, int height, Runnable task) {
+        TaskQueue queue;
+        synchronized (queues) {
+            queue = queues.computeIfAbsent(queueName, TaskQueue::new);
+        }
+        return queue.submit(height, task);
+    }
+
+    /**
+     * Remove a queue
+     *
+     * Pending tasks are discarded while a running task is allowed to complete
+     *
+     * @param   queueName               Queue name, which is the contract name
+     */
+    void removeQueue(String queueName) {
+        TaskQueue queue;
+        synchronized (queues) {
+            queue = queues.remove(queueName);
+        }
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Check if tasks are run by the thread pool
+     *
+     * @return                          TRUE if tasks are run asynchronously
+     */
+    boolean isAsynchronous() {
+        return executor != null;
+    }
+
+    /**
+     * Get the queue status
+     *
+     * @return                          Status for each queue
+     */
+    Map<String, JO> getStatus() {
+        int height = Nxt.getBlockchain().getHeight();
+        Map<String, JO> status = new TreeMap<>();
+        synchronized (queues) {
+            queues.forEach((name, queue) -> status.put(name, queue.getStatus(height)));
+        }
+        return Collections.unmodifiableMap(status);
+    }
+
+    /**
+     * Stop the executor
+     *
+     * Pending tasks are discarded and running tasks are given a few seconds to complete
+     */
+    void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        synchronized (queues) {
+            queues.values().forEach(TaskQueue::clear);
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Logger.logWarningMessage("ContractRunner tasks still running after shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task {
+
+        private final int height;
+        private final Runnable runnable;
+
+        private Task(int height, Runnable runnable) {
+            this.height = height;
+            this.runnable = runnable;
+        }
+    }
+
+    private final class TaskQueue {
+
+        private final String name;
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private int lastSubmittedHeight = -1;
+        private int lastCompletedHeight = -1;
+        private int runningHeight = -1;
+        private long completed;
+        private long dropped;
+        private long maxDepth;
+
+        private TaskQueue(String name) {
+            this.name = name;
+        }
+
+        private boolean submit(int height, Runnable runnable) {
+            Task task = new Task(height, runnable);
+            if (executor == null) {
+                synchronized (this) {
+                    lastSubmittedHeight = height;
+                }
+                run(task);
+                return true;
+            }
+            synchronized (this) {
+                if (tasks.size() >= maxQueueSize) {
+                    dropped++;
+                    Logger.logWarningMessage(String.format("ContractRunner queue %s is full, dropping task for height %d", name, height));
+                    return false;
+                }
+                tasks.add(task);
+                lastSubmittedHeight = height;
+                maxDepth = Math.max(maxDepth, tasks.size());
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            schedule();
+            return true;
+        }
+
+        private void runNext() {
+            Task task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            run(task);
+            synchronized (this) {
+                if (tasks.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this::runNext);
+            } catch (RejectedExecutionException e) {
+                // the executor has been shut down
+                synchronized (this) {
+                    dropped += tasks.size();
+                    tasks.clear();
+                    scheduled = false;
+                }
+            }
+        }
+
+        private void run(Task task) {
+            synchronized (this) {
+                runningHeight = task.height;
+            }
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                Logger.logErrorMessage("ContractRunner error in queue " + name + " at height " + task.height + ": " + t.getMessage(), t);
+            }
+            synchronized (this) {
+                lastCompletedHeight = task.height;
+                runningHeight = -1;
+                completed++;
+            }
+        }
+
+        private synchronized void clear() {
+            dropped += tasks.size();
+            tasks.clear();
+        }
+
+        private synchronized JO getStatus(int height) {
+            JO status = new JO();
+            status.put("queueDepth", tasks.size());
+            status.put("maxQueueDepth", maxDepth);
+            status.put("running", scheduled);
+            status.put("completed", completed);
+            status.put("dropped", dropped);
+            status.put("lastSubmittedHeight", lastSubmittedHeight);
+            status.put("lastCompletedHeight", lastCompletedHeight);
+            int oldestHeight = runningHeight >= 0 ? runningHeight : tasks.isEmpty() ? height : tasks.peek().height;
+            status.put("lagBlocks", Math.max(height - oldestHeight, 0));
+            return status;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.addons;
+
+import nxt.Nxt;
+import nxt.blockchain.TransactionType;
+import nxt.blockchain.TransactionTypeEnum;
+import nxt.util.Convert;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static nxt.addons.ContractRunner.INVOCATION_TYPE.BLOCK;
+import static nxt.addons.ContractRunner.INVOCATION_TYPE.REQUEST;
+
+/**
+ * Invocation plan for a contract method
+ *
+ * The plan is created when the contract is loaded.  It records whether the contract implements
+ * the method for the invocation type and the validations specified by the method annotations,
+ * so the contract class does not need to be inspected each time the contract is invoked.
+ * The accepted and rejected chains and transaction types are stored as bit sets.
+ */
+final class ContractInvocationPlan {
+
+    /** Validation performed before the contract method is invoked */
+    @FunctionalInterface
+    private interface Validator {
+
+        /**
+         * Validate the invocation
+         *
+         * @param   context             Contract context
+         * @param   config              Contract runner configuration
+         * @return                      Error response or null if the validation succeeded
+         */
+        JO validate(AbstractContractContext context, ContractRunnerConfig config);
+    }
+
+    private final Contract<?,?> contract;
+    private final ContractRunner.INVOCATION_TYPE invocationType;
+    private final boolean isImplemented;
+    private final List<Validator> validators;
+
+    /**
+     * Create the invocation plan
+     *
+     * @param   contract                Contract
+     * @param   invocationType          Invocation type
+     */
+    ContractInvocationPlan(Contract<?,?> contract, ContractRunner.INVOCATION_TYPE invocationType) {
+        this.contract = contract;
+        this.invocationType = invocationType;
+        Method contractMethod;
+        try {
+            contractMethod = contract.getClass().getDeclaredMethod(invocationType.getMethodName(), invocationType.getContextClass());
+        } catch (NoSuchMethodException e) {
+            contractMethod = null;
+        }
+        this.isImplemented = contractMethod != null;
+        if (contractMethod == null || invocationType == BLOCK || invocationType == REQUEST) {
+            this.validators = Collections.emptyList();
+            return;
+        }
+        List<Validator> list = new ArrayList<>();
+        for (Annotation annotation : contractMethod.getDeclaredAnnotations()) {
+            Validator validator = createValidator(annotation);
+            if (validator != null) {
+                list.add(validator);
+            }
+        }
+        this.validators = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Check if the contract implements the method for the invocation type
+     *
+     * @return                          TRUE if the method is implemented
+     */
+    boolean isImplemented() {
+        return isImplemented;
+    }
+
+    /**
+     * Run the validations for the invocation
+     *
+     * @param   context                 Contract context
+     * @param   config                  Contract runner configuration
+     * @return                          Error response or null if all validations succeeded
+     */
+    JO validate(AbstractContractContext context, ContractRunnerConfig config) {
+        for (Validator validator : validators) {
+            JO response = validator.validate(context, config);
+            if (response != null) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private Validator createValidator(Annotation annotation) {
+        Class<? extends Annotation> annotationType = annotation.annotationType();
+        if (annotationType.equals(ValidateContractRunnerIsRecipient.class)) {
+            return (context, config) -> {
+                AbstractOperationContext operationContext = context.getContext();
+                if (operationContext.notSameRecipient()) {
+                    return context.generateErrorResponse(11001, "The trigger %s %s recipient %s differs from contract runner account %s",
+                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), operationContext.getTransaction().getRecipientRs(), config.getAccountRs());
+                }
+                return null;
+            };
+        }
+        if (annotationType.equals(ValidateContractRunnerIsSender.class)) {
+            return (context, config) -> {
+                AbstractOperationContext operationContext = context.getContext();
+                if (operationContext.notSameSender()) {
+                    return context.generateErrorResponse(11004, "The trigger %s %s sender %s differs from contract runner account %s",
+                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), operationContext.getTransaction().getSenderRs(), config.getAccountRs());
+                }
+                return null;
+            };
+        }
+        if (annotationType.equals(ValidateChain.class)) {
+            ValidateChain validateChain = (ValidateChain) annotation;
+            BitSet accepted = chainSet(validateChain.accept());
+            BitSet rejected = chainSet(validateChain.reject());
+            return (context, config) -> {
+                AbstractOperationContext operationContext = context.getContext();
+                int chain = operationContext.getTransaction().getChainId();
+                boolean isAccepted = accepted == null || (chain >= 0 && accepted.get(chain));
+                boolean isRejected = rejected != null && chain >= 0 && rejected.get(chain);
+                if (!isAccepted || isRejected) {
+                    return context.generateErrorResponse(11002, "The trigger %s %s chain %s is not accepted by contract type %s",
+                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), chain, contract.getClass().getName());
+                }
+                return null;
+            };
+        }
+        if (annotationType.equals(ValidateTransactionType.class)) {
+            ValidateTransactionType validateTransactionType = (ValidateTransactionType) annotation;
+            BitSet accepted = transactionTypeSet(validateTransactionType.accept());
+            BitSet rejected = transactionTypeSet(validateTransactionType.reject());
+            return (context, config) -> {
+                AbstractOperationContext operationContext = context.getContext();
+                int index = transactionTypeIndex(operationContext.getTransaction().getTransactionType());
+                boolean isAccepted = accepted == null || accepted.get(index);
+                boolean isRejected = rejected != null && rejected.get(index);
+                if (!isAccepted || isRejected) {
+                    return context.generateErrorResponse(11003, "The trigger %s %s is not an accepted transaction type of contract %s",
+                            invocationType, operationContext.getTransaction().getFullHash(), contract.getClass().getName());
+                }
+                return null;
+            };
+        }
+        if (annotationType.equals(ValidateBlockchainIsUpToDate.class)) {
+            return (context, config) -> {
+                if (Nxt.getBlockchainProcessor().isDownloading()) {
+                    AbstractOperationContext operationContext = context.getContext();
+                    return context.generateErrorResponse(11004, "Cannot execute contract since blockchain is currently downloading",
+                            invocationType, operationContext.getTransaction().getFullHash(), contract.getClass().getName());
+                }
+                return null;
+            };
+        }
+        if (annotationType.equals(ValidateHeight.class)) {
+            ValidateHeight validateHeight = (ValidateHeight) annotation;
+            int divisor = validateHeight.divisor();
+            int reminder = validateHeight.reminder();
+            return (context, config) -> {
+                int height = Nxt.getBlockchain().getHeight();
+                if ((height % divisor) != reminder) {
+                    return context.generateErrorResponse(11002, "The blockchain height divided by %d does not have reminder %d",
+                            height, divisor, reminder);
+                }
+                return null;
+            };
+        }
+        return null;
+    }
+
+    private static BitSet chainSet(int[] chains) {
+        if (chains.length == 0) {
+            return null;
+        }
+        BitSet bitSet = new BitSet();
+        for (int chain : chains) {
+            if (chain >= 0) {
+                bitSet.set(chain);
+            }
+        }
+        return bitSet;
+    }
+
+    private static BitSet transactionTypeSet(TransactionTypeEnum[] transactionTypes) {
+        if (transactionTypes.length == 0) {
+            return null;
+        }
+        BitSet bitSet = new BitSet();
+        for (TransactionTypeEnum transactionType : transactionTypes) {
+            bitSet.set(transactionTypeIndex(transactionType.getTransactionType()));
+        }
+        return bitSet;
+    }
+
+    private static int transactionTypeIndex(TransactionType transactionType) {
+        return ((transactionType.getType() & 0xff) << 8) | (transactionType.getSubtype() & 0xff);
+    }
+}
@@ -30,7 +30,6 @@ import nxt.blockchain.ChildTransaction;
 import nxt.blockchain.FxtChain;
 import nxt.blockchain.Transaction;
 import nxt.blockchain.TransactionProcessor;
-import nxt.blockchain.TransactionType;
 import nxt.configuration.ConfigPropertyBuilder;
 import nxt.configuration.SubSystem;
 import nxt.db.DbIterator;
@@ -59,8 +58,6 @@ import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.Reader;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -72,8 +69,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static nxt.addons.AbstractContractContext.EventSource;
 import static nxt.addons.ContractRunner.INVOCATION_TYPE.BLOCK;
@@ -114,8 +112,8 @@ public final class ContractRunner implements AddOn, ContractProvider {
         private final String methodName;
         private final Class contextClass;
 
-        Map<String, SummaryStatistics> normalMeasurements = new HashMap<>();
-        Map<String, SummaryStatistics> errorMeasurements = new HashMap<>();
+        Map<String, SummaryStatistics> normalMeasurements = new ConcurrentHashMap<>();
+        Map<String, SummaryStatistics> errorMeasurements = new ConcurrentHashMap<>();
 
         INVOCATION_TYPE(String methodName, Class contextClass) {
             this.methodName = methodName;
@@ -131,11 +129,17 @@ public final class ContractRunner implements AddOn, ContractProvider {
         }
 
         void addMeasurementErr(String contractClassName, long value) {
-            errorMeasurements.computeIfAbsent(contractClassName, k -> new SummaryStatistics()).addValue(value);
+            SummaryStatistics summaryStatistics = errorMeasurements.computeIfAbsent(contractClassName, k -> new SummaryStatistics());
+            synchronized (summaryStatistics) {
+                summaryStatistics.addValue(value);
+            }
         }
 
         void addMeasurementNormal(String contractClassName, long value) {
-            normalMeasurements.computeIfAbsent(contractClassName, k -> new SummaryStatistics()).addValue(value);
+            SummaryStatistics summaryStatistics = normalMeasurements.computeIfAbsent(contractClassName, k -> new SummaryStatistics());
+            synchronized (summaryStatistics) {
+                summaryStatistics.addValue(value);
+            }
         }
 
         public StatisticalSummary getStatErr(String contractClassName) {
@@ -195,10 +199,13 @@ public final class ContractRunner implements AddOn, ContractProvider {
 
     static final String CONFIG_PROPERTY_PREFIX = "addon.contractRunner.";
     private static final String CONFIG_FILE_PROPERTY = CONFIG_PROPERTY_PREFIX + "configFile";
+    private static final String EXECUTOR_THREADS_PROPERTY = CONFIG_PROPERTY_PREFIX + "executorThreads";
+    private static final String EXECUTOR_QUEUE_SIZE_PROPERTY = CONFIG_PROPERTY_PREFIX + "executorQueueSize";
 
     private volatile ContractRunnerConfig config = new NullContractRunnerConfig("Not initialized");
-    private final Map<String, ContractAndSetupParameters> supportedContracts = new HashMap<>();
-    private final Map<String, ContractReference> supportedContractReferences = new HashMap<>();
+    private volatile ContractExecutor executor = new ContractExecutor(0, 1);
+    private final Map<String, ContractAndSetupParameters> supportedContracts = new ConcurrentHashMap<>();
+    private final Map<String, ContractReference> supportedContractReferences = new ConcurrentHashMap<>();
     private final Map<String, APIServlet.APIRequestHandler> apiRequests = new HashMap<>();
     private final Map<String, ContractReference> addedContractReferences = new HashMap<>();
     private final Map<String, ContractReference> deletedContractReferences = new HashMap<>();
@@ -215,6 +222,7 @@ public final class ContractRunner implements AddOn, ContractProvider {
         apiRequests.put("triggerContractByHeight", new ContractRunnerAPIs.TriggerContractByHeightAPI(this, new APITag[]{APITag.ADDONS}, "contractName", "height", "apply", "adminPassword"));
         apiRequests.put("triggerContractByRequest", new ContractRunnerAPIs.TriggerContractByRequestAPI(this, new APITag[]{APITag.ADDONS}, "contractName", "setupParams", "adminPassword"));
         apiRequests.put("triggerContractByVoucher", new ContractRunnerAPIs.TriggerContractByVoucherAPI(this, "voucher", new APITag[]{APITag.ADDONS}, "contractName"));
+        apiRequests.put("getContractExecutionStatus", new ContractRunnerAPIs.GetContractExecutionStatusAPI(this, new APITag[]{APITag.ADDONS}, "adminPassword"));
         apiRequests.put("uploadContractRunnerConfiguration", new ContractRunnerAPIs.UploadContractRunnerConfigurationAPI(this, "config", new APITag[]{APITag.ADDONS}, "adminPassword"));
         ContractRunnerEncryptedConfig contractRunnerEncryptedConfig = new ContractRunnerEncryptedConfig(this);
         contractRunnerEncryptedConfig.init();
@@ -230,6 +238,7 @@ public final class ContractRunner implements AddOn, ContractProvider {
 
         // Read contract runner configuration
         loadConfig(Nxt.getStringProperty(CONFIG_FILE_PROPERTY));
+        executor = new ContractExecutor(Nxt.getIntProperty(EXECUTOR_THREADS_PROPERTY, 0), Nxt.getIntProperty(EXECUTOR_QUEUE_SIZE_PROPERTY, 100));
 
         // Register listeners for contract activation
         Nxt.getBlockchainProcessor().addListener(this::processBlock, BlockchainProcessor.Event.AFTER_BLOCK_ACCEPT);
@@ -284,6 +293,17 @@ public final class ContractRunner implements AddOn, ContractProvider {
                         "hex string value as a seed. A seed of less than 16 bytes can be easily brute forced so make " +
                         "sure your seed is longer. Keep your seed secret, it can be used in the future to validate " +
                         "your contract execution"));
+        l.add(ConfigPropertyBuilder.createIntegerProperty(EXECUTOR_THREADS_PROPERTY,
+                0, "Number of threads used to run the contracts triggered by new blocks and transactions " +
+                        "(default: 0). When set to 0 the contracts are run by the blockchain thread while the block is " +
+                        "being processed. Otherwise each contract has its own queue of pending block and transaction invocations which is processed " +
+                        "in block order, and the queues of different contracts are processed in parallel, so a slow " +
+                        "contract does not delay block processing.")
+                .setMin(0));
+        l.add(ConfigPropertyBuilder.createIntegerProperty(EXECUTOR_QUEUE_SIZE_PROPERTY,
+                100, "Maximum number of pending invocations for each contract when executorThreads " +
+                        "is greater than 0 (default: 100). New invocations are dropped when the queue is full.")
+                .setMin(1));
         return l;
     }
 
@@ -361,66 +381,20 @@ public final class ContractRunner implements AddOn, ContractProvider {
 
     private <T extends AbstractContractContext> JO processImpl(ContractAndSetupParameters contractAndParameters, T context, INVOCATION_TYPE invocationType) {
         Contract<?,?> contract = contractAndParameters.getContract();
-        Method contractMethod;
-        try {
-            contractMethod = contract.getClass().getDeclaredMethod(invocationType.getMethodName(), invocationType.getContextClass());
-        } catch (NoSuchMethodException e) {
+        ContractInvocationPlan invocationPlan = contractAndParameters.getInvocationPlan(invocationType);
+        if (!invocationPlan.isImplemented()) {
             return context.generateInfoResponse("Method %s not implemented by contract %s", invocationType.getMethodName(), contract.getClass().getSimpleName());
         }
         context.setContractSetupParameters(contractAndParameters.getParams());
-        if (invocationType == BLOCK || invocationType == REQUEST) {
-            return invokeContract(contract, contractMethod, invocationType, context);
-        }
-        AbstractOperationContext operationContext = context.getContext();
-        Annotation[] methodAnnotations = contractMethod.getDeclaredAnnotations();
-        for (Annotation annotation : methodAnnotations) {
-            if (annotation.annotationType().equals(ValidateContractRunnerIsRecipient.class)) {
-                if (operationContext.notSameRecipient()) {
-                    return context.generateErrorResponse(11001, "The trigger %s %s recipient %s differs from contract runner account %s",
-                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), operationContext.getTransaction().getRecipientRs(), config.getAccountRs());
-                }
-            } else if (annotation.annotationType().equals(ValidateContractRunnerIsSender.class)) {
-                if (operationContext.notSameSender()) {
-                    return context.generateErrorResponse(11004, "The trigger %s %s sender %s differs from contract runner account %s",
-                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), operationContext.getTransaction().getSenderRs(), config.getAccountRs());
-                }
-            } else if (annotation.annotationType().equals(ValidateChain.class)) {
-                ValidateChain validateChain = (ValidateChain) annotation;
-                int chain = operationContext.getTransaction().getChainId();
-                boolean isAccepted = validateChain.accept().length == 0 || IntStream.of(validateChain.accept()).anyMatch(c -> c == chain);
-                boolean isRejected = validateChain.reject().length != 0 && IntStream.of(validateChain.reject()).anyMatch(c -> c == chain);
-                if (!isAccepted || isRejected) {
-                    return context.generateErrorResponse(11002, "The trigger %s %s chain %s is not accepted by contract type %s",
-                            invocationType, Convert.toHexString(operationContext.getTransaction().getFullHash()), chain, contract.getClass().getName());
-                }
-            } else if (annotation.annotationType().equals(ValidateTransactionType.class)) {
-                ValidateTransactionType validateTransactionType = (ValidateTransactionType) annotation;
-                TransactionType transactionType = operationContext.getTransaction().getTransactionType();
-                boolean isAccepted = validateTransactionType.accept().length == 0 || Arrays.stream(validateTransactionType.accept()).anyMatch(tt -> tt.getTransactionType() == transactionType);
-                boolean isRejected = validateTransactionType.reject().length != 0 && Arrays.stream(validateTransactionType.reject()).anyMatch(tt -> tt.getTransactionType() == transactionType);
-                if (!isAccepted || isRejected) {
-                    return context.generateErrorResponse(11003, "The trigger %s %s is not an accepted transaction type of contract %s",
-                            invocationType, operationContext.getTransaction().getFullHash(), contract.getClass().getName());
-                }
-            } else if (annotation.annotationType().equals(ValidateBlockchainIsUpToDate.class)) {
-                if (Nxt.getBlockchainProcessor().isDownloading()) {
-                    return context.generateErrorResponse(11004, "Cannot execute contract since blockchain is currently downloading",
-                            invocationType, operationContext.getTransaction().getFullHash(), contract.getClass().getName());
-                }
-            } else if (annotation.annotationType().equals(ValidateHeight.class)) {
-                ValidateHeight validateHeight = (ValidateHeight) annotation;
-                int height = Nxt.getBlockchain().getHeight();
-                if ((height % validateHeight.divisor()) != validateHeight.reminder()) {
-                    return context.generateErrorResponse(11002, "The blockchain height divided by %d does not have reminder %d",
-                            height, validateHeight.divisor(), validateHeight.reminder());
-                }
-            }
+        JO errorResponse = invocationPlan.validate(context, config);
+        if (errorResponse != null) {
+            return errorResponse;
         }
-        return invokeContract(contract, contractMethod, invocationType, context);
+        return invokeContract(contract, invocationType, context);
     }
 
-    private <T extends AbstractContractContext> JO invokeContract(Contract<?,?> contract, Method contractMethod, INVOCATION_TYPE invocationType, T context) {
-        Logger.logInfoMessage("Invoking %s on contract %s", contractMethod.getName(), contract.getClass().getCanonicalName());
+    private <T extends AbstractContractContext> JO invokeContract(Contract<?,?> contract, INVOCATION_TYPE invocationType, T context) {
+        Logger.logInfoMessage("Invoking %s on contract %s", invocationType.getMethodName(), contract.getClass().getCanonicalName());
         long startTime = System.nanoTime();
         try {
             JO result = invocationType.invokeMethod(contract, context);
@@ -458,15 +432,17 @@ public final class ContractRunner implements AddOn, ContractProvider {
                     }
                 }
             }
-            try {
-                JO contractResponse = processTransaction(transaction, true, config.isValidator());
-                if (contractResponse != null && contractResponse.isExist("errorCode")) {
-                    Logger.logInfoMessage("ContractRunner error response: " + contractResponse.toJSONString());
+            submitTransaction(transaction, transaction.getHeight(), messageJson -> {
+                try {
+                    JO contractResponse = processTransaction(transaction, messageJson, true, config.isValidator());
+                    if (contractResponse != null && contractResponse.isExist("errorCode")) {
+                        Logger.logInfoMessage("ContractRunner error response: " + contractResponse.toJSONString());
+                    }
+                } catch (Exception e) {
+                    ChainTransactionId txid = new ChainTransactionId(transaction.getChain().getId(), transaction.getFullHash());
+                    Logger.logErrorMessage("ContractRunner error for transaction " + txid + ": " + e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                ChainTransactionId txid = new ChainTransactionId(transaction.getChain().getId(), transaction.getFullHash());
-                Logger.logErrorMessage("ContractRunner error for transaction " + txid + ": " + e.getMessage(), e);
-            }
+            });
         }
     }
 
@@ -480,15 +456,50 @@ public final class ContractRunner implements AddOn, ContractProvider {
                 // ignore phased transactions holding a secret hash since these were processed when submitted
                 continue;
             }
-            try {
-                JO contractResponse = processTransaction(transaction, true, config.isValidator());
-                if (contractResponse != null && contractResponse.isExist("errorCode")) {
-                    Logger.logInfoMessage("ContractRunner error response: " + contractResponse.toJSONString());
+            submitTransaction(transaction, Nxt.getBlockchain().getHeight(), messageJson -> {
+                try {
+                    JO contractResponse = processTransaction(transaction, messageJson, true, config.isValidator());
+                    if (contractResponse != null && contractResponse.isExist("errorCode")) {
+                        Logger.logInfoMessage("ContractRunner error response: " + contractResponse.toJSONString());
+                    }
+                } catch (Exception e) {
+                    ChainTransactionId txid = new ChainTransactionId(transaction.getChain().getId(), transaction.getFullHash());
+                    Logger.logErrorMessage("ContractRunner error for phased transaction " + txid + ": " + e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                ChainTransactionId txid = new ChainTransactionId(transaction.getChain().getId(), transaction.getFullHash());
-                Logger.logErrorMessage("ContractRunner error for phased transaction " + txid + ": " + e.getMessage(), e);
-            }
+            });
+        }
+    }
+
+    /**
+     * Submit a transaction invocation to the queue of the contract it invokes
+     *
+     * A trigger transaction names the contract it triggers and a transaction submitted by a contract
+     * names the submitting contract, which is the contract run again to validate the transaction.
+     * The invocation shares the queue used for the block invocations of the same contract, so the
+     * invocations of a contract are never run concurrently.  A transaction which does not name a
+     * supported contract, or whose message can't be read, is processed immediately since it does
+     * not run any contract.  The task receives the parsed message, or null if the message could
+     * not be read and must be parsed again by the task.
+     *
+     * @param   transaction             Transaction
+     * @param   height                  Height of the block which triggered the invocation
+     * @param   task                    Invocation task
+     */
+    private void submitTransaction(Transaction transaction, int height, Consumer<JO> task) {
+        JO messageJson;
+        String contractName;
+        try {
+            messageJson = parsePrunableMessage(transaction);
+            contractName = messageJson.isExist("contract") ? messageJson.getString("contract") : messageJson.getString("submittedBy");
+        } catch (RuntimeException e) {
+            messageJson = null;
+            contractName = null;
+        }
+        if (contractName == null || !supportedContracts.containsKey(contractName)) {
+            task.accept(messageJson);
+        } else {
+            JO parsedMessageJson = messageJson;
+            executor.submit(contractName, height, () -> task.accept(parsedMessageJson));
         }
     }
 
@@ -529,6 +540,7 @@ public final class ContractRunner implements AddOn, ContractProvider {
                 contractAndSetupParameters.shutdown(() -> new ShutdownContext(config, contractAndSetupParameters, EventSource.CONTRACT_REFERENCE_LIFECYCLE));
                 supportedContracts.remove(contractName);
                 supportedContractReferences.remove(contractName);
+                executor.removeQueue(contractName);
                 Logger.logInfoMessage("Contract reference %s removed", contractReference.getContractName());
             });
             addedContractReferences.clear();
@@ -537,13 +549,8 @@ public final class ContractRunner implements AddOn, ContractProvider {
             if (isSuspendContractRunnerExecution()) {
                 return;
             }
-            supportedContracts.keySet().forEach(contractName -> {
-                try {
-                    processBlockContract(block, contractName, true, false, null);
-                } catch (Throwable t) {
-                    throw new IllegalStateException("Contract " + contractName, t);
-                }
-            });
+            supportedContracts.keySet().forEach(contractName ->
+                    executor.submit(contractName, block.getHeight(), () -> processBlockContract(block, contractName, true, false, null)));
         } catch (Throwable t) {
             Logger.logErrorMessage("ContractRunner error: " + t.getMessage(), t);
         }
@@ -610,10 +617,14 @@ public final class ContractRunner implements AddOn, ContractProvider {
     }
 
     JO processTransaction(Transaction contractOrTriggerTransaction, boolean isApply, boolean validator) {
+        return processTransaction(contractOrTriggerTransaction, null, isApply, validator);
+    }
+
+    private JO processTransaction(Transaction contractOrTriggerTransaction, JO parsedMessageJson, boolean isApply, boolean validator) {
         Logger.logInfoMessage(String.format("ContractRunner Process transaction %d:%s", contractOrTriggerTransaction.getChain().getId(), Convert.toHexString(contractOrTriggerTransaction.getFullHash())));
 
         // Parse the trigger message attachment for the transaction and extract the contract information
-        JO messageJson = parsePrunableMessage(contractOrTriggerTransaction);
+        JO messageJson = parsedMessageJson != null ? parsedMessageJson : parsePrunableMessage(contractOrTriggerTransaction);
         if (messageJson.get("errorDescription") != null) {
             return messageJson;
         }
@@ -889,6 +900,7 @@ public final class ContractRunner implements AddOn, ContractProvider {
 
     @Override
     public void shutdown() {
+        executor.shutdown();
         shutdownAllContracts();
         Logger.logInfoMessage("ContractRunner shutdown complete");
     }
@@ -901,6 +913,7 @@ public final class ContractRunner implements AddOn, ContractProvider {
 
     public void reset() {
         shutdownAllContracts();
+        supportedContracts.keySet().forEach(executor::removeQueue);
         supportedContracts.clear();
         supportedContractReferences.clear();
     }
@@ -919,6 +932,10 @@ public final class ContractRunner implements AddOn, ContractProvider {
         return config;
     }
 
+    ContractExecutor getExecutor() {
+        return executor;
+    }
+
     Set<String> getSupportedContractNames() {
         return Collections.unmodifiableSet(supportedContracts.keySet());
     }
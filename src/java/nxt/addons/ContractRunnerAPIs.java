@@ -218,6 +218,45 @@ class ContractRunnerAPIs {
         }
     }
 
+    public static class GetContractExecutionStatusAPI extends APIServlet.APIRequestHandler {
+        private final ContractRunner contractRunner;
+
+        GetContractExecutionStatusAPI(ContractRunner contractRunner, APITag[] apiTags, String... origParameters) {
+            super(apiTags, origParameters);
+            this.contractRunner = contractRunner;
+        }
+
+        @Override
+        protected JSONStreamAware processRequest(HttpServletRequest req) throws NxtException {
+            API.verifyPassword(req);
+            ContractRunnerConfig config = contractRunner.getConfig();
+            if (config instanceof NullContractRunnerConfig) {
+                return runnerNotInitializedResponse(config.getStatus()).toJSONObject();
+            }
+            ContractExecutor executor = contractRunner.getExecutor();
+            JO response = new JO();
+            response.put("height", Nxt.getBlockchain().getHeight());
+            response.put("isAsynchronous", executor.isAsynchronous());
+            JA queues = new JA();
+            executor.getStatus().forEach((name, status) -> {
+                status.put("name", name);
+                queues.add(status);
+            });
+            response.put("queues", queues);
+            return response.toJSONObject();
+        }
+
+        @Override
+        protected boolean isChainSpecific() {
+            return false;
+        }
+
+        @Override
+        protected boolean requireFullClient() {
+            return true;
+        }
+    }
+
     public static class UploadContractRunnerConfigurationAPI extends APIServlet.APIRequestHandler {
         private final ContractRunner contractRunner;
 
@@ -26,6 +26,7 @@ import nxt.blockchain.Transaction;
 import nxt.db.DbClause;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
+import nxt.db.OrderBook;
 import nxt.db.VersionedEntityDbTable;
 import nxt.util.Convert;
 
@@ -33,9 +34,30 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public final class OrderHome {
 
+    private static final boolean enableOrderBookCache = Nxt.getBooleanProperty("nxt.enableOrderBookCache");
+
+    /** Ask order priority: lowest price first, then oldest order first */
+    private static final Comparator<Order> askOrderComparator = Comparator
+            .comparingLong(Order::getPriceNQT)
+            .thenComparingInt(Order::getHeight)
+            .thenComparingInt(Order::getTransactionHeight)
+            .thenComparingInt(Order::getTransactionIndex)
+            .thenComparingLong(Order::getId);
+
+    /** Bid order priority: highest price first, then oldest order first */
+    private static final Comparator<Order> bidOrderComparator = Comparator
+            .comparingLong((Order order) -> -order.getPriceNQT())
+            .thenComparingInt(Order::getHeight)
+            .thenComparingInt(Order::getTransactionHeight)
+            .thenComparingInt(Order::getTransactionIndex)
+            .thenComparingLong(Order::getId);
+
     public static OrderHome forChain(ChildChain childChain) {
         if (childChain.getOrderHome() != null) {
             throw new IllegalStateException("already set");
@@ -49,6 +71,8 @@ public final class OrderHome {
     private final VersionedEntityDbTable<Ask> askOrderTable;
     private final DbKey.LongKeyFactory<Bid> bidOrderDbKeyFactory;
     private final VersionedEntityDbTable<Bid> bidOrderTable;
+    private final OrderBook<Ask> askOrderBook;
+    private final OrderBook<Bid> bidOrderBook;
 
     private OrderHome(ChildChain childChain) {
         this.childChain = childChain;
@@ -72,6 +96,16 @@ public final class OrderHome {
             protected String defaultSort() {
                 return " ORDER BY creation_height DESC ";
             }
+            @Override
+            public void popOffTo(int height) {
+                super.popOffTo(height);
+                askOrderBook.clear();
+            }
+            @Override
+            public void truncate() {
+                super.truncate();
+                askOrderBook.clear();
+            }
         };
         this.bidOrderDbKeyFactory = new DbKey.LongKeyFactory<Bid>("id") {
             @Override
@@ -92,7 +126,27 @@ public final class OrderHome {
             protected String defaultSort() {
                 return " ORDER BY creation_height DESC ";
             }
+            @Override
+            public void popOffTo(int height) {
+                super.popOffTo(height);
+                bidOrderBook.clear();
+            }
+            @Override
+            public void truncate() {
+                super.truncate();
+                bidOrderBook.clear();
+            }
         };
+        this.askOrderBook = new OrderBook<>(askOrderComparator, Order::getAssetId, assetId -> loadOrders(askOrderTable, assetId));
+        this.bidOrderBook = new OrderBook<>(bidOrderComparator, Order::getAssetId, assetId -> loadOrders(bidOrderTable, assetId));
+    }
+
+    private static <T extends Order> List<T> loadOrders(VersionedEntityDbTable<T> orderTable, long assetId) {
+        List<T> orders = new ArrayList<>();
+        try (DbIterator<T> iterator = orderTable.getManyBy(new DbClause.LongClause("asset_id", assetId), 0, -1)) {
+            iterator.forEach(orders::add);
+        }
+        return orders;
     }
 
 
@@ -212,12 +266,28 @@ public final class OrderHome {
         return askOrderTable.getManyBy(dbClause, from, to);
     }
 
-    public DbIterator<Ask> getSortedAskOrders(long assetId, int from, int to) {
-        return askOrderTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to,
-                " ORDER BY price ASC, creation_height ASC, transaction_height ASC, transaction_index ASC ");
+    public List<Ask> getSortedAskOrders(long assetId, int from, int to) {
+        if (enableOrderBookCache) {
+            Nxt.getBlockchain().readLock();
+            try {
+                return askOrderBook.getOrders(assetId, from, to);
+            } finally {
+                Nxt.getBlockchain().readUnlock();
+            }
+        }
+        List<Ask> orders = new ArrayList<>();
+        try (DbIterator<Ask> iterator = askOrderTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to,
+                " ORDER BY price ASC, creation_height ASC, transaction_height ASC, transaction_index ASC ")) {
+            iterator.forEach(orders::add);
+        }
+        return orders;
     }
 
     private Ask getNextAskOrder(long assetId) {
+        if (enableOrderBookCache) {
+            Ask order = askOrderBook.getFirst(assetId);
+            return order != null ? askOrderTable.getCached(order) : null;
+        }
         try (Connection con = askOrderTable.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM ask_order WHERE asset_id = ? "
                      + "AND latest = TRUE ORDER BY price ASC, creation_height ASC, transaction_height ASC, transaction_index ASC LIMIT 1")) {
@@ -233,11 +303,18 @@ public final class OrderHome {
     void addAskOrder(Transaction transaction, AskOrderPlacementAttachment attachment) {
         Ask order = new Ask(transaction, attachment);
         askOrderTable.insert(order);
+        if (enableOrderBookCache) {
+            askOrderBook.put(order);
+        }
         matchOrders(attachment.getAssetId());
     }
 
     void removeAskOrder(long orderId) {
-        askOrderTable.delete(getAskOrder(orderId));
+        Ask order = getAskOrder(orderId);
+        askOrderTable.delete(order);
+        if (enableOrderBookCache && order != null) {
+            askOrderBook.remove(order);
+        }
     }
 
     public final class Ask extends Order {
@@ -277,8 +354,14 @@ public final class OrderHome {
             super.setQuantityQNT(quantityQNT);
             if (quantityQNT > 0) {
                 askOrderTable.insert(this);
+                if (enableOrderBookCache) {
+                    askOrderBook.put(this);
+                }
             } else if (quantityQNT == 0) {
                 askOrderTable.delete(this);
+                if (enableOrderBookCache) {
+                    askOrderBook.remove(this);
+                }
             } else {
                 throw new IllegalArgumentException("Negative quantity: " + quantityQNT
                         + " for order: " + Long.toUnsignedString(getId()));
@@ -318,12 +401,28 @@ public final class OrderHome {
         return bidOrderTable.getManyBy(dbClause, from, to);
     }
 
-    public DbIterator<Bid> getSortedBidOrders(long assetId, int from, int to) {
-        return bidOrderTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to,
-                " ORDER BY price DESC, creation_height ASC, transaction_height ASC, transaction_index ASC ");
+    public List<Bid> getSortedBidOrders(long assetId, int from, int to) {
+        if (enableOrderBookCache) {
+            Nxt.getBlockchain().readLock();
+            try {
+                return bidOrderBook.getOrders(assetId, from, to);
+            } finally {
+                Nxt.getBlockchain().readUnlock();
+            }
+        }
+        List<Bid> orders = new ArrayList<>();
+        try (DbIterator<Bid> iterator = bidOrderTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to,
+                " ORDER BY price DESC, creation_height ASC, transaction_height ASC, transaction_index ASC ")) {
+            iterator.forEach(orders::add);
+        }
+        return orders;
     }
 
     private Bid getNextBidOrder(long assetId) {
+        if (enableOrderBookCache) {
+            Bid order = bidOrderBook.getFirst(assetId);
+            return order != null ? bidOrderTable.getCached(order) : null;
+        }
         try (Connection con = bidOrderTable.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM bid_order WHERE asset_id = ? "
                      + "AND latest = TRUE ORDER BY price DESC, creation_height ASC, transaction_height ASC, transaction_index ASC LIMIT 1")) {
@@ -339,11 +438,18 @@ public final class OrderHome {
     void addBidOrder(Transaction transaction, BidOrderPlacementAttachment attachment) {
         Bid order = new Bid(transaction, attachment);
         bidOrderTable.insert(order);
+        if (enableOrderBookCache) {
+            bidOrderBook.put(order);
+        }
         matchOrders(attachment.getAssetId());
     }
 
     void removeBidOrder(long orderId) {
-        bidOrderTable.delete(getBidOrder(orderId));
+        Bid order = getBidOrder(orderId);
+        bidOrderTable.delete(order);
+        if (enableOrderBookCache && order != null) {
+            bidOrderBook.remove(order);
+        }
     }
 
     public final class Bid extends Order {
@@ -400,8 +506,14 @@ public final class OrderHome {
             this.amountNQT = amountNQT;
             if (quantityQNT > 0) {
                 bidOrderTable.insert(this);
+                if (enableOrderBookCache) {
+                    bidOrderBook.put(this);
+                }
             } else if (quantityQNT == 0) {
                 bidOrderTable.delete(this);
+                if (enableOrderBookCache) {
+                    bidOrderBook.remove(this);
+                }
             } else {
                 throw new IllegalArgumentException("Negative quantity: " + quantityQNT
                         + " for order: " + Long.toUnsignedString(getId()));
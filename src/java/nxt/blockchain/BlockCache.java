@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.blockchain;
+
+import nxt.Nxt;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of recently read blocks
+ *
+ * Blocks read from the database by identifier or by height are kept so that forging, block
+ * validation and peer requests which repeatedly read the most recent blocks don't query and
+ * parse the same rows again.  A block is cached with its transactions if they were loaded.
+ * The least recently used block is evicted when the cache holds nxt.blockCacheSize blocks.
+ *
+ * Blocks are added to the cache while the blockchain read lock is held.  A block is removed
+ * when it is deleted from the database and when a block is added after it, since the
+ * next block identifier of the cached block is then no longer correct.
+ */
+public final class BlockCache {
+
+    private static final int maxSize = Nxt.getIntProperty("nxt.blockCacheSize");
+
+    private static final Map<Integer, BlockImpl> heightMap = new HashMap<>();
+
+    private static final Map<Long, BlockImpl> blockMap = new LinkedHashMap<Long, BlockImpl>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BlockImpl> eldest) {
+            if (size() > maxSize) {
+                heightMap.remove(eldest.getValue().getHeight(), eldest.getValue());
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Get a cached block
+     *
+     * @param   blockId                 Block identifier
+     * @param   loadTransactions        TRUE if the block transactions must be loaded
+     * @return                          Cached block or null
+     */
+    static BlockImpl get(long blockId, boolean loadTransactions) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        BlockImpl block;
+        synchronized (blockMap) {
+            block = blockMap.get(blockId);
+        }
+        return countLookup(block != null && (!loadTransactions || block.hasLoadedTransactions()) ? block : null);
+    }
+
+    /**
+     * Get a cached block
+     *
+     * @param   height                  Block height
+     * @return                          Cached block or null
+     */
+    static BlockImpl getAtHeight(int height) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        BlockImpl block;
+        synchronized (blockMap) {
+            block = heightMap.get(height);
+            if (block != null) {
+                blockMap.get(block.getId());
+            }
+        }
+        return countLookup(block);
+    }
+
+    private static BlockImpl countLookup(BlockImpl block) {
+        if (block != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return block;
+    }
+
+    /**
+     * Add a block read from the database
+     *
+     * @param   block                   Block
+     */
+    static void add(BlockImpl block) {
+        if (maxSize <= 0 || block == null) {
+            return;
+        }
+        synchronized (blockMap) {
+            BlockImpl previous = blockMap.put(block.getId(), block);
+            if (previous != null) {
+                heightMap.remove(previous.getHeight(), previous);
+            }
+            // A different block at the same height has been replaced in the blockchain
+            previous = heightMap.put(block.getHeight(), block);
+            if (previous != null && previous.getId() != block.getId()) {
+                blockMap.remove(previous.getId());
+            }
+        }
+    }
+
+    /**
+     * Remove a block
+     *
+     * @param   blockId                 Block identifier
+     */
+    static void remove(long blockId) {
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (blockMap) {
+            BlockImpl block = blockMap.remove(blockId);
+            if (block != null) {
+                heightMap.remove(block.getHeight(), block);
+            }
+        }
+    }
+
+    /**
+     * Remove all cache entries
+     */
+    public static void clear() {
+        synchronized (blockMap) {
+            blockMap.clear();
+            heightMap.clear();
+        }
+    }
+
+    public static int getMaxSize() {
+        return Math.max(maxSize, 0);
+    }
+
+    public static int getSize() {
+        synchronized (blockMap) {
+            return blockMap.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Return the percentage of lookups which found a cached block
+     *
+     * @return                          Hit rate
+     */
+    public static double getHitRate() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double)(hitCount * 100) / lookups;
+    }
+
+    private BlockCache() {}
+}
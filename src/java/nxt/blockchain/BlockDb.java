@@ -45,16 +45,22 @@ public final class BlockDb {
 
     static BlockImpl findBlock(long blockId, boolean loadTransactions) {
         BlockchainImpl.getInstance().readLock();
-        try (Connection con = getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE id = ?")) {
-            pstmt.setLong(1, blockId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                BlockImpl block = null;
-                if (rs.next()) {
-                    block = loadBlock(con, rs, loadTransactions);
-                }
+        try {
+            BlockImpl block = BlockCache.get(blockId, loadTransactions);
+            if (block != null) {
                 return block;
             }
+            try (Connection con = getConnection();
+                 PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE id = ?")) {
+                pstmt.setLong(1, blockId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        block = loadBlock(con, rs, loadTransactions);
+                        BlockCache.add(block);
+                    }
+                    return block;
+                }
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         } finally {
@@ -67,6 +73,10 @@ public final class BlockDb {
     }
 
     static boolean hasBlock(long blockId, int height) {
+        BlockImpl block = BlockCache.get(blockId, false);
+        if (block != null) {
+            return block.getHeight() <= height;
+        }
         try (Connection con = getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT height FROM block WHERE id = ?")) {
             pstmt.setLong(1, blockId);
@@ -79,6 +89,10 @@ public final class BlockDb {
     }
 
     static long findBlockIdAtHeight(int height) {
+        BlockImpl block = BlockCache.getAtHeight(height);
+        if (block != null) {
+            return block.getId();
+        }
         try (Connection con = getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT id FROM block WHERE height = ?")) {
             pstmt.setInt(1, height);
@@ -95,18 +109,24 @@ public final class BlockDb {
 
     public static BlockImpl findBlockAtHeight(int height) {
         BlockchainImpl.getInstance().readLock();
-        try (Connection con = getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height = ?")) {
-            pstmt.setInt(1, height);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                BlockImpl block;
-                if (rs.next()) {
-                    block = loadBlock(con, rs);
-                } else {
-                    throw new RuntimeException("Block at height " + height + " not found in database!");
-                }
+        try {
+            BlockImpl block = BlockCache.getAtHeight(height);
+            if (block != null) {
                 return block;
             }
+            try (Connection con = getConnection();
+                 PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height = ?")) {
+                pstmt.setInt(1, height);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        block = loadBlock(con, rs);
+                    } else {
+                        throw new RuntimeException("Block at height " + height + " not found in database!");
+                    }
+                    BlockCache.add(block);
+                    return block;
+                }
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         } finally {
@@ -226,6 +246,7 @@ public final class BlockDb {
                 TransactionHome.saveTransactions(con, block.getFxtTransactions());
             }
             if (block.getPreviousBlockId() != 0) {
+                BlockCache.remove(block.getPreviousBlockId());
                 try (PreparedStatement pstmt = con.prepareStatement("UPDATE block SET next_block_id = ? WHERE id = ?")) {
                     pstmt.setLong(1, block.getId());
                     pstmt.setLong(2, block.getPreviousBlockId());
@@ -270,6 +291,8 @@ public final class BlockDb {
             }
             return lastBlock;
         }
+        // The block may have been cached by the transaction which failed to add it
+        BlockCache.remove(blockId);
         try (Connection con = getConnection();
              PreparedStatement pstmtSelect = con.prepareStatement("SELECT db_id, id FROM block WHERE timestamp >= "
                      + "IFNULL ((SELECT timestamp FROM block WHERE id = ?), " + Integer.MAX_VALUE + ") ORDER BY timestamp DESC");
@@ -279,6 +302,7 @@ public final class BlockDb {
                 try (ResultSet rs = pstmtSelect.executeQuery()) {
                     Db.db.commitTransaction();
                     while (rs.next()) {
+                        BlockCache.remove(rs.getLong("id"));
                         TransactionHome.deleteBlockTransactions(rs.getLong("id"));
         	            pstmtDelete.setLong(1, rs.getLong("db_id"));
             	        pstmtDelete.executeUpdate();
@@ -287,6 +311,7 @@ public final class BlockDb {
 	            }
                 BlockImpl lastBlock = findLastBlock();
                 lastBlock.setNextBlockId(0);
+                BlockCache.remove(lastBlock.getId());
                 try (PreparedStatement pstmt = con.prepareStatement("UPDATE block SET next_block_id = NULL WHERE id = ?")) {
                     pstmt.setLong(1, lastBlock.getId());
                     pstmt.executeUpdate();
@@ -317,12 +342,14 @@ public final class BlockDb {
             return;
         }
         Logger.logMessage("Deleting blockchain...");
+        BlockCache.clear();
         try (Connection con = getConnection();
              Statement stmt = con.createStatement()) {
             try {
                 stmt.executeUpdate("SET REFERENTIAL_INTEGRITY FALSE");
                 stmt.executeUpdate("TRUNCATE TABLE transaction_fxt");
                 stmt.executeUpdate("TRUNCATE TABLE block");
+                stmt.executeUpdate("TRUNCATE TABLE removed_unconfirmed_transaction");
                 ChildChain.getAll().forEach(childChain -> {
                     try {
                         stmt.executeUpdate("TRUNCATE TABLE " + childChain.getSchemaTable("transaction"));
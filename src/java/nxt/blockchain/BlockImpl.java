@@ -334,10 +334,17 @@ public final class BlockImpl implements Block {
 
     private volatile boolean hasValidSignature = false;
 
-    private boolean checkSignature() {
-        if (! hasValidSignature) {
-            byte[] data = Arrays.copyOf(bytes(), bytes.length - 64);
-            hasValidSignature = blockSignature != null && Crypto.verify(blockSignature, data, getGeneratorPublicKey());
+    boolean checkSignature() {
+        if (! hasValidSignature && blockSignature != null) {
+            byte[] hash = Crypto.sha256().digest(bytes());
+            hasValidSignature = SignatureCache.contains(hash, getGeneratorPublicKey());
+            if (! hasValidSignature) {
+                byte[] data = Arrays.copyOf(bytes(), bytes.length - 64);
+                hasValidSignature = Crypto.verify(blockSignature, data, getGeneratorPublicKey());
+                if (hasValidSignature) {
+                    SignatureCache.add(hash, getGeneratorPublicKey());
+                }
+            }
         }
         return hasValidSignature;
     }
@@ -428,6 +435,10 @@ public final class BlockImpl implements Block {
         }
     }
 
+    boolean hasLoadedTransactions() {
+        return blockTransactions != null;
+    }
+
     void loadTransactions() {
         for (FxtTransactionImpl transaction : getFxtTransactions()) {
             transaction.bytes();
@@ -22,6 +22,7 @@ import nxt.NxtException;
 import nxt.account.Account;
 import nxt.account.AccountLedger;
 import nxt.crypto.Crypto;
+import nxt.db.BlobStore;
 import nxt.db.DerivedDbTable;
 import nxt.db.FilteringIterator;
 import nxt.db.FullTextTrigger;
@@ -63,11 +64,13 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -133,6 +136,9 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     private static final BlockchainProcessorImpl instance = new BlockchainProcessorImpl();
     private static final BlockchainPermission blockchainPermission = new BlockchainPermission("getBlockchainProcessor");
 
+    /** Number of blocks loaded and verified together during a blockchain scan */
+    private static final int SCAN_BATCH_SIZE = 100;
+
     public static BlockchainProcessorImpl getInstance() {
         SecurityManager sm = System.getSecurityManager();
         if (sm != null) {
@@ -146,9 +152,27 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     private final BlockchainImpl blockchain = BlockchainImpl.getInstance();
 
     private final ExecutorService networkService = Executors.newCachedThreadPool();
+    private final ForkJoinPool verificationService = new ForkJoinPool(
+            Nxt.getIntProperty("nxt.signatureVerificationThreads") > 0 ?
+                    Nxt.getIntProperty("nxt.signatureVerificationThreads") : Runtime.getRuntime().availableProcessors(),
+            pool -> new ForkJoinWorkerThread(pool) {}, null, false);
     private final List<DerivedDbTable> derivedTables = new CopyOnWriteArrayList<>();
     private final boolean trimDerivedTables = Nxt.getBooleanProperty("nxt.trimDerivedTables");
     private final boolean simulateEndlessDownload = Nxt.getBooleanProperty("nxt.simulateEndlessDownload");
+    private final int prefetchWindows = Nxt.getIntProperty("nxt.downloadPrefetchWindows");
+    private final BlockPrefetcher blockPrefetcher = new BlockPrefetcher();
+
+    /** Maximum number of blocks returned by a getNextBlocks request */
+    private static final int MAX_SEGMENT_SIZE = 36;
+
+    /** Minimum number of blocks requested from a slow peer */
+    private static final int MIN_SEGMENT_SIZE = 6;
+
+    /** Target response time for a getNextBlocks request in microseconds */
+    private static final long SEGMENT_TARGET_TIME = 2000 * 1000;
+
+    /** Average getNextBlocks response time per block in microseconds for each peer host */
+    private final Map<String, Long> peerBlockTimes = new ConcurrentHashMap<>();
 
     private int initialScanHeight;
     private volatile int lastTrimHeight;
@@ -456,119 +480,21 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
          * @throws  InterruptedException    Download interrupted
          */
         private void downloadBlockchain(final Peer feederPeer, final Block commonBlock, final int startHeight) throws InterruptedException {
-            Map<Long, PeerBlock> blockMap = new HashMap<>();
             //
-            // Break the download into multiple segments.  The first block in each segment
-            // is the common block for that segment.
+            // Use the blocks which have already been prefetched and download the rest
             //
-            List<GetNextBlocks> getList = new ArrayList<>();
-            int segSize = 36;
-            int stop = chainBlockIds.size() - 1;
-            for (int start = 0; start < stop; start += segSize) {
-                getList.add(new GetNextBlocks(chainBlockIds, start, Math.min(start + segSize, stop)));
-            }
-            int nextPeerIndex = ThreadLocalRandom.current().nextInt(connectedPublicPeers.size());
-            long maxResponseTime = 100;
-            Peer slowestPeer = null;
+            Map<Long, PeerBlock> blockMap = new HashMap<>();
+            blockPrefetcher.getBlocks(chainBlockIds, blockMap);
+            downloadBlocks(feederPeer, chainBlockIds, connectedPublicPeers, blockMap);
+            List<BlockImpl> downloadedBlocks = new ArrayList<>(blockMap.size());
+            blockMap.values().forEach(peerBlock -> downloadedBlocks.add(peerBlock.getBlock()));
+            verifySignatures(downloadedBlocks);
             //
-            // Issue the getNextBlocks requests and get the results.  We will repeat
-            // a request if the peer didn't respond or returned a partial block list.
-            // The download will be aborted if we are unable to get a segment after
-            // retrying with different peers.
+            // Start downloading the following windows while we add these blocks to the blockchain
             //
-            download: while (!getList.isEmpty() && !connectedPublicPeers.isEmpty()) {
-                //
-                // Submit threads to issue 'getNextBlocks' requests.  The first segment
-                // will always be sent to the feeder peer.  Subsequent segments will
-                // be sent to the feeder peer if we failed trying to download the blocks
-                // from another peer.  We will stop the download and process any pending
-                // blocks if we are unable to download a segment from the feeder peer.
-                //
-                for (GetNextBlocks nextBlocks : getList) {
-                    Peer peer;
-                    if (nextBlocks.getFailedRequestCount() > 1) {
-                        Logger.logDebugMessage("Aborting download, failed request count is " + nextBlocks.getFailedRequestCount());
-                        break download;
-                    }
-                    if (nextBlocks.getStart() == 0 || nextBlocks.getFailedRequestCount() != 0) {
-                        peer = feederPeer;
-                    } else {
-                        while (true) {
-                            if (connectedPublicPeers.isEmpty()) {
-                                Logger.logDebugMessage("No connected public peers, aborting");
-                                break download;
-                            }
-                            if (nextPeerIndex >= connectedPublicPeers.size()) {
-                                nextPeerIndex = 0;
-                            }
-                            peer = connectedPublicPeers.get(nextPeerIndex++);
-                            if (peer.getState() != Peer.State.CONNECTED) {
-                                connectedPublicPeers.remove(peer);
-                                continue;
-                            }
-                            break;
-                        }
-                    }
-                    if (nextBlocks.getPeer() == peer) {
-                        Logger.logDebugMessage("Feeder " + feederPeer.getHost() + ", connectedPublicPeers " + connectedPublicPeers.size());
-                        if (nextBlocks.getFailedRequestCount() != 0) {
-                            Logger.logInfoMessage("Failed request count is " + nextBlocks.getFailedRequestCount() + ", aborting");
-                            break download;
-                        }
-                    }
-                    nextBlocks.setPeer(peer);
-                    Future<List<Block>> future = networkService.submit(nextBlocks);
-                    nextBlocks.setFuture(future);
-                }
-                //
-                // Get the results.  A peer is on a different fork if a returned
-                // block is not in the block identifier list.
-                //
-                Iterator<GetNextBlocks> it = getList.iterator();
-                while (it.hasNext()) {
-                    GetNextBlocks nextBlocks = it.next();
-                    List<Block> blockList;
-                    try {
-                        blockList = nextBlocks.getFuture().get();
-                    } catch (ExecutionException exc) {
-                        throw new RuntimeException(exc.getMessage(), exc);
-                    }
-                    if (blockList == null) {
-                        Peer unresponsivePeer = nextBlocks.getPeer();
-                        Logger.logDebugMessage("No blocks returned, disconnecting peer " + unresponsivePeer.getHost());
-                        connectedPublicPeers.remove(unresponsivePeer);
-                        unresponsivePeer.disconnectPeer();
-                        continue;
-                    }
-                    Peer peer = nextBlocks.getPeer();
-                    int index = nextBlocks.getStart() + 1;
-                    for (Block block : blockList) {
-                        if (block.getId() != chainBlockIds.get(index)) {
-                            Logger.logDebugMessage("Different block id found");
-                            break;
-                        }
-                        blockMap.put(block.getId(), new PeerBlock(peer, (BlockImpl)block));
-                        index++;
-                    }
-                    if (index > nextBlocks.getStop()) {
-                        it.remove();
-                    } else {
-                        nextBlocks.setStart(index - 1);
-                    }
-                    if (nextBlocks.getResponseTime() > maxResponseTime) {
-                        maxResponseTime = nextBlocks.getResponseTime();
-                        slowestPeer = nextBlocks.getPeer();
-                    }
-                }
-            }
-            if (slowestPeer != null &&
-                    slowestPeer != feederPeer &&
-                    NetworkHandler.getConnectionCount() >= segSize &&
-                    NetworkHandler.getConnectionCount() >= NetworkHandler.getMaxOutboundConnections() &&
-                    chainBlockIds.size() > 360) {
-                Logger.logDebugMessage(slowestPeer.getHost() + " took " + maxResponseTime + " ms, disconnecting");
-                connectedPublicPeers.remove(slowestPeer);
-                slowestPeer.disconnectPeer();
+            if (isDownloading && chainBlockIds.size() >= 720 && blockMap.size() == chainBlockIds.size() - 1 &&
+                    commonBlock.getId() == blockchain.getLastBlock().getId()) {
+                blockPrefetcher.start(feederPeer, chainBlockIds.get(chainBlockIds.size() - 1), connectedPublicPeers);
             }
             //
             // Add the new blocks to the blockchain.  We will stop if we encounter
@@ -617,6 +543,180 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     };
 
+    /**
+     * Download blocks from the connected peers
+     *
+     * The blocks which are not already in the block map are downloaded in segments.  The first
+     * block identifier in each segment is the common block for that segment.  The number of
+     * blocks requested from a peer is reduced when the peer is slow to respond.
+     *
+     * @param   feederPeer              Peer supplying the block identifiers
+     * @param   blockIds                Block identifiers starting with the common block
+     * @param   peers                   Connected peers
+     * @param   blockMap                Downloaded blocks
+     * @throws  InterruptedException    Download interrupted
+     */
+    private void downloadBlocks(Peer feederPeer, List<Long> blockIds, List<Peer> peers, Map<Long, PeerBlock> blockMap)
+                                        throws InterruptedException {
+        List<GetNextBlocks> getList = new ArrayList<>();
+        int stop = blockIds.size() - 1;
+        int start = 0;
+        while (start < stop) {
+            if (blockMap.containsKey(blockIds.get(start + 1))) {
+                start++;
+                continue;
+            }
+            int end = start + 1;
+            while (end < stop && end - start < MAX_SEGMENT_SIZE && !blockMap.containsKey(blockIds.get(end + 1))) {
+                end++;
+            }
+            getList.add(new GetNextBlocks(blockIds, start, end));
+            start = end;
+        }
+        int nextPeerIndex = peers.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(peers.size());
+        long maxResponseTime = 100;
+        Peer slowestPeer = null;
+        //
+        // Issue the getNextBlocks requests and get the results.  We will repeat
+        // a request if the peer didn't respond or returned a partial block list.
+        // The download will be aborted if we are unable to get a segment after
+        // retrying with different peers.
+        //
+        download: while (!getList.isEmpty() && !peers.isEmpty()) {
+            //
+            // Submit threads to issue 'getNextBlocks' requests.  The first segment
+            // will always be sent to the feeder peer.  Subsequent segments will
+            // be sent to the feeder peer if we failed trying to download the blocks
+            // from another peer.  We will stop the download and process any pending
+            // blocks if we are unable to download a segment from the feeder peer.
+            // A segment is split if it is too large for the selected peer.
+            //
+            for (int i = 0; i < getList.size(); i++) {
+                GetNextBlocks nextBlocks = getList.get(i);
+                Peer peer;
+                if (nextBlocks.getFailedRequestCount() > 1) {
+                    Logger.logDebugMessage("Aborting download, failed request count is " + nextBlocks.getFailedRequestCount());
+                    break download;
+                }
+                if (nextBlocks.getStart() == 0 || nextBlocks.getFailedRequestCount() != 0) {
+                    peer = feederPeer;
+                } else {
+                    while (true) {
+                        if (peers.isEmpty()) {
+                            Logger.logDebugMessage("No connected public peers, aborting");
+                            break download;
+                        }
+                        if (nextPeerIndex >= peers.size()) {
+                            nextPeerIndex = 0;
+                        }
+                        peer = peers.get(nextPeerIndex++);
+                        if (peer.getState() != Peer.State.CONNECTED) {
+                            peers.remove(peer);
+                            continue;
+                        }
+                        break;
+                    }
+                }
+                if (nextBlocks.getPeer() == peer) {
+                    Logger.logDebugMessage("Feeder " + feederPeer.getHost() + ", connectedPublicPeers " + peers.size());
+                    if (nextBlocks.getFailedRequestCount() != 0) {
+                        Logger.logInfoMessage("Failed request count is " + nextBlocks.getFailedRequestCount() + ", aborting");
+                        break download;
+                    }
+                }
+                int segmentSize = getSegmentSize(peer);
+                if (nextBlocks.getStop() - nextBlocks.getStart() > segmentSize) {
+                    getList.add(i + 1, new GetNextBlocks(blockIds, nextBlocks.getStart() + segmentSize, nextBlocks.getStop()));
+                    nextBlocks.setStop(nextBlocks.getStart() + segmentSize);
+                }
+                nextBlocks.setPeer(peer);
+                nextBlocks.send(networkService);
+            }
+            //
+            // Get the results.  A peer is on a different fork if a returned
+            // block is not in the block identifier list.
+            //
+            Iterator<GetNextBlocks> it = getList.iterator();
+            while (it.hasNext()) {
+                GetNextBlocks nextBlocks = it.next();
+                List<Block> blockList;
+                try {
+                    blockList = nextBlocks.getFuture().get();
+                } catch (ExecutionException exc) {
+                    throw new RuntimeException(exc.getMessage(), exc);
+                }
+                if (blockList == null) {
+                    Peer unresponsivePeer = nextBlocks.getPeer();
+                    Logger.logDebugMessage("No blocks returned, disconnecting peer " + unresponsivePeer.getHost());
+                    peers.remove(unresponsivePeer);
+                    unresponsivePeer.disconnectPeer();
+                    continue;
+                }
+                Peer peer = nextBlocks.getPeer();
+                int index = nextBlocks.getStart() + 1;
+                for (Block block : blockList) {
+                    if (block.getId() != blockIds.get(index)) {
+                        Logger.logDebugMessage("Different block id found");
+                        break;
+                    }
+                    blockMap.put(block.getId(), new PeerBlock(peer, (BlockImpl)block));
+                    index++;
+                }
+                updateBlockTime(peer, nextBlocks.getResponseTime(), blockList.size());
+                if (index > nextBlocks.getStop()) {
+                    it.remove();
+                } else {
+                    nextBlocks.setStart(index - 1);
+                }
+                if (nextBlocks.getResponseTime() > maxResponseTime) {
+                    maxResponseTime = nextBlocks.getResponseTime();
+                    slowestPeer = nextBlocks.getPeer();
+                }
+            }
+        }
+        if (slowestPeer != null &&
+                slowestPeer != feederPeer &&
+                NetworkHandler.getConnectionCount() >= MAX_SEGMENT_SIZE &&
+                NetworkHandler.getConnectionCount() >= NetworkHandler.getMaxOutboundConnections() &&
+                blockIds.size() > 360) {
+            Logger.logDebugMessage(slowestPeer.getHost() + " took " + maxResponseTime + " ms, disconnecting");
+            peers.remove(slowestPeer);
+            slowestPeer.disconnectPeer();
+        }
+    }
+
+    /**
+     * Get the number of blocks to request from a peer
+     *
+     * @param   peer                    Peer
+     * @return                          Number of blocks
+     */
+    private int getSegmentSize(Peer peer) {
+        Long blockTime = peerBlockTimes.get(peer.getHost());
+        if (blockTime == null || blockTime == 0) {
+            return MAX_SEGMENT_SIZE;
+        }
+        return (int)Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, SEGMENT_TARGET_TIME / blockTime));
+    }
+
+    /**
+     * Update the average response time per block for a peer
+     *
+     * @param   peer                    Peer
+     * @param   responseTime            Response time in milliseconds
+     * @param   blockCount              Number of blocks returned
+     */
+    private void updateBlockTime(Peer peer, long responseTime, int blockCount) {
+        if (blockCount == 0) {
+            return;
+        }
+        if (peerBlockTimes.size() > 1000) {
+            peerBlockTimes.clear();
+        }
+        long blockTime = responseTime * 1000 / blockCount;
+        peerBlockTimes.merge(peer.getHost(), blockTime, (oldTime, newTime) -> (3 * oldTime + newTime) / 4);
+    }
+
     private void processFork(final List<Block> forkBlocks, final Block commonBlock) throws BlockNotAcceptedException {
         BigInteger curCumulativeDifficulty = blockchain.getLastBlock().getCumulativeDifficulty();
         List<BlockImpl> myPoppedOffBlocks = popOffTo(commonBlock);
@@ -667,11 +767,11 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     }
 
     /**
-     * Callable method to get the next block segment from the selected peer
+     * Request to get the next block segment from the selected peer
      */
-    private static class GetNextBlocks implements Callable<List<Block>> {
+    private static class GetNextBlocks {
 
-        /** Callable future */
+        /** Response future */
         private Future<List<Block>> future;
 
         /** Peer */
@@ -684,7 +784,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         private int start;
 
         /** Stop index */
-        private final int stop;
+        private int stop;
 
         /** Request count */
         private int failedRequestCount;
@@ -707,25 +807,40 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
 
         /**
-         * Return the result
+         * Send the request
          *
-         * @return                      List of blocks or null if an error occurred
+         * The request does not wait for the response.  The response is parsed using the
+         * supplied executor and the result is available from the request future.
+         *
+         * @param   executor            Executor used to parse the blocks
          */
-        @Override
-        public List<Block> call() {
+        void send(ExecutorService executor) {
             List<Long> idList = new ArrayList<>(stop - start);
             for (int i = start + 1; i <= stop; i++) {
                 idList.add(blockIds.get(i));
             }
             long startTime = System.currentTimeMillis();
-            NetworkMessage.BlocksMessage response = (NetworkMessage.BlocksMessage)peer.sendRequest(
-                    new NetworkMessage.GetNextBlocksMessage(blockIds.get(start), idList.size(), idList));
-            responseTime = System.currentTimeMillis() - startTime;
+            future = peer.sendRequestAsync(new NetworkMessage.GetNextBlocksMessage(blockIds.get(start), idList.size(), idList))
+                    .thenApply(response -> {
+                        responseTime = System.currentTimeMillis() - startTime;
+                        return response;
+                    })
+                    .thenApplyAsync(response -> processResponse((NetworkMessage.BlocksMessage)response, idList.size()), executor);
+        }
+
+        /**
+         * Process the response
+         *
+         * @param   response            Response message or null if an error occurred
+         * @param   count               Number of requested blocks
+         * @return                      List of blocks or null if an error occurred
+         */
+        private List<Block> processResponse(NetworkMessage.BlocksMessage response, int count) {
             if (response == null || response.getBlockCount() == 0) {
                 failedRequestCount++;
                 return null;
             }
-            if (response.getBlockCount() > idList.size()) {
+            if (response.getBlockCount() > count) {
                 Logger.logDebugMessage("Obsolete or rogue peer " + peer.getHost() + " sends too many nextBlocks, blacklisting");
                 peer.blacklist("Too many nextBlocks");
                 failedRequestCount++;
@@ -742,23 +857,14 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
 
         /**
-         * Return the callable future
+         * Return the response future
          *
-         * @return                      Callable future
+         * @return                      Response future
          */
         public Future<List<Block>> getFuture() {
             return future;
         }
 
-        /**
-         * Set the callable future
-         *
-         * @param   future              Callable future
-         */
-        void setFuture(Future<List<Block>> future) {
-            this.future = future;
-        }
-
         /**
          * Return the peer
          *
@@ -804,6 +910,15 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
             return stop;
         }
 
+        /**
+         * Set the stop index
+         *
+         * @param   stop                Stop index
+         */
+        void setStop(int stop) {
+            this.stop = stop;
+        }
+
         /**
          * Return the request count
          *
@@ -864,6 +979,154 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
     }
 
+    /**
+     * Download blocks ahead of the blocks being added to the blockchain
+     *
+     * During the blockchain download, the blocks following the current download window are
+     * requested from the feeder peer and the connected peers while the current window is added
+     * to the blockchain.  Up to nxt.downloadPrefetchWindows windows of 720 blocks are downloaded
+     * ahead.  The transaction signatures are verified as the blocks are received, so the
+     * verification is not done while holding the blockchain write lock.
+     */
+    private class BlockPrefetcher implements Runnable {
+
+        /** Prefetched blocks */
+        private final Map<Long, PeerBlock> blocks = new ConcurrentHashMap<>();
+
+        /** Block identifiers being downloaded */
+        private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+
+        /** Prefetch task */
+        private Future<?> future;
+
+        /** Peer supplying the block identifiers */
+        private Peer feederPeer;
+
+        /** Last block identifier in the current download window */
+        private long startBlockId;
+
+        /** Connected peers */
+        private List<Peer> peers;
+
+        /**
+         * Start downloading the blocks following a block
+         *
+         * Nothing is done if a prefetch is already in progress
+         *
+         * @param   feederPeer          Peer supplying the block identifiers
+         * @param   startBlockId        Last block identifier in the current download window
+         * @param   peers               Connected peers
+         */
+        synchronized void start(Peer feederPeer, long startBlockId, List<Peer> peers) {
+            if (prefetchWindows <= 0 || isShuttingDown || (future != null && !future.isDone())) {
+                return;
+            }
+            this.feederPeer = feederPeer;
+            this.startBlockId = startBlockId;
+            this.peers = new ArrayList<>(peers);
+            future = networkService.submit(this);
+        }
+
+        /**
+         * Move the prefetched blocks for a download window to the block map
+         *
+         * We will wait if the prefetch task is downloading blocks in the window.  The
+         * prefetched blocks are discarded if they do not follow the common block.
+         *
+         * @param   blockIds            Block identifiers starting with the common block
+         * @param   blockMap            Block map
+         * @throws  InterruptedException    Wait interrupted
+         */
+        void getBlocks(List<Long> blockIds, Map<Long, PeerBlock> blockMap) throws InterruptedException {
+            boolean active;
+            synchronized (this) {
+                while ((active = future != null && !future.isDone()) && isPending(blockIds)) {
+                    wait(1000);
+                }
+            }
+            if (blocks.isEmpty()) {
+                return;
+            }
+            if (!active && !blocks.containsKey(blockIds.get(1))) {
+                blocks.clear();
+                return;
+            }
+            for (int i = 1; i < blockIds.size(); i++) {
+                Long blockId = blockIds.get(i);
+                PeerBlock peerBlock = blocks.remove(blockId);
+                if (peerBlock != null) {
+                    blockMap.put(blockId, peerBlock);
+                }
+            }
+        }
+
+        private boolean isPending(List<Long> blockIds) {
+            if (pendingIds.isEmpty()) {
+                return false;
+            }
+            for (int i = 1; i < blockIds.size(); i++) {
+                if (pendingIds.contains(blockIds.get(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long blockId = startBlockId;
+                while (getMoreBlocks && !isDownloadSuspended && !isShuttingDown && blocks.size() < prefetchWindows * 720) {
+                    NetworkMessage.BlockIdsMessage response = (NetworkMessage.BlockIdsMessage)feederPeer.sendRequest(
+                            new NetworkMessage.GetNextBlockIdsMessage(blockId, 720));
+                    if (response == null || response.getBlockIds().isEmpty()) {
+                        break;
+                    }
+                    if (response.getBlockIds().size() > 720) {
+                        Logger.logDebugMessage("Obsolete or rogue peer " + feederPeer.getHost() + " sends too many nextBlockIds, blacklisting");
+                        feederPeer.blacklist("Too many nextBlockIds");
+                        break;
+                    }
+                    List<Long> blockIds = new ArrayList<>(response.getBlockIds().size() + 1);
+                    blockIds.add(blockId);
+                    blockIds.addAll(response.getBlockIds());
+                    Map<Long, PeerBlock> blockMap = new HashMap<>();
+                    for (int i = 1; i < blockIds.size(); i++) {
+                        PeerBlock peerBlock = blocks.get(blockIds.get(i));
+                        if (peerBlock != null) {
+                            blockMap.put(blockIds.get(i), peerBlock);
+                        }
+                    }
+                    pendingIds.addAll(blockIds.subList(1, blockIds.size()));
+                    try {
+                        downloadBlocks(feederPeer, blockIds, peers, blockMap);
+                        List<BlockImpl> downloadedBlocks = new ArrayList<>(blockMap.size());
+                        blockMap.values().forEach(peerBlock -> downloadedBlocks.add(peerBlock.getBlock()));
+                        verifySignatures(downloadedBlocks);
+                        blocks.putAll(blockMap);
+                    } finally {
+                        synchronized (this) {
+                            pendingIds.clear();
+                            notifyAll();
+                        }
+                    }
+                    if (blockMap.size() < blockIds.size() - 1) {
+                        break;
+                    }
+                    blockId = blockIds.get(blockIds.size() - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                Logger.logDebugMessage("Unable to prefetch blocks: " + e.toString(), e);
+            } finally {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
     /**
      * Task to restore prunable data for downloaded blocks
      */
@@ -1061,6 +1324,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     private void doTrimDerivedTables() {
         lastTrimHeight = Math.max(blockchain.getHeight() - Constants.MAX_ROLLBACK, 0);
         if (lastTrimHeight > 0) {
+            int expiration = Nxt.getEpochTime() - Constants.MAX_PRUNABLE_LIFETIME;
             for (DerivedDbTable table : derivedTables) {
                 if (isShuttingDown) {
                     break;
@@ -1073,6 +1337,10 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     blockchain.readUnlock();
                 }
             }
+            if (Constants.ENABLE_PRUNING && !isShuttingDown) {
+                // Compacting the payload store copies payloads, so it is done without holding the blockchain lock
+                networkService.submit(() -> BlobStore.getStore().prune(expiration));
+            }
         }
     }
 
@@ -1344,6 +1612,55 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     public void shutdown() {
         isShuttingDown = true;
         ThreadPool.shutdownExecutor("networkService", networkService, 5);
+        ThreadPool.shutdownExecutor("verificationService", verificationService, 5);
+    }
+
+    private void abortScan(long blockId, int height, Exception e) {
+        Db.db.rollbackTransaction();
+        Logger.logDebugMessage(e.toString(), e);
+        Logger.logDebugMessage("Applying block " + Long.toUnsignedString(blockId) + " at height "
+                + height + " failed, deleting from database");
+        BlockImpl lastBlock = BlockDb.deleteBlocksFrom(blockId);
+        blockchain.setLastBlock(lastBlock);
+        popOffTo(lastBlock);
+    }
+
+    /**
+     * Verify block and transaction signatures in parallel
+     *
+     * The result is remembered by each block and transaction, so the signatures are not checked
+     * again when the blocks are validated while holding the blockchain write lock.  Invalid
+     * signatures are not reported here, the block is rejected by the regular block validation.
+     *
+     * @param   blocks                  Blocks to verify
+     */
+    private void verifySignatures(List<BlockImpl> blocks) {
+        //
+        // Public keys and transaction bytes are resolved on the calling thread since
+        // they may require a database lookup
+        //
+        List<TransactionImpl> transactions = new ArrayList<>();
+        for (BlockImpl block : blocks) {
+            block.bytes();
+            for (FxtTransactionImpl fxtTransaction : block.getFxtTransactions()) {
+                fxtTransaction.bytes();
+                transactions.add(fxtTransaction);
+                for (ChildTransactionImpl childTransaction : fxtTransaction.getChildTransactions()) {
+                    childTransaction.bytes();
+                    transactions.add(childTransaction);
+                }
+            }
+        }
+        try {
+            verificationService.submit(() -> {
+                blocks.parallelStream().forEach(BlockImpl::checkSignature);
+                transactions.parallelStream().forEach(TransactionImpl::checkSignature);
+            }).get();
+        } catch (ExecutionException e) {
+            Logger.logDebugMessage("Signature verification failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void addBlock(BlockImpl block) {
@@ -1432,7 +1749,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 
                 block.setPrevious(previousLastBlock);
                 blockListeners.notify(block, Event.BEFORE_BLOCK_ACCEPT);
-                TransactionProcessorImpl.getInstance().requeueAllUnconfirmedTransactions();
+                TransactionProcessorImpl.getInstance().requeueUnconfirmedTransactions(block);
                 try {
                     addBlock(block);
                     accept(block, validPhasedTransactions, invalidPhasedTransactions, duplicates);
@@ -1445,6 +1762,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     for (DerivedDbTable table : derivedTables) {
                         table.popOffTo(previousLastBlock.getHeight());
                     }
+                    TransactionProcessorImpl.getInstance().rollbackRemovedTransactions(previousLastBlock.getHeight());
                     Db.db.clearCache();
                     Db.db.commitTransaction();
                     throw e;
@@ -1452,6 +1770,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
             } finally {
                 Db.db.endTransaction();
             }
+            TransactionProcessorImpl.getInstance().revalidateUnconfirmedTransactions();
             blockListeners.notify(block, Event.AFTER_BLOCK_ACCEPT);
         } finally {
             blockchain.writeUnlock();
@@ -1774,6 +2093,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     for (DerivedDbTable table : derivedTables) {
                         table.popOffTo(commonBlock.getHeight());
                     }
+                    TransactionProcessorImpl.getInstance().rollbackRemovedTransactions(commonBlock.getHeight());
                     Db.db.clearCache();
                     Db.db.commitTransaction();
                     return poppedOffBlocks;
@@ -1786,6 +2106,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                 for (DerivedDbTable table : derivedTables) {
                     table.popOffTo(lastBlock.getHeight());
                 }
+                TransactionProcessorImpl.getInstance().rollbackRemovedTransactions(lastBlock.getHeight());
                 Db.db.clearCache();
                 Db.db.commitTransaction();
                 throw e;
@@ -2012,6 +2333,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                 } else {
                     blockchain.setLastBlock(BlockDb.findBlockAtHeight(height - 1));
                 }
+                TransactionProcessorImpl.getInstance().scanUnconfirmedTransactions(height);
                 if (shutdown) {
                     Logger.logMessage("Scan will be performed at next start");
                     new Thread(() -> System.exit(0)).start();
@@ -2028,63 +2350,83 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     hasMore = false;
                     pstmtSelect.setLong(pstmtSelectIndex, dbId);
                     try (ResultSet rs = pstmtSelect.executeQuery()) {
-                        while (rs.next()) {
-                            try {
-                                dbId = rs.getLong("db_id");
-                                currentBlock = BlockDb.loadBlock(con, rs, true);
-                                if (currentBlock.getHeight() > 0) {
-                                    currentBlock.loadTransactions();
-                                    if (currentBlock.getId() != currentBlockId || currentBlock.getHeight() > blockchain.getHeight() + 1) {
-                                        throw new NxtException.NotValidException("Database blocks in the wrong order!");
+                        List<BlockImpl> scanBlocks = new ArrayList<>(SCAN_BATCH_SIZE);
+                        boolean hasNext = true;
+                        while (hasNext) {
+                            //
+                            // Load the next batch of blocks and verify the signatures in parallel
+                            // before the blocks are applied
+                            //
+                            scanBlocks.clear();
+                            RuntimeException loadException = null;
+                            while (scanBlocks.size() < SCAN_BATCH_SIZE && (hasNext = rs.next())) {
+                                try {
+                                    dbId = rs.getLong("db_id");
+                                    BlockImpl block = BlockDb.loadBlock(con, rs, true);
+                                    if (block.getHeight() > 0) {
+                                        block.loadTransactions();
                                     }
-                                    int curTime = Nxt.getEpochTime();
-                                    Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
-                                    List<ChildTransactionImpl> validPhasedTransactions = new ArrayList<>();
-                                    List<ChildTransactionImpl> invalidPhasedTransactions = new ArrayList<>();
-                                    validatePhasedTransactions(blockchain.getHeight(), validPhasedTransactions, invalidPhasedTransactions, duplicates);
-                                    validateTransactions(currentBlock, blockchain.getLastBlock(), curTime, duplicates, validate);
-                                    if (validate) {
-                                        validate(currentBlock, blockchain.getLastBlock(), curTime);
-                                        byte[] blockBytes = currentBlock.bytes();
-                                        if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockBytes, currentBlock.getFxtTransactions()).bytes())) {
-                                            throw new NxtException.NotValidException("Block bytes cannot be parsed back to the same block");
-                                        }
-                                        List<TransactionImpl> transactions = new ArrayList<>();
-                                        for (FxtTransactionImpl fxtTransaction : currentBlock.getFxtTransactions()) {
-                                            transactions.add(fxtTransaction);
-                                            transactions.addAll(fxtTransaction.getSortedChildTransactions());
+                                    scanBlocks.add(block);
+                                } catch (RuntimeException e) {
+                                    loadException = e;
+                                    break;
+                                }
+                            }
+                            verifySignatures(scanBlocks);
+                            for (BlockImpl scanBlock : scanBlocks) {
+                                try {
+                                    currentBlock = scanBlock;
+                                    if (currentBlock.getHeight() > 0) {
+                                        if (currentBlock.getId() != currentBlockId || currentBlock.getHeight() > blockchain.getHeight() + 1) {
+                                            throw new NxtException.NotValidException("Database blocks in the wrong order!");
                                         }
-                                        for (TransactionImpl transaction : transactions) {
-                                            byte[] transactionBytes = transaction.bytes();
-                                            if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionBytes).build().bytes())) {
-                                                throw new NxtException.NotValidException("Transaction bytes cannot be parsed back to the same transaction: "
-                                                        + JSON.toJSONString(transaction.getJSONObject()));
+                                        int curTime = Nxt.getEpochTime();
+                                        Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
+                                        List<ChildTransactionImpl> validPhasedTransactions = new ArrayList<>();
+                                        List<ChildTransactionImpl> invalidPhasedTransactions = new ArrayList<>();
+                                        validatePhasedTransactions(blockchain.getHeight(), validPhasedTransactions, invalidPhasedTransactions, duplicates);
+                                        validateTransactions(currentBlock, blockchain.getLastBlock(), curTime, duplicates, validate);
+                                        if (validate) {
+                                            validate(currentBlock, blockchain.getLastBlock(), curTime);
+                                            byte[] blockBytes = currentBlock.bytes();
+                                            if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockBytes, currentBlock.getFxtTransactions()).bytes())) {
+                                                throw new NxtException.NotValidException("Block bytes cannot be parsed back to the same block");
                                             }
-                                            JSONObject transactionJSON = (JSONObject) JSONValue.parse(JSON.toJSONString(transaction.getJSONObject()));
-                                            if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionJSON).build().bytes())) {
-                                                throw new NxtException.NotValidException("Transaction JSON cannot be parsed back to the same transaction: "
-                                                        + JSON.toJSONString(transaction.getJSONObject()));
+                                            List<TransactionImpl> transactions = new ArrayList<>();
+                                            for (FxtTransactionImpl fxtTransaction : currentBlock.getFxtTransactions()) {
+                                                transactions.add(fxtTransaction);
+                                                transactions.addAll(fxtTransaction.getSortedChildTransactions());
+                                            }
+                                            for (TransactionImpl transaction : transactions) {
+                                                byte[] transactionBytes = transaction.bytes();
+                                                if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionBytes).build().bytes())) {
+                                                    throw new NxtException.NotValidException("Transaction bytes cannot be parsed back to the same transaction: "
+                                                            + JSON.toJSONString(transaction.getJSONObject()));
+                                                }
+                                                JSONObject transactionJSON = (JSONObject) JSONValue.parse(JSON.toJSONString(transaction.getJSONObject()));
+                                                if (!Arrays.equals(transactionBytes, TransactionImpl.newTransactionBuilder(transactionJSON).build().bytes())) {
+                                                    throw new NxtException.NotValidException("Transaction JSON cannot be parsed back to the same transaction: "
+                                                            + JSON.toJSONString(transaction.getJSONObject()));
+                                                }
                                             }
                                         }
+                                        blockListeners.notify(currentBlock, Event.BEFORE_BLOCK_ACCEPT);
+                                        blockchain.setLastBlock(currentBlock);
+                                        accept(currentBlock, validPhasedTransactions, invalidPhasedTransactions, duplicates);
+                                        Db.db.clearCache();
+                                        Db.db.commitTransaction();
+                                        blockListeners.notify(currentBlock, Event.AFTER_BLOCK_ACCEPT);
                                     }
-                                    blockListeners.notify(currentBlock, Event.BEFORE_BLOCK_ACCEPT);
-                                    blockchain.setLastBlock(currentBlock);
-                                    accept(currentBlock, validPhasedTransactions, invalidPhasedTransactions, duplicates);
-                                    Db.db.clearCache();
-                                    Db.db.commitTransaction();
-                                    blockListeners.notify(currentBlock, Event.AFTER_BLOCK_ACCEPT);
+                                    blockListeners.notify(currentBlock, Event.BLOCK_SCANNED);
+                                    hasMore = true;
+                                    currentBlockId = currentBlock.getNextBlockId();
+                                } catch (NxtException | RuntimeException e) {
+                                    abortScan(currentBlockId, currentBlock.getHeight(), e);
+                                    break outer;
                                 }
-                                blockListeners.notify(currentBlock, Event.BLOCK_SCANNED);
-                                hasMore = true;
-                                currentBlockId = currentBlock.getNextBlockId();
-                            } catch (NxtException | RuntimeException e) {
-                                Db.db.rollbackTransaction();
-                                Logger.logDebugMessage(e.toString(), e);
-                                Logger.logDebugMessage("Applying block " + Long.toUnsignedString(currentBlockId) + " at height "
-                                        + currentBlock.getHeight() + " failed, deleting from database");
-                                BlockImpl lastBlock = BlockDb.deleteBlocksFrom(currentBlockId);
-                                blockchain.setLastBlock(lastBlock);
-                                popOffTo(lastBlock);
+                            }
+                            if (loadException != null) {
+                                abortScan(currentBlockId, currentBlock.getHeight(), loadException);
                                 break outer;
                             }
                         }
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.blockchain;
+
+import nxt.Nxt;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of verified block and transaction signatures
+ *
+ * A transaction is parsed into a new object each time it is received from a peer, first as an
+ * unconfirmed transaction and then again as part of a block.  The cache remembers the signatures
+ * which have already been verified, so the curve operations are done only once.  The cache key
+ * is the hash of the signed bytes, which include the signature, together with the signer public key.
+ * Only valid signatures are added to the cache.  The oldest entries are evicted when the cache is full.
+ */
+public final class SignatureCache {
+
+    private static final int maxSize = Nxt.getIntProperty("nxt.signatureCacheSize");
+
+    private static final Map<Key, Boolean> cache = new LinkedHashMap<Key, Boolean>(1024) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Check if a signature has already been verified
+     *
+     * @param   hash                    Hash of the signed data and signature
+     * @param   publicKey               Signer public key
+     * @return                          TRUE if the signature has been verified
+     */
+    static boolean contains(byte[] hash, byte[] publicKey) {
+        if (maxSize <= 0 || hash == null || publicKey == null) {
+            return false;
+        }
+        boolean found;
+        synchronized (cache) {
+            found = cache.containsKey(new Key(hash, publicKey));
+        }
+        if (found) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return found;
+    }
+
+    /**
+     * Add a verified signature
+     *
+     * @param   hash                    Hash of the signed data and signature
+     * @param   publicKey               Signer public key
+     */
+    static void add(byte[] hash, byte[] publicKey) {
+        if (maxSize <= 0 || hash == null || publicKey == null) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(new Key(hash, publicKey), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Remove all cache entries
+     */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public static int getMaxSize() {
+        return Math.max(maxSize, 0);
+    }
+
+    public static int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Return the percentage of lookups which found a verified signature
+     *
+     * @return                          Hit rate
+     */
+    public static double getHitRate() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double)(hitCount * 100) / lookups;
+    }
+
+    private static final class Key {
+
+        private final byte[] hash;
+        private final byte[] publicKey;
+        private final int hashCode;
+
+        private Key(byte[] hash, byte[] publicKey) {
+            this.hash = hash;
+            this.publicKey = publicKey;
+            this.hashCode = Arrays.hashCode(hash) ^ Arrays.hashCode(publicKey);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(hash, ((Key)obj).hash) && Arrays.equals(publicKey, ((Key)obj).publicKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private SignatureCache() {}
+}
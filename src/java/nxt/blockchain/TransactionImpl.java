@@ -616,10 +616,17 @@ public abstract class TransactionImpl implements Transaction {
 
     private volatile boolean hasValidSignature = false;
 
-    private boolean checkSignature() {
+    boolean checkSignature() {
         if (!hasValidSignature) {
             byte[] bytes = getBytes();
-            hasValidSignature = getSignature() != null && Crypto.verify(getSignature(), zeroSignature(bytes), getSenderPublicKey());
+            if (getSignature() != null) {
+                byte[] fullHash = getFullHash();
+                hasValidSignature = SignatureCache.contains(fullHash, getSenderPublicKey());
+                if (!hasValidSignature && Crypto.verify(getSignature(), zeroSignature(bytes), getSenderPublicKey())) {
+                    SignatureCache.add(fullHash, getSenderPublicKey());
+                    hasValidSignature = true;
+                }
+            }
             if (!hasValidSignature) {
                 Logger.logWarningMessage("Invalid signature for transaction bytes " + Convert.toHexString(bytes));
             }
@@ -20,11 +20,14 @@ import nxt.Constants;
 import nxt.Nxt;
 import nxt.NxtException;
 import nxt.account.Account;
+import nxt.account.BalanceHome;
 import nxt.db.DbClause;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.EntityDbTable;
+import nxt.db.TransactionalDb;
 import nxt.dbschema.Db;
+import nxt.peer.BlockBytesCache;
 import nxt.peer.NetworkHandler;
 import nxt.peer.NetworkMessage;
 import nxt.peer.TransactionsInventory;
@@ -59,6 +62,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
     private static final boolean enableTransactionRebroadcasting = Nxt.getBooleanProperty("nxt.enableTransactionRebroadcasting");
     private static final boolean testUnconfirmedTransactions = Nxt.getBooleanProperty("nxt.testUnconfirmedTransactions");
+    private static final boolean enableIncrementalRequeue = Nxt.getBooleanProperty("nxt.enableIncrementalRequeue");
     private static final int maxUnconfirmedTransactions;
     static {
         int n = Nxt.getIntProperty("nxt.maxUnconfirmedTransactions");
@@ -103,6 +107,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
             if (transactionCache.size() < maxUnconfirmedTransactions) {
                 transactionCache.put(unconfirmedTransaction.getDbKey(), unconfirmedTransaction);
             }
+            indexTransaction(unconfirmedTransaction);
         }
 
         @Override
@@ -115,6 +120,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                         UnconfirmedTransaction unconfirmedTransaction = load(con, rs, null);
                         waitingTransactions.add(unconfirmedTransaction);
                         transactionCache.remove(unconfirmedTransaction.getDbKey());
+                        unindexTransaction(unconfirmedTransaction.getSenderId(), unconfirmedTransaction.getId());
                     }
                 }
             } catch (SQLException e) {
@@ -128,6 +134,11 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
         public void truncate() {
             super.truncate();
             clearCache();
+            if (enableIncrementalRequeue) {
+                senderIndex.clear();
+                senderIndexValid = true;
+                Db.db.registerCallback(senderIndexCallback);
+            }
         }
 
         @Override
@@ -188,6 +199,44 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
     private final Map<TransactionType, Map<String, Integer>> unconfirmedDuplicates = new HashMap<>();
 
+    /**
+     * Unconfirmed transactions indexed by sender
+     *
+     * The unconfirmed balance changes made by an unconfirmed transaction apply to the sender
+     * account, so the index identifies the unconfirmed transactions which must be requeued
+     * before the transactions in a new block are applied.  The index may contain transactions
+     * which are no longer in the unconfirmed pool but it must not miss any transaction in the
+     * pool.  The index is not valid after a database rollback until the next full requeue.
+     */
+    private final Map<Long, Map<Long, UnconfirmedTransaction>> senderIndex = new HashMap<>();
+    private boolean senderIndexValid;
+
+    private final TransactionalDb.TransactionCallback senderIndexCallback = new TransactionalDb.TransactionCallback() {
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public void rollback() {
+            senderIndexValid = false;
+        }
+
+    };
+
+    /**
+     * Accounts whose balances are changed by the block being accepted
+     *
+     * The block transactions can change the balances of accounts which are neither the sender nor
+     * the recipient of a block transaction, for example the asset holders receiving a dividend.  These
+     * accounts are collected by the balance listeners while the block is accepted and their unconfirmed
+     * transactions are requeued so their unconfirmed balances are checked again.
+     */
+    private final Set<Long> affectedAccounts = new HashSet<>();
+    private final Map<TransactionType, Map<String, Integer>> blockDuplicates = new HashMap<>();
+    private boolean trackAffectedAccounts;
+    private boolean affectedAccountListenersAdded;
+
 
     private final Runnable removeUnconfirmedTransactionsThread = () -> {
 
@@ -468,6 +517,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                         removed.add(unconfirmedTransaction.getTransaction());
                     }
                 }
+                saveRemovedTransactions(0);
                 unconfirmedTransactionTable.truncate();
                 Db.db.commitTransaction();
             } catch (Exception e) {
@@ -517,6 +567,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                     waitingTransactions.add(unconfirmedTransaction);
                 }
             }
+            saveRemovedTransactions(0);
             unconfirmedTransactionTable.truncate();
             unconfirmedDuplicates.clear();
             transactionCache.clear();
@@ -584,6 +635,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
             }
             return;
         }
+        saveRemovedTransactions(transaction.getId());
         try (Connection con = unconfirmedTransactionTable.getConnection();
              PreparedStatement pstmt = con.prepareStatement("DELETE FROM unconfirmed_transaction WHERE id = ?")) {
             pstmt.setLong(1, transaction.getId());
@@ -592,6 +644,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                 transaction.undoUnconfirmed();
                 DbKey dbKey = unconfirmedTransactionDbKeyFactory.newKey(transaction.getId());
                 transactionCache.remove(dbKey);
+                unindexTransaction(transaction.getSenderId(), transaction.getId());
                 transactionListeners.notify(Collections.singletonList(transaction), Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
                 if (transaction.getChain() != FxtChain.FXT) {
                     try (DbIterator<UnconfirmedTransaction> iterator = getUnconfirmedFxtTransactions()) {
@@ -615,6 +668,284 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
         }
     }
 
+    /**
+     * Requeue the unconfirmed transactions affected by a new block
+     *
+     * The unconfirmed transactions sent by the senders and recipients of the transactions in the
+     * block are requeued along with all unconfirmed child block transactions.  This removes the
+     * unconfirmed balance changes which would conflict with the block transactions.  The remaining
+     * unconfirmed transactions stay in the pool and are revalidated once the block has been
+     * accepted.  All unconfirmed transactions are requeued if incremental requeue is not enabled
+     * or the sender index is not valid.
+     *
+     * @param   block                   New block
+     */
+    void requeueUnconfirmedTransactions(BlockImpl block) {
+        BlockchainImpl.getInstance().writeLock();
+        try {
+            if (!enableIncrementalRequeue) {
+                requeueAllUnconfirmedTransactions();
+                return;
+            }
+            startAffectedAccounts();
+            Set<Long> accountIds = new HashSet<>();
+            block.getFxtTransactions().forEach(fxtTransaction -> {
+                accountIds.add(fxtTransaction.getSenderId());
+                accountIds.add(fxtTransaction.getRecipientId());
+                fxtTransaction.isUnconfirmedDuplicate(blockDuplicates);
+                fxtTransaction.getSortedChildTransactions().forEach(childTransaction -> {
+                    accountIds.add(childTransaction.getSenderId());
+                    accountIds.add(childTransaction.getRecipientId());
+                    childTransaction.isUnconfirmedDuplicate(blockDuplicates);
+                });
+            });
+            affectedAccounts.addAll(accountIds);
+            if (!senderIndexValid) {
+                requeueAllUnconfirmedTransactions();
+                return;
+            }
+            Set<UnconfirmedTransaction> affectedTransactions = new HashSet<>();
+            accountIds.forEach(accountId -> {
+                Map<Long, UnconfirmedTransaction> senderTransactions = senderIndex.get(accountId);
+                if (senderTransactions != null) {
+                    affectedTransactions.addAll(senderTransactions.values());
+                }
+            });
+            try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions = getUnconfirmedFxtTransactions()) {
+                for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                    if (unconfirmedTransaction.getType() == ChildBlockFxtTransactionType.INSTANCE) {
+                        affectedTransactions.add(unconfirmedTransaction);
+                    }
+                }
+            }
+            requeueUnconfirmedTransactions(affectedTransactions);
+            try (Connection con = unconfirmedTransactionTable.getConnection();
+                 PreparedStatement pstmt = con.prepareStatement("DELETE FROM removed_unconfirmed_transaction WHERE height <= ?")) {
+                pstmt.setInt(1, BlockchainProcessorImpl.getInstance().getMinRollbackHeight());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        } finally {
+            BlockchainImpl.getInstance().writeUnlock();
+        }
+    }
+
+    /**
+     * Revalidate the unconfirmed transactions which were not requeued for a new block
+     *
+     * Only the unconfirmed transactions affected by the block are checked.  The transactions
+     * sent by an account whose balances were changed by the block are requeued, so their
+     * unconfirmed balance changes are applied again with the new balances.  The transactions
+     * sent to such an account or conflicting with the attachments of the block transactions are
+     * validated and requeued if they are no longer valid.  The unconfirmed duplicates are rebuilt
+     * for the whole pool and the transactions which are now duplicates are requeued.  Validity
+     * changes caused by the block height alone are detected when a block is generated and when
+     * the transactions expire.
+     */
+    void revalidateUnconfirmedTransactions() {
+        if (!enableIncrementalRequeue) {
+            return;
+        }
+        BlockchainImpl.getInstance().writeLock();
+        try {
+            if (!trackAffectedAccounts) {
+                return;
+            }
+            trackAffectedAccounts = false;
+            try {
+                Db.db.beginTransaction();
+                unconfirmedDuplicates.clear();
+                List<UnconfirmedTransaction> invalidTransactions = new ArrayList<>();
+                senderIndex.values().forEach(senderTransactions -> senderTransactions.values().forEach(unconfirmedTransaction -> {
+                    TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+                    if (affectedAccounts.contains(unconfirmedTransaction.getSenderId())) {
+                        invalidTransactions.add(unconfirmedTransaction);
+                        return;
+                    }
+                    try {
+                        if (affectedAccounts.contains(unconfirmedTransaction.getRecipientId())
+                                || transaction.isUnconfirmedDuplicate(blockDuplicates)) {
+                            transaction.validate();
+                        }
+                        if (transaction.isUnconfirmedDuplicate(unconfirmedDuplicates)) {
+                            invalidTransactions.add(unconfirmedTransaction);
+                        }
+                    } catch (NxtException.ValidationException | RuntimeException e) {
+                        invalidTransactions.add(unconfirmedTransaction);
+                    }
+                }));
+                requeueUnconfirmedTransactions(invalidTransactions);
+                Db.db.commitTransaction();
+            } catch (Exception e) {
+                Logger.logErrorMessage("Unable to revalidate unconfirmed transactions", e);
+                Db.db.rollbackTransaction();
+            } finally {
+                Db.db.endTransaction();
+                affectedAccounts.clear();
+                blockDuplicates.clear();
+            }
+        } finally {
+            BlockchainImpl.getInstance().writeUnlock();
+        }
+    }
+
+    /**
+     * Undo the unconfirmed balance changes restored by a blockchain rollback
+     *
+     * The unconfirmed balance changes made when a transaction was added to the pool are
+     * recorded at the blockchain height at that time.  When the transaction is removed from the
+     * pool at a later height, a rollback to a height between the two heights restores these changes
+     * while the transaction is no longer in the pool.  The transactions saved when they were
+     * removed are used to undo the changes again and the transactions are added to the waiting
+     * transactions.  This can happen only when incremental requeue is enabled, since otherwise
+     * all unconfirmed transactions are requeued for each block.
+     *
+     * @param   height                  Rollback height
+     */
+    void rollbackRemovedTransactions(int height) {
+        if (!enableIncrementalRequeue) {
+            return;
+        }
+        BlockchainImpl.getInstance().writeLock();
+        try (Connection con = unconfirmedTransactionTable.getConnection();
+             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM removed_unconfirmed_transaction WHERE add_height > ?");
+             PreparedStatement pstmtSelect = con.prepareStatement("SELECT * FROM removed_unconfirmed_transaction WHERE height > ?");
+             PreparedStatement pstmtUpdate = con.prepareStatement("UPDATE removed_unconfirmed_transaction SET height = ? WHERE height > ?")) {
+            pstmtDelete.setInt(1, height);
+            pstmtDelete.executeUpdate();
+            pstmtSelect.setInt(1, height);
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    UnconfirmedTransaction unconfirmedTransaction = UnconfirmedTransaction.load(rs);
+                    unconfirmedTransaction.getTransaction().undoUnconfirmed();
+                    waitingTransactions.add(unconfirmedTransaction);
+                }
+            }
+            pstmtUpdate.setInt(1, height);
+            pstmtUpdate.setInt(2, height);
+            pstmtUpdate.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            BlockchainImpl.getInstance().writeUnlock();
+        }
+    }
+
+    /**
+     * Prepare the unconfirmed pool for a blockchain scan
+     *
+     * All unconfirmed transactions are requeued since the scan applies the blocks without
+     * requeueing the unconfirmed transactions.  The blockchain has been rolled back to the
+     * block preceding the scan height.
+     *
+     * @param   height                  Scan height
+     */
+    void scanUnconfirmedTransactions(int height) {
+        if (!enableIncrementalRequeue) {
+            return;
+        }
+        rollbackRemovedTransactions(height - 1);
+        requeueAllUnconfirmedTransactions();
+        trackAffectedAccounts = false;
+    }
+
+    private void requeueUnconfirmedTransactions(Collection<UnconfirmedTransaction> unconfirmedTransactions) {
+        if (unconfirmedTransactions.isEmpty()) {
+            return;
+        }
+        List<Transaction> removed = new ArrayList<>();
+        try (Connection con = unconfirmedTransactionTable.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("DELETE FROM unconfirmed_transaction WHERE id = ?")) {
+            for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                saveRemovedTransactions(unconfirmedTransaction.getId());
+                pstmt.setLong(1, unconfirmedTransaction.getId());
+                if (pstmt.executeUpdate() > 0) {
+                    unconfirmedTransaction.getTransaction().undoUnconfirmed();
+                    transactionCache.remove(unconfirmedTransaction.getDbKey());
+                    waitingTransactions.add(unconfirmedTransaction);
+                    removed.add(unconfirmedTransaction.getTransaction());
+                }
+                unindexTransaction(unconfirmedTransaction.getSenderId(), unconfirmedTransaction.getId());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        if (!removed.isEmpty()) {
+            transactionListeners.notify(removed, Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
+        }
+    }
+
+    /**
+     * Save unconfirmed transactions which are removed from the pool at a later height than they were added
+     *
+     * @param   transactionId           Transaction identifier or 0 for all unconfirmed transactions
+     */
+    private void saveRemovedTransactions(long transactionId) {
+        if (!enableIncrementalRequeue) {
+            return;
+        }
+        try (Connection con = unconfirmedTransactionTable.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("INSERT INTO removed_unconfirmed_transaction (id, expiration, "
+                     + "transaction_height, fee, fee_per_byte, arrival_timestamp, is_bundled, transaction_bytes, chain_id, "
+                     + "add_height, height) SELECT id, expiration, transaction_height, fee, fee_per_byte, arrival_timestamp, "
+                     + "is_bundled, transaction_bytes, chain_id, height, ? FROM unconfirmed_transaction WHERE height < ?"
+                     + (transactionId != 0 ? " AND id = ?" : ""))) {
+            int height = Nxt.getBlockchain().getHeight();
+            pstmt.setInt(1, height);
+            pstmt.setInt(2, height);
+            if (transactionId != 0) {
+                pstmt.setLong(3, transactionId);
+            }
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Start collecting the accounts affected by a new block
+     *
+     * The listeners are added when the first block is pushed since the account
+     * classes are initialized after the transaction processor.
+     */
+    private void startAffectedAccounts() {
+        if (!affectedAccountListenersAdded) {
+            BalanceHome.addListener(balance -> addAffectedAccount(balance.getAccountId()), BalanceHome.Event.BALANCE);
+            Account.addAssetListener(accountAsset -> addAffectedAccount(accountAsset.getAccountId()), Account.Event.ASSET_BALANCE);
+            Account.addCurrencyListener(accountCurrency -> addAffectedAccount(accountCurrency.getAccountId()), Account.Event.CURRENCY_BALANCE);
+            affectedAccountListenersAdded = true;
+        }
+        affectedAccounts.clear();
+        blockDuplicates.clear();
+        trackAffectedAccounts = true;
+    }
+
+    private void addAffectedAccount(long accountId) {
+        if (trackAffectedAccounts) {
+            affectedAccounts.add(accountId);
+        }
+    }
+
+    private void indexTransaction(UnconfirmedTransaction unconfirmedTransaction) {
+        if (enableIncrementalRequeue) {
+            senderIndex.computeIfAbsent(unconfirmedTransaction.getSenderId(), k -> new HashMap<>())
+                    .put(unconfirmedTransaction.getId(), unconfirmedTransaction);
+        }
+    }
+
+    private void unindexTransaction(long senderId, long transactionId) {
+        if (enableIncrementalRequeue) {
+            Map<Long, UnconfirmedTransaction> senderTransactions = senderIndex.get(senderId);
+            if (senderTransactions != null && senderTransactions.remove(transactionId) != null) {
+                if (senderTransactions.isEmpty()) {
+                    senderIndex.remove(senderId);
+                }
+                Db.db.registerCallback(senderIndexCallback);
+            }
+        }
+    }
+
     @Override
     public void processLater(Collection<? extends FxtTransaction> transactions) {
         long currentTime = System.currentTimeMillis();
@@ -956,6 +1287,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                         }
                         Db.db.clearCache();
                         Db.db.commitTransaction();
+                        BlockBytesCache.remove(myTransaction.getBlockId());
                     }
                 }
                 Db.db.commitTransaction();
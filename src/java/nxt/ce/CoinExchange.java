@@ -27,6 +27,7 @@ import nxt.db.DbClause;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.EntityDbTable;
+import nxt.db.OrderBook;
 import nxt.db.VersionedEntityDbTable;
 import nxt.util.Convert;
 import nxt.util.Listener;
@@ -39,6 +40,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -52,6 +54,8 @@ public final class CoinExchange {
 
     private static final BigDecimal ONE_HALF = BigDecimal.valueOf(5L, 1);
 
+    private static final boolean enableOrderBookCache = Nxt.getBooleanProperty("nxt.enableOrderBookCache");
+
     private static final Listeners<Trade, Event> listeners = new Listeners<>();
 
     public static boolean addListener(Listener<Trade> listener, Event eventType) {
@@ -84,7 +88,44 @@ public final class CoinExchange {
         protected String defaultSort() {
             return " ORDER BY creation_height DESC ";
         }
+        @Override
+        public void popOffTo(int height) {
+            super.popOffTo(height);
+            bidOrderBook.clear();
+            askOrderBook.clear();
+        }
+        @Override
+        public void truncate() {
+            super.truncate();
+            bidOrderBook.clear();
+            askOrderBook.clear();
+        }
     };
+
+    /**
+     * Bid order priority: highest bid price first, then oldest order first
+     */
+    private static final OrderBook<Order> bidOrderBook = new OrderBook<>(
+            Comparator.comparingLong((Order order) -> -order.getBidPriceNQT())
+                    .thenComparingInt(Order::getHeight)
+                    .thenComparingInt(Order::getTransactionHeight)
+                    .thenComparingInt(Order::getTransactionIndex)
+                    .thenComparingLong(Order::getId),
+            order -> getBookKey(order.getChainId(), order.getExchangeId()),
+            CoinExchange::loadOrders);
+
+    /**
+     * Ask order priority: lowest ask price first, then oldest order first
+     */
+    private static final OrderBook<Order> askOrderBook = new OrderBook<>(
+            Comparator.comparingLong((Order order) -> order.askPriceUnscaled)
+                    .thenComparingInt(Order::getHeight)
+                    .thenComparingInt(Order::getTransactionHeight)
+                    .thenComparingInt(Order::getTransactionIndex)
+                    .thenComparingLong(Order::getId),
+            order -> getBookKey(order.getChainId(), order.getExchangeId()),
+            CoinExchange::loadOrders);
+
     private static final DbKey.HashHashKeyFactory<Trade> tradeDbKeyFactory =
             new DbKey.HashHashKeyFactory<Trade>("order_full_hash", "order_id", "match_full_hash", "match_id") {
         @Override
@@ -108,7 +149,25 @@ public final class CoinExchange {
 
     public static void init() {}
 
+    private static long getBookKey(int chainId, int exchangeId) {
+        return ((long)chainId << 32) | (exchangeId & 0xFFFFFFFFL);
+    }
+
+    private static List<Order> loadOrders(long bookKey) {
+        DbClause dbClause = new DbClause.IntClause("chain_id", (int)(bookKey >>> 32))
+                .and(new DbClause.IntClause("exchange_id", (int)bookKey));
+        List<Order> orders = new ArrayList<>();
+        try (DbIterator<Order> iterator = orderTable.getManyBy(dbClause, 0, -1)) {
+            iterator.forEach(orders::add);
+        }
+        return orders;
+    }
+
     private static Order getNextBidOrder(int chainId, int exchangeId) {
+        if (enableOrderBookCache) {
+            Order order = bidOrderBook.getFirst(getBookKey(chainId, exchangeId));
+            return order != null ? orderTable.getCached(order) : null;
+        }
         try (Connection con = orderTable.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + orderTable.getSchemaTable()
                      + " WHERE chain_id = ? AND exchange_id = ? AND latest = TRUE"
@@ -125,6 +184,10 @@ public final class CoinExchange {
     }
 
     private static Order getNextAskOrder(int chainId, int exchangeId) {
+        if (enableOrderBookCache) {
+            Order order = askOrderBook.getFirst(getBookKey(chainId, exchangeId));
+            return order != null ? orderTable.getCached(order) : null;
+        }
         try (Connection con = orderTable.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + orderTable.getSchemaTable()
                      + " WHERE chain_id = ? AND exchange_id = ? AND latest = TRUE"
@@ -149,6 +212,10 @@ public final class CoinExchange {
     static void addOrder(Transaction tx, OrderIssueAttachment attachment) {
         Order order = new Order(tx, attachment);
         orderTable.insert(order);
+        if (enableOrderBookCache) {
+            bidOrderBook.put(order);
+            askOrderBook.put(order);
+        }
         matchOrders(attachment);
     }
 
@@ -158,7 +225,12 @@ public final class CoinExchange {
      * @param   orderId             Order identifier
      */
     static void removeOrder(long orderId) {
-        orderTable.delete(getOrder(orderId));
+        Order order = getOrder(orderId);
+        orderTable.delete(order);
+        if (enableOrderBookCache && order != null) {
+            bidOrderBook.remove(order);
+            askOrderBook.remove(order);
+        }
     }
 
     /**
@@ -329,6 +401,10 @@ public final class CoinExchange {
             //
             BigDecimal bidPrice;            // Coin A / Coin B (price of Coin A)
             BigDecimal askPrice;            // Coin B / Coin A (price of Coin B)
+            long bidPriceUnscaled;          // Bid price without the decimal point
+            int bidPriceDecimals;           // Number of bid price decimal places
+            long askPriceUnscaled;          // Ask price without the decimal point
+            int askPriceDecimals;           // Number of ask price decimal places
             long bidQuantityQNT;            // Amount of Coin B to exchange
             long askQuantityQNT;            // Amount of Coin A to exchange
             boolean isBuy = (askOrder.getHeight() < bidOrder.getHeight()) ||
@@ -338,29 +414,27 @@ public final class CoinExchange {
                                 askOrder.getTransactionIndex() < bidOrder.getTransactionIndex())));
             if (isBuy) {
                 bidPrice = askOrder.getAskPrice();
+                bidPriceUnscaled = askOrder.askPriceUnscaled;
+                bidPriceDecimals = 8;
                 askPrice = askOrder.getBidPrice();
+                askPriceUnscaled = askOrder.getBidPriceNQT();
+                askPriceDecimals = askDecimals;
             } else {
                 bidPrice = bidOrder.getBidPrice();
+                bidPriceUnscaled = bidOrder.getBidPriceNQT();
+                bidPriceDecimals = bidDecimals;
                 askPrice = bidOrder.getAskPrice();
+                askPriceUnscaled = bidOrder.askPriceUnscaled;
+                askPriceDecimals = 8;
             }
             //
             // Calculate the quantities based on the exchange rates
             //
-            BigDecimal[] amounts = BigDecimal.valueOf(askOrder.getQuantityQNT(), bidDecimals)
-                                        .multiply(askPrice).movePointRight(askDecimals)
-                                        .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
-            long askAmountNQT = amounts[0].longValue();
-            if (amounts[1].compareTo(ONE_HALF) >= 0) {
-                askAmountNQT++;
-            }
+            long askAmountNQT = getExchangeAmount(askOrder.getQuantityQNT(), bidDecimals,
+                                        askPrice, askPriceUnscaled, askPriceDecimals, askDecimals);
             bidQuantityQNT = Math.min(askOrder.getAmountNQT(), Math.min(bidOrder.getQuantityQNT(), askAmountNQT));
-            amounts = BigDecimal.valueOf(bidOrder.getQuantityQNT(), askDecimals)
-                                        .multiply(bidPrice).movePointRight(bidDecimals)
-                                        .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
-            long bidAmountNQT = amounts[0].longValue();
-            if (amounts[1].compareTo(ONE_HALF) >= 0) {
-                bidAmountNQT++;
-            }
+            long bidAmountNQT = getExchangeAmount(bidOrder.getQuantityQNT(), askDecimals,
+                                        bidPrice, bidPriceUnscaled, bidPriceDecimals, bidDecimals);
             askQuantityQNT = Math.min(bidOrder.getAmountNQT(), Math.min(askOrder.getQuantityQNT(), bidAmountNQT));
             //
             // Create the trade for the bid order
@@ -405,6 +479,38 @@ public final class CoinExchange {
         }
     }
 
+    /**
+     * Calculate the number of coins received for an exchange
+     *
+     * The result is 'quantity * price' rounded half up to 'amountDecimals' decimal places.
+     * The calculation is done using 128-bit integer arithmetic and falls back to BigDecimal
+     * if the result cannot be represented.  Both methods produce the same result.
+     *
+     * @param   quantityQNT         Number of coins being exchanged
+     * @param   quantityDecimals    Number of decimal places for the coins being exchanged
+     * @param   price               Exchange price
+     * @param   priceUnscaled       Exchange price without the decimal point
+     * @param   priceDecimals       Number of decimal places for the exchange price
+     * @param   amountDecimals      Number of decimal places for the coins received
+     * @return                      Number of coins received
+     */
+    private static long getExchangeAmount(long quantityQNT, int quantityDecimals, BigDecimal price,
+                                          long priceUnscaled, int priceDecimals, int amountDecimals) {
+        long amountNQT = Convert.multiplyAndScale(quantityQNT, priceUnscaled,
+                                        quantityDecimals + priceDecimals - amountDecimals);
+        if (amountNQT >= 0) {
+            return amountNQT;
+        }
+        BigDecimal[] amounts = BigDecimal.valueOf(quantityQNT, quantityDecimals)
+                                    .multiply(price).movePointRight(amountDecimals)
+                                    .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
+        amountNQT = amounts[0].longValue();
+        if (amounts[1].compareTo(ONE_HALF) >= 0) {
+            amountNQT++;
+        }
+        return amountNQT;
+    }
+
     /**
      * Define a coin exchange order
      *
@@ -428,6 +534,8 @@ public final class CoinExchange {
         private long quantityQNT;
         private final long bidPriceNQT;
         private final BigDecimal askPrice;
+        private final long askPriceUnscaled;
+        private final long askPriceNQT;
         private long amountNQT;
 
         private Order(Transaction transaction, OrderIssueAttachment attachment) {
@@ -446,6 +554,8 @@ public final class CoinExchange {
             this.askPrice = BigDecimal.ONE.divide(
                     BigDecimal.valueOf(bidPriceNQT, chain.getDecimals()), MathContext.DECIMAL128)
                     .movePointRight(8).divideToIntegralValue(BigDecimal.ONE, MathContext.DECIMAL128).movePointLeft(8);
+            this.askPriceUnscaled = askPrice.movePointRight(8).longValue();
+            this.askPriceNQT = calculateAskPriceNQT();
             this.amountNQT = Convert.unitRateToAmount(quantityQNT, exchangeChain.getDecimals(),
                                         attachment.getPriceNQT(), chain.getDecimals()) + 1;
             this.dbKey = orderDbKeyFactory.newKey(this.id);
@@ -463,7 +573,9 @@ public final class CoinExchange {
             this.exchangeId = rs.getInt("exchange_id");
             this.quantityQNT = rs.getLong("quantity");
             this.bidPriceNQT = rs.getLong("bid_price");
-            this.askPrice = BigDecimal.valueOf(rs.getLong("ask_price"), 8);
+            this.askPriceUnscaled = rs.getLong("ask_price");
+            this.askPrice = BigDecimal.valueOf(askPriceUnscaled, 8);
+            this.askPriceNQT = calculateAskPriceNQT();
             this.amountNQT = rs.getLong("amount");
         }
 
@@ -480,7 +592,7 @@ public final class CoinExchange {
                 pstmt.setInt(++i, exchangeId);
                 pstmt.setLong(++i, quantityQNT);
                 pstmt.setLong(++i, bidPriceNQT);
-                pstmt.setLong(++i, askPrice.movePointRight(8).longValue());
+                pstmt.setLong(++i, askPriceUnscaled);
                 pstmt.setLong(++i, amountNQT);
                 pstmt.setBytes(++i, fullHash);
                 pstmt.setInt(++i, creationHeight);
@@ -491,13 +603,27 @@ public final class CoinExchange {
             }
         }
 
+        private long calculateAskPriceNQT() {
+            BigDecimal[] amounts = askPrice.movePointRight(Chain.getChain(exchangeId).getDecimals())
+                                        .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
+            return amounts[0].longValue() + (amounts[1].signum() != 0 ? 1 : 0);
+        }
+
         private void updateQuantity(long quantityQNT, long amountNQT) {
             this.quantityQNT = (amountNQT != 0 ? quantityQNT : 0);
             this.amountNQT = amountNQT;
             if (this.quantityQNT > 0) {
                 orderTable.insert(this);
+                if (enableOrderBookCache) {
+                    bidOrderBook.put(this);
+                    askOrderBook.put(this);
+                }
             } else if (this.quantityQNT == 0) {
                 orderTable.delete(this);
+                if (enableOrderBookCache) {
+                    bidOrderBook.remove(this);
+                    askOrderBook.remove(this);
+                }
             } else {
                 throw new IllegalArgumentException("Negative quantity: " + this.quantityQNT
                         + " for order: " + Long.toUnsignedString(getId()));
@@ -533,9 +659,7 @@ public final class CoinExchange {
         }
 
         public final long getAskPriceNQT() {
-            BigDecimal[] amounts = askPrice.movePointRight(Chain.getChain(exchangeId).getDecimals())
-                                        .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
-            return amounts[0].longValue() + (amounts[1].signum() != 0 ? 1 : 0);
+            return askPriceNQT;
         }
 
         public final BigDecimal getAskPrice() {
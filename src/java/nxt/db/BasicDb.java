@@ -42,6 +42,7 @@ public class BasicDb {
         private int loginTimeout;
         private int defaultLockTimeout;
         private int maxMemoryRows;
+        private int statementCacheSize;
 
         public DbProperties maxCacheSize(int maxCacheSize) {
             this.maxCacheSize = maxCacheSize;
@@ -98,6 +99,11 @@ public class BasicDb {
             return this;
         }
 
+        public DbProperties statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
     }
 
     private ConnectionPool cp;
@@ -108,6 +114,7 @@ public class BasicDb {
     private final int loginTimeout;
     private final int defaultLockTimeout;
     private final int maxMemoryRows;
+    protected final int statementCacheSize;
     private volatile boolean initialized = false;
 
     public BasicDb(DbProperties dbProperties) {
@@ -127,6 +134,9 @@ public class BasicDb {
         if (!dbUrl.contains("CACHE_SIZE=")) {
             dbUrl += ";CACHE_SIZE=" + maxCacheSize;
         }
+        if (dbProperties.statementCacheSize > 0 && !dbUrl.contains("QUERY_CACHE_SIZE=")) {
+            dbUrl += ";QUERY_CACHE_SIZE=" + dbProperties.statementCacheSize;
+        }
         this.dbUrl = dbUrl;
         this.dbUsername = dbProperties.dbUsername;
         this.dbPassword = dbProperties.dbPassword;
@@ -134,6 +144,7 @@ public class BasicDb {
         this.loginTimeout = dbProperties.loginTimeout;
         this.defaultLockTimeout = dbProperties.defaultLockTimeout;
         this.maxMemoryRows = dbProperties.maxMemoryRows;
+        this.statementCacheSize = dbProperties.statementCacheSize;
     }
 
     public final void init(List<DbVersion> dbVersions) {
@@ -161,6 +172,11 @@ public class BasicDb {
         }
         dbVersions.forEach(DbVersion::createSchema);
         dbVersions.forEach(DbVersion::init);
+        try (Connection con = getConnection("PUBLIC")) {
+            FullTextTrigger.recoverIndex(con);
+        } catch (SQLException e) {
+            Logger.logErrorMessage("Unable to rebuild the Lucene search index", e);
+        }
         initialized = true;
     }
 
@@ -0,0 +1,853 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import nxt.Nxt;
+import nxt.dbschema.Db;
+import nxt.util.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Segment file store for prunable payloads
+ *
+ * Prunable message and tagged data payloads are appended to segment files instead of being
+ * stored in the database when nxt.enablePrunableBlobStore is set.  The database row keeps the
+ * payload metadata and the BLOB_STORED flag, and the payload is located using the transaction
+ * full hash and the payload kind.  Payloads which have already been stored are never written
+ * again since the transaction full hash commits to the payload.
+ *
+ * Each record consists of a header (magic, payload kind, full hash, transaction timestamp,
+ * payload length and checksum) followed by the payload.  The checksum is a CRC32 of the header
+ * fields following the magic and the payload.  The segment files are scanned when the store is
+ * opened to build the in-memory index.  A damaged record is skipped and scanning resumes at the
+ * next valid record, while damaged data at the end of a segment is discarded.  The checksum is
+ * verified again when a payload is read, and a damaged payload is removed from the index so it
+ * is reported as pruned and can be restored.  A new segment is started when the current segment
+ * would exceed nxt.prunableBlobStoreSegmentSize megabytes.
+ *
+ * Payloads stored during a database transaction are written to disk before the transaction is
+ * committed, so a committed row never refers to a payload which was lost in a crash.
+ *
+ * Expired payloads are removed from the index once for each trim of the derived tables.  A
+ * segment is then compacted by copying its remaining payloads to the current segment once less
+ * than half of the segment is in use.  The store lock is held for a single payload at a time
+ * while a segment is compacted, so payloads can still be stored and read.  Expired payloads in
+ * segments which have not been compacted are indexed again when the store is reopened and are
+ * removed by the next prune.  Large payloads are returned as memory-mapped buffers so they
+ * can be written to an API response without copying them to the heap.
+ */
+public final class BlobStore implements TransactionalDb.TransactionCallback {
+
+    /** Tagged data payload */
+    public static final byte TAGGED_DATA = 0;
+
+    /** Prunable plain message payload */
+    public static final byte PLAIN_MESSAGE = 1;
+
+    /** Prunable encrypted message payload */
+    public static final byte ENCRYPTED_MESSAGE = 2;
+
+    /**
+     * Check if payloads are written to the store
+     *
+     * Payloads stored while the store was enabled are still read from the store when it is
+     * no longer enabled.
+     *
+     * @return                          TRUE if the store is enabled
+     */
+    public static boolean isEnabled() {
+        return StoreHolder.enabled;
+    }
+
+    /**
+     * Get the prunable payload store
+     *
+     * @return                          Payload store
+     */
+    public static BlobStore getStore() {
+        return StoreHolder.store;
+    }
+
+    private static final class StoreHolder {
+        private static final boolean enabled = Nxt.getBooleanProperty("nxt.enablePrunableBlobStore");
+        private static final BlobStore store = new BlobStore(
+                Paths.get(Nxt.getDbDir(Nxt.getStringProperty(Db.PREFIX + "Dir")) + "_blobs"),
+                Math.max(Nxt.getIntProperty("nxt.prunableBlobStoreSegmentSize"), 1) * 1024L * 1024L);
+    }
+
+    /** Record magic ("BLOB") */
+    private static final int RECORD_MAGIC = 0x424c4f42;
+
+    /** Record header length (magic, kind, full hash, timestamp, length, checksum) */
+    private static final int HEADER_LENGTH = 4 + 1 + 32 + 4 + 4 + 4;
+
+    /** Length of the header fields included in the checksum (kind, full hash, timestamp, length) */
+    private static final int CHECKED_HEADER_LENGTH = 1 + 32 + 4 + 4;
+
+    /** Buffer size used when checking and searching segment data */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** Payloads of this size or larger are returned as memory-mapped buffers */
+    private static final int MAP_THRESHOLD = 16 * 1024;
+
+    /** Segment file name */
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment-(\\d{8})\\.dat");
+
+    /** Store directory */
+    private final Path storePath;
+
+    /** Maximum segment size */
+    private final long maxSegmentSize;
+
+    /** Store lock */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Payload locations */
+    private final Map<Key, Location> index = new HashMap<>();
+
+    /** Segments ordered by segment number */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    /** Compacted segments which could not be deleted yet */
+    private final List<Segment> deletedSegments = new ArrayList<>();
+
+    /** Segments written since they were last forced to disk */
+    private final Set<Segment> unsyncedSegments = new HashSet<>();
+
+    /** Store has been opened */
+    private volatile boolean isOpen;
+
+    /**
+     * Create a payload store
+     *
+     * @param   storePath               Store directory
+     * @param   maxSegmentSize          Maximum segment size
+     */
+    BlobStore(Path storePath, long maxSegmentSize) {
+        this.storePath = storePath;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Store a payload
+     *
+     * The payload is written to disk before the current database transaction is committed,
+     * or before this method returns if there is no database transaction.
+     *
+     * @param   kind                    Payload kind
+     * @param   fullHash                Transaction full hash
+     * @param   timestamp               Transaction timestamp
+     * @param   data                    Payload
+     */
+    public void put(byte kind, byte[] fullHash, int timestamp, byte[] data) {
+        Key key = new Key(kind, fullHash.clone());
+        boolean inTransaction = Db.db.isInTransaction();
+        lock.writeLock().lock();
+        try {
+            open();
+            if (!index.containsKey(key)) {
+                Segment segment = append(key, timestamp, ByteBuffer.wrap(data));
+                synchronized (unsyncedSegments) {
+                    unsyncedSegments.add(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store prunable payload: " + e.toString(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (inTransaction) {
+            Db.db.registerCallback(this);
+        } else {
+            sync();
+        }
+    }
+
+    /**
+     * Check if a payload is stored
+     *
+     * @param   kind                    Payload kind
+     * @param   fullHash                Transaction full hash
+     * @return                          TRUE if the payload is stored
+     */
+    public boolean contains(byte kind, byte[] fullHash) {
+        Key key = new Key(kind, fullHash);
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a payload
+     *
+     * The returned buffer is read-only and may be memory-mapped
+     *
+     * @param   kind                    Payload kind
+     * @param   fullHash                Transaction full hash
+     * @return                          Payload or null if the payload is not stored
+     */
+    public ByteBuffer get(byte kind, byte[] fullHash) {
+        Key key = new Key(kind, fullHash);
+        ensureOpen();
+        Location location;
+        ByteBuffer data;
+        lock.readLock().lock();
+        try {
+            location = index.get(key);
+            data = read(key, location);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read prunable payload: " + e.toString(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (location != null && data == null) {
+            lock.writeLock().lock();
+            try {
+                if (index.remove(key, location)) {
+                    location.segment.liveBytes -= location.getRecordLength();
+                    Logger.logWarningMessage(String.format("Removed damaged prunable payload at offset %d in segment %s",
+                            location.position - HEADER_LENGTH, location.segment.path));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Get a payload
+     *
+     * @param   kind                    Payload kind
+     * @param   fullHash                Transaction full hash
+     * @return                          Payload or null if the payload is not stored
+     */
+    public byte[] getBytes(byte kind, byte[] fullHash) {
+        ByteBuffer buffer = get(kind, fullHash);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Remove expired payloads and compact segments which are less than half in use
+     *
+     * This is called once for each trim of the derived tables and must not be called while
+     * holding the blockchain lock since compacting a segment copies its payloads.
+     *
+     * @param   expiration              Payloads of transactions before this timestamp are removed
+     */
+    public void prune(int expiration) {
+        List<Segment> compactSegments = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            if (!Files.isDirectory(storePath)) {
+                return;
+            }
+            open();
+            int removed = 0;
+            Iterator<Location> it = index.values().iterator();
+            while (it.hasNext()) {
+                Location location = it.next();
+                if (location.timestamp < expiration) {
+                    location.segment.liveBytes -= location.getRecordLength();
+                    it.remove();
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                Logger.logDebugMessage(String.format("Removed %d expired prunable payloads", removed));
+            }
+            Segment activeSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            for (Segment segment : segments.values()) {
+                if (segment != activeSegment && segment.liveBytes < segment.size / 2) {
+                    compactSegments.add(segment);
+                }
+            }
+            deletedSegments.removeIf(this::deleteSegment);
+        } catch (IOException e) {
+            Logger.logErrorMessage("Unable to prune the prunable payload store", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            for (Segment segment : compactSegments) {
+                compact(segment);
+            }
+        } catch (IOException e) {
+            Logger.logErrorMessage("Unable to compact the prunable payload store", e);
+        }
+    }
+
+    /**
+     * Force the payloads stored by the transaction to disk before it is committed
+     */
+    @Override
+    public void beforeCommit() {
+        sync();
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void rollback() {
+    }
+
+    /**
+     * Close the store
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.force(false);
+                    segment.channel.close();
+                } catch (IOException e) {
+                    Logger.logErrorMessage("Unable to close prunable payload segment " + segment.path, e);
+                }
+            }
+            segments.clear();
+            index.clear();
+            synchronized (unsyncedSegments) {
+                unsyncedSegments.clear();
+            }
+            isOpen = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of stored payloads
+     *
+     * @return                          Number of payloads
+     */
+    public int getCount() {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the total size of the segment files
+     *
+     * @return                          Store size
+     */
+    public long getSize() {
+        ensureOpen();
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(segment -> segment.size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Open the store if it has not been opened yet
+     */
+    private void ensureOpen() {
+        if (isOpen) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            open();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open prunable payload store: " + e.toString(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the store and build the index
+     *
+     * The write lock must be held by the caller
+     *
+     * @throws  IOException             I/O error occurred
+     */
+    private void open() throws IOException {
+        if (isOpen) {
+            return;
+        }
+        if (Files.isDirectory(storePath)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(storePath, "segment-*.dat")) {
+                for (Path path : stream) {
+                    Matcher matcher = SEGMENT_PATTERN.matcher(path.getFileName().toString());
+                    if (matcher.matches()) {
+                        int number = Integer.parseInt(matcher.group(1));
+                        segments.put(number, new Segment(number, path));
+                    }
+                }
+            }
+            for (Segment segment : segments.values()) {
+                scan(segment);
+            }
+            Logger.logDebugMessage(String.format("Opened prunable payload store %s with %d payloads in %d segments",
+                    storePath, index.size(), segments.size()));
+        }
+        isOpen = true;
+    }
+
+    /**
+     * Add the segment records to the index
+     *
+     * A record in a later segment replaces the same record in an earlier segment, which
+     * happens when a compacted segment could not be deleted.  A damaged record is skipped
+     * if a valid record follows it, otherwise the segment is truncated.
+     *
+     * @param   segment                 Segment
+     * @throws  IOException             I/O error occurred
+     */
+    private void scan(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long position = 0;
+        while (position + HEADER_LENGTH <= fileSize) {
+            Record record = readRecord(segment, position, fileSize);
+            if (record == null) {
+                long next = findRecord(segment, position + 1, fileSize);
+                if (next < 0) {
+                    break;
+                }
+                Logger.logWarningMessage(String.format("Skipping %d damaged bytes at offset %d in prunable payload segment %s",
+                        next - position, position, segment.path));
+                position = next;
+                continue;
+            }
+            Location previous = index.put(record.key, record.location);
+            if (previous != null) {
+                previous.segment.liveBytes -= previous.getRecordLength();
+            }
+            segment.liveBytes += record.location.getRecordLength();
+            position += record.location.getRecordLength();
+        }
+        if (position < fileSize) {
+            Logger.logWarningMessage(String.format("Discarding %d bytes at the end of prunable payload segment %s",
+                    fileSize - position, segment.path));
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    /**
+     * Read and check a record
+     *
+     * @param   segment                 Segment
+     * @param   position                Record position
+     * @param   fileSize                Segment file size
+     * @return                          Record or null if there is no valid record at the position
+     * @throws  IOException             I/O error occurred
+     */
+    private static Record readRecord(Segment segment, long position, long fileSize) throws IOException {
+        if (position + HEADER_LENGTH > fileSize) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(segment.channel, header, position);
+        header.flip();
+        if (header.getInt() != RECORD_MAGIC) {
+            return null;
+        }
+        byte kind = header.get();
+        byte[] fullHash = new byte[32];
+        header.get(fullHash);
+        int timestamp = header.getInt();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || position + HEADER_LENGTH + length > fileSize) {
+            return null;
+        }
+        Key key = new Key(kind, fullHash);
+        CRC32 crc = headerChecksum(key, timestamp, length);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, READ_BUFFER_SIZE));
+        long offset = position + HEADER_LENGTH;
+        long end = offset + length;
+        while (offset < end) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), end - offset));
+            readFully(segment.channel, buffer, offset);
+            buffer.flip();
+            offset += buffer.remaining();
+            crc.update(buffer);
+        }
+        if ((int)crc.getValue() != checksum) {
+            return null;
+        }
+        return new Record(key, new Location(segment, position + HEADER_LENGTH, length, timestamp, checksum));
+    }
+
+    /**
+     * Find the next valid record
+     *
+     * @param   segment                 Segment
+     * @param   start                   Search start position
+     * @param   fileSize                Segment file size
+     * @return                          Record position or -1 if there are no more valid records
+     * @throws  IOException             I/O error occurred
+     */
+    private static long findRecord(Segment segment, long start, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = start;
+        while (position + HEADER_LENGTH <= fileSize) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), fileSize - position));
+            readFully(segment.channel, buffer, position);
+            int count = buffer.position();
+            for (int i = 0; i + 4 <= count; i++) {
+                if (buffer.getInt(i) == RECORD_MAGIC && readRecord(segment, position + i, fileSize) != null) {
+                    return position + i;
+                }
+            }
+            // The next buffer overlaps the last three bytes in case a magic spans the two buffers
+            position += count - 3;
+        }
+        return -1;
+    }
+
+    /**
+     * Start the checksum of a record
+     *
+     * @param   key                     Payload key
+     * @param   timestamp               Transaction timestamp
+     * @param   length                  Payload length
+     * @return                          Checksum of the header fields
+     */
+    private static CRC32 headerChecksum(Key key, int timestamp, int length) {
+        ByteBuffer fields = ByteBuffer.allocate(CHECKED_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        fields.put(key.kind).put(key.fullHash).putInt(timestamp).putInt(length);
+        CRC32 crc = new CRC32();
+        crc.update(fields.array());
+        return crc;
+    }
+
+    /**
+     * Append a record to the current segment
+     *
+     * The write lock must be held by the caller
+     *
+     * @param   key                     Payload key
+     * @param   timestamp               Transaction timestamp
+     * @param   data                    Payload
+     * @return                          Segment containing the record
+     * @throws  IOException             I/O error occurred
+     */
+    private Segment append(Key key, int timestamp, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || (segment.size > 0 && segment.size + HEADER_LENGTH + length > maxSegmentSize)) {
+            if (segment != null) {
+                segment.channel.force(false);
+            }
+            Files.createDirectories(storePath);
+            int number = segment == null ? 1 : segment.number + 1;
+            segment = new Segment(number, storePath.resolve(String.format("segment-%08d.dat", number)));
+            segments.put(number, segment);
+        }
+        CRC32 crc = headerChecksum(key, timestamp, length);
+        crc.update(data.duplicate());
+        int checksum = (int)crc.getValue();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(RECORD_MAGIC).put(key.kind).put(key.fullHash).putInt(timestamp).putInt(length).putInt(checksum);
+        header.flip();
+        long position = segment.size;
+        writeFully(segment.channel, header, position);
+        writeFully(segment.channel, data, position + HEADER_LENGTH);
+        Location location = new Location(segment, position + HEADER_LENGTH, length, timestamp, checksum);
+        segment.size += location.getRecordLength();
+        segment.liveBytes += location.getRecordLength();
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.getRecordLength();
+        }
+        return segment;
+    }
+
+    /**
+     * Copy the remaining payloads of a segment to the current segment and delete the segment
+     *
+     * The write lock is acquired for each payload, so it must not be held by the caller
+     *
+     * @param   segment                 Segment
+     * @throws  IOException             I/O error occurred
+     */
+    private void compact(Segment segment) throws IOException {
+        List<Key> keys;
+        lock.writeLock().lock();
+        try {
+            if (segments.get(segment.number) != segment) {
+                return;
+            }
+            keys = index.entrySet().stream()
+                    .filter(entry -> entry.getValue().segment == segment)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int copied = 0;
+        for (Key key : keys) {
+            lock.writeLock().lock();
+            try {
+                if (!isOpen) {
+                    return;
+                }
+                Location location = index.get(key);
+                if (location != null && location.segment == segment) {
+                    ByteBuffer data = read(key, location);
+                    if (data != null) {
+                        append(key, location.timestamp, data);
+                        copied++;
+                    } else {
+                        index.remove(key);
+                        segment.liveBytes -= location.getRecordLength();
+                        Logger.logWarningMessage(String.format("Removed damaged prunable payload at offset %d in segment %s",
+                                location.position - HEADER_LENGTH, segment.path));
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (!isOpen || segments.get(segment.number) != segment) {
+                return;
+            }
+            // The copied payloads must be on disk before the segment is deleted
+            segments.lastEntry().getValue().channel.force(false);
+            segments.remove(segment.number);
+            segment.channel.close();
+            if (!deleteSegment(segment)) {
+                deletedSegments.add(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Logger.logDebugMessage(String.format("Compacted prunable payload segment %s, %d payloads copied", segment.path, copied));
+    }
+
+    /**
+     * Force the segments written since the last sync to disk
+     */
+    private void sync() {
+        List<Segment> syncSegments;
+        synchronized (unsyncedSegments) {
+            if (unsyncedSegments.isEmpty()) {
+                return;
+            }
+            syncSegments = new ArrayList<>(unsyncedSegments);
+            unsyncedSegments.clear();
+        }
+        for (Segment segment : syncSegments) {
+            try {
+                segment.channel.force(false);
+            } catch (ClosedChannelException e) {
+                // The segment has been compacted or the store has been closed, which forces the payloads to disk
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write prunable payloads to disk: " + e.toString(), e);
+            }
+        }
+    }
+
+    /**
+     * Delete a segment file
+     *
+     * The file cannot be deleted on some platforms while a memory-mapped buffer is in use
+     *
+     * @param   segment                 Segment
+     * @return                          TRUE if the file was deleted
+     */
+    private boolean deleteSegment(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+            return true;
+        } catch (IOException e) {
+            Logger.logDebugMessage(String.format("Unable to delete prunable payload segment %s: %s", segment.path, e.toString()));
+            return false;
+        }
+    }
+
+    /**
+     * Read a payload
+     *
+     * @param   key                     Payload key
+     * @param   location                Payload location or null
+     * @return                          Read-only payload buffer or null if there is no payload or it is damaged
+     * @throws  IOException             I/O error occurred
+     */
+    private static ByteBuffer read(Key key, Location location) throws IOException {
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer data;
+        if (location.length >= MAP_THRESHOLD) {
+            data = location.segment.channel.map(FileChannel.MapMode.READ_ONLY, location.position, location.length);
+        } else {
+            data = ByteBuffer.allocate(location.length);
+            readFully(location.segment.channel, data, location.position);
+            data.flip();
+            data = data.asReadOnlyBuffer();
+        }
+        CRC32 crc = headerChecksum(key, location.timestamp, location.length);
+        crc.update(data.duplicate());
+        return (int)crc.getValue() == location.checksum ? data : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, offset);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of prunable payload segment");
+            }
+            offset += count;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Payload key
+     */
+    private static final class Key {
+
+        private final byte kind;
+        private final byte[] fullHash;
+        private final int hashCode;
+
+        private Key(byte kind, byte[] fullHash) {
+            if (fullHash.length != 32) {
+                throw new IllegalArgumentException("Invalid transaction full hash length " + fullHash.length);
+            }
+            this.kind = kind;
+            this.fullHash = fullHash;
+            this.hashCode = Arrays.hashCode(fullHash) * 31 + kind;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key)obj).kind == kind && Arrays.equals(((Key)obj).fullHash, fullHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Payload location
+     */
+    private static final class Location {
+
+        private final Segment segment;
+        private final long position;
+        private final int length;
+        private final int timestamp;
+        private final int checksum;
+
+        private Location(Segment segment, long position, int length, int timestamp, int checksum) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.checksum = checksum;
+        }
+
+        private long getRecordLength() {
+            return HEADER_LENGTH + length;
+        }
+    }
+
+    /**
+     * Record read from a segment
+     */
+    private static final class Record {
+
+        private final Key key;
+        private final Location location;
+
+        private Record(Key key, Location location) {
+            this.key = key;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Segment file
+     */
+    private static final class Segment {
+
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        private Segment(int number, Path path) throws IOException {
+            this.number = number;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import nxt.Constants;
 import nxt.Nxt;
 
 import java.sql.*;
+import java.util.function.LongConsumer;
 
 public abstract class DerivedDbTable extends Table {
 
@@ -52,6 +53,40 @@ public abstract class DerivedDbTable extends Table {
         popOffTo(height);
     }
 
+    /**
+     * Get a batch statement for this table
+     *
+     * The statement is reused for the duration of the current database transaction and must not be closed
+     *
+     * @param   sql                     Update statement
+     * @param   returnGeneratedKeys     TRUE to return the generated keys
+     * @return                          Batch statement
+     * @throws  SQLException            SQL error occurred
+     */
+    protected final PreparedStatement getBatchStatement(String sql, boolean returnGeneratedKeys) throws SQLException {
+        return db.getBatchStatement(schema, schemaTable, sql, returnGeneratedKeys);
+    }
+
+    /**
+     * Add the current parameters of a batch statement to the batch
+     *
+     * @param   pstmt                   Batch statement
+     * @param   generatedKey            Consumer for the generated key or null
+     * @throws  SQLException            SQL error occurred
+     */
+    protected final void addBatch(PreparedStatement pstmt, LongConsumer generatedKey) throws SQLException {
+        db.addBatch(pstmt, generatedKey);
+    }
+
+    /**
+     * Write the pending batch rows for this table
+     *
+     * @throws  SQLException            SQL error occurred
+     */
+    protected final void flushBatch() throws SQLException {
+        db.flushBatch(schemaTable);
+    }
+
     @Override
     public void truncate() {
         if (!db.isInTransaction()) {
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.Nxt;
+import nxt.dbschema.Db;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the latest committed version of the entities in a versioned table
+ *
+ * The cache is used for reads outside a database transaction, such as API requests, so
+ * these reads do not need a database query each time.  Entities are added to the cache when
+ * they are read and are removed from the cache when the database transaction which inserts or
+ * deletes them is committed.  The whole cache is cleared when the table is rolled back or truncated.
+ * A read which started before an invalidation does not add its entity to the cache, so an entity
+ * read from the database before a commit does not replace the committed version.  The least
+ * recently used entities are evicted when the cache is full.
+ *
+ * Entities returned from the cache are shared by all threads and must not be modified.
+ * The cache is enabled for a table by including the table in nxt.entityCacheSizes.
+ */
+public final class EntityCache<T> {
+
+    /** Cache size for each table */
+    private static final Map<String, Integer> cacheSizes =
+            Nxt.getStringListProperty("nxt.entityCacheSizes").stream().map(s -> s.split("-"))
+                    .collect(Collectors.toMap(
+                            pair -> pair[0].toUpperCase(Locale.ROOT),
+                            pair -> Integer.valueOf(pair[1])));
+
+    /** Active caches */
+    private static final List<EntityCache<?>> caches = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create the cache for a table
+     *
+     * @param   schemaTable             Schema and table name
+     * @param   table                   Table name
+     * @return                          Cache or null if the cache is not enabled for the table
+     */
+    static <T> EntityCache<T> create(String schemaTable, String table) {
+        int maxSize = cacheSizes.getOrDefault(schemaTable, cacheSizes.getOrDefault(table, 0));
+        if (maxSize <= 0) {
+            return null;
+        }
+        EntityCache<T> cache = new EntityCache<>(schemaTable, maxSize);
+        caches.add(cache);
+        return cache;
+    }
+
+    /**
+     * Get the active caches
+     *
+     * @return                          Caches
+     */
+    public static List<EntityCache<?>> getCaches() {
+        return Collections.unmodifiableList(caches);
+    }
+
+    /** Schema and table name */
+    private final String schemaTable;
+
+    /** Maximum number of entities */
+    private final int maxSize;
+
+    /** Cached entities in access order */
+    private final Map<DbKey, T> cache;
+
+    /** Incremented each time the cache is invalidated */
+    private long invalidationCount;
+
+    /** Invalidations pending commit of the current database transaction */
+    private final ThreadLocal<PendingInvalidation> pendingInvalidation = new ThreadLocal<>();
+
+    /** Cache statistics */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private EntityCache(String schemaTable, int maxSize) {
+        this.schemaTable = schemaTable;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<DbKey, T>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DbKey, T> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a cached entity
+     *
+     * @param   dbKey                   Entity key
+     * @return                          Entity or null if the entity is not cached
+     */
+    T get(DbKey dbKey) {
+        T t;
+        synchronized (cache) {
+            t = cache.get(dbKey);
+        }
+        if (t != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return t;
+    }
+
+    /**
+     * Get the current invalidation count
+     *
+     * The count must be obtained before the entity is read from the database and
+     * then passed to put()
+     *
+     * @return                          Invalidation count
+     */
+    long getInvalidationCount() {
+        synchronized (cache) {
+            return invalidationCount;
+        }
+    }
+
+    /**
+     * Add an entity read from the database
+     *
+     * The entity is not added if the cache has been invalidated since the read started
+     *
+     * @param   dbKey                   Entity key
+     * @param   t                       Entity
+     * @param   count                   Invalidation count when the read started
+     */
+    void put(DbKey dbKey, T t, long count) {
+        synchronized (cache) {
+            if (count == invalidationCount) {
+                cache.put(dbKey, t);
+            }
+        }
+    }
+
+    /**
+     * Remove an entity when the current database transaction is committed
+     *
+     * @param   dbKey                   Entity key
+     */
+    void invalidate(DbKey dbKey) {
+        getPendingInvalidation().dbKeys.add(dbKey);
+    }
+
+    /**
+     * Remove all entities when the current database transaction is committed
+     */
+    void invalidateAll() {
+        getPendingInvalidation().all = true;
+    }
+
+    private PendingInvalidation getPendingInvalidation() {
+        PendingInvalidation pending = pendingInvalidation.get();
+        if (pending == null) {
+            pending = new PendingInvalidation();
+            pendingInvalidation.set(pending);
+            Db.db.registerCallback(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Get the schema and table name
+     *
+     * @return                          Schema and table name
+     */
+    public String getSchemaTable() {
+        return schemaTable;
+    }
+
+    /**
+     * Get the maximum number of cached entities
+     *
+     * @return                          Maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of cached entities
+     *
+     * @return                          Cache size
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Invalidations for a database transaction
+     *
+     * The invalidations are applied when the transaction is committed or rolled back.
+     * A rollback does not change the committed entities but applying the invalidations
+     * makes sure that no cached entity is newer than the database.
+     */
+    private final class PendingInvalidation implements TransactionalDb.TransactionCallback {
+
+        private final Set<DbKey> dbKeys = new HashSet<>();
+        private boolean all;
+
+        @Override
+        public void commit() {
+            apply();
+        }
+
+        @Override
+        public void rollback() {
+            apply();
+        }
+
+        private void apply() {
+            pendingInvalidation.remove();
+            synchronized (cache) {
+                if (all) {
+                    cache.clear();
+                } else {
+                    dbKeys.forEach(cache::remove);
+                }
+                invalidationCount++;
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
 
     private final String defaultSort;
     private final String fullTextSearchColumns;
+    final EntityCache<T> entityCache;
 
     protected EntityDbTable(String schemaTable, DbKey.Factory<T> dbKeyFactory) {
         this(schemaTable, dbKeyFactory, false, null);
@@ -48,6 +49,7 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
             fullTextSearchColumns = fullTextSearchColumns.toUpperCase(Locale.ROOT);
         }
         this.fullTextSearchColumns = fullTextSearchColumns;
+        this.entityCache = multiversion ? EntityCache.create(this.schemaTable, this.table) : null;
     }
 
     protected abstract T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException;
@@ -58,6 +60,19 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
         return defaultSort;
     }
 
+    /**
+     * Check if inserted rows are written using batch statements
+     *
+     * The rows are written when the batch is full, when a connection is obtained for the
+     * table and when the database transaction is committed.  The save() method of a batched
+     * table must only prepare and execute update statements.
+     *
+     * @return                          TRUE if batch statements are used
+     */
+    protected boolean isBatched() {
+        return false;
+    }
+
     protected void clearCache() {
         db.clearCache(schemaTable);
     }
@@ -91,22 +106,56 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
         return t;
     }
 
+    /**
+     * Get the entity instance to be used in the current database transaction
+     *
+     * This is used when an entity is obtained from an in-memory cache maintained by the
+     * caller.  The supplied entity is added to the transaction cache unless the cache
+     * already contains an instance for the same key, in which case that instance is returned.
+     *
+     * @param   t                       Entity
+     * @return                          Entity instance for the current transaction
+     */
+    public final T getCached(T t) {
+        if (!db.isInTransaction()) {
+            return t;
+        }
+        DbKey dbKey = dbKeyFactory.newKey(t);
+        T cachedT = (T) db.getCache(schemaTable).putIfAbsent(dbKey, t);
+        return cachedT != null ? cachedT : t;
+    }
+
     public final T get(DbKey dbKey) {
         return get(dbKey, true);
     }
 
     public final T get(DbKey dbKey, boolean cache) {
-        if (cache && db.isInTransaction()) {
-            T t = (T) db.getCache(schemaTable).get(dbKey);
-            if (t != null) {
-                return t;
+        boolean useEntityCache = false;
+        long invalidationCount = 0;
+        if (cache) {
+            if (db.isInTransaction()) {
+                T t = (T) db.getCache(schemaTable).get(dbKey);
+                if (t != null) {
+                    return t;
+                }
+            } else if (entityCache != null) {
+                T t = entityCache.get(dbKey);
+                if (t != null) {
+                    return t;
+                }
+                useEntityCache = true;
+                invalidationCount = entityCache.getInvalidationCount();
             }
         }
         try (Connection con = getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + schemaTable + dbKeyFactory.getPKClause()
              + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
             dbKey.setPK(pstmt);
-            return get(con, pstmt, cache);
+            T t = get(con, pstmt, cache);
+            if (useEntityCache && t != null) {
+                entityCache.put(dbKey, t, invalidationCount);
+            }
+            return t;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -395,7 +444,10 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
             throw new IllegalStateException("Different instance found in Db cache, perhaps trying to save an object "
                     + "that was read outside the current transaction");
         }
-        try (Connection con = getConnection()) {
+        if (entityCache != null) {
+            entityCache.invalidate(dbKey);
+        }
+        try (Connection con = isBatched() ? db.getBatchConnection(schema, schemaTable) : getConnection()) {
             if (multiversion) {
                 try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + schemaTable
                         + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
@@ -433,6 +485,9 @@ public abstract class EntityDbTable<T> extends TrimmableDbTable<T> {
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
+        if (entityCache != null) {
+            entityCache.invalidate(dbKey);
+        }
         db.getCache(schemaTable).put(dbKey, t);
     }
 
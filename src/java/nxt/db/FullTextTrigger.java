@@ -17,6 +17,7 @@
 package nxt.db;
 
 import nxt.Constants;
+import nxt.Nxt;
 import nxt.dbschema.Db;
 import nxt.util.Logger;
 import nxt.util.ReadWriteUpdateLock;
@@ -31,6 +32,7 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -54,11 +56,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 /**
@@ -98,6 +103,14 @@ import java.util.stream.Stream;
  *
  * The table index trigger is defined as follows:
  *   CREATE TRIGGER trigger_name AFTER INSERT,UPDATE,DELETE ON table_name FOR EACH ROW CALL "nxt.db.FullTextTrigger"
+ *
+ * Index updates are made visible to searches when the database transaction is committed
+ * by reopening a near-real-time reader from the index writer.  The index is not committed
+ * to disk for each database transaction.  Instead, it is committed when
+ * nxt.fullTextCommitInterval seconds have passed since the previous commit or when
+ * nxt.fullTextCommitSize rows have been updated.  A commit made when the index is closed
+ * marks a clean shutdown.  The index can be rebuilt from the database, so it is rebuilt
+ * when the database is opened if the index was not closed cleanly.
  */
 public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCallback {
 
@@ -131,6 +144,24 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     /** Lucene analyzer (thread-safe) */
     private static final Analyzer analyzer = new StandardAnalyzer();
 
+    /** Commit user data key indicating that the index was closed cleanly */
+    private static final String CLEAN_SHUTDOWN = "nrs.cleanShutdown";
+
+    /** Maximum time between index commits (milliseconds) */
+    private static final long commitInterval = Math.max(Nxt.getIntProperty("nxt.fullTextCommitInterval"), 0) * 1000L;
+
+    /** Maximum number of row updates between index commits */
+    private static final int commitSize = Math.max(Nxt.getIntProperty("nxt.fullTextCommitSize"), 1);
+
+    /** Time of the last index commit */
+    private static long lastCommitTime;
+
+    /** Number of row updates since the last index commit */
+    private static final AtomicInteger pendingUpdates = new AtomicInteger();
+
+    /** The index must be rebuilt since it was not closed cleanly */
+    private static volatile boolean rebuildRequired;
+
     /** Index trigger is enabled */
     private volatile boolean isEnabled = false;
 
@@ -317,12 +348,35 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             for (FullTextTrigger trigger : indexTriggers.values()) {
                 trigger.reindexTable(conn);
             }
+            rebuildRequired = false;
         } catch (SQLException exc) {
             throw new SQLException("Unable to rebuild the Lucene index", exc);
         }
         Logger.logInfoMessage("Lucene search index successfully rebuilt");
     }
 
+    /**
+     * Rebuild the Lucene index if it was not closed cleanly
+     *
+     * This method is called once the database has been opened and the index triggers
+     * have been initialized.  Index updates are not committed for each database transaction,
+     * so index updates for committed database transactions are lost if the application
+     * is not stopped normally.
+     *
+     * @param   conn                SQL connection
+     * @throws  SQLException        Unable to rebuild the index
+     */
+    public static void recoverIndex(Connection conn) throws SQLException {
+        if (Constants.DISABLE_FULL_TEXT_SEARCH || !isActive || indexTriggers.isEmpty()) {
+            return;
+        }
+        getIndexAccess(conn);
+        if (rebuildRequired) {
+            Logger.logInfoMessage("Lucene search index was not closed cleanly");
+            reindex(conn);
+        }
+    }
+
     /**
      * Create the fulltext index for a table
      *
@@ -766,7 +820,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         //
         // Commit the index updates
         //
-        commitIndex();
+        commitIndex(true);
     }
 
     /**
@@ -792,6 +846,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             }
             document.add(new TextField("_DATA", sj.toString(), Field.Store.NO));
             indexWriter.updateDocument(new Term("_QUERY", query), document);
+            pendingUpdates.incrementAndGet();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to index row", exc);
             throw new SQLException("Unable to index row", exc);
@@ -811,6 +866,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         indexLock.readLock().lock();
         try {
             indexWriter.deleteDocuments(new Term("_QUERY", query));
+            pendingUpdates.incrementAndGet();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to delete indexed row", exc);
             throw new SQLException("Unable to delete indexed row", exc);
@@ -820,15 +876,33 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     }
 
     /**
-     * Commit the index updates
+     * Make the index updates visible to searches
      *
      * @throws  SQLException        Unable to commit index updates
      */
     private static void commitIndex() throws SQLException {
+        commitIndex(false);
+    }
+
+    /**
+     * Make the index updates visible to searches
+     *
+     * The index is committed to disk if requested, if the commit interval has expired or if
+     * the number of row updates since the last commit has reached the commit size
+     *
+     * @param   force               TRUE to commit the index to disk
+     * @throws  SQLException        Unable to commit index updates
+     */
+    private static void commitIndex(boolean force) throws SQLException {
         indexLock.writeLock().lock();
         try {
-            indexWriter.commit();
-            DirectoryReader newReader = DirectoryReader.openIfChanged(indexReader);
+            long now = System.currentTimeMillis();
+            if (force || pendingUpdates.get() >= commitSize || now - lastCommitTime >= commitInterval) {
+                indexWriter.commit();
+                lastCommitTime = now;
+                pendingUpdates.set(0);
+            }
+            DirectoryReader newReader = DirectoryReader.openIfChanged(indexReader, indexWriter);
             if (newReader != null) {
                 indexReader.close();
                 indexReader = newReader;
@@ -909,14 +983,24 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
 
                     }
                     if (indexWriter == null) {
+                        //
+                        // The index must be rebuilt if it doesn't exist or if it was not closed cleanly.
+                        // The clean shutdown indicator is then cleared until the index is closed again.
+                        //
+                        Map<String, String> userData = DirectoryReader.indexExists(directory) ?
+                                SegmentInfos.readLatestCommit(directory).getUserData() : Collections.emptyMap();
+                        rebuildRequired = !Boolean.parseBoolean(userData.get(CLEAN_SHUTDOWN));
                         IndexWriterConfig config = new IndexWriterConfig(analyzer);
                         config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
                         indexWriter = new IndexWriter(directory, config);
+                        indexWriter.setLiveCommitData(Collections.singletonMap(CLEAN_SHUTDOWN, "false").entrySet());
                         Document document = new Document();
                         document.add(new StringField("_QUERY", "_CONTROL_DOCUMENT_", Field.Store.YES));
                         indexWriter.updateDocument(new Term("_QUERY", "_CONTROL_DOCUMENT_"), document);
                         indexWriter.commit();
-                        indexReader = DirectoryReader.open(directory);
+                        lastCommitTime = System.currentTimeMillis();
+                        pendingUpdates.set(0);
+                        indexReader = DirectoryReader.open(indexWriter);
                         indexSearcher = new IndexSearcher(indexReader);
                     }
                 } finally {
@@ -951,6 +1035,8 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
                 indexReader = null;
             }
             if (indexWriter != null) {
+                indexWriter.setLiveCommitData(Collections.singletonMap(CLEAN_SHUTDOWN, "true").entrySet());
+                indexWriter.commit();
                 indexWriter.close();
                 indexWriter = null;
             }
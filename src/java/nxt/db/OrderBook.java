@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.dbschema.Db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory order book for the orders stored in a versioned order table
+ *
+ * The orders are partitioned into books identified by a key (for example, the asset
+ * identifier).  The orders for a book are loaded from the order table when the book is
+ * first accessed and are then kept in priority order.  The order table must be updated
+ * before the order book.  Order books are updated only while holding the blockchain
+ * write lock and must be read while holding the blockchain read lock, so readers
+ * never see the changes for a block that is being processed.
+ *
+ * All order books are discarded when the order table is rolled back or truncated and
+ * when the database transaction is rolled back.
+ *
+ * @param   <T>                     Order entity
+ */
+public final class OrderBook<T> implements TransactionalDb.TransactionCallback {
+
+    /** Order priority */
+    private final Comparator<? super T> comparator;
+
+    /** Get the book key for an order */
+    private final ToLongFunction<? super T> bookKey;
+
+    /** Load the current orders for a book */
+    private final LongFunction<List<T>> loader;
+
+    /** Sorted orders by book key */
+    private final Map<Long, TreeSet<T>> books = new ConcurrentHashMap<>();
+
+    /**
+     * Create an order book
+     *
+     * The comparator must not return 0 for different orders and must use only values
+     * which do not change while the order is open.
+     *
+     * @param   comparator              Order priority
+     * @param   bookKey                 Returns the book key for an order
+     * @param   loader                  Loads the current orders for a book key
+     */
+    public OrderBook(Comparator<? super T> comparator, ToLongFunction<? super T> bookKey, LongFunction<List<T>> loader) {
+        this.comparator = comparator;
+        this.bookKey = bookKey;
+        this.loader = loader;
+    }
+
+    /**
+     * Get the order with the highest priority
+     *
+     * @param   key                     Book key
+     * @return                          Order or null if the book is empty
+     */
+    public T getFirst(long key) {
+        TreeSet<T> book = getBook(key);
+        return book.isEmpty() ? null : book.first();
+    }
+
+    /**
+     * Get the orders in a book in priority order
+     *
+     * @param   key                     Book key
+     * @param   from                    Index of the first order
+     * @param   to                      Index of the last order or -1 to return all orders
+     * @return                          Order list
+     */
+    public List<T> getOrders(long key, int from, int to) {
+        TreeSet<T> book = getBook(key);
+        from = Math.max(from, 0);
+        if (from >= book.size()) {
+            return Collections.emptyList();
+        }
+        int count = to >= from && to < Integer.MAX_VALUE ? Math.min(to - from + 1, book.size() - from) : book.size() - from;
+        List<T> orders = new ArrayList<>(count);
+        int index = 0;
+        for (T order : book) {
+            if (index++ < from) {
+                continue;
+            }
+            orders.add(order);
+            if (orders.size() == count) {
+                break;
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Add a new order or replace the current version of an order
+     *
+     * @param   order                   Order
+     */
+    public void put(T order) {
+        TreeSet<T> book = books.get(bookKey.applyAsLong(order));
+        if (book != null) {
+            Db.db.registerCallback(this);
+            book.remove(order);
+            book.add(order);
+        }
+    }
+
+    /**
+     * Remove an order
+     *
+     * @param   order                   Order
+     */
+    public void remove(T order) {
+        TreeSet<T> book = books.get(bookKey.applyAsLong(order));
+        if (book != null) {
+            Db.db.registerCallback(this);
+            book.remove(order);
+        }
+    }
+
+    /**
+     * Discard all order books
+     */
+    public void clear() {
+        books.clear();
+    }
+
+    /**
+     * Database transaction has been committed
+     */
+    @Override
+    public void commit() {
+    }
+
+    /**
+     * Database transaction has been rolled back
+     */
+    @Override
+    public void rollback() {
+        clear();
+    }
+
+    private TreeSet<T> getBook(long key) {
+        return books.computeIfAbsent(key, k -> {
+            if (Db.db.isInTransaction()) {
+                Db.db.registerCallback(this);
+            }
+            TreeSet<T> book = new TreeSet<>(comparator);
+            book.addAll(loader.apply(k));
+            return book;
+        });
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Determine if a SQL statement names the schema for every table it accesses
+ *
+ * A statement which qualifies each table with its schema is executed the same way
+ * regardless of the current schema of the database session, so the connection does
+ * not need to switch schemas before executing the statement.  Only SELECT, INSERT,
+ * MERGE, UPDATE and DELETE statements are considered.  The check is conservative: a
+ * statement is reported as unqualified unless every table following FROM, JOIN, INTO,
+ * UPDATE or USING is a schema-qualified name, a subquery or a table function.
+ */
+final class SchemaQualifiedSql {
+
+    /** Maximum number of cached results */
+    private static final int MAX_CACHED = 4000;
+
+    /** String literals are removed before the statement is examined */
+    private static final Pattern LITERAL_PATTERN = Pattern.compile("'(?:[^']|'')*'");
+
+    /** Statement tokens: identifiers including qualified names, numbers and single characters */
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(
+            "(?:\"[^\"]*\"|[A-Z_][A-Z0-9_$]*)(?:\\.(?:\"[^\"]*\"|[A-Z_][A-Z0-9_$]*))*|\\d+|\\S");
+
+    /** Statements which can be executed without selecting the schema */
+    private static final Set<String> STATEMENTS = new HashSet<>(Arrays.asList(
+            "SELECT", "INSERT", "MERGE", "UPDATE", "DELETE"));
+
+    /** Keywords which are followed by a table reference */
+    private static final Set<String> TABLE_KEYWORDS = new HashSet<>(Arrays.asList(
+            "FROM", "JOIN", "INTO", "UPDATE", "USING"));
+
+    /** Keywords which can follow a table reference and are not a table alias */
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList(
+            "WHERE", "ORDER", "GROUP", "HAVING", "LIMIT", "OFFSET", "FETCH", "FOR", "UNION", "EXCEPT",
+            "MINUS", "INTERSECT", "INNER", "LEFT", "RIGHT", "OUTER", "FULL", "CROSS", "NATURAL", "JOIN",
+            "ON", "USING", "KEY", "VALUES", "SET", "SELECT", "DEFAULT", "DIRECT", "SORTED", "WINDOW",
+            "USE", "WHEN"));
+
+    /** Cached results */
+    private static final Map<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    private SchemaQualifiedSql() {}
+
+    /**
+     * Check if a SQL statement can be executed without selecting its schema
+     *
+     * @param   sql                     SQL statement
+     * @return                          TRUE if every table in the statement is qualified with its schema
+     */
+    static boolean isQualified(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        Boolean qualified = cache.get(sql);
+        if (qualified == null) {
+            qualified = check(sql);
+            if (cache.size() < MAX_CACHED) {
+                cache.put(sql, qualified);
+            }
+        }
+        return qualified;
+    }
+
+    private static boolean check(String sql) {
+        String upper = LITERAL_PATTERN.matcher(sql.toUpperCase(Locale.ROOT)).replaceAll("''");
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(upper);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        int start = 0;
+        while (start < tokens.size() && tokens.get(start).equals("(")) {
+            start++;
+        }
+        if (start == tokens.size() || !STATEMENTS.contains(tokens.get(start))) {
+            return false;
+        }
+        int depth = 0;
+        Deque<Integer> fromLists = new ArrayDeque<>();
+        for (int i = start; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equals("(")) {
+                depth++;
+            } else if (token.equals(")")) {
+                depth--;
+                if (!fromLists.isEmpty() && fromLists.peek() == depth) {
+                    // End of a subquery or table function in a FROM list, the list continues
+                    // after its alias
+                    fromLists.pop();
+                    i = skipAlias(tokens, i);
+                    if (i + 1 < tokens.size() && tokens.get(i + 1).equals(",")) {
+                        i = checkTables(tokens, i + 1, "FROM", fromLists, depth);
+                        if (i < 0) {
+                            return false;
+                        }
+                    }
+                }
+            } else if (TABLE_KEYWORDS.contains(token)) {
+                i = checkTables(tokens, i, token, fromLists, depth);
+                if (i < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the tables following a table keyword
+     *
+     * The scan stops at a subquery or a table function so the caller can examine its contents.
+     * The current depth is saved for a FROM list so the list is resumed when the subquery or
+     * table function ends.
+     *
+     * @param   tokens                  Statement tokens
+     * @param   i                       Index of the table keyword or of the comma preceding the next table
+     * @param   keyword                 Table keyword
+     * @param   fromLists               FROM lists to be resumed
+     * @param   depth                   Current parenthesis depth
+     * @return                          Index of the last token examined or -1 if a table is not qualified
+     */
+    private static int checkTables(List<String> tokens, int i, String keyword, Deque<Integer> fromLists, int depth) {
+        while (++i < tokens.size()) {
+            String table = tokens.get(i);
+            if (table.equals("(")) {
+                // Subquery, its tables are checked as the scan continues
+                if (keyword.equals("FROM")) {
+                    fromLists.push(depth);
+                }
+                return i - 1;
+            }
+            if (!isIdentifier(table)) {
+                return -1;
+            }
+            if ((keyword.equals("FROM") || keyword.equals("JOIN"))
+                    && i + 1 < tokens.size() && tokens.get(i + 1).equals("(")) {
+                // Table function
+                if (keyword.equals("FROM")) {
+                    fromLists.push(depth);
+                }
+                return i;
+            }
+            if (table.indexOf('.') < 0) {
+                return -1;
+            }
+            i = skipAlias(tokens, i);
+            if (!keyword.equals("FROM") || i + 1 >= tokens.size() || !tokens.get(i + 1).equals(",")) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipAlias(List<String> tokens, int i) {
+        if (i + 1 < tokens.size() && tokens.get(i + 1).equals("AS")) {
+            return i + 2;
+        }
+        if (i + 1 < tokens.size() && isIdentifier(tokens.get(i + 1)) && !RESERVED.contains(tokens.get(i + 1))) {
+            return i + 1;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifier(String token) {
+        char c = token.charAt(0);
+        return c == '"' || c == '_' || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.Nxt;
+import nxt.util.LatencyHistogram;
+import nxt.util.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.management.ObjectName;
+
+/**
+ * Execution statistics for SQL statements
+ *
+ * Statistics are collected for each normalized SQL statement and for each table when
+ * nxt.enableSqlStatistics is set.  A statement is normalized by replacing literal values
+ * with parameter markers and collapsing parameter lists, so statements which only differ
+ * in their values are counted together.  The execution time of each statement is recorded
+ * in a latency histogram along with the number of rows read from its result sets and the
+ * number of rows updated.  The table is the first table named in the statement.
+ *
+ * The statistics are available through the getSqlStatistics API and the
+ * nxt:type=SqlStatistics MBean.
+ */
+public final class SqlStatistics {
+
+    /** Statistics are enabled */
+    private static final boolean enabled = Nxt.getBooleanProperty("nxt.enableSqlStatistics");
+
+    /** Maximum number of normalized statements, additional statements are counted as OTHER */
+    private static final int MAX_STATEMENTS = 2000;
+
+    /** Name used for statements and tables which are not tracked separately */
+    private static final String OTHER = "OTHER";
+
+    /** Literal values */
+    private static final Pattern LITERAL_PATTERN = Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b|\\bX'[0-9A-F]*'");
+
+    /** Parameter lists */
+    private static final Pattern PARAMETER_LIST_PATTERN = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    /** White space */
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    /** Table name */
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\b(?:FROM|INTO|UPDATE|TABLE)\\s+([A-Z_][A-Z0-9_.]*)");
+
+    /** Statistics for each SQL statement as passed to the database */
+    private static final Map<String, Statistics> rawStatements = new ConcurrentHashMap<>();
+
+    /** Statistics for each normalized SQL statement */
+    private static final Map<String, Statistics> statements = new ConcurrentHashMap<>();
+
+    /** Statistics for each table */
+    private static final Map<String, Statistics> tables = new ConcurrentHashMap<>();
+
+    static {
+        if (enabled) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Management(),
+                        new ObjectName("nxt:type=SqlStatistics"));
+            } catch (NoClassDefFoundError ignore) {
+                // java.lang.management is not available on Android
+            } catch (Exception e) {
+                Logger.logErrorMessage("Unable to register the SQL statistics MBean", e);
+            }
+        }
+    }
+
+    private SqlStatistics() {}
+
+    /**
+     * Check if statistics are being collected
+     *
+     * @return                          TRUE if statistics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the statistics for a SQL statement
+     *
+     * @param   sql                     SQL statement
+     * @return                          Statement statistics or null if statistics are not enabled
+     */
+    static Statistics getStatistics(String sql) {
+        if (!enabled || sql == null) {
+            return null;
+        }
+        Statistics statistics = rawStatements.get(sql);
+        if (statistics == null) {
+            statistics = getNormalizedStatistics(sql);
+            if (rawStatements.size() < 4 * MAX_STATEMENTS) {
+                rawStatements.put(sql, statistics);
+            }
+        }
+        return statistics;
+    }
+
+    private static Statistics getNormalizedStatistics(String sql) {
+        String normalized = normalize(sql);
+        Statistics statistics = statements.get(normalized);
+        if (statistics == null) {
+            if (statements.size() >= MAX_STATEMENTS) {
+                normalized = OTHER;
+            }
+            statistics = statements.computeIfAbsent(normalized, name -> {
+                String tableName = getTableName(name);
+                return new Statistics(name, tables.computeIfAbsent(tableName, t -> new Statistics(t, null)));
+            });
+        }
+        return statistics;
+    }
+
+    /**
+     * Normalize a SQL statement
+     *
+     * @param   sql                     SQL statement
+     * @return                          Normalized statement
+     */
+    static String normalize(String sql) {
+        String normalized = sql.toUpperCase(Locale.ROOT);
+        normalized = LITERAL_PATTERN.matcher(normalized).replaceAll("?");
+        normalized = PARAMETER_LIST_PATTERN.matcher(normalized).replaceAll("?");
+        return WHITESPACE_PATTERN.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * Get the table name for a normalized SQL statement
+     *
+     * @param   normalized              Normalized statement
+     * @return                          Table name or OTHER
+     */
+    static String getTableName(String normalized) {
+        Matcher matcher = TABLE_PATTERN.matcher(normalized);
+        return matcher.find() ? matcher.group(1) : OTHER;
+    }
+
+    /**
+     * Get the table statistics
+     *
+     * @return                          Table statistics ordered by total time
+     */
+    public static List<Summary> getTables() {
+        return getSummaries(tables, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the statistics for the statements with the largest total time
+     *
+     * @param   limit                   Maximum number of statements
+     * @return                          Statement statistics ordered by total time
+     */
+    public static List<Summary> getStatements(int limit) {
+        return getSummaries(statements, limit);
+    }
+
+    private static List<Summary> getSummaries(Map<String, Statistics> map, int limit) {
+        return map.values().stream()
+                .filter(statistics -> statistics.histogram.getCount() != 0)
+                .map(Summary::new)
+                .sorted(Comparator.comparingLong(Summary::getTotalTime).reversed())
+                .limit(Math.max(limit, 0))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Clear the statistics
+     */
+    public static void reset() {
+        statements.values().forEach(Statistics::reset);
+        tables.values().forEach(Statistics::reset);
+    }
+
+    /**
+     * Statistics for a statement or a table
+     */
+    static final class Statistics {
+
+        private final String name;
+        private final Statistics table;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsWritten = new LongAdder();
+
+        private Statistics(String name, Statistics table) {
+            this.name = name;
+            this.table = table;
+        }
+
+        /**
+         * Record a statement execution
+         *
+         * @param   nanos                   Execution time in nanoseconds
+         * @param   rowCount                Number of rows updated
+         */
+        void executed(long nanos, long rowCount) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            histogram.record(micros);
+            table.histogram.record(micros);
+            if (rowCount > 0) {
+                rowsWritten.add(rowCount);
+                table.rowsWritten.add(rowCount);
+            }
+        }
+
+        /**
+         * Record a row read from a result set
+         */
+        void rowRead() {
+            rowsRead.increment();
+            table.rowsRead.increment();
+        }
+
+        private void reset() {
+            histogram.reset();
+            rowsRead.reset();
+            rowsWritten.reset();
+        }
+    }
+
+    /**
+     * Snapshot of the statistics for a statement or a table
+     *
+     * Times are in microseconds
+     */
+    public static final class Summary {
+
+        private final String name;
+        private final String table;
+        private final long count;
+        private final long totalTime;
+        private final long meanTime;
+        private final long medianTime;
+        private final long p90Time;
+        private final long p99Time;
+        private final long maxTime;
+        private final long rowsRead;
+        private final long rowsWritten;
+
+        private Summary(Statistics statistics) {
+            LatencyHistogram histogram = statistics.histogram;
+            this.name = statistics.name;
+            this.table = statistics.table != null ? statistics.table.name : null;
+            this.count = histogram.getCount();
+            this.totalTime = histogram.getTotal();
+            this.meanTime = histogram.getMean();
+            this.medianTime = histogram.getPercentile(50);
+            this.p90Time = histogram.getPercentile(90);
+            this.p99Time = histogram.getPercentile(99);
+            this.maxTime = histogram.getMax();
+            this.rowsRead = statistics.rowsRead.sum();
+            this.rowsWritten = statistics.rowsWritten.sum();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        public long getMeanTime() {
+            return meanTime;
+        }
+
+        public long getMedianTime() {
+            return medianTime;
+        }
+
+        public long getP90Time() {
+            return p90Time;
+        }
+
+        public long getP99Time() {
+            return p99Time;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+    }
+
+    /**
+     * SQL statistics MBean
+     */
+    private static final class Management implements SqlStatisticsMXBean {
+
+        @Override
+        public List<Summary> getTables() {
+            return SqlStatistics.getTables();
+        }
+
+        @Override
+        public List<Summary> getStatements(int limit) {
+            return SqlStatistics.getStatements(limit);
+        }
+
+        @Override
+        public void reset() {
+            SqlStatistics.reset();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.util.List;
+
+/**
+ * Management interface for the SQL statement statistics
+ *
+ * The interface is registered with the platform MBean server as nxt:type=SqlStatistics
+ * when nxt.enableSqlStatistics is set.  Times are reported in microseconds.
+ */
+public interface SqlStatisticsMXBean {
+
+    /**
+     * Get the statistics for each table
+     *
+     * @return                          Table statistics ordered by total time
+     */
+    List<SqlStatistics.Summary> getTables();
+
+    /**
+     * Get the statistics for the statements with the largest total time
+     *
+     * @param   limit                   Maximum number of statements
+     * @return                          Statement statistics ordered by total time
+     */
+    List<SqlStatistics.Summary> getStatements(int limit);
+
+    /**
+     * Clear the statistics
+     */
+    void reset();
+}
@@ -46,7 +46,7 @@ public class Table {
     }
 
     public final Connection getConnection() throws SQLException {
-        return db.getConnection(schema);
+        return db.getConnection(schema, schemaTable);
     }
 
     public void truncate() {
@@ -16,6 +16,7 @@
 
 package nxt.db;
 
+import nxt.Constants;
 import nxt.Nxt;
 import nxt.util.Logger;
 import nxt.util.security.BlockchainPermission;
@@ -25,12 +26,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 public class TransactionalDb extends BasicDb {
 
@@ -48,9 +54,13 @@ public class TransactionalDb extends BasicDb {
     private final ThreadLocal<DbConnection> localConnection = new ThreadLocal<>();
     private final ThreadLocal<Map<String,Map<DbKey,Object>>> transactionCaches = new ThreadLocal<>();
     private final ThreadLocal<Set<TransactionCallback>> transactionCallback = new ThreadLocal<>();
+    private final ThreadLocal<Map<String,Map<String,BatchStatement>>> batchStatements = new ThreadLocal<>();
     private volatile long txTimes = 0;
     private volatile long txCount = 0;
     private volatile long statsTime = 0;
+    private final AtomicLong schemaSwitches = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
 
     public TransactionalDb(DbProperties dbProperties) {
         super(dbProperties);
@@ -90,6 +100,32 @@ public class TransactionalDb extends BasicDb {
         if (sm != null) {
             sm.checkPermission(new BlockchainPermission("db"));
         }
+        flushBatches();
+        return getTransactionConnection(schema);
+    }
+
+    /**
+     * Get a connection for a table
+     *
+     * Pending batch statements for the table are executed before the connection is returned.
+     * Batch statements for other tables are not executed since the connection will not be
+     * used to access those tables.
+     *
+     * @param   schema                  Table schema
+     * @param   schemaTable             Table name including the schema
+     * @return                          Database connection
+     * @throws  SQLException            SQL error occurred
+     */
+    Connection getConnection(String schema, String schemaTable) throws SQLException {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(new BlockchainPermission("db"));
+        }
+        flushBatch(schemaTable);
+        return getTransactionConnection(schema);
+    }
+
+    private Connection getTransactionConnection(String schema) throws SQLException {
         Connection con = localConnection.get();
         if (con == null) {
             con = getPooledConnection();
@@ -118,8 +154,12 @@ public class TransactionalDb extends BasicDb {
             con.setAutoCommit(false);
             con = new DbConnection(con, schema);
             ((DbConnection)con).txStart = System.currentTimeMillis();
+            if (statementCacheSize > 0) {
+                ((DbConnection)con).statementCache = new StatementCache(statementCacheSize);
+            }
             localConnection.set((DbConnection)con);
             transactionCaches.set(new HashMap<>());
+            batchStatements.set(new HashMap<>());
             return con;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -132,8 +172,12 @@ public class TransactionalDb extends BasicDb {
             throw new IllegalStateException("Not in transaction");
         }
         try {
-            con.doCommit();
+            flushBatches();
             Set<TransactionCallback> callbacks = transactionCallback.get();
+            if (callbacks != null) {
+                callbacks.forEach(TransactionCallback::beforeCommit);
+            }
+            con.doCommit();
             if (callbacks != null) {
                 callbacks.forEach(TransactionCallback::commit);
                 transactionCallback.set(null);
@@ -149,6 +193,11 @@ public class TransactionalDb extends BasicDb {
             throw new IllegalStateException("Not in transaction");
         }
         try {
+            for (Map<String,BatchStatement> statements : batchStatements.get().values()) {
+                for (BatchStatement statement : statements.values()) {
+                    statement.discard();
+                }
+            }
             con.doRollback();
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -169,6 +218,9 @@ public class TransactionalDb extends BasicDb {
         }
         localConnection.set(null);
         transactionCaches.set(null);
+        Map<String,Map<String,BatchStatement>> statementMap = batchStatements.get();
+        batchStatements.set(null);
+        statementMap.values().forEach(statements -> statements.values().forEach(BatchStatement::closeStatement));
         long now = System.currentTimeMillis();
         long elapsed = now - ((DbConnection)con).txStart;
         if (elapsed >= txThreshold) {
@@ -194,6 +246,33 @@ public class TransactionalDb extends BasicDb {
         DbUtils.close(con);
     }
 
+    /**
+     * Get the number of times a connection has switched the schema of its database session
+     *
+     * @return                          Number of schema switches
+     */
+    public long getSchemaSwitchCount() {
+        return schemaSwitches.get();
+    }
+
+    /**
+     * Get the number of prepared statements reused from the statement cache
+     *
+     * @return                          Number of cache hits
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * Get the number of prepared statements which were not found in the statement cache
+     *
+     * @return                          Number of cache misses
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
     public void registerCallback(TransactionCallback callback) {
         Set<TransactionCallback> callbacks = transactionCallback.get();
         if (callbacks == null) {
@@ -203,6 +282,99 @@ public class TransactionalDb extends BasicDb {
         callbacks.add(callback);
     }
 
+    /**
+     * Get a batch statement for the current database transaction
+     *
+     * The statement is prepared once for each transaction and is then reused.  Rows
+     * added to the batch are written to the database when the batch size reaches
+     * nxt.batchCommitSize, when a connection is requested for the table and when the
+     * transaction is committed.  The batches for a table are executed in the order
+     * the statements were created.
+     *
+     * @param   schema                  Table schema
+     * @param   schemaTable             Table name including the schema
+     * @param   sql                     SQL statement
+     * @param   returnGeneratedKeys     TRUE to return the generated keys
+     * @return                          Batch statement
+     * @throws  SQLException            SQL error occurred
+     */
+    PreparedStatement getBatchStatement(String schema, String schemaTable, String sql, boolean returnGeneratedKeys)
+                                            throws SQLException {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        Map<String,BatchStatement> statements = batchStatements.get().computeIfAbsent(schemaTable, k -> new LinkedHashMap<>());
+        BatchStatement statement = statements.get(sql);
+        if (statement == null) {
+            con.setSchema(schema);
+            PreparedStatement pstmt = returnGeneratedKeys ?
+                    con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : con.prepareStatement(sql);
+            statement = new BatchStatement(pstmt, sql, returnGeneratedKeys);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Add the current parameters to a batch statement
+     *
+     * @param   pstmt                   Batch statement
+     * @param   generatedKey            Consumer for the generated key or null
+     * @throws  SQLException            SQL error occurred
+     */
+    void addBatch(PreparedStatement pstmt, LongConsumer generatedKey) throws SQLException {
+        ((BatchStatement)pstmt).addBatch(generatedKey);
+    }
+
+    /**
+     * Get a connection which adds updates for a table to batch statements
+     *
+     * Statements prepared using the connection add the row to a batch when they are executed,
+     * so the connection can only be used to prepare and execute update statements.
+     *
+     * @param   schema                  Table schema
+     * @param   schemaTable             Table name including the schema
+     * @return                          Batch connection
+     * @throws  SQLException            SQL error occurred
+     */
+    Connection getBatchConnection(String schema, String schemaTable) throws SQLException {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        return new BatchConnection(con, schema, schemaTable);
+    }
+
+    /**
+     * Execute the pending batch statements for a table
+     *
+     * @param   schemaTable             Table name including the schema
+     * @throws  SQLException            SQL error occurred
+     */
+    void flushBatch(String schemaTable) throws SQLException {
+        Map<String,Map<String,BatchStatement>> statementMap = batchStatements.get();
+        if (statementMap != null) {
+            Map<String,BatchStatement> statements = statementMap.get(schemaTable);
+            if (statements != null) {
+                for (BatchStatement statement : statements.values()) {
+                    statement.flush();
+                }
+            }
+        }
+    }
+
+    private void flushBatches() throws SQLException {
+        Map<String,Map<String,BatchStatement>> statementMap = batchStatements.get();
+        if (statementMap != null) {
+            for (Map<String,BatchStatement> statements : statementMap.values()) {
+                for (BatchStatement statement : statements.values()) {
+                    statement.flush();
+                }
+            }
+        }
+    }
+
     Map<DbKey,Object> getCache(String schemaTable) {
         if (!isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
@@ -239,13 +411,30 @@ public class TransactionalDb extends BasicDb {
         Logger.logDebugMessage(sb.toString());
     }
 
+    /**
+     * Database connection
+     *
+     * Setting the schema records the schema for the statements created by the connection.
+     * The schema of the database session is switched when an unqualified statement is
+     * prepared or executed for a different schema.  Statements which qualify each table
+     * with its schema are executed without switching the session schema.
+     *
+     * A transaction connection caches the prepared statements created by prepareStatement(String).
+     * Each request returns a new statement handle.  Closing the handle returns the statement to
+     * the cache and the next request for the same SQL statement reuses it instead of preparing
+     * the statement again.  The cached statements are closed when the transaction ends.
+     */
     private final class DbConnection extends FilteredConnection {
 
+        private final Connection con;
         private long txStart = 0;
         private volatile String schema;
+        private volatile String sessionSchema;
+        private StatementCache statementCache;
 
         private DbConnection(Connection con, String schema) throws SQLException {
             super(con, factory);
+            this.con = con;
             setSchema(schema);
         }
 
@@ -287,6 +476,12 @@ public class TransactionalDb extends BasicDb {
         @Override
         public void close() throws SQLException {
             if (localConnection.get() == null) {
+                if (statementCache != null) {
+                    StatementCache cache = statementCache;
+                    statementCache = null;
+                    cache.values().forEach(DbPreparedStatement::closeStatement);
+                    cache.clear();
+                }
                 super.close();
             } else if (this != localConnection.get()) {
                 throw new IllegalStateException("Previous connection not committed");
@@ -294,21 +489,111 @@ public class TransactionalDb extends BasicDb {
         }
 
         @Override
-        public void setSchema(String schema) throws SQLException {
-            schema = schema.toUpperCase(Locale.ROOT);
-            if (schema.equals(this.schema)) {
+        public void setSchema(String schema) {
+            this.schema = schema.toUpperCase(Locale.ROOT);
+        }
+
+        @Override
+        public String getSchema() {
+            return schema;
+        }
+
+        /**
+         * Select the schema for a statement unless it is qualified
+         *
+         * @param   schema                  Statement schema
+         * @param   sql                     SQL statement
+         * @throws  SQLException            SQL error occurred
+         */
+        private void selectSchema(String schema, String sql) throws SQLException {
+            if (!SchemaQualifiedSql.isQualified(sql)) {
+                selectSchema(schema);
+            }
+        }
+
+        /**
+         * Switch the schema of the database session
+         *
+         * @param   schema                  Schema
+         * @throws  SQLException            SQL error occurred
+         */
+        private void selectSchema(String schema) throws SQLException {
+            if (schema.equals(sessionSchema)) {
                 return;
             }
-            this.schema = schema;
-            try (Statement stmt = createStatement()) {
+            sessionSchema = null;
+            try (Statement stmt = con.createStatement()) {
                 stmt.executeUpdate("SET SCHEMA " + schema);
                 stmt.executeUpdate("SET SCHEMA_SEARCH_PATH " + schema + ", PUBLIC");
             }
+            sessionSchema = schema;
+            schemaSwitches.incrementAndGet();
         }
 
         @Override
-        public String getSchema() {
-            return schema;
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            selectSchema(schema, sql);
+            if (statementCache == null) {
+                return super.prepareStatement(sql);
+            }
+            String key = SchemaQualifiedSql.isQualified(sql) ? sql : schema + ':' + sql;
+            DbPreparedStatement pstmt = statementCache.remove(key);
+            if (pstmt != null) {
+                statementCacheHits.incrementAndGet();
+            } else {
+                statementCacheMisses.incrementAndGet();
+                pstmt = (DbPreparedStatement)super.prepareStatement(sql);
+                pstmt.cacheKey = key;
+            }
+            return new CachedStatement(pstmt);
+        }
+
+        /**
+         * Return a prepared statement to the statement cache
+         *
+         * @param   pstmt                   Prepared statement
+         * @return                          TRUE if the statement is cached, FALSE if it must be closed
+         * @throws  SQLException            SQL error occurred
+         */
+        private boolean cacheStatement(DbPreparedStatement pstmt) throws SQLException {
+            if (statementCache == null || pstmt.isClosed() || statementCache.containsKey(pstmt.cacheKey)) {
+                return false;
+            }
+            pstmt.resetState();
+            statementCache.put(pstmt.cacheKey, pstmt);
+            return true;
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+                                        throws SQLException {
+            selectSchema(schema, sql);
+            return super.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+                                        int resultSetHoldability) throws SQLException {
+            selectSchema(schema, sql);
+            return super.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+            selectSchema(schema, sql);
+            return super.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+            selectSchema(schema, sql);
+            return super.prepareStatement(sql, columnIndexes);
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+            selectSchema(schema, sql);
+            return super.prepareStatement(sql, columnNames);
         }
 
     }
@@ -316,20 +601,26 @@ public class TransactionalDb extends BasicDb {
     private final class DbStatement extends FilteredStatement {
 
         private final FilteredConnection con;
+        private final DbConnection dbConnection;
         private final String schema;
 
         private DbStatement(FilteredConnection con, Statement stmt) throws SQLException {
             super(stmt);
             this.con = con;
+            this.dbConnection = getDbConnection(con);
             this.schema = con.getSchema();
         }
 
         @Override
         public boolean execute(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            dbConnection.selectSchema(schema, sql);
             boolean b = super.execute(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            SqlStatistics.Statistics statistics = SqlStatistics.getStatistics(sql);
+            if (statistics != null)
+                statistics.executed(nanos, 0);
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
@@ -338,10 +629,16 @@ public class TransactionalDb extends BasicDb {
 
         @Override
         public ResultSet executeQuery(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            dbConnection.selectSchema(schema, sql);
             ResultSet r = super.executeQuery(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            SqlStatistics.Statistics statistics = SqlStatistics.getStatistics(sql);
+            if (statistics != null) {
+                statistics.executed(nanos, 0);
+                r = new DbResultSet(r, this, statistics);
+            }
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
@@ -350,10 +647,14 @@ public class TransactionalDb extends BasicDb {
 
         @Override
         public int executeUpdate(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            dbConnection.selectSchema(schema, sql);
             int c = super.executeUpdate(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            SqlStatistics.Statistics statistics = SqlStatistics.getStatistics(sql);
+            if (statistics != null)
+                statistics.executed(nanos, c);
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
@@ -370,20 +671,38 @@ public class TransactionalDb extends BasicDb {
     private final class DbPreparedStatement extends FilteredPreparedStatement {
 
         private final FilteredConnection con;
+        private final DbConnection dbConnection;
         private final String schema;
+        private final boolean qualified;
+        private final SqlStatistics.Statistics statistics;
+        private String cacheKey;
+        private ResultSet resultSet;
+        private boolean stateModified;
+        private int fetchSize;
+        private int fetchDirection;
+        private long maxRows;
+        private int maxFieldSize;
+        private int queryTimeout;
 
         private DbPreparedStatement(FilteredConnection con, PreparedStatement stmt, String sql) throws SQLException {
             super(stmt, sql);
             this.con = con;
+            this.dbConnection = getDbConnection(con);
             this.schema = con.getSchema();
+            this.qualified = SchemaQualifiedSql.isQualified(sql);
+            this.statistics = SqlStatistics.getStatistics(sql);
         }
 
         @Override
         public boolean execute() throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            if (!qualified)
+                dbConnection.selectSchema(schema);
             boolean b = super.execute();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            if (statistics != null)
+                statistics.executed(nanos, 0);
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
@@ -392,28 +711,117 @@ public class TransactionalDb extends BasicDb {
 
         @Override
         public ResultSet executeQuery() throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            if (!qualified)
+                dbConnection.selectSchema(schema);
             ResultSet r = super.executeQuery();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            if (statistics != null) {
+                statistics.executed(nanos, 0);
+                r = new DbResultSet(r, this, statistics);
+            }
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
+            if (cacheKey != null)
+                resultSet = r;
             return r;
         }
 
         @Override
         public int executeUpdate() throws SQLException {
-            long start = System.currentTimeMillis();
-            con.setSchema(schema);
+            long start = System.nanoTime();
+            if (!qualified)
+                dbConnection.selectSchema(schema);
             int c = super.executeUpdate();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            if (statistics != null)
+                statistics.executed(nanos, c);
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
             return c;
         }
 
+        @Override
+        public int[] executeBatch() throws SQLException {
+            long start = System.nanoTime();
+            if (!qualified)
+                dbConnection.selectSchema(schema);
+            int[] c = super.executeBatch();
+            long nanos = System.nanoTime() - start;
+            if (statistics != null) {
+                long rowCount = 0;
+                for (int count : c) {
+                    if (count > 0)
+                        rowCount += count;
+                }
+                statistics.executed(nanos, rowCount);
+            }
+            long elapsed = nanos / 1000000;
+            if (elapsed > stmtThreshold)
+                logThreshold(String.format("SQL batch of %d statements required %.3f seconds at height %d:\n%s",
+                                           c.length, (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
+            return c;
+        }
+
+        /**
+         * Save the statement settings before a cached statement is modified
+         *
+         * @throws  SQLException            SQL error occurred
+         */
+        private void saveState() throws SQLException {
+            if (!stateModified) {
+                fetchSize = getFetchSize();
+                fetchDirection = getFetchDirection();
+                maxRows = getLargeMaxRows();
+                maxFieldSize = getMaxFieldSize();
+                queryTimeout = getQueryTimeout();
+                stateModified = true;
+            }
+        }
+
+        /**
+         * Reset a cached statement before it is returned to the statement cache
+         *
+         * @throws  SQLException            SQL error occurred
+         */
+        private void resetState() throws SQLException {
+            clearParameters();
+            clearWarnings();
+            if (stateModified) {
+                setLargeMaxRows(maxRows);
+                setFetchSize(fetchSize);
+                setFetchDirection(fetchDirection);
+                setMaxFieldSize(maxFieldSize);
+                setQueryTimeout(queryTimeout);
+                stateModified = false;
+            }
+        }
+
+        /**
+         * Release a cached statement when its handle is closed
+         *
+         * @throws  SQLException            SQL error occurred
+         */
+        private void release() throws SQLException {
+            if (resultSet != null) {
+                resultSet.close();
+                resultSet = null;
+            }
+            if (!dbConnection.cacheStatement(this)) {
+                super.close();
+            }
+        }
+
+        private void closeStatement() {
+            try {
+                super.close();
+            } catch (SQLException ignore) {}
+        }
+
         @Override
         public Connection getConnection() {
             return con;
@@ -421,6 +829,228 @@ public class TransactionalDb extends BasicDb {
 
     }
 
+    /**
+     * Handle for a prepared statement from the statement cache
+     *
+     * Closing the handle returns the statement to the cache.  The handle can be closed more than
+     * once without affecting a later user of the same statement.  Statement settings changed through
+     * the handle are restored when the statement is returned to the cache.
+     */
+    private static final class CachedStatement extends FilteredPreparedStatement {
+
+        private final DbPreparedStatement pstmt;
+        private boolean closed;
+
+        private CachedStatement(DbPreparedStatement pstmt) {
+            super(pstmt, pstmt.getSQL());
+            this.pstmt = pstmt;
+        }
+
+        @Override
+        public void setFetchSize(int rows) throws SQLException {
+            pstmt.saveState();
+            super.setFetchSize(rows);
+        }
+
+        @Override
+        public void setFetchDirection(int direction) throws SQLException {
+            pstmt.saveState();
+            super.setFetchDirection(direction);
+        }
+
+        @Override
+        public void setMaxRows(int max) throws SQLException {
+            pstmt.saveState();
+            super.setMaxRows(max);
+        }
+
+        @Override
+        public void setLargeMaxRows(long max) throws SQLException {
+            pstmt.saveState();
+            super.setLargeMaxRows(max);
+        }
+
+        @Override
+        public void setMaxFieldSize(int max) throws SQLException {
+            pstmt.saveState();
+            super.setMaxFieldSize(max);
+        }
+
+        @Override
+        public void setQueryTimeout(int seconds) throws SQLException {
+            pstmt.saveState();
+            super.setQueryTimeout(seconds);
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+            return closed || super.isClosed();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!closed) {
+                closed = true;
+                pstmt.release();
+            }
+        }
+    }
+
+    /**
+     * Result set which counts the rows read for the SQL statistics
+     */
+    private static final class DbResultSet extends FilteredResultSet {
+
+        private final SqlStatistics.Statistics statistics;
+
+        private DbResultSet(ResultSet rs, Statement stmt, SqlStatistics.Statistics statistics) {
+            super(rs, stmt);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            boolean hasNext = super.next();
+            if (hasNext)
+                statistics.rowRead();
+            return hasNext;
+        }
+    }
+
+    /**
+     * Prepared statement which is reused for the duration of a database transaction
+     *
+     * Executing an update adds the row to the batch.  Closing the statement does nothing,
+     * the statement is closed when the transaction ends.
+     */
+    private final class BatchStatement extends FilteredPreparedStatement {
+
+        private final boolean returnGeneratedKeys;
+        private final List<LongConsumer> keyConsumers = new ArrayList<>();
+        private int batchCount;
+
+        private BatchStatement(PreparedStatement stmt, String sql, boolean returnGeneratedKeys) {
+            super(stmt, sql);
+            this.returnGeneratedKeys = returnGeneratedKeys;
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            addBatch((LongConsumer)null);
+            return 1;
+        }
+
+        @Override
+        public void addBatch() throws SQLException {
+            addBatch((LongConsumer)null);
+        }
+
+        private void addBatch(LongConsumer generatedKey) throws SQLException {
+            super.addBatch();
+            if (returnGeneratedKeys) {
+                keyConsumers.add(generatedKey);
+            }
+            if (++batchCount >= Constants.BATCH_COMMIT_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (batchCount == 0) {
+                return;
+            }
+            batchCount = 0;
+            try {
+                executeBatch();
+                if (returnGeneratedKeys) {
+                    try (ResultSet rs = getGeneratedKeys()) {
+                        for (LongConsumer keyConsumer : keyConsumers) {
+                            if (!rs.next()) {
+                                break;
+                            }
+                            if (keyConsumer != null) {
+                                keyConsumer.accept(rs.getLong(1));
+                            }
+                        }
+                    }
+                }
+            } finally {
+                keyConsumers.clear();
+            }
+        }
+
+        private void discard() throws SQLException {
+            batchCount = 0;
+            keyConsumers.clear();
+            clearBatch();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void closeStatement() {
+            try {
+                super.close();
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    /**
+     * Prepared statements cached by a transaction connection
+     *
+     * The least recently returned statement is closed when the cache is full.
+     */
+    @SuppressWarnings("serial")
+    private static final class StatementCache extends LinkedHashMap<String,DbPreparedStatement> {
+
+        private final int maxSize;
+
+        private StatementCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,DbPreparedStatement> eldest) {
+            if (size() > maxSize) {
+                eldest.getValue().closeStatement();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Connection which prepares batch statements for a table
+     */
+    private final class BatchConnection extends FilteredConnection {
+
+        private final DbConnection con;
+        private final String schema;
+        private final String schemaTable;
+
+        private BatchConnection(DbConnection con, String schema, String schemaTable) {
+            super(con, factory);
+            this.con = con;
+            this.schema = schema;
+            this.schemaTable = schemaTable;
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            return getBatchStatement(schema, schemaTable, sql, false);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private DbConnection getDbConnection(FilteredConnection con) {
+        return con instanceof BatchConnection ? ((BatchConnection)con).con : (DbConnection)con;
+    }
+
     private final class DbFactory implements FilteredFactory {
 
         @Override
@@ -439,6 +1069,14 @@ public class TransactionalDb extends BasicDb {
      */
     public interface TransactionCallback {
 
+        /**
+         * Transaction is about to be committed
+         *
+         * The transaction is not committed if this method throws an exception
+         */
+        default void beforeCommit() {
+        }
+
         /**
          * Transaction has been committed
          */
@@ -49,6 +49,9 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
             throw new IllegalStateException("Not in transaction");
         }
         DbKey dbKey = dbKeyFactory.newKey(t);
+        if (entityCache != null) {
+            entityCache.invalidate(dbKey);
+        }
         try (Connection con = getConnection();
              PreparedStatement pstmtCount = con.prepareStatement("SELECT 1 FROM " + schemaTable
                      + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1")) {
@@ -80,6 +83,36 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         }
     }
 
+    /**
+     * Roll back the table
+     *
+     * The entity cache is invalidated before and after the rollback since the
+     * rollback commits the database transaction in batches
+     *
+     * @param   height                  Rollback height
+     */
+    @Override
+    public void popOffTo(int height) {
+        if (entityCache != null) {
+            entityCache.invalidateAll();
+        }
+        super.popOffTo(height);
+        if (entityCache != null) {
+            entityCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void truncate() {
+        if (entityCache != null) {
+            entityCache.invalidateAll();
+        }
+        super.truncate();
+        if (entityCache != null) {
+            entityCache.invalidateAll();
+        }
+    }
+
     static void popOff(final TransactionalDb db, final String schema, final String schemaTable, final int height, final DbKey.Factory dbKeyFactory) {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
@@ -507,6 +507,10 @@ public class ChildDbVersion extends DbVersion {
                         .forEach(accountId -> permissionWriter.addInitialPermission(accountId, PermissionType.MASTER_ADMIN)));
                 apply(null);
             case 164:
+                apply("ALTER TABLE prunable_message ADD COLUMN IF NOT EXISTS blob_stored BOOLEAN NOT NULL DEFAULT FALSE");
+            case 165:
+                apply("ALTER TABLE tagged_data ADD COLUMN IF NOT EXISTS blob_stored BOOLEAN NOT NULL DEFAULT FALSE");
+            case 166:
                 return;
             default:
                 throw new RuntimeException("Child chain " + schema + " database inconsistent with code, at update " + nextUpdate
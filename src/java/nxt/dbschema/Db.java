@@ -20,6 +20,7 @@ import nxt.Constants;
 import nxt.Nxt;
 import nxt.blockchain.ChildChain;
 import nxt.db.BasicDb;
+import nxt.db.BlobStore;
 import nxt.db.DbVersion;
 import nxt.db.TransactionalDb;
 
@@ -43,6 +44,7 @@ public final class Db {
             .loginTimeout(Nxt.getIntProperty("nxt.dbLoginTimeout"))
             .defaultLockTimeout(Nxt.getIntProperty("nxt.dbDefaultLockTimeout") * 1000)
             .maxMemoryRows(Nxt.getIntProperty("nxt.dbMaxMemoryRows"))
+            .statementCacheSize(Nxt.getIntProperty("nxt.dbStatementCacheSize"))
     );
 
     public static Connection getConnection() throws SQLException {
@@ -67,6 +69,7 @@ public final class Db {
 
     public static void shutdown() {
         db.shutdown();
+        BlobStore.getStore().close();
     }
 
     private Db() {} // never
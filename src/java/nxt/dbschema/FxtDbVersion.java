@@ -597,6 +597,15 @@ public class FxtDbVersion extends DbVersion {
                     apply(null);
                 });
             case 178:
+                apply("CREATE TABLE IF NOT EXISTS removed_unconfirmed_transaction (db_id IDENTITY, id BIGINT NOT NULL, "
+                        + "expiration INT NOT NULL, transaction_height INT NOT NULL, fee BIGINT NOT NULL, fee_per_byte BIGINT NOT NULL, "
+                        + "arrival_timestamp BIGINT NOT NULL, is_bundled BOOLEAN NOT NULL DEFAULT FALSE, "
+                        + "transaction_bytes VARBINARY NOT NULL, chain_id INT NOT NULL, add_height INT NOT NULL, height INT NOT NULL)");
+            case 179:
+                apply("CREATE INDEX IF NOT EXISTS removed_unconfirmed_transaction_height_idx ON removed_unconfirmed_transaction (height)");
+            case 180:
+                apply("ALTER TABLE prunable_message ADD COLUMN IF NOT EXISTS blob_stored BOOLEAN NOT NULL DEFAULT FALSE");
+            case 181:
                 return;
             default:
                 throw new RuntimeException("Forging chain database inconsistent with code, at update " + nextUpdate
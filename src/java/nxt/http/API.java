@@ -294,6 +294,7 @@ public final class API {
 
             apiHandler.addServlet(DbShellServlet.class, "/dbshell");
             apiHandler.addServlet(PaperWalletServlet.class, "/paperwallet");
+            apiHandler.addServlet(EventSocketServlet.class, "/events");
 
             if (apiServerCORS) {
                 FilterHolder filterHolder = apiHandler.addFilter(CrossOriginFilter.class, "/*", null);
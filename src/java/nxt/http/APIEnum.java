@@ -255,6 +255,7 @@ public enum APIEnum {
     DUMP_PEERS("dumpPeers", DumpPeers.instance),
     GET_LOG("getLog", GetLog.instance),
     GET_STACK_TRACES("getStackTraces", GetStackTraces.instance),
+    GET_SQL_STATISTICS("getSqlStatistics", GetSqlStatistics.instance),
     RETRIEVE_PRUNED_DATA("retrievePrunedData", RetrievePrunedData.instance),
     RETRIEVE_PRUNED_TRANSACTION("retrievePrunedTransaction", RetrievePrunedTransaction.instance),
     SET_LOGGING("setLogging", SetLogging.instance),
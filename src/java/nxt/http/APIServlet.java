@@ -25,6 +25,7 @@ import nxt.blockchain.ChildChain;
 import nxt.dbschema.Db;
 import nxt.util.JSON;
 import nxt.util.Logger;
+import nxt.util.StreamingJSONArray;
 import nxt.util.security.BlockchainPermission;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
@@ -51,6 +52,7 @@ import static nxt.http.JSONResponses.LIGHT_CLIENT_DISABLED_API;
 import static nxt.http.JSONResponses.POST_REQUIRED;
 import static nxt.http.JSONResponses.REQUIRED_BLOCK_NOT_FOUND;
 import static nxt.http.JSONResponses.REQUIRED_LAST_BLOCK_NOT_FOUND;
+import static nxt.http.JSONResponses.RESPONSE_TOO_LARGE;
 
 public final class APIServlet extends HttpServlet {
 
@@ -177,6 +179,7 @@ public final class APIServlet extends HttpServlet {
 
     private static final boolean enforcePost = Nxt.getBooleanProperty("nxt.apiServerEnforcePOST");
     private static final boolean fixResponseContentType = Nxt.getBooleanProperty("nxt.apiFixResponseContentType");
+    private static final int maxStreamingResponseSize = Nxt.getIntProperty("nxt.apiMaxStreamingResponseSize", 64 * 1024 * 1024);
     static final Map<String,APIRequestHandler> apiRequestHandlers;
     static final Map<String,APIRequestHandler> disabledRequestHandlers;
     private static final Set<String> SENSITIVE_PARAMS = new HashSet<>(Arrays.asList(
@@ -361,6 +364,15 @@ public final class APIServlet extends HttpServlet {
                     if (requireLastBlockId == 0 && requireBlockId != 0 && response instanceof JSONObject) {
                         ((JSONObject) response).put("lastBlock", Nxt.getBlockchain().getLastBlock().getStringId());
                     }
+                    if (StreamingJSONArray.isStreaming(response)) {
+                        // Streaming arrays read from the database as they are written, so buffer the
+                        // response now and send it after the transaction and the blockchain lock are released
+                        if (response instanceof JSONObject) {
+                            ((JSONObject) response).put("requestProcessingTime", System.currentTimeMillis() - startTime);
+                        }
+                        JSONStreamAware bufferedResponse = StreamingJSONArray.buffer(response, maxStreamingResponseSize);
+                        response = bufferedResponse != null ? bufferedResponse : RESPONSE_TOO_LARGE;
+                    }
                 } finally {
                     if (startedTransaction) {
                         Db.db.endTransaction();
@@ -20,6 +20,7 @@ import nxt.Nxt;
 import nxt.NxtException;
 import nxt.blockchain.ChildChain;
 import nxt.taggeddata.TaggedDataHome;
+import org.eclipse.jetty.server.HttpOutput;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -28,6 +29,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 import static nxt.http.JSONResponses.PRUNED_TRANSACTION;
 
@@ -55,7 +58,10 @@ public final class DownloadTaggedData extends APIServlet.APIRequestHandler {
         if (taggedData == null) {
             return JSONResponses.incorrect("transaction", "Tagged data not found");
         }
-        byte[] data = taggedData.getData();
+        ByteBuffer data = taggedData.getDataBuffer();
+        if (data == null) {
+            return PRUNED_TRANSACTION;
+        }
         if (!taggedData.getType().equals("")) {
             response.setContentType(taggedData.getType());
         } else {
@@ -71,10 +77,18 @@ public final class DownloadTaggedData extends APIServlet.APIRequestHandler {
             contentDisposition += "; filename*=UTF-8''" + uri.toASCIIString();
         } catch (URISyntaxException ignore) {}
         response.setHeader("Content-Disposition", contentDisposition);
-        response.setContentLength(data.length);
+        response.setContentLength(data.remaining());
         try (OutputStream out = response.getOutputStream()) {
             try {
-                out.write(data);
+                //
+                // The Jetty output stream writes the buffer directly, which avoids copying
+                // a memory-mapped buffer from the prunable payload store to the heap
+                //
+                if (out instanceof HttpOutput) {
+                    ((HttpOutput)out).write(data);
+                } else {
+                    Channels.newChannel(out).write(data);
+                }
             } catch (IOException e) {
                 throw new ParameterException(JSONResponses.RESPONSE_WRITE_ERROR);
             }
@@ -75,6 +75,8 @@ public final class DumpPeers extends APIServlet.APIRequestHandler {
                 service.invokeAll(connects);
             } catch (InterruptedException e) {
                 Logger.logMessage(e.toString(), e);
+            } finally {
+                service.shutdown();
             }
         }
         Set<String> addresses = new HashSet<>();
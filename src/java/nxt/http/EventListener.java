@@ -62,6 +62,9 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * The maximum number of event users is specified by nxt.apiMaxEventUsers and
  * the maximum number of registrations per user is specified by nxt.apiMaxUserEventRegistrations.
+ *
+ * Applications with many subscribers should use the /events WebSocket endpoint
+ * provided by EventSocket instead.
  */
 class EventListener implements Runnable, AsyncListener, TransactionalDb.TransactionCallback {
 
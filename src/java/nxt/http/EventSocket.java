@@ -0,0 +1,449 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.util.Convert;
+import nxt.util.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EventSocket streams events to an application connected to the /events WebSocket endpoint.
+ *
+ * The application selects the events by sending a subscribe request:
+ * <pre>
+ * {"requestType": "subscribe", "events": ["Block.BLOCK_PUSHED", "Ledger.ADD_ENTRY"],
+ *  "accounts": ["ARDOR-XK4R-7VJU-6EQG-7R335"], "holdings": ["2"]}
+ * </pre>
+ * The event names are the same as for the EventRegister API without the account
+ * suffix.  All events are selected if 'events' is omitted.  Transaction and ledger
+ * events are only sent for the listed accounts and holdings when 'accounts' or
+ * 'holdings' is specified.  The holding of a transaction is its chain.  A subscribe
+ * request replaces the current subscription and an unsubscribe request stops
+ * the events.
+ *
+ * Each event is sent as a JSON object containing the event 'name' and the event 'ids'
+ * in the same format as the EventWait API along with event specific fields.
+ *
+ * Messages are sent one at a time and the pending messages are held in a send queue
+ * limited to nxt.apiEventSocketQueueSize messages.  The connection is closed if the
+ * application does not keep up with the events and the queue overflows.  The maximum
+ * number of connected applications is specified by nxt.apiMaxEventSockets.
+ */
+class EventSocket implements WebSocketListener {
+
+    /** Maximum number of event sockets */
+    static final int maxEventSockets = Nxt.getIntProperty("nxt.apiMaxEventSockets", 256);
+
+    /** Maximum number of queued messages for an event socket */
+    static final int maxQueueSize = Nxt.getIntProperty("nxt.apiEventSocketQueueSize", 1000);
+
+    /** Supported event names */
+    private static final Set<String> eventNames;
+    static {
+        Set<String> names = new HashSet<>();
+        EventListener.peerEvents.forEach(event -> names.add("Peer." + event.name()));
+        EventListener.blockEvents.forEach(event -> names.add("Block." + event.name()));
+        EventListener.txEvents.forEach(event -> names.add("Transaction." + event.name()));
+        EventListener.ledgerEvents.forEach(event -> names.add("Ledger." + event.name()));
+        eventNames = Collections.unmodifiableSet(names);
+    }
+
+    /** WebSocket session */
+    private volatile Session session;
+
+    /** Current subscription or null if not subscribed */
+    private volatile Subscription subscription;
+
+    /** Pending messages */
+    private final SendQueue sendQueue = new SendQueue(maxQueueSize);
+
+    /**
+     * WebSocket connection opened
+     *
+     * @param   session             WebSocket session
+     */
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        if (!EventSocketHub.addSocket(this)) {
+            sendQueue.close();
+            session.close(StatusCode.TRY_AGAIN_LATER,
+                    String.format("Too many event sockets: Maximum %d", maxEventSockets));
+            return;
+        }
+        Logger.logDebugMessage(String.format("Event socket connected for %s", session.getRemoteAddress()));
+    }
+
+    /**
+     * WebSocket connection closed
+     *
+     * @param   statusCode          Close status code
+     * @param   reason              Close reason
+     */
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        close();
+        Logger.logDebugMessage(String.format("Event socket closed for %s: %d %s",
+                session.getRemoteAddress(), statusCode, reason));
+    }
+
+    /**
+     * WebSocket error
+     *
+     * @param   cause               Error
+     */
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        close();
+        Logger.logDebugMessage("Event socket error: " + cause.toString());
+    }
+
+    /**
+     * Binary messages are not supported
+     */
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        sendError(4, "Binary messages are not supported");
+    }
+
+    /**
+     * Process a subscribe or unsubscribe request
+     *
+     * @param   message             Request message
+     */
+    @Override
+    public void onWebSocketText(String message) {
+        Object request;
+        try {
+            request = JSONValue.parseWithException(message);
+        } catch (ParseException e) {
+            sendError(4, "Incorrect JSON request");
+            return;
+        }
+        if (!(request instanceof JSONObject)) {
+            sendError(4, "Incorrect JSON request");
+            return;
+        }
+        JSONObject requestJSON = (JSONObject)request;
+        String requestType = String.valueOf(requestJSON.get("requestType"));
+        switch (requestType) {
+            case "subscribe":
+                subscribe(requestJSON);
+                break;
+            case "unsubscribe":
+                subscription = null;
+                JSONObject response = new JSONObject();
+                response.put("requestType", requestType);
+                send(response.toJSONString());
+                break;
+            default:
+                sendError(5, "Unknown request type");
+        }
+    }
+
+    private void subscribe(JSONObject request) {
+        Set<String> events = new HashSet<>();
+        Set<Long> accounts = new HashSet<>();
+        Set<Long> holdings = new HashSet<>();
+        try {
+            List<?> eventList = getList(request, "events");
+            if (eventList == null) {
+                events.addAll(eventNames);
+            } else {
+                for (Object event : eventList) {
+                    if (!eventNames.contains(String.valueOf(event))) {
+                        sendError(5, "Unknown event name");
+                        return;
+                    }
+                    events.add(String.valueOf(event));
+                }
+            }
+            List<?> accountList = getList(request, "accounts");
+            if (accountList != null) {
+                for (Object account : accountList) {
+                    long accountId = Convert.parseAccountId(String.valueOf(account));
+                    if (accountId == 0) {
+                        throw new IllegalArgumentException();
+                    }
+                    accounts.add(accountId);
+                }
+            }
+            List<?> holdingList = getList(request, "holdings");
+            if (holdingList != null) {
+                for (Object holding : holdingList) {
+                    holdings.add(Convert.parseUnsignedLong(String.valueOf(holding)));
+                }
+            }
+        } catch (RuntimeException e) {
+            sendError(4, "Incorrect subscription");
+            return;
+        }
+        subscription = new Subscription(events, accounts, holdings);
+        JSONObject response = new JSONObject();
+        JSONArray eventsJSON = new JSONArray();
+        eventsJSON.addAll(events);
+        response.put("requestType", "subscribe");
+        response.put("events", eventsJSON);
+        send(response.toJSONString());
+    }
+
+    private static List<?> getList(JSONObject request, String name) {
+        Object value = request.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof List) {
+            return (List<?>)value;
+        }
+        return Collections.singletonList(value);
+    }
+
+    private void sendError(int errorCode, String errorDescription) {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", errorCode);
+        response.put("errorDescription", errorDescription);
+        send(response.toJSONString());
+    }
+
+    /**
+     * Check if an event message matches the current subscription
+     *
+     * @param   message             Event message
+     * @return                      TRUE if the message should be sent
+     */
+    boolean isSubscribed(EventSocketHub.Message message) {
+        Subscription s = subscription;
+        return s != null && s.matches(message);
+    }
+
+    /**
+     * Queue a message to be sent
+     *
+     * The socket is closed if the send queue is full
+     *
+     * @param   message             Message
+     */
+    void send(String message) {
+        switch (sendQueue.add(message)) {
+            case SEND:
+                flush();
+                break;
+            case OVERFLOW:
+                Logger.logDebugMessage(String.format("Event socket send queue full for %s", session.getRemoteAddress()));
+                EventSocketHub.removeSocket(this);
+                session.close(StatusCode.TRY_AGAIN_LATER, "Send queue full");
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Send the queued messages
+     *
+     * Messages which complete synchronously are followed by the next message in
+     * this loop, otherwise the write callback continues with the next message.
+     */
+    private void flush() {
+        while (true) {
+            String message = sendQueue.next();
+            if (message == null) {
+                return;
+            }
+            SendCallback callback = new SendCallback();
+            session.getRemote().sendString(message, callback);
+            if (callback.state.compareAndSet(SendCallback.PENDING, SendCallback.ASYNC)) {
+                return;
+            }
+        }
+    }
+
+    private void close() {
+        sendQueue.close();
+        EventSocketHub.removeSocket(this);
+    }
+
+    /**
+     * Write completion for a queued message
+     */
+    private class SendCallback implements WriteCallback {
+
+        /** Write has not completed */
+        static final int PENDING = 0;
+
+        /** Write completed before sendString returned */
+        static final int COMPLETED = 1;
+
+        /** Write completes after sendString returned */
+        static final int ASYNC = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        @Override
+        public void writeSuccess() {
+            if (!state.compareAndSet(PENDING, COMPLETED)) {
+                flush();
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable cause) {
+            close();
+            state.set(COMPLETED);
+            Logger.logDebugMessage("Unable to send event message: " + cause.toString());
+            session.close(StatusCode.SERVER_ERROR, "Write failed");
+        }
+    }
+
+    /**
+     * Bounded queue of the messages waiting to be sent
+     *
+     * One message is sent at a time.  Adding a message to an idle queue tells the caller to
+     * start sending, and the sender takes messages until the queue is empty.  The queue is
+     * closed and the pending messages are discarded when it overflows.
+     */
+    static final class SendQueue {
+
+        /** Result of adding a message */
+        enum Result {
+            /** The message is queued behind the message being sent */
+            QUEUED,
+            /** The message is queued and the caller must start sending */
+            SEND,
+            /** The queue was full and has been closed */
+            OVERFLOW,
+            /** The queue is closed and the message was discarded */
+            CLOSED
+        }
+
+        /** Maximum number of queued messages */
+        private final int maxSize;
+
+        /** Queued messages */
+        private final Queue<String> messages = new ArrayDeque<>();
+
+        /** A message is being sent */
+        private boolean sending;
+
+        /** The queue has been closed */
+        private boolean closed;
+
+        SendQueue(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Add a message
+         *
+         * @param   message         Message
+         * @return                  Result
+         */
+        synchronized Result add(String message) {
+            if (closed) {
+                return Result.CLOSED;
+            }
+            if (messages.size() >= maxSize) {
+                closed = true;
+                messages.clear();
+                return Result.OVERFLOW;
+            }
+            messages.add(message);
+            if (sending) {
+                return Result.QUEUED;
+            }
+            sending = true;
+            return Result.SEND;
+        }
+
+        /**
+         * Take the next message to send
+         *
+         * @return                  Message or null if there is no message to send
+         */
+        synchronized String next() {
+            String message = closed ? null : messages.poll();
+            if (message == null) {
+                sending = false;
+            }
+            return message;
+        }
+
+        /**
+         * Close the queue and discard the pending messages
+         */
+        synchronized void close() {
+            closed = true;
+            messages.clear();
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        synchronized int size() {
+            return messages.size();
+        }
+    }
+
+    /**
+     * Event subscription
+     */
+    static final class Subscription {
+
+        /** Event names */
+        private final Set<String> events;
+
+        /** Account filter or empty for all accounts */
+        private final Set<Long> accounts;
+
+        /** Holding filter or empty for all holdings */
+        private final Set<Long> holdings;
+
+        Subscription(Set<String> events, Set<Long> accounts, Set<Long> holdings) {
+            this.events = events;
+            this.accounts = accounts;
+            this.holdings = holdings;
+        }
+
+        boolean matches(EventSocketHub.Message message) {
+            if (!events.contains(message.getName())) {
+                return false;
+            }
+            if (!accounts.isEmpty() && !message.getAccounts().isEmpty()
+                    && Collections.disjoint(accounts, message.getAccounts())) {
+                return false;
+            }
+            return holdings.isEmpty() || message.getHoldingId() == null || holdings.contains(message.getHoldingId());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.account.AccountLedger;
+import nxt.account.AccountLedger.LedgerEntry;
+import nxt.blockchain.Block;
+import nxt.blockchain.BlockchainProcessor;
+import nxt.blockchain.Transaction;
+import nxt.blockchain.TransactionProcessor;
+import nxt.db.TransactionalDb;
+import nxt.dbschema.Db;
+import nxt.peer.Peers;
+import nxt.util.Convert;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * EventSocketHub publishes peer, block, transaction and account ledger events to the
+ * connected event sockets.
+ *
+ * A single Nxt listener is registered for each event supported by the EventRegister API.
+ * Each event is serialized once and the same message is then queued for every socket
+ * with a matching subscription.  Block, transaction and ledger events raised within a
+ * database transaction are held until the transaction is committed and are discarded
+ * if the transaction is rolled back.
+ */
+final class EventSocketHub implements TransactionalDb.TransactionCallback {
+
+    /** Event hub */
+    private static final EventSocketHub hub = new EventSocketHub();
+
+    /** Connected event sockets */
+    private static final Set<EventSocket> sockets = new CopyOnWriteArraySet<>();
+
+    /** Events held until the current database transaction completes */
+    private static final ThreadLocal<List<Message>> dbMessages = ThreadLocal.withInitial(ArrayList::new);
+
+    static {
+        EventListener.peerEvents.forEach(event ->
+                Peers.addListener(peer -> {
+                    if (!sockets.isEmpty()) {
+                        hub.publish(new Message("Peer." + event.name(), peer.getHost()), false);
+                    }
+                }, event));
+        EventListener.blockEvents.forEach(event ->
+                Nxt.getBlockchainProcessor().addListener(block -> {
+                    if (!sockets.isEmpty()) {
+                        hub.publish(blockMessage(event, block), true);
+                    }
+                }, event));
+        EventListener.txEvents.forEach(event ->
+                Nxt.getTransactionProcessor().addListener(txList -> {
+                    if (!sockets.isEmpty()) {
+                        txList.forEach(tx -> hub.publish(transactionMessage(event, tx), true));
+                    }
+                }, event));
+        EventListener.ledgerEvents.forEach(event ->
+                AccountLedger.addListener(entry -> {
+                    if (!sockets.isEmpty()) {
+                        hub.publish(ledgerMessage(event, entry), true);
+                    }
+                }, event));
+    }
+
+    private EventSocketHub() {}
+
+    /**
+     * Add an event socket
+     *
+     * @param   socket              Event socket
+     * @return                      TRUE if the socket was added or FALSE if the maximum number of sockets is connected
+     */
+    static boolean addSocket(EventSocket socket) {
+        synchronized (sockets) {
+            if (sockets.size() >= EventSocket.maxEventSockets) {
+                return false;
+            }
+            return sockets.add(socket);
+        }
+    }
+
+    /**
+     * Remove an event socket
+     *
+     * @param   socket              Event socket
+     */
+    static void removeSocket(EventSocket socket) {
+        sockets.remove(socket);
+    }
+
+    /**
+     * Return the number of connected event sockets
+     *
+     * @return                      Number of sockets
+     */
+    static int getSocketCount() {
+        return sockets.size();
+    }
+
+    /**
+     * Publish an event message
+     *
+     * @param   message             Event message
+     * @param   waitTransaction     TRUE if the message must wait for the database transaction to commit
+     */
+    private void publish(Message message, boolean waitTransaction) {
+        if (sockets.isEmpty()) {
+            return;
+        }
+        if (waitTransaction && Db.db.isInTransaction()) {
+            dbMessages.get().add(message);
+            Db.db.registerCallback(this);
+        } else {
+            dispatch(message);
+        }
+    }
+
+    /**
+     * Queue an event message for each socket with a matching subscription
+     *
+     * @param   message             Event message
+     */
+    private static void dispatch(Message message) {
+        for (EventSocket socket : sockets) {
+            if (socket.isSubscribed(message)) {
+                socket.send(message.getJSON());
+            }
+        }
+    }
+
+    /**
+     * Database transaction has been committed
+     */
+    @Override
+    public void commit() {
+        List<Message> messages = dbMessages.get();
+        dbMessages.remove();
+        messages.forEach(EventSocketHub::dispatch);
+    }
+
+    /**
+     * Database transaction has been rolled back
+     */
+    @Override
+    public void rollback() {
+        dbMessages.remove();
+    }
+
+    private static Message blockMessage(BlockchainProcessor.Event event, Block block) {
+        Message message = new Message("Block." + event.name(), block.getStringId());
+        message.json.put("height", block.getHeight());
+        message.json.put("timestamp", block.getTimestamp());
+        JSONData.putAccount(message.json, "generator", block.getGeneratorId());
+        return message;
+    }
+
+    private static Message transactionMessage(TransactionProcessor.Event event, Transaction tx) {
+        Message message = new Message("Transaction." + event.name(),
+                String.format("%d:%s", tx.getChain().getId(), Convert.toHexString(tx.getFullHash())),
+                (long)tx.getChain().getId(), tx.getSenderId(), tx.getRecipientId());
+        JSONData.putAccount(message.json, "sender", tx.getSenderId());
+        if (tx.getRecipientId() != 0) {
+            JSONData.putAccount(message.json, "recipient", tx.getRecipientId());
+        }
+        return message;
+    }
+
+    private static Message ledgerMessage(AccountLedger.Event event, LedgerEntry entry) {
+        Message message = new Message("Ledger." + event.name(), Long.toUnsignedString(entry.getLedgerId()),
+                entry.getHoldingId(), entry.getAccountId());
+        JSONObject entryJSON = new JSONObject();
+        JSONData.ledgerEntry(entryJSON, entry, false, false);
+        message.json.put("entry", entryJSON);
+        return message;
+    }
+
+    /**
+     * Event message
+     *
+     * Peer and block messages are delivered to every socket subscribed to the event.
+     * Transaction and ledger messages carry the accounts and the holding they affect and
+     * are also matched against the account and holding filters of the subscription.
+     * The holding of a transaction is its chain.
+     */
+    static final class Message {
+
+        /** Event name */
+        private final String name;
+
+        /** Affected accounts or empty if the event is not account specific */
+        private final Set<Long> accounts;
+
+        /** Affected holding or null if the event is not holding specific */
+        private final Long holdingId;
+
+        /** Message JSON */
+        private final JSONObject json = new JSONObject();
+
+        /** Serialized message */
+        private volatile String jsonString;
+
+        /**
+         * Create an event message
+         *
+         * @param   name            Event name
+         * @param   id              Event identifier
+         */
+        Message(String name, String id) {
+            this(name, id, null);
+        }
+
+        /**
+         * Create an event message
+         *
+         * @param   name            Event name
+         * @param   id              Event identifier
+         * @param   holdingId       Affected holding
+         * @param   accountIds      Affected accounts
+         */
+        Message(String name, String id, Long holdingId, long... accountIds) {
+            this.name = name;
+            this.holdingId = holdingId;
+            if (accountIds.length == 0) {
+                this.accounts = Collections.emptySet();
+            } else {
+                this.accounts = new HashSet<>();
+                for (long accountId : accountIds) {
+                    if (accountId != 0) {
+                        accounts.add(accountId);
+                    }
+                }
+            }
+            JSONArray ids = new JSONArray();
+            ids.add(id);
+            json.put("name", name);
+            json.put("ids", ids);
+        }
+
+        /**
+         * Return the event name
+         *
+         * @return                  Event name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Return the affected accounts
+         *
+         * @return                  Account identifiers or an empty set
+         */
+        Set<Long> getAccounts() {
+            return accounts;
+        }
+
+        /**
+         * Return the affected holding
+         *
+         * @return                  Holding identifier or null
+         */
+        Long getHoldingId() {
+            return holdingId;
+        }
+
+        /**
+         * Return the serialized message
+         *
+         * The message is serialized the first time it is sent and the same string is
+         * then sent to all of the subscribed sockets
+         *
+         * @return                  Message JSON string
+         */
+        String getJSON() {
+            String s = jsonString;
+            if (s == null) {
+                s = json.toJSONString();
+                jsonString = s;
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.http;
+
+import nxt.util.Logger;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * WebSocket endpoint for the event sockets
+ *
+ * Connections are accepted from the hosts allowed by nxt.allowedBotHosts and are rejected
+ * when the EventRegister API is disabled by nxt.disabledAPIs or nxt.disabledAPITags.  A
+ * connection is closed if no message is sent or received within nxt.apiEventTimeout seconds.
+ *
+ * WebSocket handshakes are not subject to the browser same-origin policy, so the Origin
+ * header is checked here using the same rules as the API requests: any origin is accepted
+ * when the cross-origin filter is enabled by nxt.apiServerCORS, otherwise a browser must
+ * connect from a page served by the API server.  Requests without an Origin header are not
+ * sent by browsers and are accepted.
+ */
+@SuppressWarnings("serial")
+public final class EventSocketServlet extends WebSocketServlet {
+
+    /** Maximum size of a subscribe request */
+    private static final int MAX_REQUEST_SIZE = 64 * 1024;
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(EventListener.eventTimeout * 1000L);
+        factory.getPolicy().setMaxTextMessageSize(MAX_REQUEST_SIZE);
+        factory.setCreator((req, resp) -> {
+            try {
+                if (API.isForbiddenHost(req.getRemoteAddress())) {
+                    resp.sendForbidden("Not allowed");
+                    return null;
+                }
+                if (APIServlet.disabledRequestHandlers.containsKey(APIEnum.EVENT_REGISTER.getName())) {
+                    resp.sendForbidden("Event sockets are disabled");
+                    return null;
+                }
+                if (!isAllowedOrigin(req.getHeader("Origin"), req.getHeader("Host"), API.apiServerCORS)) {
+                    Logger.logDebugMessage(String.format("Event socket origin %s not allowed for %s",
+                            req.getHeader("Origin"), req.getRemoteAddress()));
+                    resp.sendForbidden("Origin not allowed");
+                    return null;
+                }
+                if (EventSocketHub.getSocketCount() >= EventSocket.maxEventSockets) {
+                    resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                            String.format("Too many event sockets: Maximum %d", EventSocket.maxEventSockets));
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            return new EventSocket();
+        });
+    }
+
+    /**
+     * Check if a WebSocket handshake is allowed for the request origin
+     *
+     * @param   origin                  Origin header or null
+     * @param   host                    Host header or null
+     * @param   allowCrossOrigin        TRUE if cross-origin requests are allowed
+     * @return                          TRUE if the origin is allowed
+     */
+    static boolean isAllowedOrigin(String origin, String host, boolean allowCrossOrigin) {
+        if (origin == null || allowCrossOrigin) {
+            return true;
+        }
+        if (host == null) {
+            return false;
+        }
+        try {
+            String authority = new URI(origin).getAuthority();
+            return authority != null && authority.equalsIgnoreCase(host);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+}
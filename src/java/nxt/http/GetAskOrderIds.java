@@ -19,7 +19,6 @@ package nxt.http;
 import nxt.NxtException;
 import nxt.ae.OrderHome;
 import nxt.blockchain.ChildChain;
-import nxt.db.DbIterator;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
@@ -43,10 +42,8 @@ public final class GetAskOrderIds extends APIServlet.APIRequestHandler {
         ChildChain childChain = ParameterParser.getChildChain(req);
 
         JSONArray orderIds = new JSONArray();
-        try (DbIterator<OrderHome.Ask> askOrders = childChain.getOrderHome().getSortedAskOrders(assetId, firstIndex, lastIndex)) {
-            while (askOrders.hasNext()) {
-                orderIds.add(Long.toUnsignedString(askOrders.next().getId()));
-            }
+        for (OrderHome.Ask order : childChain.getOrderHome().getSortedAskOrders(assetId, firstIndex, lastIndex)) {
+            orderIds.add(Long.toUnsignedString(order.getId()));
         }
 
         JSONObject response = new JSONObject();
@@ -19,7 +19,6 @@ package nxt.http;
 import nxt.NxtException;
 import nxt.ae.OrderHome;
 import nxt.blockchain.ChildChain;
-import nxt.db.DbIterator;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
@@ -43,10 +42,8 @@ public final class GetBidOrderIds extends APIServlet.APIRequestHandler {
         ChildChain childChain = ParameterParser.getChildChain(req);
 
         JSONArray orderIds = new JSONArray();
-        try (DbIterator<OrderHome.Bid> bidOrders = childChain.getOrderHome().getSortedBidOrders(assetId, firstIndex, lastIndex)) {
-            while (bidOrders.hasNext()) {
-                orderIds.add(Long.toUnsignedString(bidOrders.next().getId()));
-            }
+        for (OrderHome.Bid order : childChain.getOrderHome().getSortedBidOrders(assetId, firstIndex, lastIndex)) {
+            orderIds.add(Long.toUnsignedString(order.getId()));
         }
         JSONObject response = new JSONObject();
         response.put("bidOrderIds", orderIds);
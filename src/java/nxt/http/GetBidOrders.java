@@ -23,7 +23,6 @@ import nxt.ae.OrderCancellationAttachment;
 import nxt.ae.OrderHome;
 import nxt.blockchain.ChildChain;
 import nxt.blockchain.Transaction;
-import nxt.db.DbIterator;
 import nxt.util.Filter;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -65,15 +64,12 @@ public final class GetBidOrders extends APIServlet.APIRequestHandler {
         }
 
         JSONArray orders = new JSONArray();
-        try (DbIterator<OrderHome.Bid> bidOrders = childChain.getOrderHome().getSortedBidOrders(assetId, firstIndex, lastIndex)) {
-            while (bidOrders.hasNext()) {
-                OrderHome.Bid order = bidOrders.next();
-                JSONObject orderJSON = JSONData.bidOrder(order);
-                if (showExpectedCancellations && Arrays.binarySearch(cancellations, order.getId()) >= 0) {
-                    orderJSON.put("expectedCancellation", Boolean.TRUE);
-                }
-                orders.add(orderJSON);
+        for (OrderHome.Bid order : childChain.getOrderHome().getSortedBidOrders(assetId, firstIndex, lastIndex)) {
+            JSONObject orderJSON = JSONData.bidOrder(order);
+            if (showExpectedCancellations && Arrays.binarySearch(cancellations, order.getId()) >= 0) {
+                orderJSON.put("expectedCancellation", Boolean.TRUE);
             }
+            orders.add(orderJSON);
         }
         JSONObject response = new JSONObject();
         response.put("bidOrders", orders);
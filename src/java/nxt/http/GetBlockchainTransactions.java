@@ -22,8 +22,7 @@ import nxt.blockchain.Chain;
 import nxt.blockchain.ChildChain;
 import nxt.blockchain.FxtChain;
 import nxt.blockchain.Transaction;
-import nxt.db.DbIterator;
-import org.json.simple.JSONArray;
+import nxt.util.StreamingJSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
@@ -73,26 +72,22 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
 
-        JSONArray transactions = new JSONArray();
+        StreamingJSONArray<Transaction> transactions;
         if (chain instanceof ChildChain) {
-            try (DbIterator<? extends Transaction> iterator =
-                    Nxt.getBlockchain().getTransactions((ChildChain)chain, accountId, numberOfConfirmations,
-                            type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
-                            includeExpiredPrunable, executedOnly)) {
-                while (iterator.hasNext()) {
-                    Transaction transaction = iterator.next();
-                    transactions.add(JSONData.transaction(transaction, includePhasingResult));
-                }
-            }
+            byte childType = type;
+            byte childSubtype = subtype;
+            transactions = new StreamingJSONArray<>(
+                    () -> Nxt.getBlockchain().getTransactions((ChildChain)chain, accountId, numberOfConfirmations,
+                            childType, childSubtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
+                            includeExpiredPrunable, executedOnly),
+                    transaction -> JSONData.transaction(transaction, includePhasingResult));
         } else {
-            try (DbIterator<? extends Transaction> iterator =
-                    Nxt.getBlockchain().getTransactions((FxtChain)chain, accountId, numberOfConfirmations,
-                            type, subtype, timestamp, firstIndex, lastIndex)) {
-                while (iterator.hasNext()) {
-                    Transaction transaction = iterator.next();
-                    transactions.add(JSONData.transaction(transaction));
-                }
-            }
+            byte fxtType = type;
+            byte fxtSubtype = subtype;
+            transactions = new StreamingJSONArray<>(
+                    () -> Nxt.getBlockchain().getTransactions((FxtChain)chain, accountId, numberOfConfirmations,
+                            fxtType, fxtSubtype, timestamp, firstIndex, lastIndex),
+                    JSONData::transaction);
         }
 
         JSONObject response = new JSONObject();
@@ -19,8 +19,7 @@ package nxt.http;
 import nxt.Nxt;
 import nxt.NxtException;
 import nxt.blockchain.Block;
-import nxt.db.DbIterator;
-import org.json.simple.JSONArray;
+import nxt.util.StreamingJSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
@@ -43,16 +42,10 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
         boolean includeTransactions = "true".equalsIgnoreCase(req.getParameter("includeTransactions"));
         boolean includeExecutedPhased = "true".equalsIgnoreCase(req.getParameter("includeExecutedPhased"));
 
-        JSONArray blocks = new JSONArray();
-        try (DbIterator<? extends Block> iterator = Nxt.getBlockchain().getBlocks(firstIndex, lastIndex)) {
-            while (iterator.hasNext()) {
-                Block block = iterator.next();
-                if (block.getTimestamp() < timestamp) {
-                    break;
-                }
-                blocks.add(JSONData.block(block, includeTransactions, includeExecutedPhased));
-            }
-        }
+        StreamingJSONArray<Block> blocks = new StreamingJSONArray<Block>(
+                () -> Nxt.getBlockchain().getBlocks(firstIndex, lastIndex),
+                block -> JSONData.block(block, includeTransactions, includeExecutedPhased))
+                .takeWhile(block -> block.getTimestamp() >= timestamp);
 
         JSONObject response = new JSONObject();
         response.put("blocks", blocks);
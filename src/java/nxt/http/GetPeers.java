@@ -88,6 +88,8 @@ public final class GetPeers extends APIServlet.APIRequestHandler {
                 service.invokeAll(connects);
             } catch (InterruptedException e) {
                 Logger.logMessage(e.toString(), e);
+            } finally {
+                service.shutdown();
             }
         }
 
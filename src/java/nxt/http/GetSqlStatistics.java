@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.NxtException;
+import nxt.db.SqlStatistics;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * <p>The GetSqlStatistics API returns the execution statistics for SQL statements.
+ * Statistics are collected when nxt.enableSqlStatistics is set.  The request must be a POST
+ * since it can reset the statistics.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>limit - The number of statements to return, ordered by total time (default 100)</li>
+ * <li>reset - Clear the statistics after returning them</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>enabled    - TRUE if statistics are being collected</li>
+ * <li>tables     - An array of statistics objects for each table</li>
+ * <li>statements - An array of statistics objects for each normalized SQL statement</li>
+ * </ul>
+ *
+ * <p>Statistics object:</p>
+ * <ul>
+ * <li>name        - Table name or normalized SQL statement</li>
+ * <li>table       - Table name for a SQL statement</li>
+ * <li>count       - Number of executions</li>
+ * <li>totalTime   - Total execution time in microseconds</li>
+ * <li>meanTime    - Mean execution time in microseconds</li>
+ * <li>medianTime  - Median execution time in microseconds</li>
+ * <li>p90Time     - 90th percentile execution time in microseconds</li>
+ * <li>p99Time     - 99th percentile execution time in microseconds</li>
+ * <li>maxTime     - Maximum execution time in microseconds</li>
+ * <li>rowsRead    - Number of rows read from the result sets</li>
+ * <li>rowsWritten - Number of rows updated</li>
+ * </ul>
+ */
+public final class GetSqlStatistics extends APIServlet.APIRequestHandler {
+
+    static final GetSqlStatistics instance = new GetSqlStatistics();
+
+    private GetSqlStatistics() {
+        super(new APITag[] {APITag.DEBUG}, "limit", "reset");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws NxtException {
+        int limit = ParameterParser.getInt(req, "limit", 0, Integer.MAX_VALUE, 100);
+        boolean reset = "true".equalsIgnoreCase(req.getParameter("reset"));
+        JSONObject response = new JSONObject();
+        response.put("enabled", SqlStatistics.isEnabled());
+        response.put("tables", toJSON(SqlStatistics.getTables()));
+        response.put("statements", toJSON(SqlStatistics.getStatements(limit)));
+        if (reset) {
+            SqlStatistics.reset();
+        }
+        return response;
+    }
+
+    private static JSONArray toJSON(List<SqlStatistics.Summary> summaries) {
+        JSONArray array = new JSONArray();
+        for (SqlStatistics.Summary summary : summaries) {
+            JSONObject json = new JSONObject();
+            json.put("name", summary.getName());
+            if (summary.getTable() != null) {
+                json.put("table", summary.getTable());
+            }
+            json.put("count", summary.getCount());
+            json.put("totalTime", summary.getTotalTime());
+            json.put("meanTime", summary.getMeanTime());
+            json.put("medianTime", summary.getMedianTime());
+            json.put("p90Time", summary.getP90Time());
+            json.put("p99Time", summary.getP99Time());
+            json.put("maxTime", summary.getMaxTime());
+            json.put("rowsRead", summary.getRowsRead());
+            json.put("rowsWritten", summary.getRowsWritten());
+            array.add(json);
+        }
+        return array;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+    @Override
+    protected boolean isChainSpecific() {
+        return false;
+    }
+}
@@ -22,11 +22,17 @@ import nxt.account.Account;
 import nxt.account.AccountRestrictions;
 import nxt.ae.Asset;
 import nxt.ae.AssetTransfer;
+import nxt.blockchain.BlockCache;
 import nxt.blockchain.Chain;
 import nxt.blockchain.ChildChain;
 import nxt.blockchain.Generator;
+import nxt.blockchain.SignatureCache;
+import nxt.db.EntityCache;
+import nxt.dbschema.Db;
 import nxt.ms.Currency;
 import nxt.ms.CurrencyTransfer;
+import nxt.peer.BlockBytesCache;
+import nxt.peer.BufferPool;
 import nxt.peer.NetworkHandler;
 import nxt.peer.Peers;
 import nxt.util.UPnP;
@@ -61,6 +67,40 @@ public final class GetState extends APIServlet.APIRequestHandler {
             response.put("numberOfAccountLeases", Account.getAccountLeaseCount());
             response.put("numberOfActiveAccountLeases", Account.getActiveLeaseCount());
             response.put("numberOfPhasingOnlyAccounts", AccountRestrictions.PhasingOnly.getCount());
+            response.put("signatureCacheSize", SignatureCache.getSize());
+            response.put("signatureCacheHits", SignatureCache.getHits());
+            response.put("signatureCacheMisses", SignatureCache.getMisses());
+            response.put("signatureCacheEvictions", SignatureCache.getEvictions());
+            response.put("signatureCacheHitRate", SignatureCache.getHitRate());
+            response.put("blockCacheSize", BlockCache.getSize());
+            response.put("blockCacheHits", BlockCache.getHits());
+            response.put("blockCacheMisses", BlockCache.getMisses());
+            response.put("blockCacheEvictions", BlockCache.getEvictions());
+            response.put("blockCacheHitRate", BlockCache.getHitRate());
+            response.put("blockBytesCacheSize", BlockBytesCache.getSize());
+            response.put("blockBytesCacheBlocks", BlockBytesCache.getBlockCount());
+            response.put("blockBytesCacheHits", BlockBytesCache.getHits());
+            response.put("blockBytesCacheMisses", BlockBytesCache.getMisses());
+            response.put("blockBytesCacheEvictions", BlockBytesCache.getEvictions());
+            response.put("blockBytesCacheHitRate", BlockBytesCache.getHitRate());
+            response.put("peerBufferPoolHits", BufferPool.getHits());
+            response.put("peerBufferPoolMisses", BufferPool.getMisses());
+            response.put("peerBufferPoolBytesInUse", BufferPool.getBytesInUse());
+            response.put("peerBufferPoolPooledBytes", BufferPool.getPooledBytes());
+            response.put("dbSchemaSwitches", Db.db.getSchemaSwitchCount());
+            response.put("dbStatementCacheHits", Db.db.getStatementCacheHits());
+            response.put("dbStatementCacheMisses", Db.db.getStatementCacheMisses());
+            JSONObject entityCaches = new JSONObject();
+            for (EntityCache<?> entityCache : EntityCache.getCaches()) {
+                JSONObject cacheJSON = new JSONObject();
+                cacheJSON.put("size", entityCache.getSize());
+                cacheJSON.put("maxSize", entityCache.getMaxSize());
+                cacheJSON.put("hits", entityCache.getHits());
+                cacheJSON.put("misses", entityCache.getMisses());
+                cacheJSON.put("evictions", entityCache.getEvictions());
+                entityCaches.put(entityCache.getSchemaTable(), cacheJSON);
+            }
+            response.put("entityCaches", entityCaches);
             if (chain instanceof ChildChain) {
                 ChildChain childChain = (ChildChain) chain;
                 int askCount = childChain.getOrderHome().getAskCount();
@@ -636,6 +636,10 @@ public final class JSONData {
         json.put("shareAddress", peer.shareAddress());
         json.put("downloadedVolume", peer.getDownloadedVolume());
         json.put("uploadedVolume", peer.getUploadedVolume());
+        double compressionRatio = peer.getCompressionRatio();
+        if (compressionRatio != 0) {
+            json.put("compressionRatio", compressionRatio);
+        }
         json.put("application", peer.getApplication());
         json.put("version", peer.getVersion());
         json.put("platform", peer.getPlatform());
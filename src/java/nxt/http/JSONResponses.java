@@ -376,6 +376,14 @@ public final class JSONResponses {
         REQUIRED_LAST_BLOCK_NOT_FOUND = JSON.prepare(response);
     }
 
+    public static final JSONStreamAware RESPONSE_TOO_LARGE;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", 1);
+        response.put("errorDescription", "Response is too large, request fewer records");
+        RESPONSE_TOO_LARGE = JSON.prepare(response);
+    }
+
     public static final JSONStreamAware MISSING_SECRET_PHRASE_OR_PRIVATE_KEY;
     static {
         JSONObject response = new JSONObject();
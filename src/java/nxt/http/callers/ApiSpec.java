@@ -210,6 +210,8 @@ public enum ApiSpec {
 
     getStackTraces(false, null, "depth", "adminPassword"),
 
+    getSqlStatistics(false, null, "limit", "reset", "adminPassword"),
+
     rsConvert(false, null, "account"),
 
     searchTaggedData(true, null, "chain", "query", "tag", "channel", "account", "firstIndex", "lastIndex", "includeData", "adminPassword", "requireBlock", "requireLastBlock"),
@@ -540,6 +542,8 @@ public enum ApiSpec {
 
     getSupportedContracts(false, null, "adminPassword", "requireBlock", "requireLastBlock"),
 
+    getContractExecutionStatus(false, null, "adminPassword", "requireBlock", "requireLastBlock"),
+
     startShuffler(true, null, "chain", "secretPhrase", "shufflingFullHash", "recipientSecretPhrase", "recipientPublicKey", "feeRateNQTPerFXT", "privateKey", "sharedPieceAccount", "sharedPiece", "sharedPiece", "sharedPiece"),
 
     blacklistBundler(false, null, "account", "adminPassword"),
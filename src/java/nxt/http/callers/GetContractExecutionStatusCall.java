@@ -0,0 +1,26 @@
+// Auto generated code, do not modify
+package nxt.http.callers;
+
+import nxt.http.APICall;
+
+public class GetContractExecutionStatusCall extends APICall.Builder<GetContractExecutionStatusCall> {
+    private GetContractExecutionStatusCall() {
+        super(ApiSpec.getContractExecutionStatus);
+    }
+
+    public static GetContractExecutionStatusCall create() {
+        return new GetContractExecutionStatusCall();
+    }
+
+    public GetContractExecutionStatusCall requireLastBlock(String requireLastBlock) {
+        return param("requireLastBlock", requireLastBlock);
+    }
+
+    public GetContractExecutionStatusCall requireBlock(String requireBlock) {
+        return param("requireBlock", requireBlock);
+    }
+
+    public GetContractExecutionStatusCall adminPassword(String adminPassword) {
+        return param("adminPassword", adminPassword);
+    }
+}
@@ -0,0 +1,26 @@
+// Auto generated code, do not modify
+package nxt.http.callers;
+
+import nxt.http.APICall;
+
+public class GetSqlStatisticsCall extends APICall.Builder<GetSqlStatisticsCall> {
+    private GetSqlStatisticsCall() {
+        super(ApiSpec.getSqlStatistics);
+    }
+
+    public static GetSqlStatisticsCall create() {
+        return new GetSqlStatisticsCall();
+    }
+
+    public GetSqlStatisticsCall limit(String limit) {
+        return param("limit", limit);
+    }
+
+    public GetSqlStatisticsCall reset(String reset) {
+        return param("reset", reset);
+    }
+
+    public GetSqlStatisticsCall adminPassword(String adminPassword) {
+        return param("adminPassword", adminPassword);
+    }
+}
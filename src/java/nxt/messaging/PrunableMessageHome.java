@@ -23,6 +23,7 @@ import nxt.blockchain.Transaction;
 import nxt.blockchain.TransactionImpl;
 import nxt.crypto.Crypto;
 import nxt.crypto.EncryptedData;
+import nxt.db.BlobStore;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
@@ -166,13 +167,19 @@ public final class PrunableMessageHome {
             return false;
         }
         try (Connection con = prunableMessageTable.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT message, encrypted_message FROM prunable_message WHERE id = ? AND full_hash = ?")) {
+             PreparedStatement pstmt = con.prepareStatement("SELECT message, encrypted_message, blob_stored FROM prunable_message WHERE id = ? AND full_hash = ?")) {
             pstmt.setLong(1, Convert.fullHashToId(transactionFullHash));
             pstmt.setBytes(2, transactionFullHash);
             try (ResultSet rs = pstmt.executeQuery()) {
-                return !rs.next()
-                        || (hasPrunablePlainMessage && rs.getBytes("message") == null)
-                        || (hasPrunableEncryptedMessage && rs.getBytes("encrypted_message") == null);
+                if (!rs.next()) {
+                    return true;
+                }
+                boolean isBlobStored = rs.getBoolean("blob_stored");
+                BlobStore store = BlobStore.getStore();
+                return (hasPrunablePlainMessage && (rs.getBytes("message") == null
+                                || (isBlobStored && !store.contains(BlobStore.PLAIN_MESSAGE, transactionFullHash))))
+                        || (hasPrunableEncryptedMessage && (rs.getBytes("encrypted_message") == null
+                                || (isBlobStored && !store.contains(BlobStore.ENCRYPTED_MESSAGE, transactionFullHash))));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -223,11 +230,18 @@ public final class PrunableMessageHome {
             this.dbKey = dbKey;
             this.senderId = rs.getLong("sender_id");
             this.recipientId = rs.getLong("recipient_id");
+            boolean isBlobStored = rs.getBoolean("blob_stored");
             this.message = rs.getBytes("message");
+            if (this.message != null && isBlobStored) {
+                this.message = BlobStore.getStore().getBytes(BlobStore.PLAIN_MESSAGE, this.hash);
+            }
             if (this.message != null) {
                 this.messageIsText = rs.getBoolean("message_is_text");
             }
             byte[] encryptedMessage = rs.getBytes("encrypted_message");
+            if (encryptedMessage != null && isBlobStored) {
+                encryptedMessage = BlobStore.getStore().getBytes(BlobStore.ENCRYPTED_MESSAGE, this.hash);
+            }
             if (encryptedMessage != null) {
                 this.encryptedData = EncryptedData.readEncryptedData(encryptedMessage);
                 this.encryptedMessageIsText = rs.getBoolean("encrypted_is_text");
@@ -242,23 +256,34 @@ public final class PrunableMessageHome {
             if (message == null && encryptedData == null) {
                 throw new IllegalStateException("Prunable message not fully initialized");
             }
+            byte[] encryptedMessage = this.encryptedData == null ? null : this.encryptedData.getBytes();
+            boolean isBlobStored = BlobStore.isEnabled();
+            if (isBlobStored) {
+                if (this.message != null) {
+                    BlobStore.getStore().put(BlobStore.PLAIN_MESSAGE, this.hash, this.transactionTimestamp, this.message);
+                }
+                if (encryptedMessage != null) {
+                    BlobStore.getStore().put(BlobStore.ENCRYPTED_MESSAGE, this.hash, this.transactionTimestamp, encryptedMessage);
+                }
+            }
             try (PreparedStatement pstmt = con.prepareStatement("MERGE INTO prunable_message (id, full_hash, sender_id, recipient_id, "
-                    + "message, encrypted_message, message_is_text, encrypted_is_text, is_compressed, block_timestamp, transaction_timestamp, height) "
-                    + "KEY (id, full_hash) "
-                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    + "message, encrypted_message, message_is_text, encrypted_is_text, is_compressed, block_timestamp, transaction_timestamp, height, "
+                    + "blob_stored) KEY (id, full_hash) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
                 int i = 0;
                 pstmt.setLong(++i, this.id);
                 pstmt.setBytes(++i, this.hash);
                 pstmt.setLong(++i, this.senderId);
                 DbUtils.setLongZeroToNull(pstmt, ++i, this.recipientId);
-                DbUtils.setBytes(pstmt, ++i, this.message);
-                DbUtils.setBytes(pstmt, ++i, this.encryptedData == null ? null : this.encryptedData.getBytes());
+                DbUtils.setBytes(pstmt, ++i, isBlobStored && this.message != null ? Convert.EMPTY_BYTE : this.message);
+                DbUtils.setBytes(pstmt, ++i, isBlobStored && encryptedMessage != null ? Convert.EMPTY_BYTE : encryptedMessage);
                 pstmt.setBoolean(++i, this.messageIsText);
                 pstmt.setBoolean(++i, this.encryptedMessageIsText);
                 pstmt.setBoolean(++i, this.isCompressed);
                 pstmt.setInt(++i, this.blockTimestamp);
                 pstmt.setInt(++i, this.transactionTimestamp);
                 pstmt.setInt(++i, this.height);
+                pstmt.setBoolean(++i, isBlobStored);
                 pstmt.executeUpdate();
             }
         }
@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.peer;
+
+import nxt.Nxt;
+import nxt.blockchain.Block;
+import nxt.blockchain.Blockchain;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of encoded blocks returned to peers
+ *
+ * A peer downloading the blockchain requests the same ranges of blocks from several nodes,
+ * and several peers usually download the same ranges at the same time.  The encoded block
+ * and transaction bytes are kept so that a GetNextBlocks request for a cached range is
+ * answered without loading and serializing the blocks again.  The least recently used block
+ * is evicted when the encoded blocks exceed nxt.blockBytesCacheSize megabytes.
+ *
+ * The block identifiers are always obtained from the database before the cache is consulted,
+ * so an entry for a block which has been popped off is not returned and is eventually evicted.
+ * The encoded transactions include the prunable data held when the block was cached.  An
+ * entry is removed when prunable data is restored for one of its transactions, but not when
+ * the prunable data expires, so a cached block can still return prunable data which has
+ * since been pruned until the entry is evicted.
+ */
+public final class BlockBytesCache {
+
+    /** Maximum number of encoded bytes held in the cache */
+    private static final long maxCacheSize = (long)Nxt.getIntProperty("nxt.blockBytesCacheSize") * 1024 * 1024;
+
+    /** Encoded blocks in access order */
+    private static final Map<Long, NetworkMessage.BlockBytes> blockMap = new LinkedHashMap<>(1024, 0.75f, true);
+
+    /** Number of encoded bytes held in the cache */
+    private static long cacheSize;
+
+    /** Cache statistics */
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Get the encoded blocks following a block
+     *
+     * The blockchain read lock must be held by the caller so the block identifiers
+     * don't change while the blocks are loaded.
+     *
+     * @param   blockId                 Identifier of the block preceding the first block
+     * @param   blockIds                Identifiers of the blocks following the block
+     * @return                          Encoded blocks
+     */
+    static List<NetworkMessage.BlockBytes> getBlocksAfter(long blockId, List<Long> blockIds) {
+        List<NetworkMessage.BlockBytes> result = new ArrayList<>(blockIds.size());
+        int missing = -1;
+        int missCount = 0;
+        synchronized (blockMap) {
+            for (int i = 0; i < blockIds.size(); i++) {
+                NetworkMessage.BlockBytes bytes = maxCacheSize > 0 ? blockMap.get(blockIds.get(i)) : null;
+                if (bytes == null) {
+                    if (missing < 0) {
+                        missing = i;
+                    }
+                    missCount++;
+                }
+                result.add(bytes);
+            }
+        }
+        hits.addAndGet(blockIds.size() - missCount);
+        misses.addAndGet(missCount);
+        if (missing < 0) {
+            return result;
+        }
+        //
+        // Load the remaining blocks in a single query, starting with the first block
+        // which is not in the cache
+        //
+        Blockchain blockchain = Nxt.getBlockchain();
+        long previousBlockId = (missing == 0 ? blockId : blockIds.get(missing - 1));
+        List<? extends Block> blocks = blockchain.getBlocksAfter(previousBlockId, blockIds.subList(missing, blockIds.size()));
+        for (int i = 0; i < blocks.size(); i++) {
+            int index = missing + i;
+            if (result.get(index) == null) {
+                NetworkMessage.BlockBytes bytes = new NetworkMessage.BlockBytes(blocks.get(i));
+                result.set(index, bytes);
+                add(blockIds.get(index), bytes);
+            }
+        }
+        return result.subList(0, missing + blocks.size());
+    }
+
+    /**
+     * Add an encoded block
+     *
+     * @param   blockId                 Block identifier
+     * @param   bytes                   Encoded block
+     */
+    private static void add(long blockId, NetworkMessage.BlockBytes bytes) {
+        if (maxCacheSize <= 0 || bytes.getLength() > maxCacheSize) {
+            return;
+        }
+        synchronized (blockMap) {
+            NetworkMessage.BlockBytes previous = blockMap.put(blockId, bytes);
+            if (previous != null) {
+                cacheSize -= previous.getLength();
+            }
+            cacheSize += bytes.getLength();
+            Iterator<NetworkMessage.BlockBytes> it = blockMap.values().iterator();
+            while (cacheSize > maxCacheSize && it.hasNext()) {
+                cacheSize -= it.next().getLength();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove an encoded block
+     *
+     * @param   blockId                 Block identifier
+     */
+    public static void remove(long blockId) {
+        synchronized (blockMap) {
+            NetworkMessage.BlockBytes previous = blockMap.remove(blockId);
+            if (previous != null) {
+                cacheSize -= previous.getLength();
+            }
+        }
+    }
+
+    public static long getMaxSize() {
+        return Math.max(maxCacheSize, 0);
+    }
+
+    public static long getSize() {
+        synchronized (blockMap) {
+            return cacheSize;
+        }
+    }
+
+    public static int getBlockCount() {
+        synchronized (blockMap) {
+            return blockMap.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Return the percentage of lookups which found an encoded block
+     *
+     * @return                          Hit rate
+     */
+    public static double getHitRate() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double)(hitCount * 100) / lookups;
+    }
+
+    private BlockBytesCache() {}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.peer;
+
+import nxt.Nxt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct buffers used for peer network messages
+ *
+ * Buffer sizes are rounded up to a power of 2 and each buffer size has its own pool.
+ * A buffer is obtained by the network handler when reading a message from a peer and is
+ * returned to the pool by the message handler once the message has been decoded.  A buffer
+ * is obtained when a message is serialized for a peer and is returned to the pool by the
+ * network handler once the message has been written.  Buffers which are discarded when
+ * a peer is disconnected are not returned to the pool since they may still be in use by the
+ * network handler.
+ *
+ * Heap buffers are used when the pool is disabled and for messages which are too large
+ * for the pool.  Heap buffers and read-only buffers are never returned to the pool.
+ */
+public final class BufferPool {
+
+    /** Smallest buffer size (256 bytes) */
+    private static final int MIN_SHIFT = 8;
+
+    /** Largest buffer size (2 MB, which holds the largest message) */
+    private static final int MAX_SHIFT = 21;
+
+    /** Maximum number of bytes held in the pool */
+    private static final long maxPoolSize = (long)Nxt.getIntProperty("nxt.peerBufferPoolSize") * 1024 * 1024;
+
+    /** Available buffers for each buffer size */
+    private static final List<ConcurrentLinkedQueue<ByteBuffer>> pools = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+    static {
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            pools.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /** Pool statistics */
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong bytesInUse = new AtomicLong();
+    private static final AtomicLong pooledBytes = new AtomicLong();
+
+    private BufferPool() {}
+
+    /**
+     * Get a buffer
+     *
+     * The buffer position is 0 and the buffer limit is set to the requested size.  The
+     * buffer byte order must be set by the caller.
+     *
+     * @param   size                    Buffer size
+     * @return                          Buffer
+     */
+    static ByteBuffer acquire(int size) {
+        int index = getIndex(size);
+        if (maxPoolSize <= 0 || index >= pools.size()) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = pools.get(index).poll();
+        if (buffer != null) {
+            hits.incrementAndGet();
+            pooledBytes.addAndGet(-buffer.capacity());
+            buffer.clear();
+        } else {
+            misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(1 << (index + MIN_SHIFT));
+        }
+        buffer.limit(size);
+        bytesInUse.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool
+     *
+     * The buffer must not be used after it has been returned to the pool.  The buffer
+     * is discarded if the pool is full.
+     *
+     * @param   buffer                  Buffer or null
+     */
+    static void release(ByteBuffer buffer) {
+        if (!isPooled(buffer)) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        bytesInUse.addAndGet(-capacity);
+        if (pooledBytes.get() + capacity <= maxPoolSize) {
+            pooledBytes.addAndGet(capacity);
+            pools.get(getIndex(capacity)).offer(buffer);
+        }
+    }
+
+    /**
+     * Discard a buffer which may still be in use
+     *
+     * The buffer is not returned to the pool.
+     *
+     * @param   buffer                  Buffer or null
+     */
+    static void discard(ByteBuffer buffer) {
+        if (isPooled(buffer)) {
+            bytesInUse.addAndGet(-buffer.capacity());
+        }
+    }
+
+    /**
+     * Get the number of requests satisfied from the pool
+     *
+     * @return                          Number of pool hits
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of requests which required a new buffer
+     *
+     * @return                          Number of pool misses
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of bytes in pooled buffers which are currently in use
+     *
+     * @return                          Number of bytes in use
+     */
+    public static long getBytesInUse() {
+        return bytesInUse.get();
+    }
+
+    /**
+     * Get the number of bytes in buffers which are available for reuse
+     *
+     * @return                          Number of available bytes
+     */
+    public static long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static boolean isPooled(ByteBuffer buffer) {
+        return buffer != null && buffer.isDirect() && !buffer.isReadOnly()
+                && Integer.bitCount(buffer.capacity()) == 1 && getIndex(buffer.capacity()) < pools.size();
+    }
+
+    private static int getIndex(int size) {
+        if (size <= (1 << MIN_SHIFT)) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+}
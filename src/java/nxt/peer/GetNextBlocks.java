@@ -17,7 +17,7 @@
 package nxt.peer;
 
 import nxt.Nxt;
-import nxt.blockchain.Block;
+import nxt.blockchain.Blockchain;
 
 import java.util.List;
 
@@ -36,18 +36,31 @@ final class GetNextBlocks {
         long blockId = request.getBlockId();
         List<Long> blockIds = request.getBlockIds();
         int limit = (request.getLimit() != 0 ? request.getLimit() : 36);
-        List<? extends Block> blocks;
         if (!blockIds.isEmpty()) {
             if (blockIds.size() > 36) {
                 throw new IllegalArgumentException(Errors.TOO_MANY_BLOCKS_REQUESTED);
             }
-            blocks = Nxt.getBlockchain().getBlocksAfter(blockId, blockIds);
         } else {
             if (limit > 36) {
                 throw new IllegalArgumentException(Errors.TOO_MANY_BLOCKS_REQUESTED);
             }
-            blocks = Nxt.getBlockchain().getBlocksAfter(blockId, limit);
         }
-        return new NetworkMessage.BlocksMessage(request.getMessageId(), blocks);
+        Blockchain blockchain = Nxt.getBlockchain();
+        List<NetworkMessage.BlockBytes> blocks;
+        blockchain.readLock();
+        try {
+            List<Long> nextBlockIds = blockchain.getBlockIdsAfter(blockId, blockIds.isEmpty() ? limit : blockIds.size());
+            if (!blockIds.isEmpty()) {
+                int count = 0;
+                while (count < nextBlockIds.size() && nextBlockIds.get(count).equals(blockIds.get(count))) {
+                    count++;
+                }
+                nextBlockIds = nextBlockIds.subList(0, count);
+            }
+            blocks = BlockBytesCache.getBlocksAfter(blockId, nextBlockIds);
+        } finally {
+            blockchain.readUnlock();
+        }
+        return NetworkMessage.BlocksMessage.fromBlockBytes(request.getMessageId(), blocks);
     }
 }
@@ -51,7 +51,8 @@ class MessageHandler implements Runnable {
     static void processMessage(PeerImpl peer, ByteBuffer bytes) {
         bytes.position(bytes.position() - 4);
         int msgLength = bytes.getInt();
-        messageQueue.offer(new QueueEntry(peer, bytes, (msgLength & 0x80000000) != 0));
+        messageQueue.offer(new QueueEntry(peer, bytes, (msgLength & NetworkHandler.ENCRYPTED_MESSAGE) != 0,
+                (msgLength & NetworkHandler.COMPRESSED_MESSAGE) != 0));
     }
 
     /**
@@ -60,7 +61,7 @@ class MessageHandler implements Runnable {
     static void shutdown() {
         if (!messageShutdown) {
             messageShutdown = true;
-            messageQueue.offer(new QueueEntry(null, null, false));
+            messageQueue.offer(new QueueEntry(null, null, false, false));
         }
     }
 
@@ -83,6 +84,7 @@ class MessageHandler implements Runnable {
                         messageQueue.offer(entry);
                         break;
                     }
+                    BufferPool.release(entry.getBytes());
                     continue;
                 }
                 //
@@ -90,6 +92,7 @@ class MessageHandler implements Runnable {
                 //
                 PeerImpl peer = entry.getPeer();
                 if (peer.getState() != Peer.State.CONNECTED) {
+                    BufferPool.release(entry.getBytes());
                     continue;
                 }
                 if (peer.isHandshakePending() && entry.isEncrypted()) {
@@ -99,19 +102,29 @@ class MessageHandler implements Runnable {
                 NetworkMessage message = null;
                 NetworkMessage response;
                 try {
+                    //
+                    // The message buffer is returned to the buffer pool once the message has been decoded
+                    //
                     ByteBuffer buffer = entry.getBytes();
-                    if (entry.isEncrypted()) {
-                        byte[] sessionKey = peer.getSessionKey();
-                        if (sessionKey == null) {
-                            throw new IllegalStateException("Encrypted message received without a session key");
+                    try {
+                        if (entry.isEncrypted()) {
+                            byte[] sessionKey = peer.getSessionKey();
+                            if (sessionKey == null) {
+                                throw new IllegalStateException("Encrypted message received without a session key");
+                            }
+                            byte[] encryptedBytes = new byte[buffer.limit() - buffer.position()];
+                            buffer.get(encryptedBytes);
+                            byte[] msgBytes = Crypto.aesGCMDecrypt(encryptedBytes, sessionKey);
+                            buffer = ByteBuffer.wrap(msgBytes);
+                            buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        }
+                        if (entry.isCompressed()) {
+                            buffer = NetworkHandler.decompressMessage(peer, buffer);
                         }
-                        byte[] encryptedBytes = new byte[buffer.limit() - buffer.position()];
-                        buffer.get(encryptedBytes);
-                        byte[] msgBytes = Crypto.aesGCMDecrypt(encryptedBytes, sessionKey);
-                        buffer = ByteBuffer.wrap(msgBytes);
-                        buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        message = NetworkMessage.getMessage(buffer);
+                    } finally {
+                        BufferPool.release(entry.getBytes());
                     }
-                    message = NetworkMessage.getMessage(buffer);
                     if (Peers.isLogLevelEnabled(Peers.LOG_LEVEL_NAMES)) {
                         Logger.logDebugMessage(String.format("%s[%d] message received from %s",
                                 message.getMessageName(), message.getMessageId(), peer.getHost()));
@@ -197,17 +210,22 @@ class MessageHandler implements Runnable {
         /** Message is encrypted */
         private final boolean isEncrypted;
 
+        /** Message is compressed */
+        private final boolean isCompressed;
+
         /**
          * Construct a queue entry
          *
          * @param   peer                Peer
          * @param   bytes               Message bytes
          * @param   isEncrypted         TRUE if message is encrypted
+         * @param   isCompressed        TRUE if message is compressed
          */
-        private QueueEntry(PeerImpl peer, ByteBuffer bytes, boolean isEncrypted) {
+        private QueueEntry(PeerImpl peer, ByteBuffer bytes, boolean isEncrypted, boolean isCompressed) {
             this.peer = peer;
             this.bytes = bytes;
             this.isEncrypted = isEncrypted;
+            this.isCompressed = isCompressed;
         }
 
         /**
@@ -236,5 +254,14 @@ class MessageHandler implements Runnable {
         private boolean isEncrypted() {
             return isEncrypted;
         }
+
+        /**
+         * Check if the message is compressed
+         *
+         * @return                      TRUE if the message is compressed
+         */
+        private boolean isCompressed() {
+            return isCompressed;
+        }
     }
 }
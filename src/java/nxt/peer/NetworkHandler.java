@@ -59,6 +59,9 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * The network handler creates outbound connections and adds them to the
@@ -97,6 +100,21 @@ public final class NetworkHandler implements Runnable {
     /** Maximum message size */
     static final int MAX_MESSAGE_SIZE = 1024 * 1024;
 
+    /** Message length flag for an encrypted message */
+    static final int ENCRYPTED_MESSAGE = 0x80000000;
+
+    /** Message length flag for a compressed message */
+    static final int COMPRESSED_MESSAGE = 0x40000000;
+
+    /** Message length mask */
+    private static final int MESSAGE_LENGTH_MASK = 0x3fffffff;
+
+    /** Message compressor for each thread */
+    private static final ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    /** Message decompressor for each thread */
+    private static final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+
     /** Server port */
     private static final int serverPort = Constants.isTestnet ? TESTNET_PEER_PORT :
             Nxt.getIntProperty("nxt.peerServerPort", DEFAULT_PEER_PORT);
@@ -714,10 +732,11 @@ public final class NetworkHandler implements Runnable {
                 //
                 // Allocate a header buffer if no read is in progress
                 //   4-byte magic bytes
-                //   4-byte message length (High-order bit set if message is encrypted)
+                //   4-byte message length (High-order bit set if message is encrypted,
+                //                          next bit set if message is compressed)
                 //
                 if (buffer == null) {
-                    buffer = ByteBuffer.wrap(new byte[MESSAGE_HEADER_LENGTH]);
+                    buffer = BufferPool.acquire(MESSAGE_HEADER_LENGTH);
                     buffer.order(ByteOrder.LITTLE_ENDIAN);
                     peer.setInputBuffer(buffer);
                 }
@@ -743,21 +762,23 @@ public final class NetworkHandler implements Runnable {
                 // Process the message header and allocate a new buffer to hold the complete message
                 //
                 if (buffer.position() == buffer.limit() && buffer.limit() == MESSAGE_HEADER_LENGTH) {
-                    buffer.position(0);
-                    byte[] hdrBytes = new byte[MESSAGE_HEADER_MAGIC.length];
-                    buffer.get(hdrBytes);
-                    int msgLength = buffer.getInt();
-                    int length = msgLength & 0x7fffffff;
-                    if (!Arrays.equals(hdrBytes, MESSAGE_HEADER_MAGIC)) {
-                        throw new IOException("Incorrect message header " + Arrays.toString(hdrBytes));
+                    for (int i = 0; i < MESSAGE_HEADER_MAGIC.length; i++) {
+                        if (buffer.get(i) != MESSAGE_HEADER_MAGIC[i]) {
+                            byte[] hdrBytes = new byte[MESSAGE_HEADER_MAGIC.length];
+                            buffer.position(0);
+                            buffer.get(hdrBytes);
+                            throw new IOException("Incorrect message header " + Arrays.toString(hdrBytes));
+                        }
                     }
+                    int msgLength = buffer.getInt(MESSAGE_HEADER_MAGIC.length);
+                    int length = msgLength & MESSAGE_LENGTH_MASK;
                     if (length < 1 || length > MAX_MESSAGE_SIZE + 32) {
                         throw new IOException("Invalid message length " + length);
                     }
-                    byte[] msgBytes = new byte[MESSAGE_HEADER_LENGTH + length];
-                    buffer = ByteBuffer.wrap(msgBytes);
+                    BufferPool.release(buffer);
+                    buffer = BufferPool.acquire(MESSAGE_HEADER_LENGTH + length);
                     buffer.order(ByteOrder.LITTLE_ENDIAN);
-                    buffer.put(hdrBytes);
+                    buffer.put(MESSAGE_HEADER_MAGIC);
                     buffer.putInt(msgLength);
                     peer.setInputBuffer(buffer);
                 }
@@ -799,30 +820,150 @@ public final class NetworkHandler implements Runnable {
         ByteBuffer buffer;
         byte[] sessionKey = peer.getSessionKey();
         int length = message.getLength();
+        byte[] compressedBytes = (isCompressionEnabled(peer, length) ? compressMessage(peer, message, length) : null);
         if (sessionKey != null) {
-            buffer = ByteBuffer.allocate(MESSAGE_HEADER_LENGTH + length + 32);
+            buffer = BufferPool.acquire(MESSAGE_HEADER_LENGTH + length + 32);
             buffer.order(ByteOrder.LITTLE_ENDIAN);
-            message.getBytes(buffer);
-            int byteLength = buffer.position();
-            byte[] msgBytes = new byte[byteLength];
-            buffer.position(0);
-            buffer.get(msgBytes);
+            byte[] msgBytes;
+            if (compressedBytes != null) {
+                msgBytes = compressedBytes;
+            } else {
+                message.getBytes(buffer);
+                int byteLength = buffer.position();
+                msgBytes = new byte[byteLength];
+                buffer.position(0);
+                buffer.get(msgBytes);
+            }
             byte[] encryptedBytes = Crypto.aesGCMEncrypt(msgBytes, sessionKey);
             buffer.position(0);
             buffer.put(MESSAGE_HEADER_MAGIC);
-            buffer.putInt(encryptedBytes.length | 0x80000000);
+            buffer.putInt(encryptedBytes.length | ENCRYPTED_MESSAGE | (compressedBytes != null ? COMPRESSED_MESSAGE : 0));
             buffer.put(encryptedBytes);
-        } else {
-            buffer = ByteBuffer.allocate(MESSAGE_HEADER_LENGTH + length);
+            buffer.flip();
+        } else if (compressedBytes != null) {
+            buffer = BufferPool.acquire(MESSAGE_HEADER_LENGTH + compressedBytes.length);
             buffer.order(ByteOrder.LITTLE_ENDIAN);
             buffer.put(MESSAGE_HEADER_MAGIC);
-            buffer.putInt(length);
-            message.getBytes(buffer);
+            buffer.putInt(compressedBytes.length | COMPRESSED_MESSAGE);
+            buffer.put(compressedBytes);
+            buffer.flip();
+        } else {
+            buffer = BufferPool.acquire(MESSAGE_HEADER_LENGTH + length);
+            putMessageBytes(buffer, message, length);
         }
-        buffer.flip();
         return buffer;
     }
 
+    /**
+     * Check if a message will be compressed
+     *
+     * Messages are compressed if both peers provide the COMPRESSION service and the
+     * message length is at least nxt.peerCompressionThreshold.  Messages are not
+     * compressed until the connection handshake has completed since the peer services
+     * are not known until then.
+     *
+     * @param   peer                    Peer
+     * @param   length                  Message length
+     * @return                          TRUE if the message will be compressed
+     */
+    static boolean isCompressionEnabled(PeerImpl peer, int length) {
+        return Peers.enablePeerCompression && length >= Peers.peerCompressionThreshold
+                && !peer.isHandshakePending() && peer.providesService(Peer.Service.COMPRESSION);
+    }
+
+    /**
+     * Compress a message
+     *
+     * The compressed message consists of the 4-byte uncompressed length followed by the
+     * deflated message bytes.
+     *
+     * @param   peer                    Peer
+     * @param   message                 Network message
+     * @param   length                  Message length
+     * @return                          Compressed message or null if the message does not compress
+     */
+    private static byte[] compressMessage(PeerImpl peer, NetworkMessage message, int length) {
+        byte[] msgBytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(msgBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        message.getBytes(buffer);
+        int byteLength = buffer.position();
+        Deflater compressor = deflater.get();
+        compressor.reset();
+        compressor.setInput(msgBytes, 0, byteLength);
+        compressor.finish();
+        byte[] compressedBytes = new byte[byteLength];
+        int compressedLength = compressor.deflate(compressedBytes, 4, byteLength - 4);
+        if (!compressor.finished()) {
+            return null;
+        }
+        compressedLength += 4;
+        ByteBuffer.wrap(compressedBytes).order(ByteOrder.LITTLE_ENDIAN).putInt(byteLength);
+        peer.updateCompressionVolume(byteLength, compressedLength);
+        return Arrays.copyOf(compressedBytes, compressedLength);
+    }
+
+    /**
+     * Decompress a message
+     *
+     * @param   peer                    Peer
+     * @param   buffer                  Compressed message
+     * @return                          Decompressed message
+     * @throws  NetworkProtocolException    Message is not valid
+     */
+    static ByteBuffer decompressMessage(PeerImpl peer, ByteBuffer buffer) throws NetworkProtocolException {
+        if (!Peers.enablePeerCompression) {
+            throw new NetworkProtocolException("Compressed message received but compression is not enabled");
+        }
+        int compressedLength = buffer.remaining();
+        int length = buffer.getInt();
+        if (length < 1 || length > MAX_MESSAGE_SIZE) {
+            throw new NetworkProtocolException("Invalid uncompressed message length " + length);
+        }
+        byte[] compressedBytes = new byte[buffer.remaining()];
+        buffer.get(compressedBytes);
+        byte[] msgBytes = new byte[length];
+        Inflater decompressor = inflater.get();
+        decompressor.reset();
+        decompressor.setInput(compressedBytes);
+        try {
+            if (decompressor.inflate(msgBytes) != length || !decompressor.finished()) {
+                throw new NetworkProtocolException("Compressed message length is not correct");
+            }
+        } catch (DataFormatException exc) {
+            throw new NetworkProtocolException("Compressed message is not valid", exc);
+        }
+        peer.updateCompressionVolume(length, compressedLength);
+        ByteBuffer msgBuffer = ByteBuffer.wrap(msgBytes);
+        msgBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        return msgBuffer;
+    }
+
+    /**
+     * Get the unencrypted message bytes
+     *
+     * The same serialized message can be sent to each peer which does not use a session key.
+     * Each peer must be given its own view of the buffer using ByteBuffer.duplicate().
+     * The buffer is not obtained from the buffer pool since it is shared by multiple peers.
+     *
+     * @param   message                 Network message
+     * @return                          Serialized message
+     */
+    static ByteBuffer getMessageBytes(NetworkMessage message) {
+        int length = message.getLength();
+        ByteBuffer buffer = ByteBuffer.allocate(MESSAGE_HEADER_LENGTH + length);
+        putMessageBytes(buffer, message, length);
+        return buffer;
+    }
+
+    private static void putMessageBytes(ByteBuffer buffer, NetworkMessage message, int length) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MESSAGE_HEADER_MAGIC);
+        buffer.putInt(length);
+        message.getBytes(buffer);
+        buffer.flip();
+    }
+
     /**
      * Process OP_WRITE event (ready to write data)
      *
@@ -865,8 +1006,11 @@ public final class NetworkHandler implements Runnable {
                 if (buffer.position() < buffer.limit()) {
                     break;
                 }
+                if (peer.getOutputBuffer() == buffer) {
+                    peer.setOutputBuffer(null);
+                    BufferPool.release(buffer);
+                }
                 buffer = null;
-                peer.setOutputBuffer(null);
             }
         } catch (IOException exc) {
             disconnectAndBlacklist(peer, exc);
@@ -970,6 +1114,10 @@ public final class NetworkHandler implements Runnable {
     /**
      * Broadcast a message to all connected peers
      *
+     * The message is serialized once and the serialized message is shared by all peers
+     * which do not use a session key or compression.  The message is encrypted or compressed
+     * separately for each peer which uses a session key or compression.
+     *
      * @param   sender                  Message sender or null if our message
      * @param   message                 Message to send
      * @return                          number of peers to which message was sent
@@ -979,12 +1127,21 @@ public final class NetworkHandler implements Runnable {
             return 0;
         }
         int n = 0;
-        for (Peer peer : connectionMap.values()) {
+        int length = message.getLength();
+        ByteBuffer messageBytes = null;
+        for (PeerImpl peer : connectionMap.values()) {
             if (peer.getState() == Peer.State.CONNECTED &&
                     peer != sender &&
                     (peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT ||
                      message.sendToLightClient())) {
-                peer.sendMessage(message);
+                if (peer.getSessionKey() == null && !isCompressionEnabled(peer, length)) {
+                    if (messageBytes == null) {
+                        messageBytes = getMessageBytes(message).asReadOnlyBuffer();
+                    }
+                    peer.sendMessage(message, messageBytes.duplicate());
+                } else {
+                    peer.sendMessage(message);
+                }
                 n += 1;
             }
         }
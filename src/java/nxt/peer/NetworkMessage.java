@@ -2296,17 +2296,64 @@ public abstract class NetworkMessage {
             blockBytes = new ArrayList<>(blocks.size());
             totalBlockLength = 0;
             for (Block block : blocks) {
-                BlockBytes bytes = new BlockBytes(block);
-                if (getLength() + bytes.getLength() > NetworkHandler.MAX_MESSAGE_SIZE) {
-                    ((ArrayList)blockBytes).trimToSize();
-                    Logger.logDebugMessage("Blocks message size exceeds " + NetworkHandler.MAX_MESSAGE_SIZE);
+                if (!addBlockBytes(new BlockBytes(block))) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Construct a Blocks message
+         *
+         * @param   messageId               Message identifier
+         * @param   blocks                  Encoded blocks
+         * @param   blockCount              Number of encoded blocks
+         */
+        private BlocksMessage(long messageId, Iterable<BlockBytes> blocks, int blockCount) {
+            super("Blocks");
+            if (blockCount > MAX_LIST_SIZE) {
+                throw new RuntimeException("List size " + blockCount + " exceeds the maximum of " + MAX_LIST_SIZE);
+            }
+            this.messageId = messageId;
+            blockBytes = new ArrayList<>(blockCount);
+            totalBlockLength = 0;
+            for (BlockBytes bytes : blocks) {
+                if (!addBlockBytes(bytes)) {
                     break;
                 }
-                blockBytes.add(bytes);
-                totalBlockLength += bytes.getLength();
             }
         }
 
+        /**
+         * Construct a Blocks message using the encoded blocks
+         *
+         * The encoded blocks are shared with the block bytes cache and are not copied
+         *
+         * @param   messageId               Message identifier
+         * @param   blocks                  Encoded blocks
+         * @return                          Blocks message
+         */
+        static BlocksMessage fromBlockBytes(long messageId, List<BlockBytes> blocks) {
+            return new BlocksMessage(messageId, blocks, blocks.size());
+        }
+
+        /**
+         * Add an encoded block unless the maximum message size would be exceeded
+         *
+         * @param   bytes                   Encoded block
+         * @return                          TRUE if the block was added
+         */
+        private boolean addBlockBytes(BlockBytes bytes) {
+            if (getLength() + bytes.getLength() > NetworkHandler.MAX_MESSAGE_SIZE) {
+                ((ArrayList)blockBytes).trimToSize();
+                Logger.logDebugMessage("Blocks message size exceeds " + NetworkHandler.MAX_MESSAGE_SIZE);
+                return false;
+            }
+            blockBytes.add(bytes);
+            totalBlockLength += bytes.getLength();
+            return true;
+        }
+
         /**
          * Construct a Blocks message
          *
@@ -3358,8 +3405,10 @@ public abstract class NetworkMessage {
      * <li>Transaction list (missing transactions are represented by empty transaction bytes)
      * </ul>
      * The ordering of transactions must be same as used in the BlockInventoryMessage.
+     * An encoded block is not modified once it has been constructed, so it can be shared
+     * by multiple messages.
      */
-    private static class BlockBytes {
+    static class BlockBytes {
 
         /** Block bytes */
         private final byte[] blockBytes;
@@ -3378,7 +3427,7 @@ public abstract class NetworkMessage {
          *
          * @param   block               Block
          */
-        private BlockBytes(Block block) {
+        BlockBytes(Block block) {
             blockBytes = block.getBytes();
             length = getEncodedArrayLength(blockBytes) + 2; // fxtTransactions count (short)
             List<? extends FxtTransaction> transactions = block.getFxtTransactions();
@@ -3475,7 +3524,7 @@ public abstract class NetworkMessage {
          *
          * @return                      Encoded block size
          */
-        private int getLength() {
+        int getLength() {
             return length;
         }
 
@@ -19,6 +19,7 @@ package nxt.peer;
 import nxt.http.APIEnum;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Peer network node
@@ -38,7 +39,8 @@ public interface Peer {
         PRUNABLE(2),                    // Stores expired prunable content
         API(4),                         // Provides open API access over http
         API_SSL(8),                     // Provides open API access over https
-        CORS(16);                       // API CORS enabled
+        CORS(16),                       // API CORS enabled
+        COMPRESSION(32);                // Accepts compressed peer messages
 
         private final long code;        // Service code - must be a power of 2
 
@@ -93,6 +95,13 @@ public interface Peer {
      */
     long getUploadedVolume();
 
+    /**
+     * Get the compression ratio for the messages exchanged with this peer
+     *
+     * @return                          Uncompressed size divided by compressed size or 0 if no messages were compressed
+     */
+    double getCompressionRatio();
+
     /**
      * Get the application name
      *
@@ -263,6 +272,14 @@ public interface Peer {
      */
     NetworkMessage sendRequest(NetworkMessage message);
 
+    /**
+     * Send a request without waiting for the response
+     *
+     * @param   message                 Request message
+     * @return                          Future for the response message, the response is null if there is no response
+     */
+    CompletableFuture<NetworkMessage> sendRequestAsync(NetworkMessage message);
+
     /**
      * Wait for the initial exchange of GetInfo messages to complete
      */
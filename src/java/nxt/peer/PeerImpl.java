@@ -24,6 +24,7 @@ import nxt.http.API;
 import nxt.http.APIEnum;
 import nxt.util.Convert;
 import nxt.util.Logger;
+import nxt.util.TimeoutWheel;
 import nxt.util.security.BlockchainPermission;
 
 import java.io.IOException;
@@ -39,10 +40,14 @@ import java.sql.SQLException;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -117,6 +122,11 @@ final class PeerImpl implements Peer {
     /** Peer uploaded volume */
     private volatile long uploadedVolume;
 
+    /** Uncompressed and compressed volumes for compressed messages */
+    private final Object compressionLock = new Object();
+    private long uncompressedVolume;
+    private long compressedVolume;
+
     /** Connection address */
     private InetSocketAddress connectionAddress;
 
@@ -153,6 +163,9 @@ final class PeerImpl implements Peer {
     /** Response list */
     private final ConcurrentHashMap<Long, ResponseEntry> responseMap = new ConcurrentHashMap<>();
 
+    /** Timeouts for pending requests */
+    private static final TimeoutWheel requestTimeouts = new TimeoutWheel("PeerRequestTimeouts", 100, TimeUnit.MILLISECONDS, 512);
+
     /** Connection lock */
     private final ReentrantLock connectLock = new ReentrantLock();
 
@@ -295,6 +308,31 @@ final class PeerImpl implements Peer {
         downloadedVolume += volume;
     }
 
+    /**
+     * Get the compression ratio for the messages exchanged with this peer
+     *
+     * @return                          Uncompressed size divided by compressed size or 0 if no messages were compressed
+     */
+    @Override
+    public double getCompressionRatio() {
+        synchronized (compressionLock) {
+            return compressedVolume != 0 ? (double)uncompressedVolume / (double)compressedVolume : 0;
+        }
+    }
+
+    /**
+     * Update the compression volumes for a compressed message
+     *
+     * @param   uncompressedLength      Uncompressed message length
+     * @param   compressedLength        Compressed message length
+     */
+    void updateCompressionVolume(long uncompressedLength, long compressedLength) {
+        synchronized (compressionLock) {
+            uncompressedVolume += uncompressedLength;
+            compressedVolume += compressedLength;
+        }
+    }
+
     /**
      * Get the upload volume
      *
@@ -1052,6 +1090,22 @@ final class PeerImpl implements Peer {
         return disconnectPending;
     }
 
+    /**
+     * Disconnect the peer using the peers service
+     *
+     * This is used by threads which must not block on the connection lock
+     */
+    private void disconnectPeerLater() {
+        if (disconnectPending) {
+            return;
+        }
+        try {
+            Peers.peersService.execute(this::disconnectPeer);
+        } catch (RejectedExecutionException e) {
+            disconnectPeer();
+        }
+    }
+
     /**
      * Disconnect the peer
      */
@@ -1076,8 +1130,10 @@ final class PeerImpl implements Peer {
                 connectCondition.signalAll();
             }
             NetworkHandler.closeConnection(this);
+            outputQueue.forEach(BufferPool::discard);
             outputQueue.clear();
             pendingOutputQueue.clear();
+            pendingInputQueue.forEach(BufferPool::discard);
             pendingInputQueue.clear();
             for (ResponseEntry entry : responseMap.values()) {
                 entry.responseSignal(null);
@@ -1085,10 +1141,17 @@ final class PeerImpl implements Peer {
             responseMap.clear();
             isInbound = false;
             endHandshake();
+            BufferPool.discard(handshakeMessage);
             handshakeMessage = null;
             downloadedVolume = 0;
             uploadedVolume = 0;
+            synchronized (compressionLock) {
+                uncompressedVolume = 0;
+                compressedVolume = 0;
+            }
+            BufferPool.discard(inputBuffer);
             inputBuffer = null;
+            BufferPool.discard(outputBuffer);
             outputBuffer = null;
             inputCount = 0;
             channel = null;
@@ -1150,6 +1213,19 @@ final class PeerImpl implements Peer {
      */
     @Override
     public void sendMessage(NetworkMessage message) {
+        sendMessage(message, null);
+    }
+
+    /**
+     * Send a message
+     *
+     * The serialized message is used if the peer does not use a session key.  Otherwise,
+     * the message is serialized and encrypted for this peer.
+     *
+     * @param   message                 Network message
+     * @param   messageBytes            Unencrypted serialized message or null
+     */
+    void sendMessage(NetworkMessage message, ByteBuffer messageBytes) {
         boolean sendMessage = false;
         boolean serializeMessage = false;
         boolean disconnect = false;
@@ -1174,7 +1250,8 @@ final class PeerImpl implements Peer {
             }
         }
         if (serializeMessage && !disconnectPending) {
-            outputQueue.offer(NetworkHandler.getMessageBytes(this, message));
+            outputQueue.offer(messageBytes != null && sessionKey == null ?
+                    messageBytes : NetworkHandler.getMessageBytes(this, message));
         }
         if (sendMessage) {
             try {
@@ -1201,32 +1278,66 @@ final class PeerImpl implements Peer {
      */
     @Override
     public NetworkMessage sendRequest(NetworkMessage message) {
-        if (state != State.CONNECTED || disconnectPending) {
+        try {
+            return sendRequestAsync(message).get();
+        } catch (InterruptedException exc) {
+            Logger.logDebugMessage("Read from " + host + " interrupted");
+            disconnectPeer();
+            return null;
+        } catch (ExecutionException exc) {
+            Logger.logDebugMessage("Request to " + host + " failed", exc.getCause());
             return null;
         }
+    }
+
+    /**
+     * Send a request without waiting for the response
+     *
+     * The future is completed by the message handler when the response is received.  The
+     * request fails if the response is not received within the peer read timeout.  The peer
+     * is disconnected by the peers service if the request fails or a severe error is returned.
+     * Dependent actions run on the message handler or timeout thread and must not block.
+     *
+     * @param   message                 Request message
+     * @return                          Future for the response message, the response is null if an error occurred
+     */
+    @Override
+    public CompletableFuture<NetworkMessage> sendRequestAsync(NetworkMessage message) {
+        if (state != State.CONNECTED || disconnectPending) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long messageId = message.getMessageId();
         ResponseEntry entry = new ResponseEntry();
-        responseMap.put(message.getMessageId(), entry);
+        responseMap.put(messageId, entry);
+        entry.timeout = requestTimeouts.schedule(entry::responseTimeout, NetworkHandler.peerReadTimeout, TimeUnit.SECONDS);
         sendMessage(message);
         if (state != State.CONNECTED) {
-            responseMap.remove(message.getMessageId());
-            return null;
+            responseMap.remove(messageId);
+            entry.timeout.cancel();
+            return CompletableFuture.completedFuture(null);
         }
-        NetworkMessage response = entry.responseWait();
-        responseMap.remove(message.getMessageId());
-        if (response == null) {
-            disconnectPeer();
-            return null;
-        }
-        if (response instanceof NetworkMessage.ErrorMessage) {
-            NetworkMessage.ErrorMessage error = (NetworkMessage.ErrorMessage)response;
-            if (error.isSevereError()) {
-                Logger.logDebugMessage(String.format("Error returned by %s for %s[%d] message: %s",
-                        host, error.getErrorName(), error.getMessageId(), error.getErrorMessage()));
-                disconnectPeer();
+        return entry.future.handle((response, exc) -> {
+            responseMap.remove(messageId);
+            entry.timeout.cancel();
+            if (exc != null) {
+                Logger.logDebugMessage("Read from " + host + " timed out");
+                response = null;
             }
-            return null;
-        }
-        return response;
+            if (response == null) {
+                disconnectPeerLater();
+                return null;
+            }
+            if (response instanceof NetworkMessage.ErrorMessage) {
+                NetworkMessage.ErrorMessage error = (NetworkMessage.ErrorMessage)response;
+                if (error.isSevereError()) {
+                    Logger.logDebugMessage(String.format("Error returned by %s for %s[%d] message: %s",
+                            host, error.getErrorName(), error.getMessageId(), error.getErrorMessage()));
+                    disconnectPeerLater();
+                }
+                return null;
+            }
+            return response;
+        });
     }
 
     /**
@@ -1287,13 +1398,13 @@ final class PeerImpl implements Peer {
     /**
      * Message response entry
      */
-    private class ResponseEntry {
+    private static class ResponseEntry {
 
-        /** Response latch */
-        private final CountDownLatch responseLatch = new CountDownLatch(1);
+        /** Response future */
+        private final CompletableFuture<NetworkMessage> future = new CompletableFuture<>();
 
-        /** Response message */
-        private NetworkMessage responseMessage;
+        /** Response timeout */
+        private volatile TimeoutWheel.Timeout timeout;
 
         /**
          * Construct a response entry
@@ -1302,29 +1413,19 @@ final class PeerImpl implements Peer {
         }
 
         /**
-         * Wait for a response
+         * Signal that a response has been received
          *
-         * @return                              Response message or null if there is no message
+         * @param   responseMessage             Response message or null if there is no message
          */
-        private NetworkMessage responseWait() {
-            try {
-                if (!responseLatch.await(NetworkHandler.peerReadTimeout, TimeUnit.SECONDS)) {
-                    Logger.logDebugMessage("Read from " + host + " timed out");
-                }
-            } catch (InterruptedException exc) {
-                Logger.logDebugMessage("Read from " + host + " interrupted");
-            }
-            return responseMessage;
+        private void responseSignal(NetworkMessage responseMessage) {
+            future.complete(responseMessage);
         }
 
         /**
-         * Signal that a response has been received
-         *
-         * @param   responseMessage             Response message or null if there is no message
+         * Signal that the response was not received in time
          */
-        private void responseSignal(NetworkMessage responseMessage) {
-            this.responseMessage = responseMessage;
-            responseLatch.countDown();
+        private void responseTimeout() {
+            future.completeExceptionally(new TimeoutException());
         }
     }
 
@@ -147,6 +147,12 @@ public final class Peers {
     /** Peer credentials */
     static final String peerSecretPhrase = Nxt.getStringProperty("nxt.credentials.secretPhrase", null, true);
 
+    /** Compress messages exchanged with peers which provide the COMPRESSION service */
+    static final boolean enablePeerCompression = Nxt.getBooleanProperty("nxt.enablePeerCompression");
+
+    /** Minimum message length for compression */
+    static final int peerCompressionThreshold = Math.max(Nxt.getIntProperty("nxt.peerCompressionThreshold"), 64);
+
     /** Local peer services */
     static final List<Peer.Service> myServices;
     static {
@@ -163,6 +169,9 @@ public final class Peers {
         if (API.apiServerCORS) {
             services.add(Peer.Service.CORS);
         }
+        if (enablePeerCompression) {
+            services.add(Peer.Service.COMPRESSION);
+        }
         myServices = Collections.unmodifiableList(services);
     }
 
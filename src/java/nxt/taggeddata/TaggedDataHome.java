@@ -27,6 +27,7 @@ import nxt.util.Convert;
 import nxt.util.Logger;
 import nxt.util.Search;
 
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -193,7 +194,8 @@ public final class TaggedDataHome {
     }
 
     public TaggedData getData(byte[] transactionFullHash) {
-        return taggedDataTable.get(taggedDataKeyFactory.newKey(transactionFullHash));
+        TaggedData taggedData = taggedDataTable.get(taggedDataKeyFactory.newKey(transactionFullHash));
+        return taggedData != null && taggedData.isAvailable() ? taggedData : null;
     }
 
     public DbIterator<TaggedData> getData(String channel, long accountId, int from, int to) {
@@ -232,20 +234,24 @@ public final class TaggedDataHome {
     }
 
     void restore(Transaction transaction, TaggedDataAttachment attachment, int blockTimestamp, int height) {
-        if (taggedDataTable.get(taggedDataKeyFactory.newKey(transaction.getFullHash(), transaction.getId())) == null) {
-            TaggedData taggedData = new TaggedData(transaction, attachment, blockTimestamp, height);
+        TaggedData taggedData = taggedDataTable.get(taggedDataKeyFactory.newKey(transaction.getFullHash(), transaction.getId()));
+        if (taggedData == null) {
+            taggedData = new TaggedData(transaction, attachment, blockTimestamp, height);
             taggedDataTable.insert(taggedData);
             addTags(taggedData, height);
+        } else if (!taggedData.isAvailable()) {
+            BlobStore.getStore().put(BlobStore.TAGGED_DATA, taggedData.transactionFullHash, taggedData.transactionTimestamp, attachment.getData());
         }
     }
 
     public boolean isPruned(byte[] transactionFullHash) {
         try (Connection con = taggedDataTable.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT 1 FROM tagged_data WHERE id = ? AND full_hash = ?")) {
+             PreparedStatement pstmt = con.prepareStatement("SELECT blob_stored FROM tagged_data WHERE id = ? AND full_hash = ?")) {
             pstmt.setLong(1, Convert.fullHashToId(transactionFullHash));
             pstmt.setBytes(2, transactionFullHash);
             try (ResultSet rs = pstmt.executeQuery()) {
-                return !rs.next();
+                return !rs.next()
+                        || (rs.getBoolean("blob_stored") && !BlobStore.getStore().contains(BlobStore.TAGGED_DATA, transactionFullHash));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -303,7 +309,8 @@ public final class TaggedDataHome {
         private final String description;
         private final String tags;
         private final String[] parsedTags;
-        private final byte[] data;
+        private final boolean isBlobStored;
+        private byte[] data;
         private final String type;
         private final String channel;
         private final boolean isText;
@@ -325,6 +332,7 @@ public final class TaggedDataHome {
             this.description = attachment.getDescription();
             this.tags = attachment.getTags();
             this.parsedTags = Search.parseTags(tags, 3, 20, 5);
+            this.isBlobStored = BlobStore.isEnabled();
             this.data = attachment.getData();
             this.type = attachment.getType();
             this.channel = attachment.getChannel();
@@ -344,7 +352,8 @@ public final class TaggedDataHome {
             this.description = rs.getString("description");
             this.tags = rs.getString("tags");
             this.parsedTags = DbUtils.getArray(rs, "parsed_tags", String[].class);
-            this.data = rs.getBytes("data");
+            this.isBlobStored = rs.getBoolean("blob_stored");
+            this.data = isBlobStored ? null : rs.getBytes("data");
             this.type = rs.getString("type");
             this.channel = rs.getString("channel");
             this.isText = rs.getBoolean("is_text");
@@ -355,9 +364,12 @@ public final class TaggedDataHome {
         }
 
         private void save(Connection con) throws SQLException {
+            if (isBlobStored) {
+                BlobStore.getStore().put(BlobStore.TAGGED_DATA, this.transactionFullHash, this.transactionTimestamp, this.data);
+            }
             try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO tagged_data (id, full_hash, account_id, name, description, tags, parsed_tags, "
-                    + "type, channel, data, is_text, filename, block_timestamp, transaction_timestamp, height) "
-                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    + "type, channel, data, is_text, filename, block_timestamp, transaction_timestamp, height, blob_stored) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
                 int i = 0;
                 pstmt.setLong(++i, this.id);
                 pstmt.setBytes(++i, this.transactionFullHash);
@@ -368,12 +380,13 @@ public final class TaggedDataHome {
                 DbUtils.setArray(pstmt, ++i, this.parsedTags);
                 pstmt.setString(++i, this.type);
                 pstmt.setString(++i, this.channel);
-                pstmt.setBytes(++i, this.data);
+                pstmt.setBytes(++i, isBlobStored ? Convert.EMPTY_BYTE : this.data);
                 pstmt.setBoolean(++i, this.isText);
                 pstmt.setString(++i, this.filename);
                 pstmt.setInt(++i, this.blockTimestamp);
                 pstmt.setInt(++i, this.transactionTimestamp);
                 pstmt.setInt(++i, height);
+                pstmt.setBoolean(++i, isBlobStored);
                 pstmt.executeUpdate();
             }
         }
@@ -407,9 +420,28 @@ public final class TaggedDataHome {
         }
 
         public byte[] getData() {
+            if (data == null && isBlobStored) {
+                data = BlobStore.getStore().getBytes(BlobStore.TAGGED_DATA, transactionFullHash);
+            }
             return data;
         }
 
+        /**
+         * Get the data without copying it from the prunable payload store
+         *
+         * @return                  Read-only data buffer or null if the data is not available
+         */
+        public ByteBuffer getDataBuffer() {
+            if (data == null && isBlobStored) {
+                return BlobStore.getStore().get(BlobStore.TAGGED_DATA, transactionFullHash);
+            }
+            return data != null ? ByteBuffer.wrap(data).asReadOnlyBuffer() : null;
+        }
+
+        private boolean isAvailable() {
+            return data != null || !isBlobStored || BlobStore.getStore().contains(BlobStore.TAGGED_DATA, transactionFullHash);
+        }
+
         public String getType() {
             return type;
         }
@@ -42,6 +42,9 @@ public final class Convert {
 
     private static final char[] hexChars = { '0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f' };
     private static final long[] multipliers = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000};
+    private static final long[] powersOfTen = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+            100000000000000L, 1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
 
     public static final BigInteger two64 = new BigInteger("18446744073709551616");
     public static final long[] EMPTY_LONG = new long[0];
@@ -349,6 +352,80 @@ public final class Convert {
                 .toBigInteger());
     }
 
+    /**
+     * Return the high 64 bits of the 128-bit product of two signed long values
+     *
+     * This is the same as Math.multiplyHigh(), which is not available in Java 8.
+     *
+     * @param   x                       First value
+     * @param   y                       Second value
+     * @return                          High 64 bits of the product
+     */
+    public static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Multiply two values and divide the product by a power of 10, rounding half up
+     *
+     * The 128-bit product is calculated without using BigDecimal.  The result is the same
+     * as dividing the product by 10^scale using BigDecimal and rounding up if the
+     * remainder is 0.5 or greater.
+     *
+     * @param   x                       First value (must not be negative)
+     * @param   y                       Second value (must not be negative)
+     * @param   scale                   Power of 10 divisor (0 to 18)
+     * @return                          Rounded result or -1 if the arguments are not valid
+     *                                  or the result does not fit in a long
+     */
+    public static long multiplyAndScale(long x, long y, int scale) {
+        if (x < 0 || y < 0 || scale < 0 || scale >= powersOfTen.length) {
+            return -1;
+        }
+        long divisor = powersOfTen[scale];
+        long lo = x * y;
+        long hi = multiplyHigh(x, y);
+        long quotient;
+        long remainder;
+        if (hi == 0 && lo >= 0) {
+            quotient = lo / divisor;
+            remainder = lo - quotient * divisor;
+        } else {
+            if (hi >= divisor) {
+                return -1;
+            }
+            //
+            // Divide the low 64 bits 4 bits at a time.  The remainder is always less
+            // than the divisor (10^18 < 2^60), so the shifted remainder fits in an
+            // unsigned long.
+            //
+            quotient = 0;
+            remainder = hi;
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                remainder = (remainder << 4) | ((lo >>> shift) & 0x0F);
+                long digit = Long.divideUnsigned(remainder, divisor);
+                quotient = (quotient << 4) | digit;
+                remainder -= digit * divisor;
+            }
+            if (quotient < 0) {
+                return -1;
+            }
+        }
+        if (remainder >= divisor - remainder) {
+            quotient++;
+        }
+        return quotient < 0 ? -1 : quotient;
+    }
+
     public static byte[] longToBytes(long l) {
         byte[] result = new byte[8];
         for (int i = 7; i >= 0; i--) {
@@ -21,6 +21,7 @@ import org.json.simple.JSONAware;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -57,6 +58,9 @@ public final class JSON {
         return stringWriter.toString();
     }
 
+    /** Size of the buffer used when writing a response */
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
     /** String escape pattern */
     private static final Pattern pattern = Pattern.compile(
             "[\"\\\\\\u0008\\f\\n\\r\\t/\\u0000-\\u001f\\u007f-\\u009f\\u2000-\\u20ff\\ud800-\\udbff]");
@@ -99,16 +103,18 @@ public final class JSON {
             writer.write("null");
             return;
         }
-        if (json instanceof Map) {
-            StringBuilder sb = new StringBuilder(1024);
-            encodeObject((Map)json, sb);
-            writer.write(sb.toString());
-            return;
-        }
-        if (json instanceof List) {
-            StringBuilder sb = new StringBuilder(1024);
-            encodeArray((List)json, sb);
-            writer.write(sb.toString());
+        if (json instanceof Map || json instanceof List) {
+            //
+            // Encode directly to the writer through a bounded buffer instead of building
+            // the complete string first
+            //
+            BufferedWriter out = new BufferedWriter(writer, WRITE_BUFFER_SIZE);
+            if (json instanceof Map) {
+                writeObject((Map)json, out);
+            } else {
+                encodeArray((List)json, out);
+            }
+            out.flush();
             return;
         }
         json.writeJSONString(writer);
@@ -145,33 +151,44 @@ public final class JSON {
      */
     public static void encodeObject(Map<?, ?> map, Appendable sb) {
         try {
-            if (map == null) {
-                sb.append("null");
-                return;
-            }
-            Set<Map.Entry<Object, Object>> entries = (Set)map.entrySet();
-            Iterator<Map.Entry<Object, Object>> it = entries.iterator();
-            boolean firstElement = true;
-            sb.append('{');
-            while (it.hasNext()) {
-                Map.Entry<Object, Object> entry = it.next();
-                Object key = entry.getKey();
-                Object value = entry.getValue();
-                if (key == null)
-                    continue;
-                if (firstElement)
-                    firstElement = false;
-                else
-                    sb.append(',');
-                sb.append('\"').append(key.toString()).append("\":");
-                encodeValue(value, sb);
-            }
-            sb.append('}');
+            writeObject(map, sb);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Write a formatted string from a map
+     *
+     * @param   map                             Map
+     * @param   sb                              Output
+     * @throws  IOException                     I/O error occurred
+     */
+    private static void writeObject(Map<?, ?> map, Appendable sb) throws IOException {
+        if (map == null) {
+            sb.append("null");
+            return;
+        }
+        Set<Map.Entry<Object, Object>> entries = (Set)map.entrySet();
+        Iterator<Map.Entry<Object, Object>> it = entries.iterator();
+        boolean firstElement = true;
+        sb.append('{');
+        while (it.hasNext()) {
+            Map.Entry<Object, Object> entry = it.next();
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key == null)
+                continue;
+            if (firstElement)
+                firstElement = false;
+            else
+                sb.append(',');
+            sb.append('\"').append(key.toString()).append("\":");
+            encodeValue(value, sb);
+        }
+        sb.append('}');
+    }
+
     /**
      * Encode a JSON value
      *
@@ -197,9 +214,11 @@ public final class JSON {
         } else if (value instanceof Boolean) {
             sb.append(value.toString());
         } else if (value instanceof Map) {
-            encodeObject((Map<Object, Object>)value, sb);
+            writeObject((Map<Object, Object>)value, sb);
         } else if (value instanceof List) {
             encodeArray((List<Object>)value, sb);
+        } else if (value instanceof StreamingJSONArray) {
+            ((StreamingJSONArray<?>)value).encode(sb);
         } else {
             sb.append('\"');
             escapeString(value.toString(), sb);
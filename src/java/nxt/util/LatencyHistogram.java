@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latency values
+ *
+ * Each power of 2 is divided into 8 buckets, so a value is recorded with a precision of
+ * 12.5% independent of its size.  Recording a value does not allocate memory or take a lock,
+ * so the histogram can be updated by multiple threads.  A percentile is reported as the
+ * highest value in the bucket containing the percentile.
+ */
+public final class LatencyHistogram {
+
+    /** Number of bits used for the bucket within a power of 2 */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Number of buckets for each power of 2 */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Largest power of 2 with its own buckets, larger values are recorded in the last bucket */
+    private static final int MAX_EXPONENT = 40;
+
+    /** Total number of buckets including the overflow bucket */
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param   value                   Value (negative values are recorded as 0)
+     */
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        buckets.incrementAndGet(getIndex(v));
+        count.incrementAndGet();
+        total.addAndGet(v);
+        long current;
+        while (v > (current = max.get())) {
+            if (max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Get the number of recorded values
+     *
+     * @return                          Number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the sum of the recorded values
+     *
+     * @return                          Sum of the values
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Get the largest recorded value
+     *
+     * @return                          Largest value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the recorded values
+     *
+     * @return                          Mean value or 0 if no values have been recorded
+     */
+    public long getMean() {
+        long n = count.get();
+        return n != 0 ? total.get() / n : 0;
+    }
+
+    /**
+     * Get a percentile of the recorded values
+     *
+     * @param   percentile              Percentile between 0 and 100
+     * @return                          Value or 0 if no values have been recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long n = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max((long)Math.ceil(n * Math.min(Math.max(percentile, 0), 100) / 100), 1);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(getHighestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clear the recorded values
+     *
+     * Values recorded while the histogram is being cleared may be partially retained
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = index / SUB_BUCKET_COUNT - 1 + SUB_BUCKET_BITS;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
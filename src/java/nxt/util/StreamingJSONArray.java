@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.util;
+
+import org.json.simple.JSONStreamAware;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * JSON array which is written as its elements are read
+ *
+ * A streaming array is placed in a JSON response in place of a JSONArray.  The iterator
+ * is not opened until the response is written and each element is converted to JSON,
+ * written and discarded before the next element is read, so a large result set is never
+ * held in memory as a JSON tree.  The output is the same as for a JSONArray containing
+ * the converted elements.  The iterator is closed after the last element is written if
+ * it implements AutoCloseable.
+ *
+ * The iterator usually holds a database connection and must be read while the request
+ * still holds the blockchain lock, so a response containing a streaming array is first
+ * written to a bounded buffer by {@link #buffer(JSONStreamAware, int)} and then sent to
+ * the client after the database resources have been released.
+ *
+ * @param   <T>                     Element type
+ */
+public final class StreamingJSONArray<T> implements JSONStreamAware {
+
+    private final Supplier<? extends Iterator<? extends T>> iteratorSupplier;
+    private final Function<? super T, ?> converter;
+    private Predicate<? super T> condition = element -> true;
+
+    /**
+     * Create a streaming array
+     *
+     * @param   iteratorSupplier        Opens the element iterator when the array is written
+     * @param   converter               Converts an element to a JSON value
+     */
+    public StreamingJSONArray(Supplier<? extends Iterator<? extends T>> iteratorSupplier, Function<? super T, ?> converter) {
+        this.iteratorSupplier = iteratorSupplier;
+        this.converter = converter;
+    }
+
+    /**
+     * Stop at the first element which does not satisfy a condition
+     *
+     * @param   condition               Condition checked before each element is converted
+     * @return                          This array
+     */
+    public StreamingJSONArray<T> takeWhile(Predicate<? super T> condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * Write the array
+     *
+     * @param   out                     Writer
+     * @throws  IOException             I/O error occurred
+     */
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        encode(out);
+    }
+
+    /**
+     * Write the array
+     *
+     * @param   out                     Output
+     * @throws  IOException             I/O error occurred
+     */
+    void encode(Appendable out) throws IOException {
+        Iterator<? extends T> iterator = iteratorSupplier.get();
+        try {
+            boolean firstElement = true;
+            out.append('[');
+            while (iterator.hasNext()) {
+                T element = iterator.next();
+                if (!condition.test(element)) {
+                    break;
+                }
+                if (firstElement)
+                    firstElement = false;
+                else
+                    out.append(',');
+                JSON.encodeValue(converter.apply(element), out);
+            }
+            out.append(']');
+        } finally {
+            if (iterator instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable)iterator).close();
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a response containing streaming arrays to a buffer
+     *
+     * The streaming arrays are read and their iterators closed before this method returns.
+     *
+     * @param   response                JSON response
+     * @param   maxLength               Maximum response length in characters
+     * @return                          Buffered response or null if the response is too large
+     * @throws  IOException             I/O error occurred
+     */
+    public static JSONStreamAware buffer(JSONStreamAware response, int maxLength) throws IOException {
+        BoundedWriter writer = new BoundedWriter(maxLength);
+        try {
+            JSON.writeJSONString(response, writer);
+        } catch (BufferOverflowException e) {
+            return null;
+        }
+        char[] jsonChars = writer.toCharArray();
+        return out -> out.write(jsonChars);
+    }
+
+    /**
+     * Check if a response contains a streaming array
+     *
+     * @param   response                JSON response
+     * @return                          TRUE if a value of the response is a streaming array
+     */
+    public static boolean isStreaming(JSONStreamAware response) {
+        if (response instanceof Map) {
+            for (Object value : ((Map<?, ?>)response).values()) {
+                if (value instanceof StreamingJSONArray) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Character buffer with a maximum length
+     */
+    private static final class BoundedWriter extends CharArrayWriter {
+
+        private final int maxLength;
+
+        private BoundedWriter(int maxLength) {
+            super(Math.min(maxLength, 8192));
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public void write(int c) {
+            checkLength(1);
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] c, int off, int len) {
+            checkLength(len);
+            super.write(c, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            checkLength(len);
+            super.write(str, off, len);
+        }
+
+        private void checkLength(int len) {
+            if (len > maxLength - count) {
+                throw new BufferOverflowException();
+            }
+        }
+    }
+
+    /**
+     * Buffer length exceeded
+     */
+    @SuppressWarnings("serial")
+    private static final class BufferOverflowException extends RuntimeException {
+
+        private BufferOverflowException() {
+            super(null, null, false, false);
+        }
+    }
+}
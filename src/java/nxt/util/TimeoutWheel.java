@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel for timeouts
+ *
+ * A timeout is placed in one of a ring of buckets based on its expiration time.  A single
+ * daemon thread advances through the ring once each tick and runs the timeouts which have
+ * expired, so scheduling or cancelling a timeout takes constant time regardless of the number
+ * of pending timeouts.  A timeout expires no more than one tick after its delay.  Timeout
+ * tasks run on the wheel thread and must not block.
+ *
+ * The buckets are guarded by the wheel lock.  A timeout is placed in a bucket while holding
+ * the lock so it cannot be added to the bucket for the current tick after the wheel thread has
+ * processed that bucket.  The expired tasks are run after the lock has been released.
+ */
+public final class TimeoutWheel {
+
+    /** Tick duration in nanoseconds */
+    private final long tickNanos;
+
+    /** Wheel buckets */
+    private final List<Queue<Timeout>> buckets;
+
+    /** Wheel start time */
+    private final long startTime = System.nanoTime();
+
+    /** Last processed tick */
+    private long currentTick;
+
+    /**
+     * Create a timing wheel
+     *
+     * @param   name                    Name of the wheel thread
+     * @param   tickDuration            Tick duration
+     * @param   unit                    Tick duration unit
+     * @param   wheelSize               Number of buckets
+     */
+    public TimeoutWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be greater than 0");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedule a timeout
+     *
+     * @param   task                    Task to run when the timeout expires
+     * @param   delay                   Delay
+     * @param   unit                    Delay unit
+     * @return                          Timeout
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(task, deadline);
+        synchronized (buckets) {
+            long tick = Math.max((deadline + tickNanos - 1) / tickNanos, currentTick + 1);
+            buckets.get((int)(tick % buckets.size())).add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Get the number of timeouts waiting in the wheel, including cancelled timeouts
+     * which have not been removed yet
+     *
+     * @return                          Number of timeouts
+     */
+    public int getSize() {
+        int size = 0;
+        synchronized (buckets) {
+            for (Queue<Timeout> bucket : buckets) {
+                size += bucket.size();
+            }
+        }
+        return size;
+    }
+
+    private void run() {
+        long tick = 0;
+        List<Timeout> expired = new ArrayList<>();
+        while (true) {
+            long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            long now = System.nanoTime() - startTime;
+            synchronized (buckets) {
+                currentTick = ++tick;
+                Iterator<Timeout> it = buckets.get((int)(tick % buckets.size())).iterator();
+                while (it.hasNext()) {
+                    Timeout timeout = it.next();
+                    if (timeout.cancelled) {
+                        it.remove();
+                    } else if (timeout.deadline <= now) {
+                        it.remove();
+                        expired.add(timeout);
+                    }
+                }
+            }
+            expired.forEach(Timeout::expire);
+            expired.clear();
+        }
+    }
+
+    /**
+     * Scheduled timeout
+     */
+    public static final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private volatile boolean expired;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the timeout
+         *
+         * The task will not be run if the timeout has not expired yet
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Check if the timeout has been cancelled
+         *
+         * @return                      TRUE if the timeout has been cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Check if the timeout has expired
+         *
+         * @return                      TRUE if the timeout task has been run
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Logger.logErrorMessage("Timeout task failed", e);
+            }
+        }
+    }
+}
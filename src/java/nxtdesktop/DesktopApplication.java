@@ -190,7 +190,7 @@ public class DesktopApplication extends Application {
 
             if (ENABLE_JAVASCRIPT_DEBUGGER) {
                 try {
-                    // Add the javafx_webview_debugger and websocket-* test libs to the classpath
+                    // Add the javafx_webview_debugger test lib to the classpath
                     // For more details, check https://github.com/mohamnag/javafx_webview_debugger
                     Class<?> aClass = Class.forName("com.mohamnag.fxwebview_debugger.DevToolsDebuggerServer");
                     Class<?> webEngineClazz = WebEngine.class;
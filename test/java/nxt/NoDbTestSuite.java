@@ -16,7 +16,14 @@
 
 package nxt;
 
+import nxt.account.GuaranteedBalanceIndexTest;
+import nxt.blockchain.BlockCacheTest;
 import nxt.crypto.NoDbCryptoSuite;
+import nxt.db.BlobStoreTest;
+import nxt.db.SchemaQualifiedSqlTest;
+import nxt.db.SqlStatisticsTest;
+import nxt.db.StatementCacheTest;
+import nxt.http.EventSocketTest;
 import nxt.util.PasswordFinderTest;
 import nxt.tools.PassphraseRecoveryTest;
 import nxt.util.UtilSuite;
@@ -28,7 +35,14 @@ import org.junit.runners.Suite;
         UtilSuite.class,
         PassphraseRecoveryTest.class,
         PasswordFinderTest.class,
-        NoDbCryptoSuite.class
+        NoDbCryptoSuite.class,
+        EventSocketTest.class,
+        BlockCacheTest.class,
+        BlobStoreTest.class,
+        SchemaQualifiedSqlTest.class,
+        SqlStatisticsTest.class,
+        StatementCacheTest.class,
+        GuaranteedBalanceIndexTest.class
 })
 public class NoDbTestSuite {
 }
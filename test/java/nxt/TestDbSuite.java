@@ -17,8 +17,10 @@
 package nxt;
 
 import nxt.addons.AddonsSuite;
+import nxt.blockchain.BlockCachePopOffTest;
 import nxt.blockchain.ChildChainTest;
 import nxt.blockchain.GeneratorTest;
+import nxt.blockchain.IncrementalRequeueTest;
 import nxt.crypto.CryptoSuite;
 import nxt.http.HttpApiSuite;
 import nxt.http.SecretSharingApiTest;
@@ -60,7 +62,9 @@ import org.junit.runners.Suite;
         CryptoSuite.class,
         ChildChainTest.class,
         PermissionPolicyChangeTest.class,
-        ConfigurationSuite.class
+        ConfigurationSuite.class,
+        IncrementalRequeueTest.class,
+        BlockCachePopOffTest.class
 })
 public class TestDbSuite extends SafeShutdownSuite {
 }
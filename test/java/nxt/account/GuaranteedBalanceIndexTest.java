@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.account;
+
+import nxt.Constants;
+import nxt.db.BasicDb;
+import nxt.db.TransactionalDb;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class GuaranteedBalanceIndexTest {
+
+    private static final int CONFIRMATIONS = Constants.GUARANTEED_BALANCE_CONFIRMATIONS;
+    private static final int MIN_ROLLBACK_HEIGHT = 2 * CONFIRMATIONS;
+
+    private static final long ALICE = 1;
+    private static final long BOB = 2;
+
+    private static int dbNumber;
+
+    private TransactionalDb db;
+    private GuaranteedBalanceIndex index;
+
+    @Before
+    public void init() throws SQLException {
+        db = new TransactionalDb(new BasicDb.DbProperties()
+                .dbUrl("jdbc:h2:mem:guaranteed_balance_test_" + (++dbNumber) + ";DB_CLOSE_DELAY=-1")
+                .dbUsername("sa")
+                .dbPassword("sa")
+                .maxConnections(2)
+                .loginTimeout(10)
+                .defaultLockTimeout(10000)
+                .maxMemoryRows(1000)
+                .statementCacheSize(2));
+        db.init(Collections.emptyList());
+        try (Connection con = db.getConnection("PUBLIC");
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE account_guaranteed_balance (account_id BIGINT NOT NULL, "
+                    + "additions BIGINT NOT NULL, height INT NOT NULL)");
+        }
+        index = new GuaranteedBalanceIndex(db, () -> MIN_ROLLBACK_HEIGHT, true);
+    }
+
+    @After
+    public void shutdown() throws SQLException {
+        if (db.isInTransaction()) {
+            db.endTransaction();
+        }
+        try (Connection con = db.getConnection("PUBLIC");
+             Statement stmt = con.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testLoadWindow() throws SQLException {
+        insert(ALICE, -1, 1);
+        insert(ALICE, MIN_ROLLBACK_HEIGHT - CONFIRMATIONS - 1, 10);
+        insert(ALICE, MIN_ROLLBACK_HEIGHT - CONFIRMATIONS, 100);
+        insert(ALICE, MIN_ROLLBACK_HEIGHT, 1000);
+        insert(BOB, MIN_ROLLBACK_HEIGHT - CONFIRMATIONS - 1, 10);
+        assertEquals(1101, index.getAdditions(ALICE, -2, Integer.MAX_VALUE));
+        assertEquals(1100, index.getAdditions(ALICE, -1, Integer.MAX_VALUE));
+        assertEquals(1000, index.getAdditions(ALICE, MIN_ROLLBACK_HEIGHT - CONFIRMATIONS, MIN_ROLLBACK_HEIGHT));
+        assertEquals(0, index.getAdditions(BOB, -2, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testAdd() {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        assertEquals(5, index.add(ALICE, height, 5));
+        assertEquals(12, index.add(ALICE, height, 7));
+        assertEquals(3, index.add(ALICE, height + 2, 3));
+        assertEquals(1, index.add(ALICE, height - 2, 1));
+        assertEquals(16, index.getAdditions(ALICE, height - 3, height + 2));
+        assertEquals(15, index.getAdditions(ALICE, height - 2, height + 2));
+        assertEquals(13, index.getAdditions(ALICE, height - 3, height));
+        assertEquals(0, index.getAdditions(BOB, height - 3, height + 2));
+    }
+
+    @Test
+    public void testNotInMemory() throws SQLException {
+        GuaranteedBalanceIndex tableIndex = new GuaranteedBalanceIndex(db, () -> 0, false);
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insert(ALICE, 1, 1000);
+        insert(ALICE, height, 5);
+        assertEquals(12, tableIndex.add(ALICE, height, 7));
+        assertEquals(3, tableIndex.add(ALICE, height + 2, 3));
+        insert(ALICE, height + 2, 3);
+        assertEquals(8, tableIndex.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(1008, tableIndex.getAdditions(ALICE, 0, height + 2));
+        assertEquals(0, tableIndex.getAdditions(BOB, 0, height + 2));
+        // Nothing is kept in memory, so a pop-off only changes the table
+        db.beginTransaction();
+        popOffTo(height);
+        tableIndex.popOffTo(height);
+        assertEquals(5, tableIndex.getAdditions(ALICE, height - 1, height + 2));
+        db.rollbackTransaction();
+        db.endTransaction();
+        assertEquals(8, tableIndex.getAdditions(ALICE, height - 1, height + 2));
+    }
+
+    @Test
+    public void testRollbackAdd() throws SQLException {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insert(ALICE, height, 5);
+        assertEquals(5, index.getAdditions(ALICE, height - 1, height + 1));
+        db.beginTransaction();
+        insert(ALICE, height + 1, index.add(ALICE, height + 1, 7));
+        assertEquals(12, index.getAdditions(ALICE, height - 1, height + 1));
+        db.rollbackTransaction();
+        db.endTransaction();
+        assertEquals(5, index.getAdditions(ALICE, height - 1, height + 1));
+    }
+
+    @Test
+    public void testPopOff() throws SQLException {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insertBlocks(height);
+        db.beginTransaction();
+        popOffTo(height + 1);
+        assertEquals(3, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(0, index.getAdditions(BOB, height - 1, height + 2));
+        db.commitTransaction();
+        db.endTransaction();
+        assertEquals(3, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(0, index.getAdditions(BOB, height - 1, height + 2));
+        // The index is not reloaded after the commit
+        insert(BOB, height, 100);
+        assertEquals(0, index.getAdditions(BOB, height - 1, height + 2));
+    }
+
+    @Test
+    public void testRollbackPopOff() throws SQLException {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insertBlocks(height);
+        db.beginTransaction();
+        popOffTo(height);
+        assertEquals(1, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(0, index.getAdditions(BOB, height - 1, height + 2));
+        db.rollbackTransaction();
+        db.endTransaction();
+        assertEquals(7, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(8, index.getAdditions(BOB, height - 1, height + 2));
+        assertEquals(6, index.getAdditions(ALICE, height, height + 2));
+    }
+
+    @Test
+    public void testRollbackPopOffAfterCommit() throws SQLException {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insertBlocks(height);
+        db.beginTransaction();
+        popOffTo(height + 1);
+        db.commitTransaction();
+        popOffTo(height);
+        db.rollbackTransaction();
+        db.endTransaction();
+        assertEquals(3, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(0, index.getAdditions(BOB, height - 1, height + 2));
+    }
+
+    @Test
+    public void testRollbackTrim() throws SQLException {
+        int height = MIN_ROLLBACK_HEIGHT + 10;
+        insert(ALICE, -1, 100);
+        insertBlocks(height);
+        db.beginTransaction();
+        trim(height + 1);
+        assertEquals(106, index.getAdditions(ALICE, -2, height + 2));
+        assertEquals(8, index.getAdditions(BOB, -2, height + 2));
+        db.rollbackTransaction();
+        db.endTransaction();
+        assertEquals(107, index.getAdditions(ALICE, -2, height + 2));
+        assertEquals(8, index.getAdditions(BOB, -2, height + 2));
+    }
+
+    /**
+     * Add blocks at three heights and load the index
+     */
+    private void insertBlocks(int height) throws SQLException {
+        insert(ALICE, height, 1);
+        insert(ALICE, height + 1, 2);
+        insert(ALICE, height + 2, 4);
+        insert(BOB, height + 2, 8);
+        assertEquals(7, index.getAdditions(ALICE, height - 1, height + 2));
+        assertEquals(8, index.getAdditions(BOB, height - 1, height + 2));
+    }
+
+    private void popOffTo(int height) throws SQLException {
+        update("DELETE FROM account_guaranteed_balance WHERE height > ?", height);
+        index.popOffTo(height);
+    }
+
+    private void trim(int height) throws SQLException {
+        update("DELETE FROM account_guaranteed_balance WHERE height < ? AND height >= 0", height);
+        index.trim(height);
+    }
+
+    private void update(String sql, int height) throws SQLException {
+        try (Connection con = db.getConnection("PUBLIC");
+             PreparedStatement pstmt = con.prepareStatement(sql)) {
+            pstmt.setInt(1, height);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void insert(long accountId, int height, long additions) throws SQLException {
+        try (Connection con = db.getConnection("PUBLIC");
+             PreparedStatement pstmt = con.prepareStatement("INSERT INTO account_guaranteed_balance "
+                     + "(account_id, additions, height) VALUES (?, ?, ?)")) {
+            pstmt.setLong(1, accountId);
+            pstmt.setLong(2, additions);
+            pstmt.setInt(3, height);
+            pstmt.executeUpdate();
+        }
+    }
+}
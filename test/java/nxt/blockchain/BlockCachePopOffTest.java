@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.blockchain;
+
+import nxt.BlockchainTest;
+import nxt.Nxt;
+import nxt.Tester;
+import nxt.http.callers.SendMoneyCall;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockCachePopOffTest extends BlockchainTest {
+
+    @Before
+    public void checkBlockCache() {
+        Assume.assumeTrue(BlockCache.getMaxSize() > 0);
+    }
+
+    @Test
+    public void testPopOffAndPushSameHeight() {
+        int height = Nxt.getBlockchain().getHeight();
+        Block[] popped = generateAndRead(3);
+        Nxt.getBlockchainProcessor().popOffTo(height + 1);
+        Block[] pushed = generateAndRead(2);
+
+        for (int i = 1; i < 3; i++) {
+            Assert.assertNotEquals(popped[i].getId(), pushed[i - 1].getId());
+            Assert.assertNull(Nxt.getBlockchain().getBlock(popped[i].getId()));
+            Assert.assertFalse(Nxt.getBlockchain().hasBlock(popped[i].getId()));
+            Assert.assertEquals(pushed[i - 1].getId(), Nxt.getBlockchain().getBlockAtHeight(height + i + 1).getId());
+            Assert.assertEquals(pushed[i - 1].getId(), Nxt.getBlockchain().getBlockIdAtHeight(height + i + 1));
+        }
+        Block block = Nxt.getBlockchain().getBlockAtHeight(height + 1);
+        Assert.assertEquals(popped[0].getId(), block.getId());
+        Assert.assertEquals(pushed[0].getId(), block.getNextBlockId());
+        Assert.assertEquals(pushed[0].getId(), Nxt.getBlockchain().getBlock(popped[0].getId()).getNextBlockId());
+        Assert.assertEquals(pushed[1].getId(), Nxt.getBlockchain().getBlock(pushed[0].getId()).getNextBlockId());
+    }
+
+    @Test
+    public void testPopOffLastBlockAndPush() {
+        int height = Nxt.getBlockchain().getHeight();
+        Block[] popped = generateAndRead(2);
+        Nxt.getBlockchainProcessor().popOffTo(height + 1);
+        Assert.assertEquals(0, Nxt.getBlockchain().getBlock(popped[0].getId()).getNextBlockId());
+        Assert.assertNull(Nxt.getBlockchain().getBlock(popped[1].getId()));
+
+        Block[] pushed = generateAndRead(1);
+        Assert.assertNotEquals(popped[1].getId(), pushed[0].getId());
+        Assert.assertNull(Nxt.getBlockchain().getBlock(popped[1].getId()));
+        Assert.assertEquals(pushed[0].getId(), Nxt.getBlockchain().getBlock(popped[0].getId()).getNextBlockId());
+        Assert.assertEquals(pushed[0].getId(), Nxt.getBlockchain().getBlockAtHeight(height + 1).getNextBlockId());
+        // Push another block so the block at the replaced height is read from the database
+        generateAndRead(1);
+        Assert.assertEquals(pushed[0].getId(), Nxt.getBlockchain().getBlockAtHeight(height + 2).getId());
+        Assert.assertNull(Nxt.getBlockchain().getBlock(popped[1].getId()));
+    }
+
+    /**
+     * Generate blocks containing a payment and read them so they are cached
+     */
+    private static Block[] generateAndRead(int count) {
+        Block[] blocks = new Block[count];
+        for (int i = 0; i < count; i++) {
+            sendFxt(ALICE, BOB);
+            generateBlock();
+            blocks[i] = Nxt.getBlockchain().getLastBlock();
+        }
+        for (Block block : blocks) {
+            Nxt.getBlockchain().getBlock(block.getId());
+            Nxt.getBlockchain().getBlockAtHeight(block.getHeight());
+        }
+        return blocks;
+    }
+
+    private static void sendFxt(Tester sender, Tester recipient) {
+        SendMoneyCall.create(FxtChain.FXT.getId())
+                .secretPhrase(sender.getSecretPhrase())
+                .recipient(recipient.getStrId())
+                .amountNQT(FxtChain.FXT.ONE_COIN)
+                .feeNQT(FxtChain.FXT.ONE_COIN)
+                .build().invokeNoError();
+    }
+}
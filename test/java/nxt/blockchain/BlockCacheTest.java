@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.blockchain;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Collections;
+
+public class BlockCacheTest {
+
+    @Before
+    public void init() {
+        Assume.assumeTrue(BlockCache.getMaxSize() > 1);
+        BlockCache.clear();
+    }
+
+    @After
+    public void clear() {
+        BlockCache.clear();
+    }
+
+    @Test
+    public void testGet() {
+        BlockImpl block = block(101, 1, 100, false);
+        BlockCache.add(block);
+        Assert.assertSame(block, BlockCache.get(101, false));
+        Assert.assertNull(BlockCache.get(101, true));
+        Assert.assertSame(block, BlockCache.getAtHeight(1));
+        Assert.assertNull(BlockCache.get(102, false));
+        Assert.assertNull(BlockCache.getAtHeight(2));
+
+        BlockImpl loaded = block(101, 1, 100, true);
+        BlockCache.add(loaded);
+        Assert.assertSame(loaded, BlockCache.get(101, true));
+        Assert.assertSame(loaded, BlockCache.getAtHeight(1));
+        Assert.assertEquals(1, BlockCache.getSize());
+    }
+
+    @Test
+    public void testRemove() {
+        BlockImpl block = block(101, 1, 100, false);
+        BlockCache.add(block);
+        BlockCache.remove(101);
+        Assert.assertNull(BlockCache.get(101, false));
+        Assert.assertNull(BlockCache.getAtHeight(1));
+        Assert.assertEquals(0, BlockCache.getSize());
+    }
+
+    /**
+     * Pop off the last block and push a different block at the same height, making the same
+     * cache calls as BlockDb
+     */
+    @Test
+    public void testPopOffAndPush() {
+        BlockCache.add(block(101, 1, 100, false));
+        BlockCache.add(block(102, 2, 101, false));
+        BlockCache.add(block(103, 3, 102, false));
+        // BlockDb.deleteBlocksFrom(103) removes the deleted block and the new last block
+        BlockCache.remove(103);
+        BlockCache.remove(102);
+        Assert.assertNull(BlockCache.get(103, false));
+        Assert.assertNull(BlockCache.getAtHeight(3));
+        // The new last block is read again while the replacement block is generated
+        BlockImpl lastBlock = block(102, 2, 101, false);
+        BlockCache.add(lastBlock);
+        Assert.assertSame(lastBlock, BlockCache.getAtHeight(2));
+        // BlockDb.saveBlock() removes the previous block since its next block identifier changes
+        BlockCache.remove(102);
+        BlockImpl pushed = block(203, 3, 102, false);
+        BlockCache.add(pushed);
+        Assert.assertNull(BlockCache.get(103, false));
+        Assert.assertNull(BlockCache.get(102, false));
+        Assert.assertSame(pushed, BlockCache.get(203, false));
+        Assert.assertSame(pushed, BlockCache.getAtHeight(3));
+        Assert.assertNull(BlockCache.getAtHeight(2));
+    }
+
+    @Test
+    public void testReplacedAtSameHeight() {
+        BlockImpl popped = block(103, 3, 102, false);
+        BlockCache.add(popped);
+        BlockImpl pushed = block(203, 3, 102, false);
+        BlockCache.add(pushed);
+        Assert.assertNull(BlockCache.get(103, false));
+        Assert.assertSame(pushed, BlockCache.get(203, false));
+        Assert.assertSame(pushed, BlockCache.getAtHeight(3));
+        Assert.assertEquals(1, BlockCache.getSize());
+        // Removing the replaced block does not remove the new block
+        BlockCache.remove(103);
+        Assert.assertSame(pushed, BlockCache.getAtHeight(3));
+    }
+
+    @Test
+    public void testEviction() {
+        int maxSize = BlockCache.getMaxSize();
+        long evictions = BlockCache.getEvictions();
+        for (int height = 1; height <= maxSize + 1; height++) {
+            BlockCache.add(block(100 + height, height, 99 + height, false));
+        }
+        Assert.assertEquals(maxSize, BlockCache.getSize());
+        Assert.assertEquals(evictions + 1, BlockCache.getEvictions());
+        Assert.assertNull(BlockCache.get(101, false));
+        Assert.assertNull(BlockCache.getAtHeight(1));
+        Assert.assertNotNull(BlockCache.getAtHeight(maxSize + 1));
+    }
+
+    private static BlockImpl block(long id, int height, long previousBlockId, boolean loadTransactions) {
+        return new BlockImpl(3, height * 60, previousBlockId, 0, new byte[32], 0, new byte[32], new byte[64],
+                new byte[32], BigInteger.valueOf(height), 0, 0, height, id,
+                loadTransactions ? Collections.emptyList() : null);
+    }
+}
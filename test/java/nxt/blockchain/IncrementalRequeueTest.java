@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.blockchain;
+
+import nxt.BlockchainTest;
+import nxt.Nxt;
+import nxt.Tester;
+import nxt.db.DbIterator;
+import nxt.http.callers.SendMoneyCall;
+import nxt.util.Convert;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static nxt.blockchain.ChildChain.IGNIS;
+
+public class IncrementalRequeueTest extends BlockchainTest {
+
+    static {
+        BlockchainTest.putAdditionalProperty("nxt.enableIncrementalRequeue", "true");
+    }
+
+    @Before
+    public void checkIncrementalRequeue() {
+        Assume.assumeTrue(Nxt.getBooleanProperty("nxt.enableIncrementalRequeue"));
+    }
+
+    @Test
+    public void testUnaffectedTransactionStaysInPool() {
+        long transactionId = sendUnbundledIgnis(CHUCK, DAVE, 10);
+        sendFxt(ALICE, BOB);
+        generateBlock();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, CHUCK.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+        Assert.assertEquals(0, CHUCK.getChainBalanceDiff(IGNIS.getId()));
+    }
+
+    @Test
+    public void testRecipientTransactionRevalidated() {
+        long transactionId = sendUnbundledIgnis(DAVE, CHUCK, 10);
+        sendFxt(ALICE, CHUCK);
+        generateBlock();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, DAVE.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+    }
+
+    @Test
+    public void testSenderTransactionRequeued() {
+        long transactionId = sendUnbundledIgnis(CHUCK, DAVE, 10);
+        sendFxt(CHUCK, BOB);
+        generateBlock();
+        TransactionProcessorImpl.getInstance().processWaitingTransactions();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, CHUCK.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+    }
+
+    @Test
+    public void testPopOffAcrossRemovalHeight() {
+        int height = Nxt.getBlockchain().getHeight();
+        long transactionId = sendUnbundledIgnis(CHUCK, DAVE, 10);
+        generateBlock();
+        sendFxt(CHUCK, BOB);
+        generateBlock();
+        generateBlock();
+        TransactionProcessorImpl.getInstance().processWaitingTransactions();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, CHUCK.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+
+        Nxt.getBlockchainProcessor().popOffTo(height + 1);
+        TransactionProcessorImpl.getInstance().processWaitingTransactions();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, CHUCK.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+
+        Nxt.getBlockchainProcessor().popOffTo(height);
+        TransactionProcessorImpl.getInstance().processWaitingTransactions();
+        Assert.assertEquals(1, countInPool(transactionId));
+        Assert.assertEquals(-10 * IGNIS.ONE_COIN, CHUCK.getChainUnconfirmedBalanceDiff(IGNIS.getId()));
+        Assert.assertEquals(0, CHUCK.getChainBalanceDiff(IGNIS.getId()));
+    }
+
+    /**
+     * Send a child chain payment without a fee so the bundlers leave it in the unconfirmed pool
+     */
+    private static long sendUnbundledIgnis(Tester sender, Tester recipient, long amount) {
+        String fullHash = SendMoneyCall.create(IGNIS.getId())
+                .secretPhrase(sender.getSecretPhrase())
+                .recipient(recipient.getStrId())
+                .amountNQT(amount * IGNIS.ONE_COIN)
+                .feeNQT(0)
+                .call()
+                .getString("fullHash");
+        return Convert.fullHashToId(Convert.parseHexString(fullHash));
+    }
+
+    private static void sendFxt(Tester sender, Tester recipient) {
+        SendMoneyCall.create(FxtChain.FXT.getId())
+                .secretPhrase(sender.getSecretPhrase())
+                .recipient(recipient.getStrId())
+                .amountNQT(FxtChain.FXT.ONE_COIN)
+                .feeNQT(FxtChain.FXT.ONE_COIN)
+                .build().invokeNoError();
+    }
+
+    private static int countInPool(long transactionId) {
+        int count = 0;
+        try (DbIterator<UnconfirmedTransaction> transactions = TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions()) {
+            for (UnconfirmedTransaction transaction : transactions) {
+                if (transaction.getId() == transactionId) {
+                    count += 1;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class BlobStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void putAndGet() throws IOException {
+        BlobStore store = new BlobStore(temporaryFolder.newFolder().toPath(), 1024 * 1024);
+        byte[] small = payload(1, 100);
+        byte[] large = payload(2, 64 * 1024);
+        store.put(BlobStore.TAGGED_DATA, hash(1), 10, small);
+        store.put(BlobStore.PLAIN_MESSAGE, hash(2), 10, large);
+        store.put(BlobStore.ENCRYPTED_MESSAGE, hash(2), 10, new byte[0]);
+        Assert.assertArrayEquals(small, store.getBytes(BlobStore.TAGGED_DATA, hash(1)));
+        Assert.assertArrayEquals(large, store.getBytes(BlobStore.PLAIN_MESSAGE, hash(2)));
+        Assert.assertArrayEquals(new byte[0], store.getBytes(BlobStore.ENCRYPTED_MESSAGE, hash(2)));
+        Assert.assertTrue(store.get(BlobStore.PLAIN_MESSAGE, hash(2)).isReadOnly());
+        Assert.assertNull(store.get(BlobStore.PLAIN_MESSAGE, hash(1)));
+        Assert.assertFalse(store.contains(BlobStore.TAGGED_DATA, hash(2)));
+        store.put(BlobStore.TAGGED_DATA, hash(1), 10, payload(3, 100));
+        Assert.assertArrayEquals(small, store.getBytes(BlobStore.TAGGED_DATA, hash(1)));
+        Assert.assertEquals(3, store.getCount());
+        store.close();
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        Path path = temporaryFolder.newFolder().toPath();
+        BlobStore store = new BlobStore(path, 1000);
+        for (int i = 0; i < 20; i++) {
+            store.put(BlobStore.TAGGED_DATA, hash(i), i, payload(i, 300));
+        }
+        long size = store.getSize();
+        store.close();
+        Path segment;
+        try (Stream<Path> stream = Files.list(path)) {
+            segment = stream.max(Path::compareTo).orElseThrow(IllegalStateException::new);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x42, 0x4f, 0x4c}));
+        }
+        store = new BlobStore(path, 1000);
+        Assert.assertEquals(20, store.getCount());
+        Assert.assertEquals(size, store.getSize());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertArrayEquals(payload(i, 300), store.getBytes(BlobStore.TAGGED_DATA, hash(i)));
+        }
+        store.close();
+    }
+
+    @Test
+    public void prune() throws IOException {
+        Path path = temporaryFolder.newFolder().toPath();
+        BlobStore store = new BlobStore(path, 1000);
+        for (int i = 0; i < 20; i++) {
+            store.put(BlobStore.TAGGED_DATA, hash(i), i, payload(i, 300));
+        }
+        int segmentCount = countSegments(path);
+        store.prune(15);
+        Assert.assertEquals(5, store.getCount());
+        Assert.assertTrue(countSegments(path) < segmentCount);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = store.getBytes(BlobStore.TAGGED_DATA, hash(i));
+            if (i < 15) {
+                Assert.assertNull(data);
+            } else {
+                Assert.assertArrayEquals(payload(i, 300), data);
+            }
+        }
+        store.close();
+        store = new BlobStore(path, 1000);
+        store.prune(15);
+        Assert.assertEquals(5, store.getCount());
+        Assert.assertArrayEquals(payload(19, 300), store.getBytes(BlobStore.TAGGED_DATA, hash(19)));
+        store.close();
+    }
+
+    @Test
+    public void skipDamagedPayload() throws IOException {
+        checkDamagedRecord(49 + 10);
+    }
+
+    @Test
+    public void skipDamagedHeader() throws IOException {
+        checkDamagedRecord(0);
+        checkDamagedRecord(4 + 1 + 32);
+    }
+
+    @Test
+    public void damagedPayloadOnRead() throws IOException {
+        Path path = temporaryFolder.newFolder().toPath();
+        BlobStore store = new BlobStore(path, 1024 * 1024);
+        store.put(BlobStore.TAGGED_DATA, hash(1), 1, payload(1, 300));
+        store.put(BlobStore.TAGGED_DATA, hash(2), 2, payload(2, 32 * 1024));
+        damage(path, 49 + 20);
+        damage(path, 49 + 300 + 49 + 20000);
+        Assert.assertNull(store.get(BlobStore.TAGGED_DATA, hash(1)));
+        Assert.assertNull(store.get(BlobStore.TAGGED_DATA, hash(2)));
+        Assert.assertFalse(store.contains(BlobStore.TAGGED_DATA, hash(1)));
+        Assert.assertEquals(0, store.getCount());
+        // The payload is stored again when the transaction is restored
+        store.put(BlobStore.TAGGED_DATA, hash(1), 1, payload(1, 300));
+        Assert.assertArrayEquals(payload(1, 300), store.getBytes(BlobStore.TAGGED_DATA, hash(1)));
+        store.close();
+        store = new BlobStore(path, 1024 * 1024);
+        Assert.assertEquals(1, store.getCount());
+        Assert.assertArrayEquals(payload(1, 300), store.getBytes(BlobStore.TAGGED_DATA, hash(1)));
+        store.close();
+    }
+
+    /**
+     * Damage the sixth of twenty records and check that the other records are still available
+     * after the store is reopened
+     */
+    private void checkDamagedRecord(int offset) throws IOException {
+        Path path = temporaryFolder.newFolder().toPath();
+        BlobStore store = new BlobStore(path, 1024 * 1024);
+        for (int i = 0; i < 20; i++) {
+            store.put(BlobStore.TAGGED_DATA, hash(i), i, payload(i, 300));
+        }
+        long size = store.getSize();
+        store.close();
+        damage(path, 5 * (49 + 300) + offset);
+        store = new BlobStore(path, 1024 * 1024);
+        Assert.assertEquals(19, store.getCount());
+        Assert.assertEquals(size, store.getSize());
+        for (int i = 0; i < 20; i++) {
+            byte[] data = store.getBytes(BlobStore.TAGGED_DATA, hash(i));
+            if (i == 5) {
+                Assert.assertNull(data);
+            } else {
+                Assert.assertArrayEquals(payload(i, 300), data);
+            }
+        }
+        store.close();
+    }
+
+    private static void damage(Path path, long position) throws IOException {
+        Path segment;
+        try (Stream<Path> stream = Files.list(path)) {
+            segment = stream.min(Path::compareTo).orElseThrow(IllegalStateException::new);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.flip();
+            buffer.put(0, (byte)(buffer.get(0) ^ 0x55));
+            channel.write(buffer, position);
+        }
+    }
+
+    private static int countSegments(Path path) throws IOException {
+        try (Stream<Path> stream = Files.list(path)) {
+            return (int)stream.count();
+        }
+    }
+
+    private static byte[] hash(int n) {
+        byte[] hash = new byte[32];
+        Arrays.fill(hash, (byte)n);
+        return hash;
+    }
+
+    private static byte[] payload(int n, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte)(n + i);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaQualifiedSqlTest {
+
+    @Test
+    public void testQualified() {
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM public.account WHERE id = ? AND latest = TRUE"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT a.* FROM ignis.alias a, ignis.alias_offer o WHERE a.id = o.id"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM public.asset AS a LEFT JOIN public.asset_delete d ON a.id = d.asset_id"));
+        assertTrue(SchemaQualifiedSql.isQualified("INSERT INTO public.balance_aeur (account_id, balance) VALUES (?, ?)"));
+        assertTrue(SchemaQualifiedSql.isQualified("MERGE INTO public.account KEY (id, height) VALUES (?, ?)"));
+        assertTrue(SchemaQualifiedSql.isQualified("UPDATE ignis.alias SET latest = FALSE WHERE id = ? FOR UPDATE"));
+        assertTrue(SchemaQualifiedSql.isQualified("DELETE FROM ignis.alias WHERE height > ?"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM (SELECT id FROM ignis.alias) WHERE id IN (SELECT id FROM public.account)"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM TABLE(id BIGINT = ?) t, public.account a WHERE t.id = a.id"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM public.account WHERE name = 'from alias'"));
+        assertTrue(SchemaQualifiedSql.isQualified("SELECT * FROM (SELECT id FROM ignis.alias) x, public.account a WHERE x.id = a.id"));
+    }
+
+    @Test
+    public void testUnqualified() {
+        assertFalse(SchemaQualifiedSql.isQualified(null));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM account WHERE id = ?"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM public.account a, alias b WHERE a.id = b.id"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM public.asset a JOIN asset_delete d ON a.id = d.asset_id"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM public.account WHERE id IN (SELECT id FROM alias)"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM TABLE(id BIGINT = ?) t, alias a WHERE t.id = a.id"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM (SELECT id FROM ignis.alias) x, alias a WHERE x.id = a.id"));
+        assertFalse(SchemaQualifiedSql.isQualified("SELECT * FROM (SELECT id FROM ignis.alias) AS x, public.account a, alias b"));
+        assertFalse(SchemaQualifiedSql.isQualified("INSERT INTO alias (id) VALUES (?)"));
+        assertFalse(SchemaQualifiedSql.isQualified("UPDATE alias SET latest = FALSE"));
+        assertFalse(SchemaQualifiedSql.isQualified("CREATE TABLE ignis.test (id BIGINT)"));
+        assertFalse(SchemaQualifiedSql.isQualified("WITH t AS (SELECT 1) SELECT * FROM t"));
+        assertFalse(SchemaQualifiedSql.isQualified("SET SCHEMA ignis"));
+    }
+}
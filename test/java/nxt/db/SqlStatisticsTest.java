@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlStatisticsTest {
+
+    @Test
+    public void testNormalizeLiterals() {
+        assertEquals("SELECT * FROM ACCOUNT WHERE ID = ? AND LATEST = TRUE",
+                SqlStatistics.normalize("select * from account where id = 123 and latest = true"));
+        assertEquals("SELECT * FROM ALIAS WHERE ALIAS_NAME_LOWER = ?",
+                SqlStatistics.normalize("SELECT * FROM alias WHERE alias_name_lower = 'it''s from alias'"));
+        assertEquals("SELECT * FROM ASSET WHERE QUANTITY > ? AND HASH = ?",
+                SqlStatistics.normalize("SELECT * FROM asset WHERE quantity > 1.5 AND hash = X'0a1b'"));
+        assertEquals("SELECT * FROM BALANCE_AEUR2 WHERE HEIGHT > -?",
+                SqlStatistics.normalize("SELECT * FROM balance_aeur2 WHERE height > -1"));
+        assertEquals(SqlStatistics.normalize("SELECT * FROM account WHERE id = ?"),
+                SqlStatistics.normalize("SELECT * FROM account WHERE id = 42"));
+    }
+
+    @Test
+    public void testNormalizeWhitespace() {
+        assertEquals("SELECT * FROM ACCOUNT WHERE ID = ?",
+                SqlStatistics.normalize("  SELECT *\n\tFROM account\r\n  WHERE id =   ?  "));
+    }
+
+    @Test
+    public void testNormalizeInLists() {
+        assertEquals("SELECT * FROM ACCOUNT WHERE ID IN (?)",
+                SqlStatistics.normalize("SELECT * FROM account WHERE id IN (?, ?, ?)"));
+        assertEquals("SELECT * FROM ACCOUNT WHERE ID IN (?)",
+                SqlStatistics.normalize("SELECT * FROM account WHERE id IN (1,2 , 3)"));
+        assertEquals("SELECT * FROM ACCOUNT WHERE ID IN (?)",
+                SqlStatistics.normalize("SELECT * FROM account WHERE id IN ('a', 'b')"));
+        assertEquals(SqlStatistics.normalize("SELECT * FROM account WHERE id IN (?)"),
+                SqlStatistics.normalize("SELECT * FROM account WHERE id IN (?, ?)"));
+        assertEquals("INSERT INTO ACCOUNT (ID, HEIGHT) VALUES (?)",
+                SqlStatistics.normalize("INSERT INTO account (id, height) VALUES (?, ?)"));
+    }
+
+    @Test
+    public void testNormalizeSchemaQualifiedNames() {
+        assertEquals("SELECT * FROM PUBLIC.ACCOUNT WHERE ID = ?",
+                SqlStatistics.normalize("SELECT * FROM public.account WHERE id = 7"));
+        assertEquals("UPDATE IGNIS.ALIAS SET LATEST = FALSE WHERE ID = ?",
+                SqlStatistics.normalize("UPDATE ignis.alias SET latest = FALSE WHERE id = ?"));
+    }
+
+    @Test
+    public void testGetTableName() {
+        assertEquals("PUBLIC.ACCOUNT", SqlStatistics.getTableName(SqlStatistics.normalize("SELECT * FROM public.account WHERE id = 1")));
+        assertEquals("IGNIS.ALIAS", SqlStatistics.getTableName(SqlStatistics.normalize("update ignis.alias set latest = false")));
+        assertEquals("IGNIS.TAGGED_DATA", SqlStatistics.getTableName(SqlStatistics.normalize("INSERT INTO ignis.tagged_data (id) VALUES (?)")));
+        assertEquals("PUBLIC.BALANCE_AEUR", SqlStatistics.getTableName(SqlStatistics.normalize("MERGE INTO public.balance_aeur KEY (id) VALUES (?)")));
+        assertEquals("ACCOUNT", SqlStatistics.getTableName(SqlStatistics.normalize("DELETE FROM account WHERE height > 10")));
+        assertEquals("OTHER", SqlStatistics.getTableName(SqlStatistics.normalize("SET SCHEMA ignis")));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class StatementCacheTest {
+
+    private static int dbNumber;
+
+    private TransactionalDb db;
+
+    @Before
+    public void init() throws SQLException {
+        db = new TransactionalDb(new BasicDb.DbProperties()
+                .dbUrl("jdbc:h2:mem:statement_cache_test_" + (++dbNumber) + ";DB_CLOSE_DELAY=-1")
+                .dbUsername("sa")
+                .dbPassword("sa")
+                .maxConnections(2)
+                .loginTimeout(10)
+                .defaultLockTimeout(10000)
+                .maxMemoryRows(1000)
+                .statementCacheSize(2));
+        db.init(Collections.emptyList());
+        try (Connection con = db.getConnection("PUBLIC");
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE test (id BIGINT NOT NULL PRIMARY KEY)");
+            for (int i = 1; i <= 5; i++) {
+                stmt.executeUpdate("INSERT INTO test (id) VALUES (" + i + ")");
+            }
+        }
+    }
+
+    @After
+    public void shutdown() throws SQLException {
+        if (db.isInTransaction()) {
+            db.endTransaction();
+        }
+        try (Connection con = db.getConnection("PUBLIC");
+             Statement stmt = con.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        long hits = db.getStatementCacheHits();
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt1 = con.prepareStatement("SELECT id FROM test WHERE id = ?");
+        pstmt1.setLong(1, 1);
+        assertEquals(1, count(pstmt1));
+        pstmt1.close();
+        assertTrue(pstmt1.isClosed());
+        PreparedStatement pstmt2 = con.prepareStatement("SELECT id FROM test WHERE id = ?");
+        assertNotSame(pstmt1, pstmt2);
+        assertFalse(pstmt2.isClosed());
+        assertEquals(hits + 1, db.getStatementCacheHits());
+        pstmt2.setLong(1, 2);
+        assertEquals(1, count(pstmt2));
+        pstmt2.close();
+        db.endTransaction();
+    }
+
+    @Test
+    public void testCloseIsIdempotent() throws SQLException {
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt1 = con.prepareStatement("SELECT id FROM test WHERE id > ?");
+        pstmt1.close();
+        PreparedStatement pstmt2 = con.prepareStatement("SELECT id FROM test WHERE id > ?");
+        pstmt1.close();
+        PreparedStatement pstmt3 = con.prepareStatement("SELECT id FROM test WHERE id > ?");
+        pstmt2.setLong(1, 0);
+        assertEquals(5, count(pstmt2));
+        pstmt3.setLong(1, 3);
+        assertEquals(2, count(pstmt3));
+        assertEquals(5, count(pstmt2));
+        pstmt2.close();
+        pstmt3.close();
+        db.endTransaction();
+    }
+
+    @Test
+    public void testCloseResultSet() throws SQLException {
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt = con.prepareStatement("SELECT id FROM test");
+        ResultSet rs = pstmt.executeQuery();
+        assertTrue(rs.next());
+        pstmt.close();
+        assertTrue(rs.isClosed());
+        db.endTransaction();
+    }
+
+    @Test
+    public void testResetState() throws SQLException {
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt = con.prepareStatement("SELECT id FROM test ORDER BY id");
+        int fetchSize = pstmt.getFetchSize();
+        pstmt.setFetchSize(1);
+        pstmt.setMaxRows(2);
+        assertEquals(2, count(pstmt));
+        pstmt.close();
+        pstmt = con.prepareStatement("SELECT id FROM test ORDER BY id");
+        assertEquals(0, pstmt.getMaxRows());
+        assertEquals(fetchSize, pstmt.getFetchSize());
+        assertEquals(5, count(pstmt));
+        pstmt.close();
+        db.endTransaction();
+    }
+
+    @Test
+    public void testClearParameters() throws SQLException {
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt = con.prepareStatement("SELECT id FROM test WHERE id = ?");
+        pstmt.setLong(1, 1);
+        assertEquals(1, count(pstmt));
+        pstmt.close();
+        PreparedStatement reused = con.prepareStatement("SELECT id FROM test WHERE id = ?");
+        try {
+            reused.executeQuery();
+            throw new AssertionError("Parameters were not cleared");
+        } catch (SQLException expected) {
+            // parameter not set
+        }
+        reused.close();
+        db.endTransaction();
+    }
+
+    @Test
+    public void testEndTransaction() throws SQLException {
+        Connection con = db.beginTransaction();
+        PreparedStatement pstmt1 = con.prepareStatement("SELECT id FROM test");
+        PreparedStatement pstmt2 = con.prepareStatement("SELECT id FROM test WHERE id = 1");
+        pstmt1.close();
+        db.endTransaction();
+        assertTrue(pstmt1.isClosed());
+        pstmt2.close();
+        assertTrue(pstmt2.isClosed());
+    }
+
+    private static int count(PreparedStatement pstmt) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+}
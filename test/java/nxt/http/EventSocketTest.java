@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class EventSocketTest {
+
+    private static final long ALICE = 1001;
+    private static final long BOB = 1002;
+    private static final long CHUCK = 1003;
+
+    @Test
+    public void testEventName() {
+        EventSocket.Subscription subscription = subscription(set("Block.BLOCK_PUSHED"), set(), set());
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Block.BLOCK_PUSHED", "1")));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Block.BLOCK_POPPED", "1")));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "2:00", 2L, ALICE)));
+    }
+
+    @Test
+    public void testAccountFilter() {
+        EventSocket.Subscription subscription = subscription(set("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "Block.BLOCK_PUSHED"), set(ALICE), set());
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "2:00", 2L, ALICE, BOB)));
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "2:00", 2L, BOB, ALICE)));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "2:00", 2L, BOB, CHUCK)));
+        // Events which are not account specific are not filtered
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Block.BLOCK_PUSHED", "1")));
+        // A recipient of 0 is not an account
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Transaction.ADDED_CONFIRMED_TRANSACTIONS", "2:00", 2L, BOB, 0)));
+    }
+
+    @Test
+    public void testHoldingFilter() {
+        EventSocket.Subscription subscription = subscription(set("Ledger.ADD_ENTRY", "Peer.ADD_PEER"), set(), set(2L));
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Ledger.ADD_ENTRY", "10", 2L, ALICE)));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Ledger.ADD_ENTRY", "11", 3L, ALICE)));
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Peer.ADD_PEER", "127.0.0.1")));
+    }
+
+    @Test
+    public void testAccountAndHoldingFilter() {
+        EventSocket.Subscription subscription = subscription(set("Ledger.ADD_ENTRY"), set(ALICE, BOB), set(2L, 3L));
+        Assert.assertTrue(subscription.matches(new EventSocketHub.Message("Ledger.ADD_ENTRY", "10", 3L, BOB)));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Ledger.ADD_ENTRY", "11", 4L, BOB)));
+        Assert.assertFalse(subscription.matches(new EventSocketHub.Message("Ledger.ADD_ENTRY", "12", 2L, CHUCK)));
+    }
+
+    @Test
+    public void testSendQueue() {
+        EventSocket.SendQueue queue = new EventSocket.SendQueue(2);
+        Assert.assertEquals(EventSocket.SendQueue.Result.SEND, queue.add("a"));
+        Assert.assertEquals("a", queue.next());
+        Assert.assertEquals(EventSocket.SendQueue.Result.QUEUED, queue.add("b"));
+        Assert.assertEquals(EventSocket.SendQueue.Result.QUEUED, queue.add("c"));
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals("b", queue.next());
+        Assert.assertEquals("c", queue.next());
+        Assert.assertNull(queue.next());
+        // The sender stopped so the next message starts it again
+        Assert.assertEquals(EventSocket.SendQueue.Result.SEND, queue.add("d"));
+        Assert.assertEquals("d", queue.next());
+        Assert.assertNull(queue.next());
+        Assert.assertFalse(queue.isClosed());
+    }
+
+    @Test
+    public void testSendQueueOverflow() {
+        EventSocket.SendQueue queue = new EventSocket.SendQueue(2);
+        Assert.assertEquals(EventSocket.SendQueue.Result.SEND, queue.add("a"));
+        Assert.assertEquals(EventSocket.SendQueue.Result.QUEUED, queue.add("b"));
+        Assert.assertEquals(EventSocket.SendQueue.Result.OVERFLOW, queue.add("c"));
+        Assert.assertTrue(queue.isClosed());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertNull(queue.next());
+        Assert.assertEquals(EventSocket.SendQueue.Result.CLOSED, queue.add("d"));
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testSendQueueClose() {
+        EventSocket.SendQueue queue = new EventSocket.SendQueue(10);
+        queue.add("a");
+        queue.add("b");
+        queue.close();
+        Assert.assertNull(queue.next());
+        Assert.assertEquals(EventSocket.SendQueue.Result.CLOSED, queue.add("c"));
+    }
+
+    @Test
+    public void testAllowedOrigin() {
+        Assert.assertTrue(EventSocketServlet.isAllowedOrigin(null, "localhost:27876", false));
+        Assert.assertTrue(EventSocketServlet.isAllowedOrigin("http://localhost:27876", "localhost:27876", false));
+        Assert.assertTrue(EventSocketServlet.isAllowedOrigin("https://Node.Example.com", "node.example.com", false));
+        Assert.assertFalse(EventSocketServlet.isAllowedOrigin("http://evil.example.com", "localhost:27876", false));
+        Assert.assertFalse(EventSocketServlet.isAllowedOrigin("http://localhost:8080", "localhost:27876", false));
+        Assert.assertFalse(EventSocketServlet.isAllowedOrigin("null", "localhost:27876", false));
+        Assert.assertFalse(EventSocketServlet.isAllowedOrigin("http://localhost:27876", null, false));
+        Assert.assertTrue(EventSocketServlet.isAllowedOrigin("http://evil.example.com", "localhost:27876", true));
+    }
+
+    private static EventSocket.Subscription subscription(Set<String> events, Set<Long> accounts, Set<Long> holdings) {
+        return new EventSocket.Subscription(events, accounts, holdings);
+    }
+
+    @SafeVarargs
+    private static <T> Set<T> set(T... values) {
+        return values.length == 0 ? Collections.emptySet() : new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -18,6 +18,7 @@ package nxt.peer;
 import nxt.http.APIEnum;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class DummyPeer implements Peer {
     @Override
@@ -45,6 +46,11 @@ public class DummyPeer implements Peer {
         return 0;
     }
 
+    @Override
+    public double getCompressionRatio() {
+        return 0;
+    }
+
     @Override
     public String getApplication() {
         return null;
@@ -190,6 +196,11 @@ public class DummyPeer implements Peer {
         return null;
     }
 
+    @Override
+    public CompletableFuture<NetworkMessage> sendRequestAsync(NetworkMessage message) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public void waitHandshake() {
 
@@ -19,7 +19,9 @@ package nxt.util;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -159,6 +161,65 @@ public class ConvertTest {
         Logger.logInfoMessage("fullHashToIdOptimization new time %f old time %f factor %f", (float)newTime/(float)1000000000, (float)oldTime/(float)1000000000, (float)oldTime/(float)newTime);
     }
 
+    @Test
+    public void multiplyHigh() {
+        Random r = new Random();
+        long[] values = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 0xFFFFFFFFL, 0x100000000L};
+        for (long x : values) {
+            for (long y : values) {
+                Assert.assertEquals(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)).shiftRight(64).longValue(),
+                        Convert.multiplyHigh(x, y));
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            long x = r.nextLong();
+            long y = r.nextLong();
+            Assert.assertEquals(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)).shiftRight(64).longValue(),
+                    Convert.multiplyHigh(x, y));
+        }
+    }
+
+    @Test
+    public void multiplyAndScale() {
+        Random r = new Random();
+        Assert.assertEquals(0, Convert.multiplyAndScale(0, 123, 8));
+        Assert.assertEquals(1, Convert.multiplyAndScale(5, 1, 1));
+        Assert.assertEquals(0, Convert.multiplyAndScale(4, 1, 1));
+        Assert.assertEquals(Long.MAX_VALUE, Convert.multiplyAndScale(Long.MAX_VALUE, 1, 0));
+        Assert.assertEquals(-1, Convert.multiplyAndScale(Long.MAX_VALUE, 2, 0));
+        Assert.assertEquals(-1, Convert.multiplyAndScale(-1, 2, 0));
+        Assert.assertEquals(-1, Convert.multiplyAndScale(1, 2, 19));
+        for (int i = 0; i < 100000; i++) {
+            long x = (r.nextLong() >>> 1) >>> r.nextInt(63);
+            long y = (r.nextLong() >>> 1) >>> r.nextInt(63);
+            int scale = r.nextInt(19);
+            long result = Convert.multiplyAndScale(x, y, scale);
+            BigInteger divisor = BigInteger.TEN.pow(scale);
+            BigInteger[] amounts = BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)).divideAndRemainder(divisor);
+            BigInteger expected = amounts[0];
+            if (amounts[1].shiftLeft(1).compareTo(divisor) >= 0) {
+                expected = expected.add(BigInteger.ONE);
+            }
+            if (expected.bitLength() < 64) {
+                Assert.assertEquals(expected.longValue(), result);
+            } else {
+                Assert.assertEquals(-1, result);
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            long x = (r.nextLong() >>> 1) % 1000000000000L;
+            long y = r.nextInt(100000000);
+            int scale = 2 + r.nextInt(17);
+            BigDecimal[] amounts = BigDecimal.valueOf(x, scale).multiply(BigDecimal.valueOf(y))
+                    .divideAndRemainder(BigDecimal.ONE, MathContext.DECIMAL128);
+            long expected = amounts[0].longValue();
+            if (amounts[1].compareTo(BigDecimal.valueOf(5L, 1)) >= 0) {
+                expected++;
+            }
+            Assert.assertEquals(expected, Convert.multiplyAndScale(x, y, scale));
+        }
+    }
+
     private static long fullHashToIdOld(byte[] hash) {
         if (hash == null || hash.length < 8) {
             throw new IllegalArgumentException("Invalid hash: " + Arrays.toString(hash));
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundaries() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.getIndex(value);
+            Assert.assertTrue(value <= LatencyHistogram.getHighestValue(index));
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.getHighestValue(index - 1));
+            }
+        }
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getTotal());
+        Assert.assertEquals(500, histogram.getMean());
+        Assert.assertEquals(1000, histogram.getMax());
+        assertWithinPrecision(500, histogram.getPercentile(50));
+        assertWithinPrecision(900, histogram.getPercentile(90));
+        assertWithinPrecision(990, histogram.getPercentile(99));
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+        Assert.assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(-1);
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(50));
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.getPercentile(99));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue("Expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+public class StreamingJSONArrayTest {
+
+    private static final Function<Integer, JSONObject> converter = i -> {
+        JSONObject json = new JSONObject();
+        json.put("index", i);
+        json.put("name", "item \"" + i + "\"/\n ");
+        JSONArray values = new JSONArray();
+        values.add(String.valueOf(i * 1000L));
+        values.add(i % 2 == 0);
+        json.put("values", values);
+        return json;
+    };
+
+    @Test
+    public void sameOutputAsJSONArray() throws IOException {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            elements.add(i);
+        }
+        JSONArray array = new JSONArray();
+        elements.forEach(i -> array.add(converter.apply(i)));
+        JSONObject expected = new JSONObject();
+        expected.put("items", array);
+        expected.put("requestProcessingTime", 3);
+
+        JSONObject streaming = new JSONObject();
+        streaming.put("items", new StreamingJSONArray<>(elements::iterator, converter));
+        streaming.put("requestProcessingTime", 3);
+        Assert.assertTrue(StreamingJSONArray.isStreaming(streaming));
+        Assert.assertFalse(StreamingJSONArray.isStreaming(expected));
+
+        Assert.assertEquals(write(expected), write(streaming));
+        Assert.assertEquals(JSON.toJSONString(expected), write(streaming));
+        Assert.assertEquals(JSON.toJSONString(expected), JSON.toJSONString(streaming));
+    }
+
+    @Test
+    public void takeWhileAndClose() throws IOException {
+        ClosingIterator iterator = new ClosingIterator(10);
+        JSONObject streaming = new JSONObject();
+        streaming.put("items", new StreamingJSONArray<>(() -> iterator, i -> i).takeWhile(i -> i < 4));
+        Assert.assertEquals("{\"items\":[0,1,2,3]}", write(streaming));
+        Assert.assertTrue(iterator.closed);
+
+        ClosingIterator empty = new ClosingIterator(0);
+        streaming.put("items", new StreamingJSONArray<>(() -> empty, i -> i));
+        Assert.assertEquals("{\"items\":[]}", write(streaming));
+        Assert.assertTrue(empty.closed);
+    }
+
+    @Test
+    public void bufferBeforeWrite() throws IOException {
+        ClosingIterator iterator = new ClosingIterator(1000);
+        JSONObject streaming = new JSONObject();
+        streaming.put("items", new StreamingJSONArray<>(() -> iterator, converter));
+        JSONStreamAware buffered = StreamingJSONArray.buffer(streaming, 1024 * 1024);
+        Assert.assertNotNull(buffered);
+        Assert.assertTrue(iterator.closed);
+
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 1000; i++) {
+            array.add(converter.apply(i));
+        }
+        JSONObject expected = new JSONObject();
+        expected.put("items", array);
+        StringWriter writer = new StringWriter();
+        buffered.writeJSONString(writer);
+        Assert.assertEquals(JSON.toJSONString(expected), writer.toString());
+    }
+
+    @Test
+    public void bufferTooLarge() throws IOException {
+        ClosingIterator iterator = new ClosingIterator(100000);
+        JSONObject streaming = new JSONObject();
+        streaming.put("items", new StreamingJSONArray<>(() -> iterator, i -> i));
+        Assert.assertNull(StreamingJSONArray.buffer(streaming, 1000));
+        Assert.assertTrue(iterator.closed);
+        Assert.assertTrue(iterator.next < 100000);
+
+        ClosingIterator small = new ClosingIterator(3);
+        streaming.put("items", new StreamingJSONArray<>(() -> small, i -> i));
+        JSONStreamAware buffered = StreamingJSONArray.buffer(streaming, "{\"items\":[0,1,2]}".length());
+        Assert.assertNotNull(buffered);
+        Assert.assertEquals("{\"items\":[0,1,2]}", JSON.toString(buffered));
+    }
+
+    private static String write(JSONObject json) throws IOException {
+        StringWriter writer = new StringWriter();
+        JSON.writeJSONString(json, writer);
+        return writer.toString();
+    }
+
+    private static class ClosingIterator implements Iterator<Integer>, AutoCloseable {
+
+        private final int size;
+        private int next;
+        private boolean closed;
+
+        private ClosingIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Integer next() {
+            return next++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of this software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class TimeoutWheelTest {
+
+    @Test
+    public void expire() throws InterruptedException {
+        TimeoutWheel wheel = new TimeoutWheel("TimeoutWheelTest", 10, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch latch = new CountDownLatch(2);
+        long start = System.nanoTime();
+        TimeoutWheel.Timeout shortTimeout = wheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+        // Longer than one rotation of the wheel
+        TimeoutWheel.Timeout longTimeout = wheel.schedule(latch::countDown, 150, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+        Assert.assertTrue(shortTimeout.isExpired());
+        Assert.assertTrue(longTimeout.isExpired());
+        Assert.assertEquals(0, wheel.getSize());
+    }
+
+    @Test
+    public void scheduleWhileTicking() throws InterruptedException {
+        // A timeout added to the bucket being processed would wait a full rotation of 1 second
+        TimeoutWheel wheel = new TimeoutWheel("TimeoutWheelTest", 1, TimeUnit.MILLISECONDS, 1000);
+        int threads = 4;
+        int count = 2000;
+        CountDownLatch latch = new CountDownLatch(threads * count);
+        AtomicLong maxLatency = new AtomicLong();
+        List<Thread> schedulers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < count; j++) {
+                    long scheduled = System.nanoTime();
+                    wheel.schedule(() -> {
+                        maxLatency.accumulateAndGet(System.nanoTime() - scheduled, Math::max);
+                        latch.countDown();
+                    }, 0, TimeUnit.MILLISECONDS);
+                    if (j % 100 == 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+            });
+            thread.start();
+            schedulers.add(thread);
+        }
+        for (Thread thread : schedulers) {
+            thread.join();
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(maxLatency.get()) < 500);
+        Assert.assertEquals(0, wheel.getSize());
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        TimeoutWheel wheel = new TimeoutWheel("TimeoutWheelTest", 10, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger count = new AtomicInteger();
+        TimeoutWheel.Timeout timeout = wheel.schedule(count::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, count.get());
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertFalse(timeout.isExpired());
+    }
+}
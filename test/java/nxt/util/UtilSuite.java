@@ -28,7 +28,10 @@ import org.junit.runners.Suite;
         JsonMessageTest.class,
         ReedSolomonTest.class,
         ConvertTest.class,
-        Bip32PathTest.class
+        Bip32PathTest.class,
+        LatencyHistogramTest.class,
+        TimeoutWheelTest.class,
+        StreamingJSONArrayTest.class
 })
 public class UtilSuite {
 }